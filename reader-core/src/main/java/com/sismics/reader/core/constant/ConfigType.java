@@ -10,4 +10,54 @@ public enum ConfigType {
      * Lucene directory storage type.
      */
     LUCENE_DIRECTORY_STORAGE,
+
+    /**
+     * Number of threads fetching feeds during a synchronization cycle.
+     */
+    FEED_SYNC_THREAD_COUNT,
+
+    /**
+     * Maximum number of feeds fetched but not yet persisted.
+     */
+    FEED_SYNC_MAX_IN_FLIGHT,
+
+    /**
+     * Maximum number of concurrent fetches against the same host.
+     */
+    FEED_SYNC_MAX_PER_HOST,
+
+    /**
+     * Shortest polling interval of a feed, in minutes.
+     */
+    FEED_SYNC_MIN_INTERVAL,
+
+    /**
+     * Longest polling interval of a feed, in minutes.
+     */
+    FEED_SYNC_MAX_INTERVAL,
+
+    /**
+     * True to profile the queries of the requests.
+     */
+    QUERY_PROFILE_ENABLED,
+
+    /**
+     * Duration of a slow request reported by the query profiler, in milliseconds.
+     */
+    QUERY_PROFILE_SLOW_THRESHOLD,
+
+    /**
+     * Number of SQL statements of a chatty request reported by the query profiler.
+     */
+    QUERY_PROFILE_CHATTY_THRESHOLD,
+
+    /**
+     * Number of executions of the same query shape in a request reported as N+1 by the query profiler.
+     */
+    QUERY_PROFILE_REPEAT_THRESHOLD,
+
+    /**
+     * Date of the last reconciliation of the subscription counters, in milliseconds.
+     */
+    COUNTER_RECONCILE_DATE,
 }
@@ -4,6 +4,8 @@ import com.sismics.reader.core.model.jpa.Article;
 import com.sismics.reader.core.model.jpa.Feed;
 import com.sismics.util.JsonValidationUtil;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.ObjectNode;
@@ -26,101 +28,135 @@ public class StarredReader {
     
     /**
      * Reads a starred file.
+     * The file is streamed, only one item is held in memory at a time.
      * 
      * @param is JSON input stream
      */
     public void read(InputStream is) throws Exception {
         ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readTree(is);
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(is);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new Exception("The starred file must contain a JSON object");
+        }
 
-        // Validate root node
-        JsonValidationUtil.validateJsonString(rootNode, "id", true);
-        JsonValidationUtil.validateJsonString(rootNode, "title", true);
-        JsonValidationUtil.validateJsonString(rootNode, "author", true);
-        JsonValidationUtil.validateJsonArray(rootNode, "items", true);
-        
-        // Iterate over starred items
-        ArrayNode items = (ArrayNode) rootNode.get("items");
-        for (JsonNode itemNode : items) {
-            // Extract the feed data
-            JsonValidationUtil.validateJsonObject(itemNode, "origin", true);
-            JsonNode origin = itemNode.path("origin");
-            
-            JsonValidationUtil.validateJsonString(origin, "streamId", true);
-            String feedRssUrl = origin.path("streamId").getTextValue();
-            if (feedRssUrl.startsWith("feed/")) {
-                feedRssUrl = feedRssUrl.substring("feed/".length());
+        // Read the root node, except the items which are streamed
+        ObjectNode rootNode = mapper.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("items".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                // Validate the root fields read so far, before raising any event
+                validateRootNode(rootNode, false);
+                rootNode.putArray(fieldName);
+
+                // Iterate over starred items
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    readItem(mapper.readTree(parser));
+                }
+            } else {
+                rootNode.put(fieldName, mapper.readTree(parser));
             }
-            
-            JsonValidationUtil.validateJsonString(origin, "htmlUrl", true);
-            String feedUrl = origin.path("htmlUrl").getTextValue();
-            
-            JsonValidationUtil.validateJsonString(origin, "title", false);
-            String feedTitle = origin.path("title").getTextValue();
+        }
+        validateRootNode(rootNode, true);
+    }
+
+    /**
+     * Validates the root node.
+     * 
+     * @param rootNode Root node
+     * @param required Check the required fields
+     */
+    private void validateRootNode(JsonNode rootNode, boolean required) throws Exception {
+        JsonValidationUtil.validateJsonString(rootNode, "id", required);
+        JsonValidationUtil.validateJsonString(rootNode, "title", required);
+        JsonValidationUtil.validateJsonString(rootNode, "author", required);
+        JsonValidationUtil.validateJsonArray(rootNode, "items", required);
+    }
+
+    /**
+     * Reads a starred item.
+     * 
+     * @param itemNode Item node
+     */
+    private void readItem(JsonNode itemNode) throws Exception {
+        // Extract the feed data
+        JsonValidationUtil.validateJsonObject(itemNode, "origin", true);
+        JsonNode origin = itemNode.path("origin");
+        
+        JsonValidationUtil.validateJsonString(origin, "streamId", true);
+        String feedRssUrl = origin.path("streamId").getTextValue();
+        if (feedRssUrl.startsWith("feed/")) {
+            feedRssUrl = feedRssUrl.substring("feed/".length());
+        }
+        
+        JsonValidationUtil.validateJsonString(origin, "htmlUrl", true);
+        String feedUrl = origin.path("htmlUrl").getTextValue();
+        
+        JsonValidationUtil.validateJsonString(origin, "title", false);
+        String feedTitle = origin.path("title").getTextValue();
 
-            // Extract the article data
-            JsonValidationUtil.validateJsonString(itemNode, "id", true);
+        // Extract the article data
+        JsonValidationUtil.validateJsonString(itemNode, "id", true);
 //            String id = itemNode.path("id").getTextValue();
-            
-            JsonValidationUtil.validateJsonString(itemNode, "title", false);
-            String title = itemNode.path("title").getTextValue();
-            
-            JsonValidationUtil.validateJsonNumber(itemNode, "published", true);
-            long publicationDate = itemNode.path("published").getLongValue() * 1000;
+        
+        JsonValidationUtil.validateJsonString(itemNode, "title", false);
+        String title = itemNode.path("title").getTextValue();
+        
+        JsonValidationUtil.validateJsonNumber(itemNode, "published", true);
+        long publicationDate = itemNode.path("published").getLongValue() * 1000;
 
-            JsonValidationUtil.validateJsonArray(itemNode, "alternate", false);
-            String url = null;
-            if (itemNode.has("alternate")) {
-                ArrayNode alternate = (ArrayNode) itemNode.path("alternate");
-                
-                for (JsonNode alternateNode : alternate) {
-                    JsonValidationUtil.validateJsonString(alternateNode, "href", true);
-                    url = alternateNode.path("href").getTextValue();
-                }
+        JsonValidationUtil.validateJsonArray(itemNode, "alternate", false);
+        String url = null;
+        if (itemNode.has("alternate")) {
+            ArrayNode alternate = (ArrayNode) itemNode.path("alternate");
+            
+            for (JsonNode alternateNode : alternate) {
+                JsonValidationUtil.validateJsonString(alternateNode, "href", true);
+                url = alternateNode.path("href").getTextValue();
             }
+        }
 
-            String description = null;
-            if (itemNode.has("summary")) {
-                ObjectNode summaryNode = (ObjectNode) itemNode.path("summary");
-                if (summaryNode.has("content")) {
-                    JsonValidationUtil.validateJsonString(summaryNode, "content", true);
-                    description = summaryNode.path("content").getTextValue();
-                }
+        String description = null;
+        if (itemNode.has("summary")) {
+            ObjectNode summaryNode = (ObjectNode) itemNode.path("summary");
+            if (summaryNode.has("content")) {
+                JsonValidationUtil.validateJsonString(summaryNode, "content", true);
+                description = summaryNode.path("content").getTextValue();
             }
-            
-            if (itemNode.has("content")) {
-                ObjectNode contentNode = (ObjectNode) itemNode.path("content");
-                if (contentNode.has("content")) {
-                    JsonValidationUtil.validateJsonString(contentNode, "content", true);
-                    description = contentNode.path("content").getTextValue();
-                }
+        }
+        
+        if (itemNode.has("content")) {
+            ObjectNode contentNode = (ObjectNode) itemNode.path("content");
+            if (contentNode.has("content")) {
+                JsonValidationUtil.validateJsonString(contentNode, "content", true);
+                description = contentNode.path("content").getTextValue();
             }
-            
-            if (description == null) {
-                if (log.isInfoEnabled()) {
-                    log.info(MessageFormat.format("Content not found for starred article: {0}", title));
-                }
-                continue;
+        }
+        
+        if (description == null) {
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Content not found for starred article: {0}", title));
             }
+            return;
+        }
 
-            // Raise a starred article imported event
-            if (starredArticleImportedListener != null) {
-                Feed feed = new Feed();
-                feed.setRssUrl(feedRssUrl);
-                feed.setTitle(feedTitle);
-                feed.setUrl(feedUrl);
-    
-                Article article = new Article();
-                article.setTitle(title);
-                article.setPublicationDate(new Date(publicationDate));
-                article.setUrl(url);
-                article.setDescription(description);
-    
-                StarredArticleImportedEvent event = new StarredArticleImportedEvent();
-                event.setFeed(feed);
-                event.setArticle(article);
-                starredArticleImportedListener.onStarredArticleImported(event);
-            }
+        // Raise a starred article imported event
+        if (starredArticleImportedListener != null) {
+            Feed feed = new Feed();
+            feed.setRssUrl(feedRssUrl);
+            feed.setTitle(feedTitle);
+            feed.setUrl(feedUrl);
+
+            Article article = new Article();
+            article.setTitle(title);
+            article.setPublicationDate(new Date(publicationDate));
+            article.setUrl(url);
+            article.setDescription(description);
+
+            StarredArticleImportedEvent event = new StarredArticleImportedEvent();
+            event.setFeed(feed);
+            event.setArticle(article);
+            starredArticleImportedListener.onStarredArticleImported(event);
         }
     }
 
@@ -88,6 +88,21 @@ public class RssReader extends DefaultHandler {
 
     private int fatalErrorCount;
 
+    /**
+     * Time to live from the RSS ttl element, in minutes.
+     */
+    private Integer ttl;
+
+    /**
+     * Update period from the syndication module.
+     */
+    private String syUpdatePeriod;
+
+    /**
+     * Update frequency from the syndication module.
+     */
+    private Integer syUpdateFrequency;
+
     private final static String URI_XML = "http://www.w3.org/XML/1998/namespace";
     
     private final static String URI_ATOM = "http://www.w3.org/2005/Atom";
@@ -102,6 +117,8 @@ public class RssReader extends DefaultHandler {
     
     private final static String URI_THREAD = "http://purl.org/syndication/thread/1.0";
     
+    private final static String URI_SY = "http://purl.org/rss/1.0/modules/syndication/";
+    
     private enum FeedType {
         RSS,
         
@@ -126,6 +143,12 @@ public class RssReader extends DefaultHandler {
        
         RSS_LANGUAGE,
 
+        RSS_TTL,
+
+        SY_UPDATE_PERIOD,
+
+        SY_UPDATE_FREQUENCY,
+
         ITEM,
 
         ITEM_TITLE,
@@ -288,6 +311,15 @@ public class RssReader extends DefaultHandler {
         } else if ((feedType == FeedType.RSS || feedType == FeedType.RDF) && currentElement == Element.RSS_CHANNEL &&
                 "language".equals(localName)) {
             pushElement(Element.RSS_LANGUAGE);
+        } else if (feedType == FeedType.RSS && currentElement == Element.RSS_CHANNEL &&
+                "ttl".equalsIgnoreCase(localName)) {
+            pushElement(Element.RSS_TTL);
+        } else if ((currentElement == Element.RSS_CHANNEL || currentElement == Element.FEED) &&
+                "updatePeriod".equals(localName) && URI_SY.equals(uri)) {
+            pushElement(Element.SY_UPDATE_PERIOD);
+        } else if ((currentElement == Element.RSS_CHANNEL || currentElement == Element.FEED) &&
+                "updateFrequency".equals(localName) && URI_SY.equals(uri)) {
+            pushElement(Element.SY_UPDATE_FREQUENCY);
         } else if (((feedType == FeedType.RSS && currentElement == Element.RSS_CHANNEL) || (feedType == FeedType.RDF && currentElement == Element.RDF)) &&
                 "item".equalsIgnoreCase(localName)) {
             pushElement(Element.ITEM);
@@ -425,6 +457,12 @@ public class RssReader extends DefaultHandler {
             feed.setDescription(getContent());
         } else if ("language".equalsIgnoreCase(localName) && currentElement == Element.RSS_LANGUAGE) {
             feed.setLanguage(getContent());
+        } else if ("ttl".equalsIgnoreCase(localName) && currentElement == Element.RSS_TTL) {
+            ttl = parsePositiveInteger(getContent());
+        } else if ("updatePeriod".equals(localName) && currentElement == Element.SY_UPDATE_PERIOD) {
+            syUpdatePeriod = StringUtils.lowerCase(getContent());
+        } else if ("updateFrequency".equals(localName) && currentElement == Element.SY_UPDATE_FREQUENCY) {
+            syUpdateFrequency = parsePositiveInteger(getContent());
         } else if ("title".equalsIgnoreCase(localName) && currentElement == Element.ITEM_TITLE) {
             article.setTitle(getContent());
         } else if ("guid".equalsIgnoreCase(localName) && currentElement == Element.ITEM_GUID) {
@@ -527,6 +565,21 @@ public class RssReader extends DefaultHandler {
         }
     }
     
+    /**
+     * Parse a strictly positive integer, ignoring invalid values.
+     * 
+     * @param value Value to parse
+     * @return Integer or null
+     */
+    private static Integer parsePositiveInteger(String value) {
+        try {
+            int i = Integer.parseInt(value);
+            return i > 0 ? i : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
     /**
      * Validate feed data.
      * 
@@ -595,4 +648,30 @@ public class RssReader extends DefaultHandler {
     public List<Article> getArticleList() {
         return articleList;
     }
+
+    /**
+     * Returns the update period advertised by the publisher, using the RSS ttl element
+     * or the syndication module.
+     *
+     * @return Update period in minutes, or null if not specified
+     */
+    public Integer getUpdatePeriod() {
+        if (ttl != null) {
+            return ttl;
+        }
+        if (syUpdatePeriod == null) {
+            return null;
+        }
+        int periodMinutes;
+        switch (syUpdatePeriod) {
+            case "hourly": periodMinutes = 60; break;
+            case "daily": periodMinutes = 60 * 24; break;
+            case "weekly": periodMinutes = 60 * 24 * 7; break;
+            case "monthly": periodMinutes = 60 * 24 * 30; break;
+            case "yearly": periodMinutes = 60 * 24 * 365; break;
+            default: return null;
+        }
+        int frequency = syUpdateFrequency != null ? syUpdateFrequency : 1;
+        return Math.max(1, periodMinutes / frequency);
+    }
 }
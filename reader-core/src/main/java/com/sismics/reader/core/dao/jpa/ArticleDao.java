@@ -2,6 +2,7 @@ package com.sismics.reader.core.dao.jpa;
 
 import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.mapper.ArticleIndexMapper;
 import com.sismics.reader.core.dao.jpa.mapper.ArticleMapper;
 import com.sismics.reader.core.model.jpa.Article;
 import com.sismics.reader.core.util.jpa.SortCriteria;
@@ -27,7 +28,7 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
         List<String> criteriaList = new ArrayList<String>();
         Map<String, Object> parameterMap = new HashMap<String, Object>();
 
-        StringBuilder sb = new StringBuilder("select a.ART_ID_C, a.ART_URL_C, a.ART_GUID_C, a.ART_TITLE_C, a.ART_CREATOR_C, a.ART_DESCRIPTION_C, a.ART_COMMENTURL_C, a.ART_COMMENTCOUNT_N, a.ART_ENCLOSUREURL_C, a.ART_ENCLOSURELENGTH_N, a.ART_ENCLOSURETYPE_C, a.ART_PUBLICATIONDATE_D, a.ART_CREATEDATE_D, a.ART_IDFEED_C ")
+        StringBuilder sb = new StringBuilder("select a.ART_ID_C, a.ART_URL_C, a.ART_GUID_C, a.ART_TITLE_C, a.ART_CREATOR_C, a.ART_DESCRIPTION_C, a.ART_COMMENTURL_C, a.ART_COMMENTCOUNT_N, a.ART_ENCLOSUREURL_C, a.ART_ENCLOSURELENGTH_N, a.ART_ENCLOSURETYPE_C, a.ART_PUBLICATIONDATE_D, a.ART_CREATEDATE_D, a.ART_IDFEED_C, a.ART_CONTENTHASH_C ")
                 .append("  from T_ARTICLE a ");
 
         // Adds search criteria
@@ -44,10 +45,18 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
             criteriaList.add("a.ART_TITLE_C = :title");
             parameterMap.put("title", criteria.getTitle());
         }
+        if (criteria.getTitleIn() != null) {
+            criteriaList.add("a.ART_TITLE_C in :titleIn");
+            parameterMap.put("titleIn", criteria.getTitleIn());
+        }
         if (criteria.getUrl() != null) {
             criteriaList.add("a.ART_URL_C = :url");
             parameterMap.put("url", criteria.getUrl());
         }
+        if (criteria.getUrlIn() != null) {
+            criteriaList.add("a.ART_URL_C in :urlIn");
+            parameterMap.put("urlIn", criteria.getUrlIn());
+        }
         if (criteria.getPublicationDateMin() != null) {
             criteriaList.add("a.ART_PUBLICATIONDATE_D > :publicationDateMax");
             parameterMap.put("publicationDateMax", criteria.getPublicationDateMin());
@@ -56,6 +65,10 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
             criteriaList.add("a.ART_IDFEED_C = :feedId");
             parameterMap.put("feedId", criteria.getFeedId());
         }
+        if (criteria.getFeedIdIn() != null) {
+            criteriaList.add("a.ART_IDFEED_C in :feedIdIn");
+            parameterMap.put("feedIdIn", criteria.getFeedIdIn());
+        }
 
         SortCriteria sortCriteria = new SortCriteria("  order by a.ART_CREATEDATE_D asc");
 
@@ -75,8 +88,8 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
 
         // Create the article
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery("insert into T_ARTICLE(ART_ID_C, ART_IDFEED_C, ART_URL_C, ART_BASEURI_C, ART_GUID_C, ART_TITLE_C, ART_CREATOR_C, ART_DESCRIPTION_C, ART_COMMENTURL_C, ART_COMMENTCOUNT_N, ART_ENCLOSUREURL_C, ART_ENCLOSURELENGTH_N, ART_ENCLOSURETYPE_C, ART_PUBLICATIONDATE_D, ART_CREATEDATE_D)" +
-                "  values (:id, :feedId, :url, :baseUri, :guid, :title, :creator, :description, :commentUrl, " + DialectUtil.getNullParameter(":commentCount", article.getCommentCount())+ ", :enclosureUrl, " + DialectUtil.getNullParameter(":enclosureLength", article.getEnclosureLength())+ ", :enclosureType, :publicationDate, :createDate)")
+        Query q = em.createNativeQuery("insert into T_ARTICLE(ART_ID_C, ART_IDFEED_C, ART_URL_C, ART_BASEURI_C, ART_GUID_C, ART_TITLE_C, ART_CREATOR_C, ART_DESCRIPTION_C, ART_COMMENTURL_C, ART_COMMENTCOUNT_N, ART_ENCLOSUREURL_C, ART_ENCLOSURELENGTH_N, ART_ENCLOSURETYPE_C, ART_CONTENTHASH_C, ART_PUBLICATIONDATE_D, ART_CREATEDATE_D)" +
+                "  values (:id, :feedId, :url, :baseUri, :guid, :title, :creator, :description, :commentUrl, " + DialectUtil.getNullParameter(":commentCount", article.getCommentCount())+ ", :enclosureUrl, " + DialectUtil.getNullParameter(":enclosureLength", article.getEnclosureLength())+ ", :enclosureType, :contentHash, :publicationDate, :createDate)")
                 .setParameter("id", article.getId())
                 .setParameter("feedId", article.getFeedId())
                 .setParameter("url", article.getUrl())
@@ -88,6 +101,7 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 .setParameter("commentUrl", article.getCommentUrl())
                 .setParameter("enclosureUrl", article.getEnclosureUrl())
                 .setParameter("enclosureType", article.getEnclosureType())
+                .setParameter("contentHash", article.getContentHash())
                 .setParameter("publicationDate", article.getPublicationDate())
                 .setParameter("createDate", article.getCreateDate());
         if (article.getCommentCount() != null) {
@@ -119,7 +133,8 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 "  ART_COMMENTCOUNT_N = " + DialectUtil.getNullParameter(":commentCount", article.getCommentCount())+ "," +
                 "  ART_ENCLOSUREURL_C = :enclosureUrl," +
                 "  ART_ENCLOSURELENGTH_N = " + DialectUtil.getNullParameter(":enclosureLength", article.getEnclosureLength())+ "," +
-                "  ART_ENCLOSURETYPE_C = :enclosureType" +
+                "  ART_ENCLOSURETYPE_C = :enclosureType," +
+                "  ART_CONTENTHASH_C = :contentHash" +
                 "  where ART_ID_C = :id and ART_DELETEDATE_D is null")
                 .setParameter("url", article.getUrl())
                 .setParameter("title", article.getTitle())
@@ -128,6 +143,7 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 .setParameter("commentUrl", article.getCommentUrl())
                 .setParameter("enclosureUrl", article.getEnclosureUrl())
                 .setParameter("enclosureType", article.getEnclosureType())
+                .setParameter("contentHash", article.getContentHash())
                 .setParameter("id", article.getId());
         if (article.getCommentCount() != null) {
             q.setParameter("commentCount", article.getCommentCount());
@@ -141,15 +157,57 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
     }
 
     /**
-     * Returns the list of all articles.
+     * Updates the content hash of an article.
+     *
+     * @param id Article ID
+     * @param contentHash Content hash
+     */
+    public void updateContentHash(String id, String contentHash) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.createNativeQuery("update T_ARTICLE set ART_CONTENTHASH_C = :contentHash where ART_ID_C = :id and ART_DELETEDATE_D is null")
+                .setParameter("contentHash", contentHash)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    /**
+     * Returns the number of articles.
      * 
+     * @return Number of articles
+     */
+    public long count() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select count(a.ART_ID_C) from T_ARTICLE a where a.ART_DELETEDATE_D is null");
+        return ((Number) q.getSingleResult()).longValue();
+    }
+
+    /**
+     * Returns a page of articles with the fields needed by the index, by publication date then ID.
+     * Pages are read by keyset, so that each page costs the same whatever its position.
+     * 
+     * @param publicationDate Publication date of the last article of the previous page, null for the first page
+     * @param id ID of the last article of the previous page, null for the first page
+     * @param limit Page size
      * @return List of articles
      */
     @SuppressWarnings("unchecked")
-    public List<Article> findAll() {
+    public List<Article> findIndexPage(Date publicationDate, String id, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createQuery("select a from Article a where a.deleteDate is null order by a.id");
-        return q.getResultList();
+        StringBuilder sb = new StringBuilder("select a.ART_ID_C, a.ART_IDFEED_C, a.ART_URL_C, a.ART_PUBLICATIONDATE_D, a.ART_TITLE_C, a.ART_DESCRIPTION_C")
+                .append("  from T_ARTICLE a")
+                .append("  where a.ART_DELETEDATE_D is null");
+        if (publicationDate != null) {
+            sb.append("  and (a.ART_PUBLICATIONDATE_D > :publicationDate or (a.ART_PUBLICATIONDATE_D = :publicationDate and a.ART_ID_C > :id))");
+        }
+        sb.append("  order by a.ART_PUBLICATIONDATE_D asc, a.ART_ID_C asc");
+        Query q = em.createNativeQuery(sb.toString());
+        if (publicationDate != null) {
+            q.setParameter("publicationDate", publicationDate);
+            q.setParameter("id", id);
+        }
+        q.setMaxResults(limit);
+
+        return new ArticleIndexMapper().map(q.getResultList());
     }
     
     /**
@@ -169,4 +227,25 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 .setParameter("articleId", id)
                 .executeUpdate();
     }
+
+    /**
+     * Deletes articles and their user articles in bulk.
+     * 
+     * @param idList Article IDs
+     */
+    public void delete(List<String> idList) {
+        if (idList.isEmpty()) {
+            return;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date deleteDate = new Date();
+        em.createNativeQuery("update T_ARTICLE set ART_DELETEDATE_D = :deleteDate where ART_ID_C in (:idList) and ART_DELETEDATE_D is null")
+                .setParameter("deleteDate", deleteDate)
+                .setParameter("idList", idList)
+                .executeUpdate();
+        em.createNativeQuery("update T_USER_ARTICLE set USA_DELETEDATE_D = :deleteDate where USA_IDARTICLE_C in (:idList) and USA_DELETEDATE_D is null")
+                .setParameter("deleteDate", deleteDate)
+                .setParameter("idList", idList)
+                .executeUpdate();
+    }
 }
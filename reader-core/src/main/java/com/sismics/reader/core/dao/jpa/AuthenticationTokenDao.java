@@ -6,6 +6,7 @@ import org.joda.time.DateTime;
 
 import javax.persistence.EntityManager;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -75,19 +76,19 @@ public class AuthenticationTokenDao {
     }
 
     /**
-     * Deletes old short lived tokens.
+     * Updates the last connection date of tokens, in one query.
      *
-     * @param id Token id
+     * @param idList Token IDs
+     * @param lastConnectionDate Last connection date
      */
-    public void updateLastConnectionDate(String id) {
-        StringBuilder sb = new StringBuilder("update T_AUTHENTICATION_TOKEN ");
-        sb.append(" set AUT_LASTCONNECTIONDATE_D = :currentDate ");
-        sb.append(" where AUT_ID_C = :id");
-
+    public void updateLastConnectionDate(List<String> idList, Date lastConnectionDate) {
+        if (idList.isEmpty()) {
+            return;
+        }
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        em.createNativeQuery(sb.toString())
-                .setParameter("currentDate", new Date())
-                .setParameter("id", id)
+        em.createNativeQuery("update T_AUTHENTICATION_TOKEN set AUT_LASTCONNECTIONDATE_D = :currentDate where AUT_ID_C in (:idList)")
+                .setParameter("currentDate", lastConnectionDate)
+                .setParameter("idList", idList)
                 .executeUpdate();
     }
 }
@@ -27,7 +27,7 @@ public class FeedDao extends BaseDao<FeedDto, FeedCriteria> {
         List<String> criteriaList = new ArrayList<String>();
         Map<String, Object> parameterMap = new HashMap<String, Object>();
 
-        StringBuilder sb = new StringBuilder("select f.FED_ID_C as id, f.FED_RSSURL_C ");
+        StringBuilder sb = new StringBuilder("select f.FED_ID_C as id, f.FED_RSSURL_C, f.FED_FETCHINTERVAL_N, f.FED_ETAG_C, f.FED_LASTMODIFIED_C, f.FED_CONTENTHASH_C ");
         if (criteria.isWithUserSubscription()) {
             sb.append(", (select count(fs.FES_ID_C)");
             sb.append("     from T_FEED_SUBSCRIPTION fs");
@@ -42,13 +42,27 @@ public class FeedDao extends BaseDao<FeedDto, FeedCriteria> {
             criteriaList.add("f.FED_URL_C = :feedUrl");
             parameterMap.put("feedUrl", criteria.getFeedUrl());
         }
+        if (criteria.getRssUrlIn() != null) {
+            criteriaList.add("f.FED_RSSURL_C in :rssUrlIn");
+            parameterMap.put("rssUrlIn", criteria.getRssUrlIn());
+        }
         if (criteria.isWithUserSubscription()) {
             criteriaList.add("(select count(fs.FES_ID_C)" +
                     " from T_FEED_SUBSCRIPTION fs" +
                     " where fs.FES_IDFEED_C = f.FED_ID_C and fs.FES_DELETEDATE_D is null) > 0");
         }
+        if (criteria.getNextFetchDateBefore() != null) {
+            criteriaList.add("(f.FED_NEXTFETCHDATE_D is null or f.FED_NEXTFETCHDATE_D <= :nextFetchDateBefore)");
+            parameterMap.put("nextFetchDateBefore", criteria.getNextFetchDateBefore());
+        }
 
-        SortCriteria sortCriteria = new SortCriteria("  order by f.FED_CREATEDATE_D asc");
+        SortCriteria sortCriteria;
+        if (criteria.getNextFetchDateBefore() != null) {
+            // Most overdue feeds first, never fetched feeds are due since their creation
+            sortCriteria = new SortCriteria("  order by coalesce(f.FED_NEXTFETCHDATE_D, f.FED_CREATEDATE_D) asc");
+        } else {
+            sortCriteria = new SortCriteria("  order by f.FED_CREATEDATE_D asc");
+        }
 
         return new QueryParam(sb.toString(), criteriaList, parameterMap, sortCriteria, filterCriteria, new FeedMapper());
     }
@@ -145,7 +159,30 @@ public class FeedDao extends BaseDao<FeedDto, FeedCriteria> {
         feedFromDb.setLanguage(feed.getLanguage());
         feedFromDb.setDescription(feed.getDescription());
         feedFromDb.setLastFetchDate(feed.getLastFetchDate());
+        feedFromDb.setEtag(feed.getEtag());
+        feedFromDb.setLastModified(feed.getLastModified());
+        feedFromDb.setContentHash(feed.getContentHash());
         
         return feed;
     }
+
+    /**
+     * Updates the polling schedule of a feed.
+     * 
+     * @param id Feed ID
+     * @param nextFetchDate Next fetch date
+     * @param fetchInterval Polling interval in minutes
+     */
+    public void updateSchedule(String id, Date nextFetchDate, Integer fetchInterval) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        
+        // Get the feed
+        Query q = em.createQuery("select f from Feed f where f.id = :id and f.deleteDate is null")
+                .setParameter("id", id);
+        Feed feedFromDb = (Feed) q.getSingleResult();
+
+        // Update the schedule
+        feedFromDb.setNextFetchDate(nextFetchDate);
+        feedFromDb.setFetchInterval(fetchInterval);
+    }
 }
@@ -22,15 +22,23 @@ import java.util.*;
  * @author jtremeaux
  */
 public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscriptionCriteria> {
+    /**
+     * Counts the active user articles of the subscription being updated.
+     */
+    private static final String USER_ARTICLE_COUNT_QUERY = "select count(ua.USA_ID_C) from T_USER_ARTICLE ua "
+            + "  join T_ARTICLE a on a.ART_ID_C = ua.USA_IDARTICLE_C "
+            + "  where a.ART_IDFEED_C = FES_IDFEED_C and a.ART_DELETEDATE_D is null "
+            + "    and ua.USA_IDUSER_C = FES_IDUSER_C and ua.USA_DELETEDATE_D is null ";
+
 
     @Override
     protected QueryParam getQueryParam(FeedSubscriptionCriteria criteria, FilterCriteria filterCriteria) {
         List<String> criteriaList = Lists.newArrayList();
         Map<String, Object> parameterMap = new HashMap<String, Object>();
 
-        StringBuilder sb = new StringBuilder("select fs.FES_ID_C, fs.FES_TITLE_C, fs.FES_UNREADCOUNT_N, fs.FES_CREATEDATE_D, fs.FES_IDUSER_C, f.FED_ID_C, f.FED_TITLE_C, f.FED_RSSURL_C, f.FED_URL_C, f.FED_DESCRIPTION_C, c.CAT_ID_C, c.CAT_IDPARENT_C, c.CAT_NAME_C, c.CAT_FOLDED_B,")
-                .append("  (select count(fsy.FSY_ID_C) from (select * from T_FEED_SYNCHRONIZATION fsy where fsy.FSY_IDFEED_C = f.FED_ID_C order by fsy.FSY_CREATEDATE_D desc limit 5) fsy where fsy.FSY_SUCCESS_B = false) ")
-                .append("  from T_FEED_SUBSCRIPTION fs ")
+        StringBuilder sb = new StringBuilder("select fs.FES_ID_C, fs.FES_TITLE_C, fs.FES_UNREADCOUNT_N, fs.FES_TOTALCOUNT_N, fs.FES_STARREDCOUNT_N, fs.FES_CREATEDATE_D, fs.FES_IDUSER_C, f.FED_ID_C, f.FED_TITLE_C, f.FED_RSSURL_C, f.FED_URL_C, f.FED_DESCRIPTION_C, c.CAT_ID_C, c.CAT_IDPARENT_C, c.CAT_NAME_C, c.CAT_FOLDED_B,")
+                .append("  (select count(fsy.FSY_ID_C) from (select * from T_FEED_SYNCHRONIZATION fsy where fsy.FSY_IDFEED_C = f.FED_ID_C order by fsy.FSY_CREATEDATE_D desc limit 5) fsy where fsy.FSY_SUCCESS_B = false) ");
+        sb.append("  from T_FEED_SUBSCRIPTION fs ")
                 .append("  join T_FEED f on(f.FED_ID_C = fs.FES_IDFEED_C and f.FED_DELETEDATE_D is null) ")
                 .append("  join T_CATEGORY c on(c.CAT_ID_C = fs.FES_IDCATEGORY_C and c.CAT_DELETEDATE_D is null) ");
 
@@ -119,6 +127,84 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
                 .executeUpdate();
     }
 
+    /**
+     * Adds deltas to the article counters of a user subscription.
+     *
+     * @param id User subscription ID
+     * @param unreadDelta Number of unread articles to add, may be negative
+     * @param totalDelta Number of articles to add, may be negative
+     * @param starredDelta Number of starred articles to add, may be negative
+     */
+    public void incrementCounts(String id, int unreadDelta, int totalDelta, int starredDelta) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.createNativeQuery("update T_FEED_SUBSCRIPTION set FES_UNREADCOUNT_N = FES_UNREADCOUNT_N + :unreadDelta, FES_TOTALCOUNT_N = FES_TOTALCOUNT_N + :totalDelta, FES_STARREDCOUNT_N = FES_STARREDCOUNT_N + :starredDelta where FES_ID_C = :id")
+                .setParameter("id", id)
+                .setParameter("unreadDelta", unreadDelta)
+                .setParameter("totalDelta", totalDelta)
+                .setParameter("starredDelta", starredDelta)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes articles about to be deleted from the counters of the user subscriptions, in one query.
+     *
+     * @param articleIdList Article IDs
+     */
+    public void removeArticles(List<String> articleIdList) {
+        if (articleIdList.isEmpty()) {
+            return;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        String userArticleQuery = "select count(ua.USA_ID_C) from T_USER_ARTICLE ua "
+                + "  join T_ARTICLE a on a.ART_ID_C = ua.USA_IDARTICLE_C "
+                + "  where ua.USA_IDARTICLE_C in (:articleIdList) and a.ART_IDFEED_C = FES_IDFEED_C "
+                + "    and ua.USA_IDUSER_C = FES_IDUSER_C and ua.USA_DELETEDATE_D is null ";
+        StringBuilder sb = new StringBuilder("update T_FEED_SUBSCRIPTION set ");
+        sb.append("  FES_UNREADCOUNT_N = FES_UNREADCOUNT_N - (").append(userArticleQuery).append(" and ua.USA_READDATE_D is null), ");
+        sb.append("  FES_TOTALCOUNT_N = FES_TOTALCOUNT_N - (").append(userArticleQuery).append("), ");
+        sb.append("  FES_STARREDCOUNT_N = FES_STARREDCOUNT_N - (").append(userArticleQuery).append(" and ua.USA_STARREDDATE_D is not null) ");
+        sb.append("  where FES_IDFEED_C in (select a2.ART_IDFEED_C from T_ARTICLE a2 where a2.ART_ID_C in (:articleIdList)) ");
+        sb.append("    and FES_DELETEDATE_D is null");
+        em.createNativeQuery(sb.toString())
+                .setParameter("articleIdList", articleIdList)
+                .executeUpdate();
+    }
+
+    /**
+     * Recomputes the article counters of user subscriptions from the user articles.
+     *
+     * @param id User subscription ID, or null for all the subscriptions
+     * @return Number of subscriptions updated
+     */
+    public int reconcileCounts(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        StringBuilder sb = new StringBuilder("update T_FEED_SUBSCRIPTION set ");
+        sb.append("  FES_UNREADCOUNT_N = (").append(USER_ARTICLE_COUNT_QUERY).append(" and ua.USA_READDATE_D is null), ");
+        sb.append("  FES_TOTALCOUNT_N = (").append(USER_ARTICLE_COUNT_QUERY).append("), ");
+        sb.append("  FES_STARREDCOUNT_N = (").append(USER_ARTICLE_COUNT_QUERY).append(" and ua.USA_STARREDDATE_D is not null) ");
+        sb.append("  where FES_DELETEDATE_D is null");
+        if (id != null) {
+            sb.append(" and FES_ID_C = :id");
+        }
+        Query q = em.createNativeQuery(sb.toString());
+        if (id != null) {
+            q.setParameter("id", id);
+        }
+        return q.executeUpdate();
+    }
+
+    /**
+     * Recomputes the unread counter of a user subscription from the user articles.
+     *
+     * @param id User subscription ID
+     */
+    public void reconcileUnreadCount(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.createNativeQuery("update T_FEED_SUBSCRIPTION set FES_UNREADCOUNT_N = (" + USER_ARTICLE_COUNT_QUERY + " and ua.USA_READDATE_D is null) where FES_ID_C = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
     /**
      * Moves the subscription to the specified display order, and reorders adjacent subscription.
      * 
@@ -197,6 +283,20 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
         return q.getResultList();
     }
     
+    /**
+     * Returns the IDs of the feeds a user is subscribed to.
+     * 
+     * @param userId User ID
+     * @return Feed IDs
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findFeedIdByUserId(String userId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select distinct fs.feedId from FeedSubscription fs where fs.userId = :userId and fs.deleteDate is null")
+                .setParameter("userId", userId);
+        return q.getResultList();
+    }
+    
     /**
      * Returns the number of feed subscriptions in a category.
      * 
@@ -77,6 +77,20 @@ public class JobDao extends BaseDao<JobDto, JobCriteria> {
         }
     }
 
+    /**
+     * Returns the jobs interrupted before their end, which still have their file to process.
+     *
+     * @param name Job name
+     * @return Jobs
+     */
+    @SuppressWarnings("unchecked")
+    public List<Job> findInterruptedJob(String name) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select j from Job j where j.name = :name and j.file is not null and j.endDate is null and j.deleteDate is null order by j.createDate")
+                .setParameter("name", name);
+        return q.getResultList();
+    }
+
     /**
      * Deletes a job.
      * 
@@ -111,6 +125,8 @@ public class JobDao extends BaseDao<JobDto, JobCriteria> {
         // Update the job
         jobFromDb.setStartDate(job.getStartDate());
         jobFromDb.setEndDate(job.getEndDate());
+        jobFromDb.setFile(job.getFile());
+        jobFromDb.setCheckpoint(job.getCheckpoint());
         
         return job;
     }
@@ -3,16 +3,22 @@ package com.sismics.reader.core.dao.jpa;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.dao.jpa.mapper.UserArticleMapper;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.UserArticle;
 import com.sismics.reader.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
 import com.sismics.util.jpa.QueryParam;
 import com.sismics.util.jpa.filter.FilterCriteria;
+import org.hibernate.Session;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
 import java.util.*;
 
 /**
@@ -21,6 +27,15 @@ import java.util.*;
  * @author jtremeaux
  */
 public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria> {
+    /**
+     * Maximum number of rows inserted by a single statement.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Class of the SQL states of the integrity constraint violations.
+     */
+    private static final String SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION = "23";
 
     @Override
     protected QueryParam getQueryParam(UserArticleCriteria criteria, FilterCriteria filterCriteria) {
@@ -84,28 +99,33 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
         if (criteria.isStarred()) {
             criteriaList.add("ua.USA_STARREDDATE_D is not null");
         }
-        if (criteria.getArticlePublicationDateMax() != null && criteria.getArticleIdMax() != null) {
-            // Start the page after this article
-            criteriaList.add("(a.ART_PUBLICATIONDATE_D < :articlePublicationDateMax or " +
-                    "  a.ART_PUBLICATIONDATE_D = :articlePublicationDateMax and a.ART_ID_C < :articleIdMax" +
-                    ")");
-            parameterMap.put("articlePublicationDateMax", criteria.getArticlePublicationDateMax());
-            parameterMap.put("articleIdMax", criteria.getArticleIdMax());
-        }
-        if (criteria.getUserArticleStarredDateMax() != null && criteria.getUserArticleIdMax() != null) {
-            // Start the page this starred article
-            criteriaList.add("(ua.USA_STARREDDATE_D < :userArticleStarredDateMax or " +
-                    "  ua.USA_STARREDDATE_D = :userArticleStarredDateMax and ua.USA_ID_C < :userArticleIdMax" +
-                    ")");
-            parameterMap.put("userArticleStarredDateMax", criteria.getUserArticleStarredDateMax());
-            parameterMap.put("userArticleIdMax", criteria.getUserArticleIdMax());
+        if (criteria.getAfterUserArticleId() != null) {
+            // Start the page after this user article, read along with the page
+            if (criteria.isStarred()) {
+                String starredDate = "(select ua2.USA_STARREDDATE_D from T_USER_ARTICLE ua2 where ua2.USA_ID_C = :afterUserArticleId and ua2.USA_IDUSER_C = :userId)";
+                if (criteria.getAfterStarredDate() != null) {
+                    // The user article may have been unstarred since it was read
+                    starredDate = ":afterStarredDate";
+                    parameterMap.put("afterStarredDate", criteria.getAfterStarredDate());
+                }
+                criteriaList.add("(ua.USA_STARREDDATE_D < " + starredDate + " or " +
+                        "  ua.USA_STARREDDATE_D = " + starredDate + " and ua.USA_ID_C < :afterUserArticleId" +
+                        ")");
+            } else {
+                String publicationDate = "(select a2.ART_PUBLICATIONDATE_D from T_USER_ARTICLE ua2 join T_ARTICLE a2 on(a2.ART_ID_C = ua2.USA_IDARTICLE_C) where ua2.USA_ID_C = :afterUserArticleId and ua2.USA_IDUSER_C = :userId)";
+                String articleId = "(select ua2.USA_IDARTICLE_C from T_USER_ARTICLE ua2 where ua2.USA_ID_C = :afterUserArticleId and ua2.USA_IDUSER_C = :userId)";
+                criteriaList.add("(a.ART_PUBLICATIONDATE_D < " + publicationDate + " or " +
+                        "  a.ART_PUBLICATIONDATE_D = " + publicationDate + " and a.ART_ID_C < " + articleId +
+                        ")");
+            }
+            parameterMap.put("afterUserArticleId", criteria.getAfterUserArticleId());
         }
 
         SortCriteria sortCriteria;
         if (criteria.isStarred()) {
             sortCriteria = new SortCriteria(" order by ua.USA_STARREDDATE_D desc, ua.USA_ID_C desc");
         } else {
-            sortCriteria = new SortCriteria(" order by a.ART_PUBLICATIONDATE_D desc, ua.USA_ID_C desc");
+            sortCriteria = new SortCriteria(" order by a.ART_PUBLICATIONDATE_D desc, a.ART_ID_C desc");
         }
 
         return new QueryParam(sb.toString(), criteriaList, parameterMap, sortCriteria, filterCriteria, new UserArticleMapper());
@@ -128,6 +148,44 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
         
         return userArticle.getId();
     }
+
+    /**
+     * Creates the user articles of each user for each article, in bulk.
+     * 
+     * @param articleIdList Article IDs
+     * @param userIdList User IDs
+     */
+    public void create(List<String> articleIdList, List<String> userIdList) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date createDate = new Date();
+        List<String[]> rowList = new ArrayList<String[]>();
+        for (String articleId : articleIdList) {
+            for (String userId : userIdList) {
+                rowList.add(new String[] { UUID.randomUUID().toString(), userId, articleId });
+            }
+        }
+
+        // Insert multiple rows per statement, without exceeding the number of parameters allowed by the driver
+        for (int start = 0; start < rowList.size(); start += BATCH_SIZE) {
+            List<String[]> batchRowList = rowList.subList(start, Math.min(start + BATCH_SIZE, rowList.size()));
+            StringBuilder sb = new StringBuilder("insert into T_USER_ARTICLE(USA_ID_C, USA_IDUSER_C, USA_IDARTICLE_C, USA_CREATEDATE_D) values ");
+            for (int i = 0; i < batchRowList.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append("(:id").append(i).append(", :userId").append(i).append(", :articleId").append(i).append(", :createDate)");
+            }
+            Query q = em.createNativeQuery(sb.toString())
+                    .setParameter("createDate", createDate);
+            for (int i = 0; i < batchRowList.size(); i++) {
+                String[] row = batchRowList.get(i);
+                q.setParameter("id" + i, row[0]);
+                q.setParameter("userId" + i, row[1]);
+                q.setParameter("articleId" + i, row[2]);
+            }
+            q.executeUpdate();
+        }
+    }
     
     /**
      * Updates a user subscription to an article.
@@ -220,4 +278,109 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             return null;
         }
     }
+
+    /**
+     * Returns an active user article, creating it on first use for an article returned by the search.
+     * The search returns the articles the user has no user article for yet under the article ID.
+     * They are created as read, since they never counted as unread.
+     * 
+     * @param id User article ID, or article ID
+     * @param userId User ID
+     * @return User article
+     */
+    public UserArticle getOrCreateUserArticle(String id, String userId) {
+        UserArticle userArticle = getUserArticle(id, userId);
+        if (userArticle != null) {
+            return userArticle;
+        }
+
+        // Only articles from the subscribed feeds can be acted on
+        UserArticleDto userArticleDto = findFirstByCriteria(new UserArticleCriteria()
+                .setUserId(userId)
+                .setVisible(false)
+                .setSubscribed(true)
+                .setArticleId(id));
+        if (userArticleDto == null) {
+            return null;
+        }
+        if (userArticleDto.getId() != null) {
+            return getUserArticle(userArticleDto.getId(), userId);
+        }
+        String userArticleId = UUID.randomUUID().toString();
+        if (insertIfAbsent(userArticleId, id, userId)) {
+            AppContext.getInstance().getCounterService().addArticle(userId, id, 0, 1, 0);
+            return getUserArticle(userArticleId, userId);
+        }
+
+        // Created by a concurrent request since the search
+        return getUserArticleByArticleId(id, userId);
+    }
+
+    /**
+     * Inserts a read user article, unless the user already has one for this article.
+     * The unique key on the user and the article rejects the insert of a concurrent request,
+     * which is rolled back to a savepoint to keep the current transaction usable.
+     * 
+     * @param id User article ID
+     * @param articleId Article ID
+     * @param userId User ID
+     * @return True if the user article was inserted
+     */
+    private boolean insertIfAbsent(final String id, final String articleId, final String userId) {
+        final boolean[] inserted = new boolean[1];
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.unwrap(Session.class).doWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            try (PreparedStatement statement = connection.prepareStatement("insert into T_USER_ARTICLE(USA_ID_C, USA_IDUSER_C, USA_IDARTICLE_C, USA_CREATEDATE_D, USA_READDATE_D) values (?, ?, ?, ?, ?)")) {
+                statement.setString(1, id);
+                statement.setString(2, userId);
+                statement.setString(3, articleId);
+                statement.setTimestamp(4, now);
+                statement.setTimestamp(5, now);
+                statement.executeUpdate();
+                inserted[0] = true;
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                if (e.getSQLState() == null || !e.getSQLState().startsWith(SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION)) {
+                    throw e;
+                }
+            }
+        });
+        return inserted[0];
+    }
+
+    /**
+     * Returns the user article of a user from its ID or from the article ID, without creating it.
+     * 
+     * @param id User article ID or article ID
+     * @param userId User ID
+     * @return User article, null if the user never acted on the article
+     */
+    public UserArticle findUserArticle(String id, String userId) {
+        UserArticle userArticle = getUserArticle(id, userId);
+        if (userArticle != null) {
+            return userArticle;
+        }
+        return getUserArticleByArticleId(id, userId);
+    }
+
+    /**
+     * Returns the user article of a user for an article.
+     * 
+     * @param articleId Article ID
+     * @param userId User ID
+     * @return User article
+     */
+    public UserArticle getUserArticleByArticleId(String articleId, String userId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select ua from UserArticle ua where ua.articleId = :articleId and ua.userId = :userId and ua.deleteDate is null")
+                .setParameter("articleId", articleId)
+                .setParameter("userId", userId);
+        try {
+            return (UserArticle) q.getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
 }
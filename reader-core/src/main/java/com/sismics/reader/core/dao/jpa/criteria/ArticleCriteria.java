@@ -24,11 +24,21 @@ public class ArticleCriteria {
      */
     private String title;
 
+    /**
+     * Article title list (inclusive).
+     */
+    private List<String> titleIn;
+
     /**
      * Article url.
      */
     private String url;
 
+    /**
+     * Article url list (inclusive).
+     */
+    private List<String> urlIn;
+
     /**
      * Max publication date.
      */
@@ -39,6 +49,11 @@ public class ArticleCriteria {
      */
     private String feedId;
 
+    /**
+     * Feed ID list (inclusive).
+     */
+    private List<String> feedIdIn;
+
     /**
      * Getter of id.
      *
@@ -152,4 +167,61 @@ public class ArticleCriteria {
         this.feedId = feedId;
         return this;
     }
+
+    /**
+     * Getter of titleIn.
+     *
+     * @return titleIn
+     */
+    public List<String> getTitleIn() {
+        return titleIn;
+    }
+
+    /**
+     * Setter of titleIn.
+     *
+     * @param titleIn titleIn
+     */
+    public ArticleCriteria setTitleIn(List<String> titleIn) {
+        this.titleIn = titleIn;
+        return this;
+    }
+
+    /**
+     * Getter of urlIn.
+     *
+     * @return urlIn
+     */
+    public List<String> getUrlIn() {
+        return urlIn;
+    }
+
+    /**
+     * Setter of urlIn.
+     *
+     * @param urlIn urlIn
+     */
+    public ArticleCriteria setUrlIn(List<String> urlIn) {
+        this.urlIn = urlIn;
+        return this;
+    }
+
+    /**
+     * Getter of feedIdIn.
+     *
+     * @return feedIdIn
+     */
+    public List<String> getFeedIdIn() {
+        return feedIdIn;
+    }
+
+    /**
+     * Setter of feedIdIn.
+     *
+     * @param feedIdIn feedIdIn
+     */
+    public ArticleCriteria setFeedIdIn(List<String> feedIdIn) {
+        this.feedIdIn = feedIdIn;
+        return this;
+    }
 }
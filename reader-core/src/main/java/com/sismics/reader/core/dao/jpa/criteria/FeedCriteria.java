@@ -1,5 +1,8 @@
 package com.sismics.reader.core.dao.jpa.criteria;
 
+import java.util.Date;
+import java.util.List;
+
 /**
  * Feed criteria.
  *
@@ -10,12 +13,22 @@ public class FeedCriteria {
      * Feed URL.
      */
     private String feedUrl;
+
+    /**
+     * Feed RSS URL list (inclusive).
+     */
+    private List<String> rssUrlIn;
     
     /**
      * Returns only feed having user subscriptions.
      */
     private boolean withUserSubscription;
 
+    /**
+     * Returns only feeds due for a fetch at this date.
+     */
+    private Date nextFetchDateBefore;
+
     /**
      * Getter of feedUrl.
      *
@@ -54,4 +67,41 @@ public class FeedCriteria {
         return this;
     }
 
+    /**
+     * Getter of nextFetchDateBefore.
+     *
+     * @return nextFetchDateBefore
+     */
+    public Date getNextFetchDateBefore() {
+        return nextFetchDateBefore;
+    }
+
+    /**
+     * Setter of nextFetchDateBefore.
+     *
+     * @param nextFetchDateBefore nextFetchDateBefore
+     */
+    public FeedCriteria setNextFetchDateBefore(Date nextFetchDateBefore) {
+        this.nextFetchDateBefore = nextFetchDateBefore;
+        return this;
+    }
+
+    /**
+     * Getter of rssUrlIn.
+     *
+     * @return rssUrlIn
+     */
+    public List<String> getRssUrlIn() {
+        return rssUrlIn;
+    }
+
+    /**
+     * Setter of rssUrlIn.
+     *
+     * @param rssUrlIn rssUrlIn
+     */
+    public FeedCriteria setRssUrlIn(List<String> rssUrlIn) {
+        this.rssUrlIn = rssUrlIn;
+        return this;
+    }
 }
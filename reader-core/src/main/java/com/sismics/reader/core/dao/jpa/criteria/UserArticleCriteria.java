@@ -65,24 +65,14 @@ public class UserArticleCriteria {
     private String userArticleId;
 
     /**
-     * Return only articles before this publication date.
+     * Return only user articles after this user article, in the list order.
      */
-    private Date articlePublicationDateMax;
+    private String afterUserArticleId;
 
     /**
-     * Return only articles before this starred date.
+     * Starred date of the user article to start the page after, read from the user article if null.
      */
-    private Date userArticleStarredDateMax;
-
-    /**
-     * Return only articles before this ID.
-     */
-    private String articleIdMax;
-
-    /**
-     * Return only user articles before this ID.
-     */
-    private String userArticleIdMax;
+    private Date afterStarredDate;
 
     /**
      * Fetch all subscriptions (returns subscriptions * articles rows)
@@ -299,78 +289,40 @@ public class UserArticleCriteria {
     }
 
     /**
-     * Getter of articlePublicationDateMax.
-     *
-     * @return articlePublicationDateMax
-     */
-    public Date getArticlePublicationDateMax() {
-        return articlePublicationDateMax;
-    }
-
-    /**
-     * Setter of articlePublicationDateMax.
-     *
-     * @param articlePublicationDateMax articlePublicationDateMax
-     */
-    public UserArticleCriteria setArticlePublicationDateMax(Date articlePublicationDateMax) {
-        this.articlePublicationDateMax = articlePublicationDateMax;
-        return this;
-    }
-
-    /**
-     * Getter of userArticleStarredDateMax.
-     *
-     * @return userArticleStarredDateMax
-     */
-    public Date getUserArticleStarredDateMax() {
-        return userArticleStarredDateMax;
-    }
-
-    /**
-     * Setter of userArticleStarredDateMax.
-     *
-     * @param userArticleStarredDateMax userArticleStarredDateMax
-     */
-    public UserArticleCriteria setUserArticleStarredDateMax(Date userArticleStarredDateMax) {
-        this.userArticleStarredDateMax = userArticleStarredDateMax;
-        return this;
-    }
-
-    /**
-     * Getter of articleIdMax.
+     * Getter of afterUserArticleId.
      *
-     * @return articleIdMax
+     * @return afterUserArticleId
      */
-    public String getArticleIdMax() {
-        return articleIdMax;
+    public String getAfterUserArticleId() {
+        return afterUserArticleId;
     }
 
     /**
-     * Setter of articleIdMax.
+     * Setter of afterUserArticleId.
      *
-     * @param articleIdMax articleIdMax
+     * @param afterUserArticleId afterUserArticleId
      */
-    public UserArticleCriteria setArticleIdMax(String articleIdMax) {
-        this.articleIdMax = articleIdMax;
+    public UserArticleCriteria setAfterUserArticleId(String afterUserArticleId) {
+        this.afterUserArticleId = afterUserArticleId;
         return this;
     }
 
     /**
-     * Getter of userArticleIdMax.
+     * Getter of afterStarredDate.
      *
-     * @return userArticleIdMax
+     * @return afterStarredDate
      */
-    public String getUserArticleIdMax() {
-        return userArticleIdMax;
+    public Date getAfterStarredDate() {
+        return afterStarredDate;
     }
 
     /**
-     * Setter of userArticleIdMax.
+     * Setter of afterStarredDate.
      *
-     * @param userArticleIdMax userArticleIdMax
+     * @param afterStarredDate afterStarredDate
      */
-    public UserArticleCriteria setUserArticleIdMax(String userArticleIdMax) {
-        this.userArticleIdMax = userArticleIdMax;
+    public UserArticleCriteria setAfterStarredDate(Date afterStarredDate) {
+        this.afterStarredDate = afterStarredDate;
         return this;
     }
 
@@ -78,6 +78,11 @@ public class ArticleDto {
      */
     private String feedId;
 
+    /**
+     * Hash of the article as read from the feed.
+     */
+    private String contentHash;
+
     /**
      * Getter of id.
      *
@@ -319,4 +324,22 @@ public class ArticleDto {
     public void setFeedId(String feedId) {
         this.feedId = feedId;
     }
+
+    /**
+     * Getter of contentHash.
+     *
+     * @return contentHash
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Setter of contentHash.
+     *
+     * @param contentHash contentHash
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 }
@@ -16,6 +16,26 @@ public class FeedDto {
      */
     private String rssUrl;
 
+    /**
+     * Current polling interval in minutes.
+     */
+    private Integer fetchInterval;
+
+    /**
+     * Entity tag of the last response.
+     */
+    private String etag;
+
+    /**
+     * Last modification date of the last response.
+     */
+    private String lastModified;
+
+    /**
+     * Hash of the last response body.
+     */
+    private String contentHash;
+
     /**
      * Getter of id.
      *
@@ -51,4 +71,76 @@ public class FeedDto {
     public void setRssUrl(String rssUrl) {
         this.rssUrl = rssUrl;
     }
+
+    /**
+     * Getter of fetchInterval.
+     *
+     * @return fetchInterval
+     */
+    public Integer getFetchInterval() {
+        return fetchInterval;
+    }
+
+    /**
+     * Setter of fetchInterval.
+     *
+     * @param fetchInterval fetchInterval
+     */
+    public void setFetchInterval(Integer fetchInterval) {
+        this.fetchInterval = fetchInterval;
+    }
+
+    /**
+     * Getter of etag.
+     *
+     * @return etag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Setter of etag.
+     *
+     * @param etag etag
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Getter of lastModified.
+     *
+     * @return lastModified
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Setter of lastModified.
+     *
+     * @param lastModified lastModified
+     */
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Getter of contentHash.
+     *
+     * @return contentHash
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Setter of contentHash.
+     *
+     * @param contentHash contentHash
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 }
@@ -57,6 +57,16 @@ public class FeedSubscriptionDto {
      * Number of synchronization fails recently.
      */
     private Integer synchronizationFailCount;
+
+    /**
+     * Number of articles of this user in this subscription.
+     */
+    private Integer totalUserArticleCount;
+
+    /**
+     * Number of starred articles of this user in this subscription.
+     */
+    private Integer starredUserArticleCount;
     
     /**
      * Create date.
@@ -322,4 +332,40 @@ public class FeedSubscriptionDto {
     public void setSynchronizationFailCount(Integer synchronizationFailCount) {
         this.synchronizationFailCount = synchronizationFailCount;
     }
+
+    /**
+     * Getter of totalUserArticleCount.
+     *
+     * @return totalUserArticleCount
+     */
+    public Integer getTotalUserArticleCount() {
+        return totalUserArticleCount;
+    }
+
+    /**
+     * Setter of totalUserArticleCount.
+     *
+     * @param totalUserArticleCount totalUserArticleCount
+     */
+    public void setTotalUserArticleCount(Integer totalUserArticleCount) {
+        this.totalUserArticleCount = totalUserArticleCount;
+    }
+
+    /**
+     * Getter of starredUserArticleCount.
+     *
+     * @return starredUserArticleCount
+     */
+    public Integer getStarredUserArticleCount() {
+        return starredUserArticleCount;
+    }
+
+    /**
+     * Setter of starredUserArticleCount.
+     *
+     * @param starredUserArticleCount starredUserArticleCount
+     */
+    public void setStarredUserArticleCount(Integer starredUserArticleCount) {
+        this.starredUserArticleCount = starredUserArticleCount;
+    }
 }
@@ -0,0 +1,25 @@
+package com.sismics.reader.core.dao.jpa.mapper;
+
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.util.jpa.ResultMapper;
+
+/**
+ * Maps the indexed fields of an article.
+ *
+ * @author jtremeaux
+ */
+public class ArticleIndexMapper extends ResultMapper<Article> {
+    @Override
+    public Article map(Object[] o) {
+        int i = 0;
+        Article article = new Article();
+        article.setId(stringValue(o[i++]));
+        article.setFeedId(stringValue(o[i++]));
+        article.setUrl(stringValue(o[i++]));
+        article.setPublicationDate(dateValue(o[i++]));
+        article.setTitle(stringValue(o[i++]));
+        article.setDescription(stringValue(o[i]));
+
+        return article;
+    }
+}
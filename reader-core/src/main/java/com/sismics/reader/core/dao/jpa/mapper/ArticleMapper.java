@@ -24,7 +24,8 @@ public class ArticleMapper extends ResultMapper<ArticleDto> {
         dto.setEnclosureType(stringValue(o[i++]));
         dto.setPublicationDate(dateValue(o[i++]));
         dto.setCreateDate(dateValue(o[i++]));
-        dto.setFeedId(stringValue(o[i]));
+        dto.setFeedId(stringValue(o[i++]));
+        dto.setContentHash(stringValue(o[i]));
 
         return dto;
     }
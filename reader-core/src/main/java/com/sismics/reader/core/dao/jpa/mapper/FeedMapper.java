@@ -12,7 +12,11 @@ public class FeedMapper extends ResultMapper<FeedDto> {
         int i = 0;
         FeedDto dto = new FeedDto();
         dto.setId(stringValue(o[i++]));
-        dto.setRssUrl(stringValue(o[i]));
+        dto.setRssUrl(stringValue(o[i++]));
+        dto.setFetchInterval(intValue(o[i++]));
+        dto.setEtag(stringValue(o[i++]));
+        dto.setLastModified(stringValue(o[i++]));
+        dto.setContentHash(stringValue(o[i]));
 
         return dto;
     }
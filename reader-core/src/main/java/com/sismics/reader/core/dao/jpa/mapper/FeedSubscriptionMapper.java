@@ -14,6 +14,8 @@ public class FeedSubscriptionMapper extends ResultMapper<FeedSubscriptionDto> {
         dto.setId(stringValue(o[i++]));
         String feedSubscriptionTitle = stringValue(o[i++]);
         dto.setUnreadUserArticleCount(intValue(o[i++]));
+        dto.setTotalUserArticleCount(intValue(o[i++]));
+        dto.setStarredUserArticleCount(intValue(o[i++]));
         dto.setCreateDate(dateValue(o[i++]));
         dto.setUserId(stringValue(o[i++]));
         dto.setFeedId(stringValue(o[i++]));
@@ -1,12 +1,16 @@
 package com.sismics.reader.core.dao.lucene;
 
+import com.google.common.cache.Cache;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.service.IndexingService;
 import com.sismics.reader.core.util.LuceneUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
@@ -16,6 +20,7 @@ import org.apache.lucene.search.SortField.Type;
 import org.apache.lucene.search.grouping.GroupDocs;
 import org.apache.lucene.search.grouping.GroupingSearch;
 import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.search.grouping.term.TermAllGroupsCollector;
 import org.apache.lucene.search.postingshighlight.Passage;
 import org.apache.lucene.search.postingshighlight.PassageFormatter;
 import org.apache.lucene.search.postingshighlight.PassageScorer;
@@ -23,11 +28,16 @@ import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 
+import java.io.IOException;
 import java.text.BreakIterator;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Lucene Article DAO.
@@ -35,78 +45,225 @@ import java.util.Map;
  * @author bgamard
  */
 public class ArticleDao {
+    /**
+     * Highlighted fields.
+     */
+    private static final String[] HIGHLIGHT_FIELDS = new String[] { "title", "description" };
+
+    /**
+     * Stored fields loaded to group the articles found.
+     */
+    private static final Set<String> URL_FIELDS = Collections.singleton("url");
+
+    /**
+     * Stored fields loaded to return the articles found.
+     */
+    private static final Set<String> ID_FIELDS = Collections.singleton("id");
+
+    /**
+     * Number of characters kept on each side of the matches in a snippet.
+     */
+    private static final int SNIPPET_WINDOW = 100;
+
+    /**
+     * Number of characters of the description analyzed to build a snippet.
+     */
+    private static final int SNIPPET_MAX_LENGTH = 10000;
+
+    /**
+     * Highlighter of the whole content, shared by all searches.
+     */
+    private static final PostingsHighlighter highlighter = new PostingsHighlighter(1000000,
+            BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), new HighlightFormatter(0));
+
+    /**
+     * Formatter of the passages around the matches.
+     */
+    private static final HighlightFormatter snippetFormatter = new HighlightFormatter(SNIPPET_WINDOW);
+
+    /**
+     * Highlighter of the passages around the matches, shared by all searches.
+     */
+    private static final PostingsHighlighter snippetHighlighter = new PostingsHighlighter(SNIPPET_MAX_LENGTH,
+            BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), snippetFormatter);
 
     /**
-     * Destroy and rebuild index.
+     * Add articles to an index being rebuilt.
+     * Articles may be indexed concurrently by the index updates, they are replaced rather than added.
      * 
+     * @param indexWriter Writer of the index being rebuilt
      * @param articleList The list of articles
      */
-    public void rebuildIndex(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Empty index
-            indexWriter.deleteAll();
+    public void rebuildIndex(IndexWriter indexWriter, List<Article> articleList) throws IOException {
+        for (Article article : articleList) {
+            Document document = getDocumentFromArticle(article);
+            indexWriter.updateDocument(new Term("id", article.getId()), document);
+        }
+    }
+
+    /**
+     * Write changes to the index, in one writer session.
+     * Articles already indexed by a concurrent rebuild are replaced rather than added.
+     * 
+     * @param changeMap Articles to index by ID, null for the articles to delete
+     */
+    public void write(final Map<String, Article> changeMap) {
+        LuceneUtil.handle(indexWriter -> write(indexWriter, changeMap));
+        AppContext.getInstance().getIndexingService().rebuildChanged(changeMap);
+    }
 
-            // Add all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.addDocument(document);
+    /**
+     * Write changes to an index.
+     * 
+     * @param indexWriter Index writer
+     * @param changeMap Articles to index by ID, null for the articles to delete
+     */
+    public void write(IndexWriter indexWriter, Map<String, Article> changeMap) throws IOException {
+        for (Map.Entry<String, Article> entry : changeMap.entrySet()) {
+            Article article = entry.getValue();
+            if (article == null) {
+                indexWriter.deleteDocuments(new Term("id", entry.getKey()));
+            } else {
+                indexWriter.updateDocument(new Term("id", article.getId()), getDocumentFromArticle(article));
             }
-        });
+        }
     }
 
-    
     /**
-     * Add articles to the index.
+     * Search articles, from an offset.
+     * Articles with the same URL are grouped.
      * 
-     * @param articleList The list of articles
+     * @param paginatedList The list of articles
+     * @param searchQuery The query
+     * @param filter Filter on the articles the user can see, applied before paging and counting
+     * @param total If true, count the matching articles
+     * @param snippet If true, only the passages of the description around the matches are returned
+     * @return List of articles, in order
      */
-    public void create(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Add all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.addDocument(document);
+    public Map<String, Article> search(PaginatedList<UserArticleDto> paginatedList, String searchQuery, Filter filter,
+            boolean total, boolean snippet) throws Exception {
+        Query query = getQuery(searchQuery);
+        
+        // Grouping
+        GroupingSearch groupingSearch = new GroupingSearch("url");
+        groupingSearch.setGroupSort(new Sort(new SortField("date", Type.LONG, true)));
+        groupingSearch.setFillSortFields(true);
+        groupingSearch.setCachingInMB(20, true);
+        groupingSearch.setAllGroups(total);
+        
+        // Searching
+        SearcherManager searcherManager = AppContext.getInstance().getIndexingService().getSearcherManager();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            long startTime = System.nanoTime();
+            TopGroups<BytesRef> topGroups = groupingSearch.search(searcher, filter, query, paginatedList.getOffset(), paginatedList.getLimit());
+            if (total) {
+                paginatedList.setResultCount(topGroups.totalGroupCount == null ? 0 : topGroups.totalGroupCount);
+            }
+            ScoreDoc[] scoreDocs = new ScoreDoc[topGroups.groups.length];
+            int j = 0;
+            for (GroupDocs<BytesRef> groupDocs : topGroups.groups) {
+                scoreDocs[j++] = groupDocs.scoreDocs[0];
             }
-        });
+            AppContext.getInstance().getIndexingService().searched(System.nanoTime() - startTime);
+            
+            return getArticleMap(searchQuery, query, searcher, scoreDocs, snippet);
+        } finally {
+            searcherManager.release(searcher);
+        }
     }
     
     /**
-     * Update index.
+     * Search articles, after an article.
+     * Only the requested page is collected, whatever its depth in the results.
+     * Articles with the same URL are grouped as by {@link #search}: only the most recent one is returned,
+     * on its own page, so that the pages add up to the count of URLs.
      * 
-     * @param articleList Article list
+     * @param paginatedList The list of articles
+     * @param searchQuery The query
+     * @param filter Filter on the articles the user can see, applied before paging and counting
+     * @param afterArticle Start the list after this article (ID and publication date), null for the first page
+     * @param total If true, count the matching articles
+     * @param snippet If true, only the passages of the description around the matches are returned
+     * @return List of articles, in order
      */
-    public void update(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Update all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.updateDocument(new Term("id", article.getId()), document);
+    public Map<String, Article> searchAfter(PaginatedList<UserArticleDto> paginatedList, String searchQuery, Filter filter,
+            Article afterArticle, boolean total, boolean snippet) throws Exception {
+        Query query = getQuery(searchQuery);
+        
+        // Most recent first, the ID makes the order total
+        Sort sort = new Sort(new SortField("date", Type.LONG, true), new SortField("id", Type.STRING, true));
+        FieldDoc after = null;
+        if (afterArticle != null) {
+            after = new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[] {
+                    afterArticle.getPublicationDate().getTime(), new BytesRef(afterArticle.getId()) });
+        }
+        
+        // From the first page, the first article found with an URL is the most recent one
+        boolean fromStart = after == null;
+        Set<String> urlSet = new HashSet<String>();
+        
+        // Searching
+        SearcherManager searcherManager = AppContext.getInstance().getIndexingService().getSearcherManager();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            long startTime = System.nanoTime();
+            int limit = paginatedList.getLimit();
+            List<ScoreDoc> scoreDocList = new ArrayList<ScoreDoc>();
+            while (scoreDocList.size() < limit) {
+                TopDocs topDocs = searcher.searchAfter(after, query, filter, limit, sort);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    after = (FieldDoc) scoreDoc;
+                    String url = searcher.doc(scoreDoc.doc, URL_FIELDS).get("url");
+                    if (urlSet.add(url) && scoreDocList.size() < limit
+                            && (fromStart || isMostRecent(searcher, query, filter, sort, url, scoreDoc))) {
+                        scoreDocList.add(scoreDoc);
+                    }
+                }
+                if (topDocs.scoreDocs.length < limit) {
+                    break;
+                }
+            }
+            
+            if (total) {
+                TermAllGroupsCollector allGroupsCollector = new TermAllGroupsCollector("url");
+                searcher.search(query, filter, allGroupsCollector);
+                paginatedList.setResultCount(allGroupsCollector.getGroupCount());
             }
-        });
+            AppContext.getInstance().getIndexingService().searched(System.nanoTime() - startTime);
+            
+            return getArticleMap(searchQuery, query, searcher, scoreDocList.toArray(new ScoreDoc[scoreDocList.size()]), snippet);
+        } finally {
+            searcherManager.release(searcher);
+        }
     }
-
+    
     /**
-     * Delete index.
+     * Returns true if an article found is the most recent one found with its URL.
      * 
-     * @param articleList Article list
+     * @param searcher Searcher
+     * @param query Lucene query
+     * @param filter Filter on the articles the user can see
+     * @param sort Order of the articles
+     * @param url URL of the article
+     * @param scoreDoc Article found
+     * @return True if the most recent
      */
-    public void delete(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Delete all articles
-            for (Article article : articleList) {
-                indexWriter.deleteDocuments(new Term("id", article.getId()));
-            }
-        });
+    private boolean isMostRecent(IndexSearcher searcher, Query query, Filter filter, Sort sort, String url, ScoreDoc scoreDoc) throws IOException {
+        BooleanQuery urlQuery = new BooleanQuery();
+        urlQuery.add(query, Occur.MUST);
+        urlQuery.add(new TermQuery(new Term("url", url)), Occur.MUST);
+        TopDocs topDocs = searcher.search(urlQuery, filter, 1, sort);
+        return topDocs.scoreDocs.length == 0 || topDocs.scoreDocs[0].doc == scoreDoc.doc;
     }
-
+    
     /**
-     * Search articles.
+     * Build the Lucene query from a search query.
      * 
-     * @param paginatedList The list of articles
      * @param searchQuery The query
-     * @return List of articles
+     * @return Lucene query
      */
-    public Map<String, Article> search(PaginatedList<UserArticleDto> paginatedList, String searchQuery) throws Exception {
+    private Query getQuery(String searchQuery) throws Exception {
         // Escape query and add quotes so QueryParser generate a PhraseQuery
         searchQuery = "\"" + QueryParserUtil.escape(searchQuery) + "\"";
         
@@ -120,61 +277,64 @@ public class ArticleDao {
         BooleanQuery query = new BooleanQuery();
         query.add(titleQuery, Occur.SHOULD);
         query.add(descriptionQuery, Occur.SHOULD);
+        return query;
+    }
+    
+    /**
+     * Highlight the articles found.
+     * The highlights are cached for the current version of the index.
+     * 
+     * @param searchQuery The query
+     * @param query Lucene query
+     * @param searcher Searcher
+     * @param scoreDocs Articles found
+     * @param snippet If true, only the passages of the description around the matches are returned
+     * @return Highlighted articles, in order
+     */
+    private Map<String, Article> getArticleMap(String searchQuery, Query query, IndexSearcher searcher, ScoreDoc[] scoreDocs,
+            boolean snippet) throws IOException {
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        Cache<String, String[]> highlightCache = indexingService.getHighlightCache();
+        String keyPrefix = ((DirectoryReader) searcher.getIndexReader()).getVersion() + "|" + snippet + "|" + searchQuery + "|";
         
-        // Grouping
-        GroupingSearch groupingSearch = new GroupingSearch("url");
-        groupingSearch.setGroupSort(new Sort(new SortField("date", Type.LONG, true)));
-        groupingSearch.setFillSortFields(true);
-        groupingSearch.setCachingInMB(20, true);
-        groupingSearch.setAllGroups(true);
-        
-        // Searching
-        IndexSearcher searcher = new IndexSearcher(AppContext.getInstance().getDirectoryIndexingService().getDirectoryReader());
-        TopGroups<BytesRef> topGroups = groupingSearch.search(searcher, query, paginatedList.getOffset(), paginatedList.getLimit());
-        int total = topGroups.totalGroupCount == null ? 0 : topGroups.totalGroupCount;
-        paginatedList.setResultCount(total);
-        ScoreDoc[] scoreDocs = new ScoreDoc[topGroups.groups.length];
-        int j = 0;
-        for (GroupDocs<BytesRef> groupDocs : topGroups.groups) {
-            scoreDocs[j++] = groupDocs.scoreDocs[0];
+        // Highlight the articles not in cache
+        String[][] highlights = new String[scoreDocs.length][];
+        List<Integer> missList = new ArrayList<Integer>();
+        for (int i = 0; i < scoreDocs.length; i++) {
+            highlights[i] = highlightCache.getIfPresent(keyPrefix + scoreDocs[i].doc);
+            if (highlights[i] == null) {
+                missList.add(i);
+            }
         }
-        TopDocs topDocs = new TopDocs(total, scoreDocs, 0);
-        
-        // Highlighting
-        PostingsHighlighter highlighter = new PostingsHighlighter(1000000, BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), new PassageFormatter() {
-            @Override
-            public String format(Passage passages[], String content) {
-                StringBuilder sb = new StringBuilder();
-                int pos = 0;
-                for (Passage passage : passages) {
-                    for (int i = 0; i < passage.getNumMatches(); i++) {
-                        int start = passage.getMatchStarts()[i];
-                        int end = passage.getMatchEnds()[i];
-                        sb.append(content.substring(pos, start));
-                        sb.append("<span class=\"highlight\">");
-                        sb.append(content.substring(start, end));
-                        sb.append("</span>");
-                        pos = end;
-                    }
-                }
-                if (pos < content.length()) {
-                    sb.append(content.substring(pos));
+        if (!missList.isEmpty()) {
+            long startTime = System.nanoTime();
+            ScoreDoc[] missScoreDocs = new ScoreDoc[missList.size()];
+            for (int i = 0; i < missScoreDocs.length; i++) {
+                missScoreDocs[i] = scoreDocs[missList.get(i)];
+            }
+            TopDocs topDocs = new TopDocs(missScoreDocs.length, missScoreDocs, 0);
+            Map<String, String[]> fieldHighlights = (snippet ? snippetHighlighter : highlighter)
+                    .highlightFields(HIGHLIGHT_FIELDS, query, searcher, topDocs, 3);
+            for (int i = 0; i < missScoreDocs.length; i++) {
+                String[] highlight = new String[] { fieldHighlights.get("title")[i], fieldHighlights.get("description")[i] };
+                if (snippet && highlight[1] == null) {
+                    // No match in the description, keep its beginning rather than the whole description
+                    highlight[1] = snippetFormatter.formatBeginning(searcher.doc(missScoreDocs[i].doc).get("description"));
                 }
-                return sb.toString();
+                highlights[missList.get(i)] = highlight;
+                highlightCache.put(keyPrefix + missScoreDocs[i].doc, highlight);
             }
-        });
-        Map<String, String[]> highlights = highlighter.highlightFields(new String[] { "title", "description" }, query, searcher, topDocs, 3);
+            indexingService.highlighted(System.nanoTime() - startTime);
+        }
         
         // Extract article ids
-        Map<String, Article> articleList = new HashMap<String, Article>();
+        Map<String, Article> articleList = new LinkedHashMap<String, Article>();
         for (int i = 0; i < scoreDocs.length; i++) {
-            String id = searcher.doc(scoreDocs[i].doc).get("id");
-            String title = highlights.get("title")[i];
-            String description = highlights.get("description")[i];
+            String id = searcher.doc(scoreDocs[i].doc, ID_FIELDS).get("id");
             Article article = new Article();
             article.setId(id);
-            article.setTitle(title);
-            article.setDescription(description);
+            article.setTitle(highlights[i][0]);
+            article.setDescription(highlights[i][1]);
             articleList.put(id, article);
         }
         
@@ -195,6 +355,7 @@ public class ArticleDao {
         // Building document
         org.apache.lucene.document.Document document = new org.apache.lucene.document.Document();
         document.add(new StringField("id", article.getId(), Field.Store.YES));
+        document.add(new StringField("feed_id", article.getFeedId(), Field.Store.NO));
         document.add(new StringField("url", article.getUrl(), Field.Store.YES));
         document.add(new LongField("date", article.getPublicationDate().getTime(), Field.Store.YES));
         document.add(new Field("title", article.getTitle(), fieldType));
@@ -202,4 +363,159 @@ public class ArticleDao {
         
         return document;
     }
+    
+    /**
+     * Formats the highlighted passages, the whole content or the passages only.
+     */
+    private static class HighlightFormatter extends PassageFormatter {
+        /**
+         * Number of characters kept on each side of the matches, 0 to keep the whole content.
+         */
+        private final int window;
+        
+        /**
+         * Constructor of HighlightFormatter.
+         * 
+         * @param window Number of characters kept on each side of the matches, 0 to keep the whole content
+         */
+        public HighlightFormatter(int window) {
+            this.window = window;
+        }
+        
+        @Override
+        public String format(Passage passages[], String content) {
+            if (window == 0 || content.length() <= 2 * window) {
+                return formatContent(passages, content);
+            }
+            return formatSnippet(passages, content);
+        }
+        
+        /**
+         * Returns the beginning of the content as text, used when the content has no match.
+         * 
+         * @param content Content
+         * @return Snippet, empty if there is no content
+         */
+        public String formatBeginning(String content) {
+            if (content == null) {
+                return "";
+            }
+            StringBuilder sb = new StringBuilder();
+            int end = 0;
+            boolean inTag = false;
+            while (end < content.length() && sb.length() < 2 * window) {
+                char c = content.charAt(end++);
+                if (c == '<') {
+                    inTag = true;
+                } else if (c == '>' && inTag) {
+                    inTag = false;
+                } else if (!inTag) {
+                    sb.append(c);
+                }
+            }
+            if (end < content.length()) {
+                sb.append(" …");
+            }
+            return sb.toString();
+        }
+        
+        /**
+         * Highlight the matches in the whole content.
+         * 
+         * @param passages Passages
+         * @param content Content
+         * @return Highlighted content
+         */
+        private String formatContent(Passage passages[], String content) {
+            StringBuilder sb = new StringBuilder(content.length() + 64);
+            int pos = 0;
+            for (Passage passage : passages) {
+                for (int i = 0; i < passage.getNumMatches(); i++) {
+                    int start = passage.getMatchStarts()[i];
+                    int end = passage.getMatchEnds()[i];
+                    sb.append(content, pos, start);
+                    sb.append("<span class=\"highlight\">");
+                    sb.append(content, start, end);
+                    sb.append("</span>");
+                    pos = end;
+                }
+            }
+            if (pos < content.length()) {
+                sb.append(content, pos, content.length());
+            }
+            return sb.toString();
+        }
+        
+        /**
+         * Highlight the matches in a window around them, as text.
+         * 
+         * @param passages Passages, ordered by offset
+         * @param content Content
+         * @return Highlighted snippet
+         */
+        private String formatSnippet(Passage passages[], String content) {
+            StringBuilder sb = new StringBuilder();
+            int pos = 0;
+            for (Passage passage : passages) {
+                int start;
+                int end;
+                if (passage.getNumMatches() > 0) {
+                    start = Math.max(passage.getStartOffset(), passage.getMatchStarts()[0] - window);
+                    end = Math.min(passage.getEndOffset(), passage.getMatchEnds()[passage.getNumMatches() - 1] + window);
+                } else {
+                    start = passage.getStartOffset();
+                    end = Math.min(passage.getEndOffset(), start + 2 * window);
+                }
+                start = Math.max(start, pos);
+                if (start >= end) {
+                    continue;
+                }
+                if (start > pos) {
+                    sb.append("… ");
+                }
+                for (int i = 0; i < passage.getNumMatches(); i++) {
+                    int matchStart = passage.getMatchStarts()[i];
+                    int matchEnd = passage.getMatchEnds()[i];
+                    if (matchStart < start || matchEnd > end) {
+                        continue;
+                    }
+                    appendText(sb, content, start, matchStart);
+                    sb.append("<span class=\"highlight\">");
+                    appendText(sb, content, matchStart, matchEnd);
+                    sb.append("</span>");
+                    start = matchEnd;
+                }
+                appendText(sb, content, start, end);
+                pos = end;
+            }
+            if (pos < content.length()) {
+                sb.append(" …");
+            }
+            return sb.toString();
+        }
+        
+        /**
+         * Append a part of the content without its markup, which may be cut at any position.
+         * 
+         * @param sb Output
+         * @param content Content
+         * @param start Start offset
+         * @param end End offset
+         */
+        private void appendText(StringBuilder sb, String content, int start, int end) {
+            // Start inside a tag if one is open before the start
+            int tagStart = content.lastIndexOf('<', start - 1);
+            boolean inTag = tagStart >= 0 && content.indexOf('>', tagStart) >= start;
+            for (int i = start; i < end; i++) {
+                char c = content.charAt(i);
+                if (c == '<') {
+                    inTag = true;
+                } else if (c == '>' && inTag) {
+                    inTag = false;
+                } else if (!inTag) {
+                    sb.append(c);
+                }
+            }
+        }
+    }
 }
@@ -10,7 +10,7 @@ import com.sismics.reader.core.model.jpa.Article;
  *
  * @author bgamard
  */
-public class ArticleCreatedAsyncEvent {
+public class ArticleCreatedAsyncEvent implements PartitionedEvent {
     /**
      * List of newly created articles.
      */
@@ -34,6 +34,12 @@ public class ArticleCreatedAsyncEvent {
         this.articleList = articleList;
     }
 
+    @Override
+    public String getPartitionKey() {
+        // The articles of an event all come from the same feed
+        return articleList != null && !articleList.isEmpty() ? articleList.get(0).getFeedId() : null;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
@@ -10,7 +10,7 @@ import java.util.List;
  *
  * @author bgamard
  */
-public class ArticleDeletedAsyncEvent {
+public class ArticleDeletedAsyncEvent implements PartitionedEvent {
     /**
      * List of deleted articles.
      */
@@ -34,6 +34,11 @@ public class ArticleDeletedAsyncEvent {
         this.articleList = articleList;
     }
 
+    @Override
+    public String getPartitionKey() {
+        return articleList != null && !articleList.isEmpty() ? articleList.get(0).getFeedId() : null;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
@@ -10,7 +10,7 @@ import com.sismics.reader.core.model.jpa.Article;
  *
  * @author bgamard
  */
-public class ArticleUpdatedAsyncEvent {
+public class ArticleUpdatedAsyncEvent implements PartitionedEvent {
     /**
      * List of updated articles.
      */
@@ -34,6 +34,11 @@ public class ArticleUpdatedAsyncEvent {
         this.articleList = articleList;
     }
 
+    @Override
+    public String getPartitionKey() {
+        return articleList != null && !articleList.isEmpty() ? articleList.get(0).getFeedId() : null;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
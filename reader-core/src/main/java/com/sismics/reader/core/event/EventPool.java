@@ -0,0 +1,347 @@
+package com.sismics.reader.core.event;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of threads handling some types of events.
+ * Each thread has its own bounded queue (a lane): events of the same partition always go to the same lane,
+ * so they are handled in the order they were posted. When a lane is full, the poster waits for some room.
+ * The events posted by the listeners of the pool don't wait, since the lanes they wait for may be their own:
+ * they are queued beyond the capacity of their lane, still in order.
+ *
+ * @author bgamard
+ */
+public class EventPool {
+    /**
+     * Pool name.
+     */
+    private final String name;
+
+    /**
+     * Capacity of the queue of each lane.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Lanes, each one is a single thread executor.
+     */
+    private final ThreadPoolExecutor[] laneArray;
+
+    /**
+     * Room left in the queue of each lane.
+     */
+    private final Semaphore[] roomArray;
+
+    /**
+     * Synchronous event bus delivering the events to the listeners, on the threads of the lanes.
+     */
+    private final EventBus dispatcher;
+
+    /**
+     * True on the threads of the lanes while they handle an event.
+     */
+    private final ThreadLocal<Boolean> handling = new ThreadLocal<Boolean>();
+
+    /**
+     * Lane of the next event without partition.
+     */
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    /**
+     * Number of events posted and not yet handled.
+     */
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    /**
+     * Number of events handled.
+     */
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /**
+     * Number of events posted to a full lane.
+     */
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    /**
+     * Distribution of the time spent by the events in the queues.
+     */
+    private final Histogram lagHistogram;
+
+    /**
+     * Constructor of EventPool.
+     *
+     * @param busName Name of the event bus
+     * @param name Pool name
+     * @param threadCount Number of threads
+     * @param queueCapacity Capacity of the queue of each thread
+     * @param dispatcher Synchronous event bus delivering the events to the listeners
+     */
+    EventPool(String busName, String name, int threadCount, int queueCapacity, EventBus dispatcher) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.dispatcher = dispatcher;
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(busName + "-" + name + "-%d")
+                .setDaemon(true)
+                .build();
+        laneArray = new ThreadPoolExecutor[threadCount];
+        roomArray = new Semaphore[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            laneArray[i] = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    threadFactory);
+            roomArray[i] = new Semaphore(queueCapacity, true);
+        }
+
+        MetricRegistry metricRegistry = MetricRegistry.getInstance();
+        metricRegistry.gauge("reader_event_queue_depth", "Events waiting in the queues of a pool",
+                () -> getQueueDepth(), "bus", busName, "pool", name);
+        metricRegistry.gauge("reader_event_pending", "Events posted to a pool and not yet handled",
+                () -> getPendingCount(), "bus", busName, "pool", name);
+        metricRegistry.gauge("reader_event_lag_seconds", "Time spent in the queues of a pool by the oldest waiting event",
+                () -> getLag() / 1000d, "bus", busName, "pool", name);
+        lagHistogram = metricRegistry.timer("reader_event_queue_duration_seconds", "Time spent in the queues of a pool by the events",
+                "bus", busName, "pool", name);
+    }
+
+    /**
+     * Queues an event on its lane.
+     *
+     * @param event Event
+     * @param partitionKey Partition key, or null to use the lanes in turn
+     */
+    void post(Object event, String partitionKey) {
+        int hash = partitionKey != null ? partitionKey.hashCode() : nextLane.getAndIncrement();
+        int laneIndex = (hash & Integer.MAX_VALUE) % laneArray.length;
+        ThreadPoolExecutor lane = laneArray[laneIndex];
+
+        // A listener of the pool posting to a full lane could wait for itself, let it go beyond the capacity
+        Semaphore room = handling.get() == null ? roomArray[laneIndex] : null;
+        if (room != null && !room.tryAcquire()) {
+            blockedCount.incrementAndGet();
+            waitForRoom(lane, room);
+        }
+
+        pendingCount.incrementAndGet();
+        try {
+            lane.execute(new EventTask(event, room));
+        } catch (RejectedExecutionException e) {
+            pendingCount.decrementAndGet();
+            if (room != null) {
+                room.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for some room in a full lane.
+     *
+     * @param lane Lane
+     * @param room Room left in the queue of the lane
+     */
+    private void waitForRoom(ThreadPoolExecutor lane, Semaphore room) {
+        try {
+            while (!room.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (lane.isShutdown()) {
+                    throw new RejectedExecutionException("Event pool " + name + " is shut down");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in event pool " + name, e);
+        }
+    }
+
+    /**
+     * Stops accepting events, the queued events are still handled.
+     */
+    void shutdown() {
+        for (ThreadPoolExecutor lane : laneArray) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the queued events to be handled, after a shutdown.
+     *
+     * @param deadline Deadline, in nanoseconds
+     * @return True if all the events were handled
+     * @throws InterruptedException
+     */
+    boolean awaitTermination(long deadline) throws InterruptedException {
+        for (ThreadPoolExecutor lane : laneArray) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Interrupts the events being handled and drops the queued ones.
+     *
+     * @return Number of events dropped
+     */
+    int shutdownNow() {
+        int droppedCount = 0;
+        for (ThreadPoolExecutor lane : laneArray) {
+            droppedCount += lane.shutdownNow().size();
+        }
+        return droppedCount;
+    }
+
+    /**
+     * Getter of name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of threads.
+     *
+     * @return Number of threads
+     */
+    public int getThreadCount() {
+        return laneArray.length;
+    }
+
+    /**
+     * Returns the total capacity of the queues.
+     *
+     * @return Number of events
+     */
+    public int getQueueCapacity() {
+        return queueCapacity * laneArray.length;
+    }
+
+    /**
+     * Returns the number of events waiting in the queues.
+     *
+     * @return Number of events
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : laneArray) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the time spent in the queues by the oldest waiting event.
+     *
+     * @return Time in milliseconds, 0 if the queues are empty
+     */
+    public long getLag() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (ThreadPoolExecutor lane : laneArray) {
+            Runnable head = lane.getQueue().peek();
+            if (head instanceof EventTask) {
+                lag = Math.max(lag, TimeUnit.NANOSECONDS.toMillis(now - ((EventTask) head).postTime));
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * Returns the number of events posted and not yet handled.
+     *
+     * @return Number of events
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Returns the number of events handled.
+     *
+     * @return Number of events
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Returns the number of events posted to a full lane.
+     *
+     * @return Number of events
+     */
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    /**
+     * Getter of lagHistogram.
+     *
+     * @return lagHistogram
+     */
+    public Histogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    /**
+     * Event waiting for its lane.
+     */
+    private class EventTask implements Runnable {
+        /**
+         * Event.
+         */
+        private final Object event;
+
+        /**
+         * Room taken in the queue of the lane, null if the event was queued beyond the capacity.
+         */
+        private final Semaphore room;
+
+        /**
+         * Time of the post, from {@link System#nanoTime()}.
+         */
+        private final long postTime = System.nanoTime();
+
+        /**
+         * Constructor of EventTask.
+         *
+         * @param event Event
+         * @param room Room taken in the queue of the lane, null if the event was queued beyond the capacity
+         */
+        private EventTask(Object event, Semaphore room) {
+            this.event = event;
+            this.room = room;
+        }
+
+        @Override
+        public void run() {
+            if (room != null) {
+                room.release();
+            }
+            lagHistogram.recordSince(postTime);
+            handling.set(Boolean.TRUE);
+            try {
+                dispatcher.post(event);
+            } finally {
+                handling.remove();
+                processedCount.incrementAndGet();
+                pendingCount.decrementAndGet();
+            }
+        }
+    }
+}
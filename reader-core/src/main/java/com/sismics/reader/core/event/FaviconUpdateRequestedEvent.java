@@ -8,12 +8,17 @@ import com.sismics.reader.core.model.jpa.Feed;
  *
  * @author jtremeaux 
  */
-public class FaviconUpdateRequestedEvent {
+public class FaviconUpdateRequestedEvent implements PartitionedEvent {
     /**
      * Feed to update.
      */
     private Feed feed;
     
+    @Override
+    public String getPartitionKey() {
+        return feed != null ? feed.getId() : null;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
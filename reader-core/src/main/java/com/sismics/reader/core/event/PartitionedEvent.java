@@ -0,0 +1,16 @@
+package com.sismics.reader.core.event;
+
+/**
+ * Event delivered in order with the other events of the same partition.
+ *
+ * @author bgamard
+ */
+public interface PartitionedEvent {
+    /**
+     * Returns the key of the partition of the event.
+     * Events sharing a key are handled one after the other, in the order they were posted.
+     *
+     * @return Partition key, or null if the event can be handled by any thread
+     */
+    String getPartitionKey();
+}
@@ -0,0 +1,187 @@
+package com.sismics.reader.core.event;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous event bus handling each type of events in its own pool of threads.
+ * Events implementing {@link PartitionedEvent} are handled in order within their partition,
+ * the queues are bounded and a poster waits when its lane is full.
+ *
+ * @author bgamard
+ */
+public class PartitionedEventBus extends EventBus {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PartitionedEventBus.class);
+
+    /**
+     * Delay between two checks of the pending events while draining, in milliseconds.
+     */
+    private static final long DRAIN_POLL_INTERVAL = 20;
+
+    /**
+     * Bus name.
+     */
+    private final String name;
+
+    /**
+     * Synchronous event bus delivering the events to the listeners, on the threads of the pools.
+     */
+    private final EventBus dispatcher;
+
+    /**
+     * Pool of the events without a dedicated pool.
+     */
+    private final EventPool defaultPool;
+
+    /**
+     * All the pools.
+     */
+    private final List<EventPool> poolList = new CopyOnWriteArrayList<EventPool>();
+
+    /**
+     * Dedicated pools, by event type.
+     */
+    private final Map<Class<?>, EventPool> poolMap = new ConcurrentHashMap<Class<?>, EventPool>();
+
+    /**
+     * Constructor of PartitionedEventBus.
+     *
+     * @param name Bus name
+     * @param threadCount Number of threads of the default pool
+     * @param queueCapacity Capacity of the queue of each thread of the default pool
+     */
+    public PartitionedEventBus(String name, int threadCount, int queueCapacity) {
+        super(name);
+        this.name = name;
+        dispatcher = new EventBus(name);
+        defaultPool = new EventPool(name, "default", threadCount, queueCapacity, dispatcher);
+        poolList.add(defaultPool);
+    }
+
+    /**
+     * Adds a pool dedicated to some types of events.
+     *
+     * @param poolName Pool name
+     * @param threadCount Number of threads
+     * @param queueCapacity Capacity of the queue of each thread
+     * @param eventClasses Types of events handled by the pool
+     * @return This event bus
+     */
+    public PartitionedEventBus addPool(String poolName, int threadCount, int queueCapacity, Class<?>... eventClasses) {
+        EventPool pool = new EventPool(name, poolName, threadCount, queueCapacity, dispatcher);
+        poolList.add(pool);
+        for (Class<?> eventClass : eventClasses) {
+            poolMap.put(eventClass, pool);
+        }
+        return this;
+    }
+
+    @Override
+    public void register(Object object) {
+        dispatcher.register(object);
+    }
+
+    @Override
+    public void unregister(Object object) {
+        dispatcher.unregister(object);
+    }
+
+    @Override
+    public void post(Object event) {
+        EventPool pool = poolMap.get(event.getClass());
+        if (pool == null) {
+            pool = defaultPool;
+        }
+        String partitionKey = event instanceof PartitionedEvent ? ((PartitionedEvent) event).getPartitionKey() : null;
+        pool.post(event, partitionKey);
+    }
+
+    /**
+     * Waits for all the posted events to be handled, the bus still accepting new events.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return True if all the events were handled
+     */
+    public boolean drain(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (EventPool pool : poolList) {
+                while (pool.getPendingCount() > 0) {
+                    if (System.nanoTime() >= deadline) {
+                        return false;
+                    }
+                    Thread.sleep(DRAIN_POLL_INTERVAL);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting events and waits for the queued ones to be handled.
+     * The events still queued after the timeout are dropped.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return True if all the events were handled
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (EventPool pool : poolList) {
+            pool.shutdown();
+        }
+
+        boolean terminated = true;
+        try {
+            for (EventPool pool : poolList) {
+                terminated &= pool.awaitTermination(deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+
+        if (!terminated) {
+            int droppedCount = 0;
+            for (EventPool pool : poolList) {
+                droppedCount += pool.shutdownNow();
+            }
+            log.warn(MessageFormat.format("Event bus {0} not drained in time, {1} events dropped", name, droppedCount));
+        }
+        return terminated;
+    }
+
+    /**
+     * Getter of name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the pools, the default one first.
+     *
+     * @return Pools
+     */
+    public List<EventPool> getPoolList() {
+        return Lists.newArrayList(poolList);
+    }
+}
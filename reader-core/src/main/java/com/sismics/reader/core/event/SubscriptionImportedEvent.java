@@ -3,6 +3,7 @@ package com.sismics.reader.core.event;
 import java.io.File;
 
 import com.google.common.base.Objects;
+import com.sismics.reader.core.model.jpa.Job;
 import com.sismics.reader.core.model.jpa.User;
 
 /**
@@ -10,7 +11,7 @@ import com.sismics.reader.core.model.jpa.User;
  *
  * @author jtremeaux 
  */
-public class SubscriptionImportedEvent {
+public class SubscriptionImportedEvent implements PartitionedEvent {
     /**
      * User requesting the import.
      */
@@ -21,6 +22,11 @@ public class SubscriptionImportedEvent {
      */
     private File importFile;
     
+    /**
+     * Interrupted job to resume, null for a new import.
+     */
+    private Job job;
+    
     /**
      * Getter of user.
      *
@@ -57,11 +63,35 @@ public class SubscriptionImportedEvent {
         this.importFile = importFile;
     }
 
+    /**
+     * Getter of job.
+     *
+     * @return job
+     */
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * Setter of job.
+     *
+     * @param job job
+     */
+    public void setJob(Job job) {
+        this.job = job;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return user != null ? user.getId() : null;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
                 .add("user", user)
                 .add("importFile", importFile)
+                .add("job", job)
                 .toString();
     }
 }
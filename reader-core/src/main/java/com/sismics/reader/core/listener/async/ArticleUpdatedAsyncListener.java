@@ -1,13 +1,12 @@
 package com.sismics.reader.core.listener.async;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
-import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.ArticleUpdatedAsyncEvent;
+import com.sismics.reader.core.model.context.AppContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.MessageFormat;
-
 /**
  * Listener on updated articles.
  * 
@@ -25,19 +24,13 @@ public class ArticleUpdatedAsyncListener {
      * @param articlesUpdatedAsyncEvent Updated articles event
      */
     @Subscribe
+    @AllowConcurrentEvents
     public void onArticleUpdated(final ArticleUpdatedAsyncEvent articlesUpdatedAsyncEvent) throws Exception {
         if (log.isInfoEnabled()) {
             log.info("Updated article event: " + articlesUpdatedAsyncEvent.toString());
         }
-        long startTime = System.currentTimeMillis();
         
-        // Update index
-        ArticleDao articleDao = new ArticleDao();
-        articleDao.update(articlesUpdatedAsyncEvent.getArticleList());
-
-        long endTime = System.currentTimeMillis();
-        if (log.isInfoEnabled()) {
-            log.info(MessageFormat.format("Index updated in {0}ms", endTime - startTime));
-        }
+        // Queue the updated articles for indexing
+        AppContext.getInstance().getIndexingService().getIndexUpdateBatcher().index(articlesUpdatedAsyncEvent.getArticleList());
     }
 }
@@ -1,5 +1,6 @@
 package com.sismics.reader.core.listener.async;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.sismics.reader.core.dao.file.html.FaviconDownloader;
 import com.sismics.reader.core.event.FaviconUpdateRequestedEvent;
@@ -28,6 +29,7 @@ public class FaviconUpdateRequestedAsyncListener {
      * @param faviconUpdateRequestedEvent OPML imported event
      */
     @Subscribe
+    @AllowConcurrentEvents
     public void onFaviconUpdateRequested(final FaviconUpdateRequestedEvent faviconUpdateRequestedEvent) throws Exception {
         if (log.isInfoEnabled()) {
             log.info(MessageFormat.format("Favicon update requested event: {0}", faviconUpdateRequestedEvent.toString()));
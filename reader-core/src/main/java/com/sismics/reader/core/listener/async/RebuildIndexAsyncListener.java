@@ -1,18 +1,32 @@
 package com.sismics.reader.core.listener.async;
 
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.RebuildIndexAsyncEvent;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.IndexRebuildStatus;
 import com.sismics.reader.core.util.TransactionUtil;
+import org.apache.lucene.index.IndexWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Listener on rebuild index.
- * 
+ *
  * @author bgamard
  */
 public class RebuildIndexAsyncListener {
@@ -21,25 +35,104 @@ public class RebuildIndexAsyncListener {
      */
     private static final Logger log = LoggerFactory.getLogger(RebuildIndexAsyncListener.class);
 
+    /**
+     * Number of articles read at once.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Number of threads building the documents.
+     */
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Rebuild articles index.
-     * 
+     * Articles are read page by page, and indexed into a new index which replaces the current one once complete.
+     *
      * @param rebuildIndexAsyncEvent Index rebuild event
      */
     @Subscribe
+    @AllowConcurrentEvents
     public void onArticleCreated(final RebuildIndexAsyncEvent rebuildIndexAsyncEvent) throws Exception {
         if (log.isInfoEnabled()) {
             log.info("Rebuild index event: " + rebuildIndexAsyncEvent.toString());
         }
-        
-        // Fetch all articles
-        TransactionUtil.handle(() -> {
-            com.sismics.reader.core.dao.jpa.ArticleDao jpaArticleDao = new com.sismics.reader.core.dao.jpa.ArticleDao();
-            List<Article> articleList = jpaArticleDao.findAll();
-
-            // Rebuild index
-            ArticleDao articleDao = new ArticleDao();
-            articleDao.rebuildIndex(articleList);
-        });
+        long startTime = System.currentTimeMillis();
+
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        final IndexWriter indexWriter = indexingService.startRebuild();
+        if (indexWriter == null) {
+            log.warn("An index rebuild is already running");
+            return;
+        }
+        final IndexRebuildStatus rebuildStatus = indexingService.getRebuildStatus();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT,
+                new ThreadFactoryBuilder().setNameFormat("index-rebuild-%d").setDaemon(true).build());
+        final AtomicBoolean success = new AtomicBoolean();
+        try {
+            TransactionUtil.handle(() -> {
+                com.sismics.reader.core.dao.jpa.ArticleDao jpaArticleDao = new com.sismics.reader.core.dao.jpa.ArticleDao();
+                rebuildStatus.setTotal(jpaArticleDao.count());
+
+                final ArticleDao articleDao = new ArticleDao();
+                List<Future<?>> futureList = new ArrayList<Future<?>>();
+                Date publicationDate = null;
+                String id = null;
+                while (true) {
+                    List<Article> articleList = jpaArticleDao.findIndexPage(publicationDate, id, PAGE_SIZE);
+
+                    // Read the next page while the previous one is indexed, keep at most two pages in memory
+                    waitFor(futureList);
+                    if (articleList.isEmpty()) {
+                        break;
+                    }
+                    for (final List<Article> partition : Lists.partition(articleList, (articleList.size() + THREAD_COUNT - 1) / THREAD_COUNT)) {
+                        futureList.add(executor.submit(() -> {
+                            articleDao.rebuildIndex(indexWriter, partition);
+                            rebuildStatus.indexed(partition.size());
+                            return null;
+                        }));
+                    }
+                    Article lastArticle = articleList.get(articleList.size() - 1);
+                    publicationDate = lastArticle.getPublicationDate();
+                    id = lastArticle.getId();
+                }
+                success.set(true);
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Swap the new index in, or discard it
+        if (success.get()) {
+            try {
+                indexingService.completeRebuild();
+            } catch (Exception e) {
+                log.error("Error swapping the rebuilt index in", e);
+                indexingService.abortRebuild();
+            }
+        } else {
+            indexingService.abortRebuild();
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info(MessageFormat.format("Index rebuilt with {0} articles in {1}ms", rebuildStatus.getIndexed(), System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * Wait for the indexing tasks to finish.
+     *
+     * @param futureList Indexing tasks, cleared
+     */
+    private void waitFor(List<Future<?>> futureList) {
+        try {
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error indexing articles", e);
+        }
+        futureList.clear();
     }
 }
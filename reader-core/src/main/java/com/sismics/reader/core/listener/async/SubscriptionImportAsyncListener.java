@@ -2,11 +2,15 @@ package com.sismics.reader.core.listener.async;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
-import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
+import com.google.common.io.Files;
 import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.file.json.StarredArticleImportedEvent;
 import com.sismics.reader.core.dao.file.json.StarredReader;
 import com.sismics.reader.core.dao.file.opml.OpmlFlattener;
 import com.sismics.reader.core.dao.file.opml.OpmlReader;
@@ -14,17 +18,23 @@ import com.sismics.reader.core.dao.file.opml.Outline;
 import com.sismics.reader.core.dao.file.rss.GuidFixer;
 import com.sismics.reader.core.dao.jpa.*;
 import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.FeedCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.JobEventCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
 import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.dao.jpa.dto.JobEventDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.event.ArticleCreatedAsyncEvent;
 import com.sismics.reader.core.event.SubscriptionImportedEvent;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.*;
 import com.sismics.reader.core.service.ArticleFeedService;
-import com.sismics.reader.core.service.FeedService;
+import com.sismics.reader.core.service.CounterService;
+import com.sismics.reader.core.service.ingest.IngestContext;
+import com.sismics.reader.core.util.DirectoryUtil;
 import com.sismics.reader.core.util.EntityManagerUtil;
 import com.sismics.reader.core.util.TransactionUtil;
 import com.sismics.util.mime.MimeType;
@@ -36,15 +46,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Listener on subscriptions import request.
+ * The file is read in one pass: the feeds are fetched concurrently by the feed synchronizer,
+ * and the subscriptions, starred articles and job events are committed in batches.
+ * The file is kept until the end of the job, so that a job interrupted by a shutdown resumes where it stopped.
  * 
  * @author jtremeaux
  */
@@ -64,202 +82,94 @@ public class SubscriptionImportAsyncListener {
      */
     private static final String FILE_SUBSCRIPTIONS_XML = "subscriptions.xml";
 
+    /**
+     * Number of feeds imported between two commits.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    /**
+     * Number of starred articles written together.
+     */
+    private static final int STARRED_BATCH_SIZE = 100;
+
     /**
      * Process the event.
      * 
      * @param subscriptionImportedEvent OPML imported event
      */
     @Subscribe
+    @AllowConcurrentEvents
     public void onSubscriptionImport(final SubscriptionImportedEvent subscriptionImportedEvent) throws Exception {
         if (log.isInfoEnabled()) {
             log.info(MessageFormat.format("OPML import requested event: {0}", subscriptionImportedEvent.toString()));
         }
         
         final User user = subscriptionImportedEvent.getUser();
-        final File importFile = subscriptionImportedEvent.getImportFile();
         
         TransactionUtil.handle(() -> {
-            Job job = createJob(user, importFile);
+            Job job;
+            if (subscriptionImportedEvent.getJob() != null) {
+                job = new JobDao().getActiveJob(subscriptionImportedEvent.getJob().getId());
+            } else {
+                job = createJob(user, subscriptionImportedEvent.getImportFile());
+            }
             if (job != null) {
-                processImportFile(user, importFile, job);
+                processImportFile(new ImportJob(user, job));
             }
         });
     }
 
     /**
-     * Read the file to import in a 1st pass to know the number of feeds / starred articles to import
-     * and create a new job.
+     * Create a new job, and keep the file to import until its end.
      * 
      * @param user User
      * @param importFile File to import
      * @return The new job
      */
     private Job createJob(final User user, File importFile) {
-        long outlineCount = 0;
-        final AtomicInteger starredCount = new AtomicInteger();
-        Closer closer = Closer.create();
+        File jobFile = new File(DirectoryUtil.getImportDirectory(), UUID.randomUUID().toString());
         try {
-            // Guess the file type
-            String mimeType = MimeType.guessMimeType(importFile);
-            if (MimeType.APPLICATION_ZIP.equals(mimeType)) {
-                // Assume the file is a Google Takeout ZIP archive
-                ZipArchiveInputStream archiveInputStream = null;
-                archiveInputStream = closer.register(new ZipArchiveInputStream(new FileInputStream(importFile), Charsets.ISO_8859_1.name()));
-                ArchiveEntry archiveEntry = archiveInputStream.getNextEntry();
-                while (archiveEntry != null) {
-                    File outputFile = null;
-                    try {
-                        if (archiveEntry.getName().endsWith(FILE_SUBSCRIPTIONS_XML)) {
-                            outputFile = File.createTempFile("subscriptions", "xml");
-                            ByteStreams.copy(archiveInputStream, new FileOutputStream(outputFile));
-    
-                            // Read the OPML file
-                            OpmlReader opmlReader = new OpmlReader();
-                            opmlReader.read(new FileInputStream(outputFile));
-                            outlineCount = getFeedCount(opmlReader.getOutlineList());
-                        } else if (archiveEntry.getName().endsWith(FILE_STARRED_JSON)) {
-                            outputFile = File.createTempFile("starred", "json");
-                            ByteStreams.copy(archiveInputStream, new FileOutputStream(outputFile));
-
-                            // Read the starred file
-                            StarredReader starredReader = new StarredReader();
-                            starredReader.setStarredArticleListener(event -> starredCount.incrementAndGet());
-                            starredReader.read(new FileInputStream(outputFile));
-                        }
-                    } finally {
-                        if (outputFile != null) {
-                            try {
-                                outputFile.delete();
-                            } catch (Exception e) {
-                                // NOP
-                            }
-                        }
-                    }
-
-                    archiveEntry = archiveInputStream.getNextEntry();
-                }
-            } else {
-                // Assume the file is an OPML file
-                InputStream is = closer.register(new FileInputStream(importFile));
-                OpmlReader opmlReader = new OpmlReader();
-                opmlReader.read(is);
-                outlineCount = getFeedCount(opmlReader.getOutlineList());
-            }
-
-            // Create a new job
-            JobDao jobDao = new JobDao();
-
-            Job job = new Job(user.getId(), Constants.JOB_IMPORT);
-            job.setStartDate(new Date());
-            jobDao.create(job);
-            
-            JobEventDao jobEventDao = new JobEventDao();
-
-            JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_FEED_COUNT, String.valueOf(outlineCount));
-            jobEventDao.create(jobEvent);
-            
-            jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_STARRED_ARTICLED_COUNT, String.valueOf(starredCount.get()));
-            jobEventDao.create(jobEvent);
-            
-            return job;
-        } catch (Exception e) {
-            log.error(MessageFormat.format("Error processing import file {0}", importFile), e);
+            Files.move(importFile, jobFile);
+        } catch (IOException e) {
+            log.error(MessageFormat.format("Error moving import file {0}", importFile), e);
+            importFile.delete();
             return null;
-        } finally {
-            try { 
-                closer.close();
-            } catch (IOException e) {
-                // NOP
-            }
         }
-    }
 
-    /**
-     * Get the total number of feeds in a tree of outlines.
-     *
-     * @param outlineList List of outlines
-     * @return Number of feeds
-     */
-    private long getFeedCount(List<Outline> outlineList) {
-        // Flatten the OPML tree
-        Map<String, List<Outline>> outlineMap = OpmlFlattener.flatten(outlineList);
+        Job job = new Job(user.getId(), Constants.JOB_IMPORT);
+        job.setStartDate(new Date());
+        job.setFile(jobFile.getAbsolutePath());
+        new JobDao().create(job);
 
-        // Count the total number of feeds
-        long feedCount = 0;
-        for (List<Outline> categoryOutlineList : outlineMap.values()) {
-            feedCount += categoryOutlineList.size();
-        }
-
-        return feedCount;
+        // The job must survive a restart
+        EntityManagerUtil.flush();
+        TransactionUtil.commit();
+        return job;
     }
 
     /**
-     * Process the import file.
+     * Process the import file, from the checkpoint of the job.
      * 
-     * @param user User
-     * @param importFile File to import
-     * @param job Job
+     * @param importJob Import job
      */
-    private void processImportFile(final User user, File importFile, final Job job) {
-        List<Outline> outlineList = null;
-        Map<String, List<Article>> articleMap = null;
+    private void processImportFile(ImportJob importJob) {
+        File importFile = new File(importJob.job.getFile());
         Closer closer = Closer.create();
-        final JobEventDao jobEventDao = new JobEventDao();
         try {
             // Guess the file type
             String mimeType = MimeType.guessMimeType(importFile);
             if (MimeType.APPLICATION_ZIP.equals(mimeType)) {
                 // Assume the file is a Google Takeout ZIP archive
-                ZipArchiveInputStream archiveInputStream = null;
-                archiveInputStream = closer.register(new ZipArchiveInputStream(new FileInputStream(importFile), Charsets.ISO_8859_1.name()));
+                ZipArchiveInputStream archiveInputStream = closer.register(new ZipArchiveInputStream(new FileInputStream(importFile), Charsets.ISO_8859_1.name()));
                 ArchiveEntry archiveEntry = archiveInputStream.getNextEntry();
                 while (archiveEntry != null) {
-                    File outputFile = null;
-                    try {
-                        if (archiveEntry.getName().endsWith(FILE_SUBSCRIPTIONS_XML)) {
-                            outputFile = File.createTempFile("subscriptions", "xml");
-                            ByteStreams.copy(archiveInputStream, new FileOutputStream(outputFile));
-    
-                            // Read the OPML file
-                            OpmlReader opmlReader = new OpmlReader();
-                            opmlReader.read(new FileInputStream(outputFile));
-                            outlineList = opmlReader.getOutlineList();
-                        } else if (archiveEntry.getName().endsWith(FILE_STARRED_JSON)) {
-                            outputFile = File.createTempFile("starred", "json");
-                            ByteStreams.copy(archiveInputStream, new FileOutputStream(outputFile));
-
-                            // Read the starred file
-                            StarredReader starredReader = new StarredReader();
-                            starredReader.setStarredArticleListener(event -> {
-                                if (log.isInfoEnabled()) {
-                                    log.info(MessageFormat.format("Importing a starred article for user {0}''s import", user.getId()));
-                                }
-
-                                EntityManagerUtil.flush();
-                                TransactionUtil.commit();
-                                try {
-                                    importFeedFromStarred(user, event.getFeed(), event.getArticle());
-
-                                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_STARRED_ARTICLE_IMPORT_SUCCESS, event.getArticle().getTitle());
-                                    jobEventDao.create(jobEvent);
-                                } catch (Exception e) {
-                                    if (log.isErrorEnabled()) {
-                                        log.error(MessageFormat.format("Error importing article {0} from feed {1} for user {2}", event.getArticle(), event.getFeed(), user.getId()), e);
-                                    }
-                                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_STARRED_ARTICLE_IMPORT_FAILURE, event.getArticle().getTitle());
-                                    jobEventDao.create(jobEvent);
-                                }
-                            });
-                            starredReader.read(new FileInputStream(outputFile));
-                        }
-                    } finally {
-                        if (outputFile != null) {
-                            try {
-                                outputFile.delete();
-                            } catch (Exception e) {
-                                // NOP
-                            }
-                        }
+                    if (archiveEntry.getName().endsWith(FILE_SUBSCRIPTIONS_XML)) {
+                        // Read the OPML file
+                        OpmlReader opmlReader = new OpmlReader();
+                        opmlReader.read(new EntryInputStream(archiveInputStream));
+                        importOutline(importJob, opmlReader.getOutlineList());
+                    } else if (archiveEntry.getName().endsWith(FILE_STARRED_JSON)) {
+                        importStarred(importJob, new EntryInputStream(archiveInputStream));
                     }
 
                     archiveEntry = archiveInputStream.getNextEntry();
@@ -269,18 +179,14 @@ public class SubscriptionImportAsyncListener {
                 InputStream is = closer.register(new FileInputStream(importFile));
                 OpmlReader opmlReader = new OpmlReader();
                 opmlReader.read(is);
-                outlineList = opmlReader.getOutlineList();
-            }
-            
-            // Import the feeds
-            if (outlineList != null || articleMap != null) {
-                try {
-                    importOutline(user, outlineList, job);
-                } catch (Exception e) {
-                    log.error("Unknown error during outline import", e);
-                }
+                importOutline(importJob, opmlReader.getOutlineList());
             }
         } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Stopped by a shutdown, resume at the next start
+                log.info(MessageFormat.format("Import job {0} interrupted at checkpoint {1}", importJob.job.getId(), importJob.job.getCheckpoint()));
+                return;
+            }
             log.error(MessageFormat.format("Error processing import file {0}", importFile), e);
         } finally {
             try { 
@@ -288,26 +194,38 @@ public class SubscriptionImportAsyncListener {
             } catch (IOException e) {
                 // NOP
             }
-            if (importFile != null) {
-                importFile.delete();
-            }
         }
+
+        // End the job, the totals missing from the file are empty
+        importJob.recordCount(Constants.JOB_EVENT_FEED_COUNT, 0);
+        importJob.recordCount(Constants.JOB_EVENT_STARRED_ARTICLED_COUNT, 0);
+        importJob.job.setEndDate(new Date());
+        importJob.job.setFile(null);
+        importJob.commit();
+        importFile.delete();
     }
 
     /**
      * Import the categories and feeds.
+     * The feeds are fetched concurrently, the subscriptions are created as the feeds are fetched.
      * 
-     * @param user User
+     * @param importJob Import job
      * @param outlineList Outlines to import
-     * @param job Job
      */
-    private void importOutline(final User user, final List<Outline> outlineList, final Job job) {
+    private void importOutline(final ImportJob importJob, final List<Outline> outlineList) {
+        final String userId = importJob.user.getId();
+
         // Flatten the OPML tree
         Map<String, List<Outline>> outlineMap = OpmlFlattener.flatten(outlineList);
+        long feedCount = 0;
+        for (List<Outline> categoryOutlineList : outlineMap.values()) {
+            feedCount += categoryOutlineList.size();
+        }
+        importJob.recordCount(Constants.JOB_EVENT_FEED_COUNT, feedCount);
 
         // Find all user categories
         CategoryDao categoryDao = new CategoryDao();
-        List<Category> categoryList = categoryDao.findAllCategory(user.getId());
+        List<Category> categoryList = categoryDao.findAllCategory(userId);
         Map<String, Category> categoryMap = new HashMap<String, Category>();
         for (Category category : categoryList) {
             categoryMap.put(category.getName(), category);
@@ -317,27 +235,28 @@ public class SubscriptionImportAsyncListener {
             throw new RuntimeException("Root category not found");
         }
         int categoryDisplayOrder = categoryMap.size() - 1;
-        
-        // Count the total number of feeds
-        long feedCount = 0;
-        for (List<Outline> categoryOutlineList : outlineMap.values()) {
-            feedCount += categoryOutlineList.size();
-        }
-        
-        // Create new subscriptions
-        int i = 0;
+
+        // Find all user subscriptions
         final FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-        final JobEventDao jobEventDao = new JobEventDao();
+        final Set<String> subscribedFeedIdSet = new HashSet<String>();
+        Set<String> subscribedUrlSet = new HashSet<String>();
+        final Map<String, Integer> feedDisplayOrderMap = new HashMap<String, Integer>();
+        for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria().setUserId(userId))) {
+            subscribedFeedIdSet.add(feedSubscription.getFeedId());
+            subscribedUrlSet.add(feedSubscription.getFeedRssUrl());
+            Integer feedDisplayOrder = feedDisplayOrderMap.get(feedSubscription.getCategoryId());
+            feedDisplayOrderMap.put(feedSubscription.getCategoryId(), feedDisplayOrder == null ? 1 : feedDisplayOrder + 1);
+        }
+
+        // Create the missing categories, and the feeds to fetch
+        final Map<IngestContext, OutlineImport> outlineImportMap = new IdentityHashMap<IngestContext, OutlineImport>();
+        List<IngestContext> contextList = new ArrayList<IngestContext>();
         for (Entry<String, List<Outline>> entry : outlineMap.entrySet()) {
             String categoryName = entry.getKey();
-            List<Outline> categoryOutlineList = entry.getValue();
-            
-            // Create a new category if necessary 
             Category category = categoryMap.get(categoryName);
-            Integer feedDisplayOrder = 0;
             if (category == null) {
                 category = new Category();
-                category.setUserId(user.getId());
+                category.setUserId(userId);
                 category.setParentId(rootCategory.getId());
                 category.setName(categoryName);
                 category.setOrder(categoryDisplayOrder);
@@ -345,168 +264,635 @@ public class SubscriptionImportAsyncListener {
                 
                 categoryMap.put(categoryName, category);
                 categoryDisplayOrder++;
-            } else {
-                feedDisplayOrder = feedSubscriptionDao.getCategoryCount(category.getId(), user.getId());
             }
-            
-            // Create the subscriptions
-            for (int j = 0; j < categoryOutlineList.size(); j++) {
-                EntityManagerUtil.flush();
-                TransactionUtil.commit();
-                if (log.isInfoEnabled()) {
-                    log.info(MessageFormat.format("Importing outline {0}/{1}", i + j + 1, feedCount));
-                }
-                Outline outline = categoryOutlineList.get(j);
-                String feedTitle = !Strings.isNullOrEmpty(outline.getText()) ? outline.getText() : outline.getTitle();
-                String feedUrl = outline.getXmlUrl();
-
-                // Check if the user is already subscribed to this feed
-                FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
-                        .setUserId(user.getId())
-                        .setFeedUrl(feedUrl);
 
-                List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-                if (!feedSubscriptionList.isEmpty()) {
+            for (Outline outline : entry.getValue()) {
+                String feedUrl = outline.getXmlUrl();
+                if (importJob.isFeedImported(feedUrl)) {
+                    // Imported before an interruption
+                    continue;
+                }
+                if (!subscribedUrlSet.add(feedUrl)) {
                     if (log.isInfoEnabled()) {
-                        log.info(MessageFormat.format("User {0} is already subscribed to the feed at URL {1}", user.getId(), feedUrl));
+                        log.info(MessageFormat.format("User {0} is already subscribed to the feed at URL {1}", userId, feedUrl));
                     }
-                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_FEED_IMPORT_SUCCESS, feedSubscriptionList.iterator().next().getFeedRssUrl());
-                    jobEventDao.create(jobEvent);
-                    
+                    importJob.addEvent(Constants.JOB_EVENT_FEED_IMPORT_SUCCESS, feedUrl);
                     continue;
                 }
 
-                // Synchronize feed and articles
-                Feed feed = null;
-                final FeedService feedService = AppContext.getInstance().getFeedService();
-                ArticleFeedService articleFeedService = new ArticleFeedService();
+                String feedTitle = !Strings.isNullOrEmpty(outline.getText()) ? outline.getText() : outline.getTitle();
+                IngestContext context = new IngestContext(feedUrl);
+                outlineImportMap.put(context, new OutlineImport(feedUrl, feedTitle, category.getId()));
+                contextList.add(context);
+            }
+        }
+        importJob.commit();
+
+        // Synchronize feeds and articles, and create the subscriptions of the feeds synchronized
+        final ArticleFeedService articleFeedService = new ArticleFeedService();
+        final AtomicInteger importedCount = new AtomicInteger();
+        final int importCount = contextList.size();
+        AppContext.getInstance().getFeedService().getFeedSynchronizer().synchronize(contextList, context -> {
+            OutlineImport outlineImport = outlineImportMap.get(context);
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Importing outline {0}/{1}", importedCount.incrementAndGet(), importCount));
+            }
+            if (context.getException() == null) {
+                // The feed and its articles are committed on their own, the subscriptions are committed by batch
                 try {
-                    feed = feedService.synchronize(feedUrl);
+                    TransactionUtil.commit();
                 } catch (Exception e) {
-                    if (log.isErrorEnabled()) {
-                        log.error(MessageFormat.format("Error importing the feed at URL {0} for user {1}", feedUrl, user.getId()), e);
-                    }
-                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_FEED_IMPORT_FAILURE, feedUrl);
-                    jobEventDao.create(jobEvent);
-                    continue;
+                    context.setException(e);
+                }
+            }
+            if (context.getException() != null) {
+                if (log.isErrorEnabled()) {
+                    log.error(MessageFormat.format("Error importing the feed at URL {0} for user {1}", outlineImport.url, userId), context.getException());
                 }
 
-                // Create the subscription if the feed can be synchronized
-                try {
-                    FeedSubscription feedSubscription = new FeedSubscription();
-                    feedSubscription.setUserId(user.getId());
-                    feedSubscription.setFeedId(feed.getId());
-                    feedSubscription.setCategoryId(category.getId());
-                    feedSubscription.setOrder(feedDisplayOrder);
-                    feedSubscription.setUnreadCount(0);
-                    feedSubscription.setTitle(feedTitle);
-                    feedSubscriptionDao.create(feedSubscription);
-                    
-                    feedDisplayOrder++;
-
-                    // Create the initial article subscriptions for this user
-                    EntityManagerUtil.flush();
-                    articleFeedService.createInitialUserArticle(user.getId(), feedSubscription);
-
-                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_FEED_IMPORT_SUCCESS, feedUrl);
-                    jobEventDao.create(jobEvent);
-                } catch (Exception e) {
-                    if (log.isErrorEnabled()) {
-                        log.error(MessageFormat.format("Error creating the subscription to the feed at URL {0} for user {1}", feedUrl, user.getId()), e);
+                // Don't keep the validators of a feed whose articles are not all stored
+                importJob.rollback();
+                importJob.addEvent(Constants.JOB_EVENT_FEED_IMPORT_FAILURE, outlineImport.url);
+                return;
+            }
+
+            // The page may link to a feed the user is already subscribed to
+            Feed feed = context.getFeed();
+            if (!subscribedFeedIdSet.add(feed.getId())) {
+                importJob.addEvent(Constants.JOB_EVENT_FEED_IMPORT_SUCCESS, outlineImport.url);
+                return;
+            }
+
+            importJob.addSubscription(outlineImport.url, () -> {
+                Integer feedDisplayOrder = feedDisplayOrderMap.get(outlineImport.categoryId);
+                FeedSubscription feedSubscription = new FeedSubscription();
+                feedSubscription.setUserId(userId);
+                feedSubscription.setFeedId(feed.getId());
+                feedSubscription.setCategoryId(outlineImport.categoryId);
+                feedSubscription.setOrder(feedDisplayOrder == null ? 0 : feedDisplayOrder);
+                feedSubscription.setUnreadCount(0);
+                feedSubscription.setTitle(outlineImport.title);
+                feedSubscriptionDao.create(feedSubscription);
+                feedDisplayOrderMap.put(outlineImport.categoryId, feedDisplayOrder == null ? 1 : feedDisplayOrder + 1);
+
+                // Create the initial article subscriptions for this user
+                EntityManagerUtil.flush();
+                articleFeedService.createInitialUserArticle(userId, feedSubscription);
+            });
+        });
+        importJob.commit();
+    }
+
+    /**
+     * Import the starred articles, from the checkpoint of the job.
+     * 
+     * @param importJob Import job
+     * @param is Starred articles JSON input stream
+     */
+    private void importStarred(final ImportJob importJob, InputStream is) throws Exception {
+        final AtomicInteger starredCount = new AtomicInteger();
+        final List<StarredArticleImportedEvent> batch = new ArrayList<StarredArticleImportedEvent>();
+        final Map<String, String> feedIdMap = new HashMap<String, String>();
+        StarredReader starredReader = new StarredReader();
+        starredReader.setStarredArticleListener(event -> {
+            if (starredCount.getAndIncrement() < importJob.job.getCheckpoint()) {
+                // Imported before an interruption
+                return;
+            }
+            batch.add(event);
+            if (batch.size() >= STARRED_BATCH_SIZE) {
+                importStarredBatch(importJob, batch, feedIdMap);
+                batch.clear();
+            }
+        });
+        starredReader.read(is);
+        if (!batch.isEmpty()) {
+            importStarredBatch(importJob, batch, feedIdMap);
+        }
+        importJob.recordCount(Constants.JOB_EVENT_STARRED_ARTICLED_COUNT, starredCount.get());
+        importJob.commit();
+    }
+
+    /**
+     * Import a batch of starred articles.
+     * If the batch fails, its articles are imported again one by one to find the failing ones.
+     * 
+     * @param importJob Import job
+     * @param batch Starred articles
+     * @param feedIdMap IDs of the feeds known by the import, by RSS URL
+     */
+    private void importStarredBatch(ImportJob importJob, List<StarredArticleImportedEvent> batch, Map<String, String> feedIdMap) {
+        if (log.isInfoEnabled()) {
+            log.info(MessageFormat.format("Importing {0} starred articles for user {1}''s import", batch.size(), importJob.user.getId()));
+        }
+
+        // Only this batch is rolled back on failure
+        EntityManagerUtil.flush();
+        TransactionUtil.commit();
+        try {
+            importFeedFromStarred(importJob, batch, feedIdMap);
+            return;
+        } catch (Exception e) {
+            importJob.rollback();
+
+            // The feeds created by the batch are rolled back too
+            feedIdMap.clear();
+
+            if (batch.size() == 1) {
+                StarredArticleImportedEvent event = batch.get(0);
+                if (log.isErrorEnabled()) {
+                    log.error(MessageFormat.format("Error importing article {0} from feed {1} for user {2}", event.getArticle(), event.getFeed(), importJob.user.getId()), e);
+                }
+                importJob.createEvent(Constants.JOB_EVENT_STARRED_ARTICLE_IMPORT_FAILURE, event.getArticle().getTitle());
+                importJob.job.setCheckpoint(importJob.job.getCheckpoint() + 1);
+                importJob.commit();
+                return;
+            }
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Error importing a batch of starred articles for user {0}, importing them one by one", importJob.user.getId()), e);
+            }
+        }
+        for (StarredArticleImportedEvent event : batch) {
+            importStarredBatch(importJob, Lists.newArrayList(event), feedIdMap);
+        }
+    }
+
+    /**
+     * Create the feeds, articles and user articles of a batch of starred articles,
+     * and commit them with the progress of the job.
+     * The existing feeds, articles and user articles are looked up for the whole batch at once.
+     * 
+     * @param importJob Import job
+     * @param batch Starred articles
+     * @param feedIdMap IDs of the feeds known by the import, by RSS URL
+     */
+    private void importFeedFromStarred(ImportJob importJob, List<StarredArticleImportedEvent> batch, Map<String, String> feedIdMap) {
+        final User user = importJob.user;
+
+        // Get the existing feeds
+        Set<String> rssUrlSet = new HashSet<String>();
+        for (StarredArticleImportedEvent event : batch) {
+            if (!feedIdMap.containsKey(event.getFeed().getRssUrl())) {
+                rssUrlSet.add(event.getFeed().getRssUrl());
+            }
+        }
+        if (!rssUrlSet.isEmpty()) {
+            FeedCriteria feedCriteria = new FeedCriteria()
+                    .setRssUrlIn(Lists.newArrayList(rssUrlSet));
+            for (FeedDto feed : new FeedDao().findByCriteria(feedCriteria)) {
+                feedIdMap.put(feed.getRssUrl(), feed.getId());
+            }
+        }
+
+        // Create the missing feeds
+        for (StarredArticleImportedEvent event : batch) {
+            Feed feed = event.getFeed();
+            if (!feedIdMap.containsKey(feed.getRssUrl())) {
+                feedIdMap.put(feed.getRssUrl(), createFeedFromStarred(user, feed));
+            }
+        }
+
+        // Get the existing articles, by URL, or by title if they have no URL
+        ArticleDao articleDao = new ArticleDao();
+        Set<String> feedIdSet = new HashSet<String>();
+        Set<String> urlSet = new HashSet<String>();
+        Set<String> titleSet = new HashSet<String>();
+        for (StarredArticleImportedEvent event : batch) {
+            Article article = event.getArticle();
+            feedIdSet.add(feedIdMap.get(event.getFeed().getRssUrl()));
+            if (article.getUrl() != null) {
+                urlSet.add(article.getUrl());
+            } else if (article.getTitle() != null) {
+                titleSet.add(article.getTitle());
+            }
+        }
+        List<Article> currentArticleList = new ArrayList<Article>();
+        if (!urlSet.isEmpty()) {
+            addCurrentArticles(currentArticleList, articleDao.findByCriteria(new ArticleCriteria()
+                    .setFeedIdIn(Lists.newArrayList(feedIdSet))
+                    .setUrlIn(Lists.newArrayList(urlSet))));
+        }
+        if (!titleSet.isEmpty()) {
+            addCurrentArticles(currentArticleList, articleDao.findByCriteria(new ArticleCriteria()
+                    .setFeedIdIn(Lists.newArrayList(feedIdSet))
+                    .setTitleIn(Lists.newArrayList(titleSet))));
+        }
+
+        // Create the missing articles
+        Map<String, List<Article>> createdArticleMap = new HashMap<String, List<Article>>();
+        List<String> currentArticleIdList = new ArrayList<String>();
+        for (StarredArticleImportedEvent event : batch) {
+            Article article = event.getArticle();
+            String feedId = feedIdMap.get(event.getFeed().getRssUrl());
+            String title = article.getTitle();
+            String url = article.getUrl();
+            Article currentArticle = null;
+            if (StringUtils.isBlank(title) && StringUtils.isBlank(url)) {
+                if (log.isInfoEnabled()) {
+                    log.info(MessageFormat.format("Cannot import starred article with an empty title and url for feed {0}", event.getFeed().getRssUrl()));
+                }
+            }
+            if (title == null && url == null) {
+                ArticleDto articleDto = articleDao.findFirstByCriteria(new ArticleCriteria().setFeedId(feedId));
+                if (articleDto != null) {
+                    currentArticle = new Article();
+                    currentArticle.setId(articleDto.getId());
+                }
+            } else {
+                for (Article candidate : currentArticleList) {
+                    if (candidate.getFeedId().equals(feedId)
+                            && (title == null || title.equals(candidate.getTitle()))
+                            && (url == null || url.equals(candidate.getUrl()))) {
+                        currentArticle = candidate;
+                        break;
                     }
-                    JobEvent jobEvent = new JobEvent(job.getId(), Constants.JOB_EVENT_FEED_IMPORT_FAILURE, feedUrl);
-                    jobEventDao.create(jobEvent);
                 }
             }
-            i += categoryOutlineList.size();
+
+            if (currentArticle != null) {
+                article.setId(currentArticle.getId());
+                currentArticleIdList.add(article.getId());
+            } else {
+                article.setFeedId(feedId);
+                GuidFixer.fixGuid(article);
+                articleDao.create(article);
+                currentArticleList.add(article);
+
+                List<Article> createdArticleList = createdArticleMap.get(feedId);
+                if (createdArticleList == null) {
+                    createdArticleList = new ArrayList<Article>();
+                    createdArticleMap.put(feedId, createdArticleList);
+                }
+                createdArticleList.add(article);
+            }
+        }
+
+        // Get the existing user articles
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Map<String, UserArticleDto> currentUserArticleMap = new HashMap<String, UserArticleDto>();
+        if (!currentArticleIdList.isEmpty()) {
+            UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
+                    .setUserId(user.getId())
+                    .setArticleIdIn(currentArticleIdList);
+            for (UserArticleDto userArticle : userArticleDao.findByCriteria(userArticleCriteria)) {
+                if (!currentUserArticleMap.containsKey(userArticle.getArticleId())) {
+                    currentUserArticleMap.put(userArticle.getArticleId(), userArticle);
+                }
+            }
         }
+
+        // Star the articles for the user
+        CounterService counterService = AppContext.getInstance().getCounterService();
+        Set<String> starredArticleIdSet = new HashSet<String>();
+        for (StarredArticleImportedEvent event : batch) {
+            Article article = event.getArticle();
+            if (starredArticleIdSet.add(article.getId())) {
+                UserArticleDto currentUserArticle = currentUserArticleMap.get(article.getId());
+                if (currentUserArticle == null || currentUserArticle.getId() == null) {
+                    // Subscribe the user to this article
+                    UserArticle userArticle = new UserArticle();
+                    userArticle.setUserId(user.getId());
+                    userArticle.setArticleId(article.getId());
+                    userArticle.setStarredDate(article.getPublicationDate());
+                    userArticle.setReadDate(article.getPublicationDate());
+                    userArticleDao.create(userArticle);
+                    counterService.addArticle(user.getId(), article.getId(), 0, 1, 1);
+                } else if (currentUserArticle.getStarTimestamp() == null) {
+                    // Mark the user article as starred
+                    UserArticle userArticle = new UserArticle();
+                    userArticle.setId(currentUserArticle.getId());
+                    userArticle.setStarredDate(article.getPublicationDate());
+                    userArticle.setReadDate(article.getPublicationDate());
+                    userArticleDao.update(userArticle);
+                    counterService.addArticle(user.getId(), article.getId(),
+                            currentUserArticle.getReadTimestamp() == null ? -1 : 0, 0, 1);
+                }
+            }
+            importJob.createEvent(Constants.JOB_EVENT_STARRED_ARTICLE_IMPORT_SUCCESS, article.getTitle());
+        }
+
+        // Add new articles to the index
+        for (List<Article> createdArticleList : createdArticleMap.values()) {
+            ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
+            articleCreatedAsyncEvent.setArticleList(createdArticleList);
+            AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
+        }
+
+        importJob.job.setCheckpoint(importJob.job.getCheckpoint() + batch.size());
+        importJob.commit();
     }
-    
+
     /**
-     * Create the feeds referenced from starred articles.
-     * If some feed cannot be downloaded, a record is still created from the export data only.
+     * Adds the existing articles found for a batch to the candidates.
+     * 
+     * @param currentArticleList Candidate articles
+     * @param articleDtoList Articles found
+     */
+    private void addCurrentArticles(List<Article> currentArticleList, List<ArticleDto> articleDtoList) {
+        for (ArticleDto articleDto : articleDtoList) {
+            Article article = new Article();
+            article.setId(articleDto.getId());
+            article.setFeedId(articleDto.getFeedId());
+            article.setTitle(articleDto.getTitle());
+            article.setUrl(articleDto.getUrl());
+            currentArticleList.add(article);
+        }
+    }
+
+    /**
+     * Create a feed referenced from starred articles.
+     * If the feed cannot be downloaded, a record is still created from the export data only.
      * 
      * @param user User
      * @param feed Feed to import
+     * @return Feed ID
      */
-    private void importFeedFromStarred(User user, Feed feed, Article article) {
+    private String createFeedFromStarred(User user, Feed feed) {
         // Synchronize the feed
         String rssUrl = feed.getRssUrl();
-        FeedDao feedDao = new FeedDao();
-        Feed feedFromDb = feedDao.getByRssUrl(rssUrl.toString());
-        final FeedService feedService = AppContext.getInstance().getFeedService();
-        if (feedFromDb == null) {
-            try {
-                feedFromDb = feedService.synchronize(rssUrl);
-            } catch (Exception e) {
-                // Add the feed with the data from the export if it is not valid anymore
-                if (log.isInfoEnabled()) {
-                    log.info(MessageFormat.format("Error importing the feed at URL {0} for user {1}''s stared articles. Maybe it doens't exist anymore?", rssUrl, user.getId()), e);
+        try {
+            return AppContext.getInstance().getFeedService().synchronize(rssUrl).getId();
+        } catch (Exception e) {
+            // Add the feed with the data from the export if it is not valid anymore
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Error importing the feed at URL {0} for user {1}''s stared articles. Maybe it doens't exist anymore?", rssUrl, user.getId()), e);
+            }
+            Feed feedFromDb = new Feed();
+            feedFromDb.setUrl(feed.getUrl());
+            feedFromDb.setRssUrl(rssUrl);
+            feedFromDb.setTitle(StringUtils.abbreviate(feed.getTitle(), 100));
+            new FeedDao().create(feedFromDb);
+
+            // The articles are inserted natively, the feed must be written first
+            EntityManagerUtil.flush();
+            return feedFromDb.getId();
+        }
+    }
+
+    /**
+     * Progress of an import job, and its pending changes.
+     */
+    private static class ImportJob {
+        /**
+         * User importing the file.
+         */
+        private final User user;
+
+        /**
+         * Job, managed by the current entity manager.
+         */
+        private Job job;
+
+        /**
+         * Job event DAO.
+         */
+        private final JobEventDao jobEventDao = new JobEventDao();
+
+        /**
+         * URLs of the feeds already imported by the job, as many times as they were imported.
+         */
+        private final Multiset<String> importedFeedUrlSet = HashMultiset.create();
+
+        /**
+         * Names of the count events already recorded by the job.
+         */
+        private final Set<String> countNameSet = new HashSet<String>();
+
+        /**
+         * Feed imports waiting for the next batch.
+         */
+        private final List<FeedImport> batchImportList = new ArrayList<FeedImport>();
+
+        /**
+         * Constructor of ImportJob, reading the progress of the job.
+         *
+         * @param user User importing the file
+         * @param job Job
+         */
+        private ImportJob(User user, Job job) {
+            this.user = user;
+            this.job = job;
+            for (JobEventDto jobEvent : jobEventDao.findByCriteria(new JobEventCriteria().setJobId(job.getId()))) {
+                String name = jobEvent.getName();
+                if (Constants.JOB_EVENT_FEED_IMPORT_SUCCESS.equals(name) || Constants.JOB_EVENT_FEED_IMPORT_FAILURE.equals(name)) {
+                    importedFeedUrlSet.add(jobEvent.getValue());
+                } else if (Constants.JOB_EVENT_FEED_COUNT.equals(name) || Constants.JOB_EVENT_STARRED_ARTICLED_COUNT.equals(name)) {
+                    countNameSet.add(name);
                 }
-                feedFromDb = new Feed();
-                feedFromDb.setUrl(feed.getUrl());
-                feedFromDb.setRssUrl(rssUrl);
-                feedFromDb.setTitle(StringUtils.abbreviate(feed.getTitle(), 100));
-                feedDao.create(feedFromDb);
             }
         }
-        
-        // Check if the article already exists
-        String title = article.getTitle();
-        String url = article.getUrl();
-        if (StringUtils.isBlank(title) && StringUtils.isBlank(url)) {
-            if (log.isInfoEnabled()) {
-                log.info(MessageFormat.format("Cannot import starred article with an empty title and url for feed {0}", rssUrl));
+
+        /**
+         * Returns true if a feed was imported before an interruption.
+         * Each import matches only one outline, in case the file lists a feed several times.
+         *
+         * @param feedUrl Feed URL
+         * @return True if imported
+         */
+        private boolean isFeedImported(String feedUrl) {
+            return importedFeedUrlSet.remove(StringUtils.abbreviate(feedUrl, 250));
+        }
+
+        /**
+         * Records a total of the job, once.
+         *
+         * @param name Event name
+         * @param count Total
+         */
+        private void recordCount(String name, long count) {
+            if (countNameSet.add(name)) {
+                jobEventDao.create(new JobEvent(job.getId(), name, String.valueOf(count)));
             }
         }
-        ArticleCriteria articleCriteria = new ArticleCriteria()
-                .setTitle(title)
-                .setUrl(url)
-                .setFeedId(feedFromDb.getId());
-        
-        ArticleDao articleDao = new ArticleDao();
-        List<ArticleDto> currentArticleList = articleDao.findByCriteria(articleCriteria);
-        if (!currentArticleList.isEmpty()) {
-            String articleId = currentArticleList.iterator().next().getId();
-            article.setId(articleId);
-        } else {
-            // Create the article if needed
-            article.setFeedId(feedFromDb.getId());
-            GuidFixer.fixGuid(article);
-            articleDao.create(article);
-            
-            // Add new articles to the index
-            ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
-            articleCreatedAsyncEvent.setArticleList(Lists.newArrayList(article));
-            AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
+
+        /**
+         * Records the import of a feed without subscription, written with the next batch.
+         *
+         * @param name Event name
+         * @param value Event value
+         */
+        private void addEvent(String name, String value) {
+            addImport(new FeedImport(name, value, null));
         }
-        
-        // Check if the user is already subscribed to this article
-        UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
-                .setUserId(user.getId())
-                .setArticleId(article.getId());
-        
-        UserArticleDao userArticleDao = new UserArticleDao();
-        List<UserArticleDto> userArticleList = userArticleDao.findByCriteria(userArticleCriteria);
-        UserArticleDto currentUserArticle = null;
-        if (userArticleList.size() > 0) {
-            currentUserArticle = userArticleList.iterator().next();
-        }
-        if (currentUserArticle == null || currentUserArticle.getId() == null) {
-            // Subscribe the user to this article
-            UserArticle userArticle = new UserArticle();
-            userArticle.setUserId(user.getId());
-            userArticle.setArticleId(article.getId());
-            userArticle.setStarredDate(article.getPublicationDate());
-            userArticle.setReadDate(article.getPublicationDate());
-            userArticleDao.create(userArticle);
-        } else if (currentUserArticle.getId() != null && currentUserArticle.getStarTimestamp() == null) {
-            // Mark the user article as starred
-            UserArticle userArticle = new UserArticle();
-            userArticle.setId(currentUserArticle.getId());
-            userArticle.setStarredDate(article.getPublicationDate());
-            userArticle.setReadDate(article.getPublicationDate());
-            userArticleDao.update(userArticle);
+
+        /**
+         * Records the import of a feed, its subscription is created with the next batch.
+         *
+         * @param feedUrl Feed URL
+         * @param subscription Creates the subscription to the feed
+         */
+        private void addSubscription(String feedUrl, Runnable subscription) {
+            addImport(new FeedImport(Constants.JOB_EVENT_FEED_IMPORT_SUCCESS, feedUrl, subscription));
+        }
+
+        /**
+         * Records the import of a feed, and commits the batch if it is full.
+         *
+         * @param feedImport Feed import
+         */
+        private void addImport(FeedImport feedImport) {
+            batchImportList.add(feedImport);
+            if (batchImportList.size() >= BATCH_SIZE) {
+                commit();
+            }
+        }
+
+        /**
+         * Records the import of a feed or a starred article, committed with the next batch.
+         *
+         * @param name Event name
+         * @param value Event value
+         */
+        private void createEvent(String name, String value) {
+            jobEventDao.create(new JobEvent(job.getId(), name, StringUtils.abbreviate(value, 250)));
+        }
+
+        /**
+         * Writes the feed imports of the batch, commits them with the progress of the job,
+         * and makes the new subscriptions visible.
+         * If the batch fails, its feed imports are written again one by one, and the failing ones recorded as failures.
+         */
+        private void commit() {
+            List<FeedImport> importList = new ArrayList<FeedImport>(batchImportList);
+            batchImportList.clear();
+            if (!commit(importList)) {
+                for (FeedImport feedImport : importList) {
+                    if (!commit(Lists.newArrayList(feedImport))) {
+                        createEvent(Constants.JOB_EVENT_FEED_IMPORT_FAILURE, feedImport.value);
+                        commit(new ArrayList<FeedImport>());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes feed imports, and commits them with the progress of the job.
+         * Only the failures of the feed imports are caught, they roll back the transaction.
+         *
+         * @param importList Feed imports
+         * @return True if committed
+         */
+        private boolean commit(List<FeedImport> importList) {
+            try {
+                for (FeedImport feedImport : importList) {
+                    if (feedImport.subscription != null) {
+                        feedImport.subscription.run();
+                    }
+                    createEvent(feedImport.name, feedImport.value);
+                }
+                AppContext.getInstance().getIndexingService().invalidateUserFilter(user.getId());
+                AppContext.getInstance().getSubscriptionTreeCache().invalidate(user.getId());
+                EntityManagerUtil.flush();
+                TransactionUtil.commit();
+                return true;
+            } catch (RuntimeException e) {
+                rollback();
+                if (importList.isEmpty()) {
+                    throw e;
+                }
+                if (importList.size() == 1) {
+                    if (log.isErrorEnabled()) {
+                        log.error(MessageFormat.format("Error creating the subscription to the feed at URL {0} for user {1}", importList.get(0).value, user.getId()), e);
+                    }
+                } else if (log.isInfoEnabled()) {
+                    log.info(MessageFormat.format("Error importing a batch of feeds for user {0}, importing them one by one", user.getId()), e);
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back the changes since the last commit.
+         * The job is read again, with the progress of the last commit.
+         */
+        private void rollback() {
+            TransactionUtil.rollback();
+            job = new JobDao().getActiveJob(job.getId());
+        }
+    }
+
+    /**
+     * Feed import waiting for its batch.
+     */
+    private static class FeedImport {
+        /**
+         * Event name.
+         */
+        private final String name;
+
+        /**
+         * Event value.
+         */
+        private final String value;
+
+        /**
+         * Creates the subscription to the feed, null if no subscription is created.
+         */
+        private final Runnable subscription;
+
+        /**
+         * Constructor of FeedImport.
+         *
+         * @param name Event name
+         * @param value Event value
+         * @param subscription Creates the subscription to the feed, null if no subscription is created
+         */
+        private FeedImport(String name, String value, Runnable subscription) {
+            this.name = name;
+            this.value = value;
+            this.subscription = subscription;
+        }
+    }
+
+    /**
+     * Outline waiting for its feed to be fetched.
+     */
+    private static class OutlineImport {
+        /**
+         * Feed URL.
+         */
+        private final String url;
+
+        /**
+         * Subscription title.
+         */
+        private final String title;
+
+        /**
+         * Category ID.
+         */
+        private final String categoryId;
+
+        /**
+         * Constructor of OutlineImport.
+         *
+         * @param url Feed URL
+         * @param title Subscription title
+         * @param categoryId Category ID
+         */
+        private OutlineImport(String url, String title, String categoryId) {
+            this.url = url;
+            this.title = title;
+            this.categoryId = categoryId;
+        }
+    }
+
+    /**
+     * Input stream of an archive entry, left open for the next entries.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+        /**
+         * Constructor of EntryInputStream.
+         *
+         * @param archiveInputStream Archive input stream, positioned on the entry
+         */
+        private EntryInputStream(InputStream archiveInputStream) {
+            super(archiveInputStream);
+        }
+
+        @Override
+        public void close() {
+            // NOP
         }
     }
 }
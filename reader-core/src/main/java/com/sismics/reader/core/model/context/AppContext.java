@@ -1,23 +1,27 @@
 package com.sismics.reader.core.model.context;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.Service;
 import com.sismics.reader.core.constant.ConfigType;
+import com.sismics.reader.core.constant.Constants;
 import com.sismics.reader.core.dao.jpa.ConfigDao;
+import com.sismics.reader.core.dao.jpa.JobDao;
+import com.sismics.reader.core.dao.jpa.UserDao;
+import com.sismics.reader.core.event.*;
 import com.sismics.reader.core.listener.async.*;
 import com.sismics.reader.core.listener.sync.DeadEventListener;
 import com.sismics.reader.core.model.jpa.Config;
+import com.sismics.reader.core.model.jpa.Job;
+import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.service.CounterService;
 import com.sismics.reader.core.service.FeedService;
 import com.sismics.reader.core.service.IndexingService;
-import com.sismics.reader.core.service.DirectoryIndexingService;
-import com.sismics.reader.core.service.ArticleIndexingService;
+import com.sismics.reader.core.service.SubscriptionTreeCache;
 import com.sismics.util.EnvironmentUtil;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import com.sismics.reader.core.customfeeds.CustomFeedCreateCommander;
@@ -28,6 +32,11 @@ import com.sismics.reader.core.customfeeds.CustomFeedCreateCommander;
  * @author jtremeaux 
  */
 public class AppContext {
+    /**
+     * Maximum time to handle the queued events on shutdown, in seconds.
+     */
+    private static final int SHUTDOWN_TIMEOUT = 30;
+
     /**
      * Singleton instance.
      */
@@ -64,25 +73,30 @@ public class AppContext {
     private IndexingService indexingService;
 
     /**
-     * Article Indexing service.
+     * Counter service.
+     */
+    private CounterService counterService;
+
+    /**
+     * Cache of the subscription trees.
      */
-    private ArticleIndexingService articleIndexingService;
+    private SubscriptionTreeCache subscriptionTreeCache = new SubscriptionTreeCache();
 
     /**
-     * Directory Indexing service.
+     * Asynchronous event buses, in the order they are drained.
      */
-    private DirectoryIndexingService directoryIndexingService;
+    private List<PartitionedEventBus> partitionedEventBusList;
 
     /**
-     * Asynchronous executors.
+     * Services started by the other layers, stopped with the application.
      */
-    private List<ExecutorService> asyncExecutorList;
+    private List<Service> serviceList = new CopyOnWriteArrayList<Service>();
     
     /**
      * Private constructor.
      */
     private AppContext() {
-        resetEventBus();
+        initEventBus();
         
         feedService = new FeedService();
         feedService.startAndWait();
@@ -91,32 +105,41 @@ public class AppContext {
         Config luceneStorageConfig = configDao.getById(ConfigType.LUCENE_DIRECTORY_STORAGE);
         indexingService = new IndexingService(luceneStorageConfig != null ? luceneStorageConfig.getValue() : null);
         indexingService.startAndWait();
-        articleIndexingService = new ArticleIndexingService(luceneStorageConfig != null ? luceneStorageConfig.getValue() : null);
-        articleIndexingService.startAndWait();
-        directoryIndexingService = new DirectoryIndexingService(luceneStorageConfig != null ? luceneStorageConfig.getValue() : null);
-        directoryIndexingService.startAndWait();
+
+        counterService = new CounterService();
+        counterService.startAndWait();
     }
     
     /**
-     * (Re)-initializes the event buses.
+     * Initializes the event buses.
      */
-    private void resetEventBus() {
+    private void initEventBus() {
         eventBus = new EventBus();
         eventBus.register(new DeadEventListener());
         
-        asyncExecutorList = new ArrayList<ExecutorService>();
+        partitionedEventBusList = new ArrayList<PartitionedEventBus>();
         
-        asyncEventBus = newAsyncEventBus();
+        // The imports post articles to the generic bus, drain them first
+        importEventBus = newAsyncEventBus("import", 2, 100);
+        importEventBus.register(new SubscriptionImportAsyncListener());
+
+        // Articles are indexed in parallel, in order for each feed
+        int indexThreadCount = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        asyncEventBus = newAsyncEventBus("async", 1, 1000);
+        if (asyncEventBus instanceof PartitionedEventBus) {
+            ((PartitionedEventBus) asyncEventBus)
+                    .addPool("index", indexThreadCount, 1000,
+                            ArticleCreatedAsyncEvent.class, ArticleUpdatedAsyncEvent.class, ArticleDeletedAsyncEvent.class)
+                    .addPool("rebuild", 1, 10, RebuildIndexAsyncEvent.class)
+                    .addPool("favicon", 2, 1000, FaviconUpdateRequestedEvent.class);
+        }
         asyncEventBus.register(new ArticleCreatedAsyncListener());
         asyncEventBus.register(new ArticleUpdatedAsyncListener());
         asyncEventBus.register(new ArticleDeletedAsyncListener());
         asyncEventBus.register(new RebuildIndexAsyncListener());
         asyncEventBus.register(new FaviconUpdateRequestedAsyncListener());
 
-        mailEventBus = newAsyncEventBus();
-
-        importEventBus = newAsyncEventBus();
-        importEventBus.register(new SubscriptionImportAsyncListener());
+        mailEventBus = newAsyncEventBus("mail", 1, 1000);
     }
 
     /**
@@ -136,38 +159,76 @@ public class AppContext {
      * /!\ Must be used only in unit tests and never a multi-user environment. 
      */
     public void waitForAsync() {
-        if (EnvironmentUtil.isUnitTest()) {
-            return;
+        for (PartitionedEventBus partitionedEventBus : partitionedEventBusList) {
+            partitionedEventBus.drain(60, TimeUnit.SECONDS);
         }
-        try {
-            for (ExecutorService executor : asyncExecutorList) {
-                // Shutdown executor, don't accept any more tasks (can cause error with nested events)
-                try {
-                    executor.shutdown();
-                    executor.awaitTermination(60, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    // NOP
-                }
+        indexingService.getIndexUpdateBatcher().flush();
+    }
+
+    /**
+     * Resumes the imports interrupted by the last shutdown.
+     * Must be called in a transactional context.
+     */
+    public void resumeImportJobs() {
+        UserDao userDao = new UserDao();
+        for (Job job : new JobDao().findInterruptedJob(Constants.JOB_IMPORT)) {
+            User user = userDao.getById(job.getUserId());
+            if (user == null || user.getDeleteDate() != null) {
+                continue;
             }
-        } finally {
-            resetEventBus();
+            SubscriptionImportedEvent subscriptionImportedEvent = new SubscriptionImportedEvent();
+            subscriptionImportedEvent.setUser(user);
+            subscriptionImportedEvent.setJob(job);
+            importEventBus.post(subscriptionImportedEvent);
         }
     }
 
+    /**
+     * Registers a running service started by another layer, to stop it with the application.
+     * 
+     * @param service Service
+     */
+    public void addService(Service service) {
+        serviceList.add(service);
+    }
+
+    /**
+     * Stops the application: stops the feed synchronization posting the events, handles the queued events,
+     * then stops the services.
+     * The next call to {@link #getInstance()} creates a new context.
+     */
+    public static synchronized void shutDown() {
+        if (instance == null) {
+            return;
+        }
+        instance.feedService.stopAndWait();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT);
+        for (PartitionedEventBus partitionedEventBus : instance.partitionedEventBusList) {
+            partitionedEventBus.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        instance.indexingService.stopAndWait();
+        instance.counterService.stopAndWait();
+        for (Service service : instance.serviceList) {
+            service.stopAndWait();
+        }
+        instance = null;
+    }
+
     /**
      * Creates a new asynchronous event bus.
      * 
+     * @param name Bus name
+     * @param threadCount Number of threads of the default pool
+     * @param queueCapacity Capacity of the queue of each thread
      * @return Async event bus
      */
-    private EventBus newAsyncEventBus() {
+    private EventBus newAsyncEventBus(String name, int threadCount, int queueCapacity) {
         if (EnvironmentUtil.isUnitTest()) {
             return new EventBus();
         } else {
-            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
-                    0L, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>());
-            asyncExecutorList.add(executor);
-            return new AsyncEventBus(executor);
+            PartitionedEventBus partitionedEventBus = new PartitionedEventBus(name, threadCount, queueCapacity);
+            partitionedEventBusList.add(partitionedEventBus);
+            return partitionedEventBus;
         }
     }
 
@@ -226,20 +287,29 @@ public class AppContext {
     }
 
     /**
-     * Getter of articleIndexingService.
+     * Getter of counterService.
+     *
+     * @return counterService
+     */
+    public CounterService getCounterService() {
+        return counterService;
+    }
+
+    /**
+     * Getter of partitionedEventBusList.
      *
-     * @return articleIndexingService
+     * @return partitionedEventBusList
      */
-    public ArticleIndexingService getArticleIndexingService() {
-        return articleIndexingService;
+    public List<PartitionedEventBus> getPartitionedEventBusList() {
+        return partitionedEventBusList;
     }
 
     /**
-     * Getter of directoryIndexingService.
+     * Getter of subscriptionTreeCache.
      *
-     * @return directoryIndexingService
+     * @return subscriptionTreeCache
      */
-    public DirectoryIndexingService getDirectoryIndexingService() {
-        return directoryIndexingService;
+    public SubscriptionTreeCache getSubscriptionTreeCache() {
+        return subscriptionTreeCache;
     }
 }
@@ -93,6 +93,12 @@ public class Article {
     @Column(name = "ART_ENCLOSURETYPE_C", length = 2000)
     private String enclosureType;
 
+    /**
+     * Hash of the article as read from the feed.
+     */
+    @Column(name = "ART_CONTENTHASH_C", length = 32)
+    private String contentHash;
+
     /**
      * Publication date.
      */
@@ -345,6 +351,24 @@ public class Article {
         this.enclosureType = enclosureType;
     }
 
+    /**
+     * Getter of contentHash.
+     *
+     * @return contentHash
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Setter of contentHash.
+     *
+     * @param contentHash contentHash
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /**
      * Getter of publicationDate.
      *
@@ -71,6 +71,36 @@ public class Feed {
     @Column(name = "FED_LASTFETCHDATE_D")
     private Date lastFetchDate;
     
+    /**
+     * Next fetch date.
+     */
+    @Column(name = "FED_NEXTFETCHDATE_D")
+    private Date nextFetchDate;
+    
+    /**
+     * Current polling interval in minutes.
+     */
+    @Column(name = "FED_FETCHINTERVAL_N")
+    private Integer fetchInterval;
+    
+    /**
+     * Entity tag of the last response.
+     */
+    @Column(name = "FED_ETAG_C", length = 250)
+    private String etag;
+    
+    /**
+     * Last modification date of the last response, as sent by the server.
+     */
+    @Column(name = "FED_LASTMODIFIED_C", length = 50)
+    private String lastModified;
+    
+    /**
+     * Hash of the last response body.
+     */
+    @Column(name = "FED_CONTENTHASH_C", length = 32)
+    private String contentHash;
+    
     /**
      * Deletion date.
      */
@@ -239,6 +269,96 @@ public class Feed {
         this.lastFetchDate = lastFetchDate;
     }
 
+    /**
+     * Getter of nextFetchDate.
+     *
+     * @return nextFetchDate
+     */
+    public Date getNextFetchDate() {
+        return nextFetchDate;
+    }
+
+    /**
+     * Setter of nextFetchDate.
+     *
+     * @param nextFetchDate nextFetchDate
+     */
+    public void setNextFetchDate(Date nextFetchDate) {
+        this.nextFetchDate = nextFetchDate;
+    }
+
+    /**
+     * Getter of fetchInterval.
+     *
+     * @return fetchInterval
+     */
+    public Integer getFetchInterval() {
+        return fetchInterval;
+    }
+
+    /**
+     * Setter of fetchInterval.
+     *
+     * @param fetchInterval fetchInterval
+     */
+    public void setFetchInterval(Integer fetchInterval) {
+        this.fetchInterval = fetchInterval;
+    }
+
+    /**
+     * Getter of etag.
+     *
+     * @return etag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Setter of etag.
+     *
+     * @param etag etag
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Getter of lastModified.
+     *
+     * @return lastModified
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Setter of lastModified.
+     *
+     * @param lastModified lastModified
+     */
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Getter of contentHash.
+     *
+     * @return contentHash
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Setter of contentHash.
+     *
+     * @param contentHash contentHash
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /**
      * Getter of deleteDate.
      *
@@ -56,7 +56,7 @@ public class FeedSubscription {
     /**
      * Number of unread articles in this subscription.
      */
-    @Column(name = "FES_UNREADCOUNT_N", nullable = false)
+    @Column(name = "FES_UNREADCOUNT_N", nullable = false, updatable = false)
     private Integer unreadCount;
 
     /**
@@ -60,6 +60,18 @@ public class Job {
     @Column(name = "JOB_DELETEDATE_D")
     private Date deleteDate;
     
+    /**
+     * Path of the file processed by the job, kept until the job ends.
+     */
+    @Column(name = "JOB_FILE_C", length = 500)
+    private String file;
+    
+    /**
+     * Number of items of the file already processed, where the job resumes after an interruption.
+     */
+    @Column(name = "JOB_CHECKPOINT_N", nullable = false)
+    private int checkpoint;
+    
     /**
      * Default constructor.
      */
@@ -203,6 +215,42 @@ public class Job {
         this.deleteDate = deleteDate;
     }
 
+    /**
+     * Getter of file.
+     *
+     * @return file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Setter of file.
+     *
+     * @param file file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Getter of checkpoint.
+     *
+     * @return checkpoint
+     */
+    public int getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Setter of checkpoint.
+     *
+     * @param checkpoint checkpoint
+     */
+    public void setCheckpoint(int checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
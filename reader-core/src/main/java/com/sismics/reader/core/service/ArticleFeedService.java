@@ -12,15 +12,16 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.sismics.reader.core.dao.jpa.ArticleDao;
-import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
 import com.sismics.reader.core.model.jpa.FeedSubscription;
 import com.sismics.reader.core.model.jpa.UserArticle;
+import com.sismics.reader.core.util.EntityManagerUtil;
 import com.sismics.reader.core.util.TransactionUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;;
@@ -78,14 +79,12 @@ public class ArticleFeedService extends AbstractScheduledService {
                 userArticle.setArticleId(userArticleDto.getArticleId());
                 userArticle.setUserId(userId);
                 userArticleDao.create(userArticle);
-                feedSubscription.setUnreadCount(feedSubscription.getUnreadCount() + 1);
-            } else if (userArticleDto.getReadTimestamp() == null) {
-                feedSubscription.setUnreadCount(feedSubscription.getUnreadCount() + 1);
             }
         }
 
-        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-        feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadCount());
+        // Count the new user articles, and the ones left from a previous subscription
+        EntityManagerUtil.flush();
+        AppContext.getInstance().getCounterService().reconcile(feedSubscription.getId());
     }
 
     /**
@@ -137,7 +136,10 @@ public class ArticleFeedService extends AbstractScheduledService {
         Date dateMin = new DateTime().withFieldAdded(DurationFieldType.days(), -1).toDate();
         for (ArticleDto newerLocalArticle : newerLocalArticles) {
             if (!newerArticleGuids.contains(newerLocalArticle.getGuid()) && newerLocalArticle.getCreateDate().after(dateMin)) {
-                removedArticleList.add(new Article(newerLocalArticle.getId()));
+                // The feed partitions the events of the removed articles
+                Article removedArticle = new Article(newerLocalArticle.getId());
+                removedArticle.setFeedId(newerLocalArticle.getFeedId());
+                removedArticleList.add(removedArticle);
             }
         }
         
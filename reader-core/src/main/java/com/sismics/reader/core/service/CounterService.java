@@ -0,0 +1,343 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.reader.core.constant.ConfigType;
+import com.sismics.reader.core.dao.jpa.ArticleDao;
+import com.sismics.reader.core.dao.jpa.ConfigDao;
+import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
+import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.Config;
+import com.sismics.reader.core.util.ConfigUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains the unread, total and starred article counters of the subscriptions.
+ * Changes are accumulated in memory as deltas once their transaction is committed, and flushed periodically
+ * in one update per subscription. The deltas of a failed flush are kept for the next one.
+ * The counters are recomputed from the user articles daily, to fix any drift (e.g. deltas lost on a crash).
+ *
+ * @author jtremeaux
+ */
+public class CounterService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(CounterService.class);
+
+    /**
+     * Delay between two flushes, in seconds.
+     */
+    private static final int FLUSH_INTERVAL = 10;
+
+    /**
+     * Delay between two reconciliations, in milliseconds.
+     */
+    private static final long RECONCILE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Pending deltas, by subscription ID.
+     */
+    private Map<String, CounterDelta> deltaMap = new HashMap<String, CounterDelta>();
+
+    /**
+     * Date of the last reconciliation, in milliseconds.
+     */
+    private volatile long lastReconcileTime;
+
+    @Override
+    protected void startUp() throws Exception {
+        TransactionUtil.handle(() -> lastReconcileTime = Long.parseLong(ConfigUtil.getConfigStringValue(ConfigType.COUNTER_RECONCILE_DATE)));
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        flush();
+    }
+
+    @Override
+    protected void runOneIteration() {
+        // Don't let Guava manage our exceptions, or they will be swallowed and the service will silently stop
+        try {
+            if (System.currentTimeMillis() - lastReconcileTime >= RECONCILE_INTERVAL) {
+                reconcile();
+            } else {
+                flush();
+            }
+        } catch (Throwable t) {
+            log.error("Error updating the subscription counters", t);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(0, FLUSH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds deltas to the counters of a subscription, once the current transaction is committed.
+     *
+     * @param feedSubscriptionId Subscription ID
+     * @param userId User ID owning the subscription
+     * @param unread Number of unread articles to add, may be negative
+     * @param total Number of articles to add, may be negative
+     * @param starred Number of starred articles to add, may be negative
+     */
+    public void add(final String feedSubscriptionId, final String userId, final int unread, final int total, final int starred) {
+        if (unread == 0 && total == 0 && starred == 0) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            synchronized (CounterService.this) {
+                CounterDelta delta = getDelta(feedSubscriptionId, userId);
+                delta.unread += unread;
+                delta.total += total;
+                delta.starred += starred;
+            }
+        });
+    }
+
+    /**
+     * Adds deltas to the counters of the subscriptions of a user to the feed of an article.
+     * Must be called in a transactional context.
+     *
+     * @param userId User ID
+     * @param articleId Article ID
+     * @param unread Number of unread articles to add, may be negative
+     * @param total Number of articles to add, may be negative
+     * @param starred Number of starred articles to add, may be negative
+     */
+    public void addArticle(String userId, String articleId, int unread, int total, int starred) {
+        ArticleDto article = new ArticleDao().findFirstByCriteria(new ArticleCriteria().setId(articleId));
+        if (article == null) {
+            return;
+        }
+        List<FeedSubscriptionDto> feedSubscriptionList = new FeedSubscriptionDao().findByCriteria(new FeedSubscriptionCriteria()
+                .setFeedId(article.getFeedId())
+                .setUserId(userId));
+        for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
+            add(feedSubscription.getId(), userId, unread, total, starred);
+        }
+    }
+
+    /**
+     * Marks all the articles of a subscription as read in its counters, once the current transaction is committed.
+     * The next flush recomputes the unread counter from the user articles, so that the unread deltas
+     * written by a concurrent flush don't apply on top of the reset.
+     *
+     * @param feedSubscriptionId Subscription ID
+     * @param userId User ID owning the subscription
+     */
+    public void resetUnread(final String feedSubscriptionId, final String userId) {
+        TransactionUtil.afterCommit(() -> {
+            synchronized (CounterService.this) {
+                CounterDelta delta = getDelta(feedSubscriptionId, userId);
+                delta.unread = 0;
+                delta.unreadReset = true;
+            }
+        });
+    }
+
+    /**
+     * Adds the pending deltas to the counters of a subscription read from the database.
+     *
+     * @param feedSubscription Subscription
+     */
+    public synchronized void applyPending(FeedSubscriptionDto feedSubscription) {
+        CounterDelta delta = deltaMap.get(feedSubscription.getId());
+        if (delta != null) {
+            int unreadCount = delta.unreadReset ? 0 : feedSubscription.getUnreadUserArticleCount();
+            feedSubscription.setUnreadUserArticleCount(unreadCount + delta.unread);
+            feedSubscription.setTotalUserArticleCount(feedSubscription.getTotalUserArticleCount() + delta.total);
+            feedSubscription.setStarredUserArticleCount(feedSubscription.getStarredUserArticleCount() + delta.starred);
+        }
+    }
+
+    /**
+     * Writes the pending deltas to the database, in their own transaction.
+     * The deltas are kept for the next flush if the transaction fails.
+     */
+    public void flush() {
+        final Map<String, CounterDelta> flushedDeltaMap;
+        synchronized (this) {
+            if (deltaMap.isEmpty()) {
+                return;
+            }
+            flushedDeltaMap = deltaMap;
+            deltaMap = new HashMap<String, CounterDelta>();
+        }
+
+        boolean committed = false;
+        try {
+            committed = TransactionUtil.handle(() -> {
+                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+                for (Map.Entry<String, CounterDelta> entry : flushedDeltaMap.entrySet()) {
+                    CounterDelta delta = entry.getValue();
+                    if (delta.unreadReset) {
+                        // The unread deltas since the reset are already in the user articles
+                        feedSubscriptionDao.reconcileUnreadCount(entry.getKey());
+                        feedSubscriptionDao.incrementCounts(entry.getKey(), 0, delta.total, delta.starred);
+                    } else {
+                        feedSubscriptionDao.incrementCounts(entry.getKey(), delta.unread, delta.total, delta.starred);
+                    }
+                }
+            });
+        } finally {
+            if (!committed) {
+                restore(flushedDeltaMap);
+            }
+        }
+        if (!committed) {
+            return;
+        }
+
+        // The pending deltas are not added to the trees anymore, rebuild them from the database
+        Set<String> userIdSet = new HashSet<String>();
+        for (CounterDelta delta : flushedDeltaMap.values()) {
+            userIdSet.add(delta.userId);
+        }
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(userIdSet);
+    }
+
+    /**
+     * Recomputes the counters of all the subscriptions from the user articles, in their own transaction.
+     * The date of the reconciliation is stored with the counters, to schedule the next one across restarts.
+     */
+    public void reconcile() {
+        final long startTime = System.currentTimeMillis();
+
+        // The pending deltas are committed, so already in the user articles
+        final Map<String, CounterDelta> reconciledDeltaMap;
+        synchronized (this) {
+            reconciledDeltaMap = deltaMap;
+            deltaMap = new HashMap<String, CounterDelta>();
+        }
+
+        final int[] count = new int[1];
+        boolean committed = false;
+        try {
+            committed = TransactionUtil.handle(() -> {
+                count[0] = new FeedSubscriptionDao().reconcileCounts(null);
+                Config config = new ConfigDao().getById(ConfigType.COUNTER_RECONCILE_DATE);
+                if (config != null) {
+                    config.setValue(String.valueOf(startTime));
+                }
+            });
+        } finally {
+            if (!committed) {
+                restore(reconciledDeltaMap);
+            }
+        }
+        if (!committed) {
+            return;
+        }
+        lastReconcileTime = startTime;
+
+        if (log.isInfoEnabled()) {
+            log.info(MessageFormat.format("Reconciled the counters of {0} subscriptions in {1}ms", count[0], System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * Recomputes the counters of a subscription from the user articles.
+     * Must be called in a transactional context.
+     *
+     * @param feedSubscriptionId Subscription ID
+     */
+    public void reconcile(String feedSubscriptionId) {
+        synchronized (this) {
+            deltaMap.remove(feedSubscriptionId);
+        }
+        new FeedSubscriptionDao().reconcileCounts(feedSubscriptionId);
+    }
+
+    /**
+     * Returns the pending deltas of a subscription, created if needed.
+     *
+     * @param feedSubscriptionId Subscription ID
+     * @param userId User ID owning the subscription
+     * @return Deltas
+     */
+    private CounterDelta getDelta(String feedSubscriptionId, String userId) {
+        CounterDelta delta = deltaMap.get(feedSubscriptionId);
+        if (delta == null) {
+            delta = new CounterDelta(userId);
+            deltaMap.put(feedSubscriptionId, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Puts back deltas which could not be written, before the deltas added since.
+     *
+     * @param restoredDeltaMap Deltas by subscription ID
+     */
+    private synchronized void restore(Map<String, CounterDelta> restoredDeltaMap) {
+        for (Map.Entry<String, CounterDelta> entry : restoredDeltaMap.entrySet()) {
+            CounterDelta restoredDelta = entry.getValue();
+            CounterDelta delta = deltaMap.get(entry.getKey());
+            if (delta == null) {
+                deltaMap.put(entry.getKey(), restoredDelta);
+                continue;
+            }
+            if (!delta.unreadReset) {
+                delta.unread += restoredDelta.unread;
+                delta.unreadReset = restoredDelta.unreadReset;
+            }
+            delta.total += restoredDelta.total;
+            delta.starred += restoredDelta.starred;
+        }
+    }
+
+    /**
+     * Deltas of the counters of a subscription.
+     */
+    private static class CounterDelta {
+        /**
+         * User ID owning the subscription.
+         */
+        private final String userId;
+
+        /**
+         * Number of unread articles.
+         */
+        private int unread;
+
+        /**
+         * Number of articles.
+         */
+        private int total;
+
+        /**
+         * Number of starred articles.
+         */
+        private int starred;
+
+        /**
+         * True if all the articles were marked as read before the unread delta.
+         */
+        private boolean unreadReset;
+
+        /**
+         * Constructor of CounterDelta.
+         *
+         * @param userId User ID owning the subscription
+         */
+        private CounterDelta(String userId) {
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.reader.core.model.jpa.Article;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the polling interval of each feed.
+ * Busy feeds are polled more often, quiet feeds and failing feeds back off up to the maximum interval.
+ *
+ * @author jtremeaux
+ */
+public class FeedPollingPolicy {
+    /**
+     * Polling interval of a feed without history, in minutes.
+     */
+    private static final int DEFAULT_INTERVAL = 10;
+
+    /**
+     * Number of recent articles used to estimate the publication cadence.
+     */
+    private static final int CADENCE_ARTICLE_COUNT = 10;
+
+    /**
+     * Shortest polling interval, in minutes.
+     */
+    private final int minInterval;
+
+    /**
+     * Longest polling interval, in minutes.
+     */
+    private final int maxInterval;
+
+    /**
+     * Constructor of FeedPollingPolicy.
+     *
+     * @param minInterval Shortest polling interval, in minutes
+     * @param maxInterval Longest polling interval, in minutes
+     */
+    public FeedPollingPolicy(int minInterval, int maxInterval) {
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+    }
+
+    /**
+     * Estimates the mean time between two publications from the articles dates.
+     * Must be called before the missing publication dates are completed.
+     *
+     * @param articleList Articles read from the feed
+     * @return Cadence in minutes, or null if it cannot be estimated
+     */
+    public static Integer getPublicationCadence(List<Article> articleList) {
+        List<Date> dateList = new ArrayList<Date>();
+        for (Article article : articleList) {
+            if (article.getPublicationDate() != null) {
+                dateList.add(article.getPublicationDate());
+            }
+        }
+        if (dateList.size() < 2) {
+            return null;
+        }
+        Collections.sort(dateList, Collections.reverseOrder());
+        dateList = dateList.subList(0, Math.min(dateList.size(), CADENCE_ARTICLE_COUNT));
+        long span = dateList.get(0).getTime() - dateList.get(dateList.size() - 1).getTime();
+        if (span <= 0) {
+            return null;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toMinutes(span / (dateList.size() - 1)));
+    }
+
+    /**
+     * Computes the polling interval after a successful fetch.
+     *
+     * @param previousInterval Previous polling interval in minutes, or null if never fetched
+     * @param updatePeriod Update period advertised by the publisher in minutes, or null
+     * @param cadence Publication cadence in minutes, or null
+     * @param newArticleCount Number of new articles found by this fetch
+     * @return Polling interval in minutes
+     */
+    public int getInterval(Integer previousInterval, Integer updatePeriod, Integer cadence, int newArticleCount) {
+        long previous = previousInterval != null ? previousInterval : DEFAULT_INTERVAL;
+        long interval;
+        if (newArticleCount > 0) {
+            // Sample twice per publication to pick up new articles quickly
+            interval = cadence != null ? cadence / 2 : previous / 2;
+        } else {
+            // Nothing new, back off
+            interval = Math.max(cadence != null ? cadence / 2 : 0, previous * 3 / 2);
+        }
+        if (updatePeriod != null) {
+            // Don't poll more often than the publisher asks to
+            interval = Math.max(interval, updatePeriod);
+        }
+        return clamp(interval);
+    }
+
+    /**
+     * Computes the polling interval after consecutive failures.
+     *
+     * @param previousInterval Previous polling interval in minutes, or null if never fetched
+     * @param failureCount Number of consecutive failures
+     * @return Polling interval in minutes
+     */
+    public int getFailureInterval(Integer previousInterval, int failureCount) {
+        long previous = previousInterval != null ? previousInterval : DEFAULT_INTERVAL;
+        long backoff = (long) minInterval << Math.min(Math.max(failureCount, 1), 20);
+        return clamp(Math.max(previous, backoff));
+    }
+
+    /**
+     * Returns the next fetch date for a polling interval.
+     *
+     * @param interval Polling interval in minutes
+     * @return Next fetch date
+     */
+    public Date getNextFetchDate(int interval) {
+        return new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(interval));
+    }
+
+    /**
+     * Bounds a polling interval.
+     *
+     * @param interval Polling interval in minutes
+     * @return Bounded polling interval
+     */
+    private int clamp(long interval) {
+        return (int) Math.max(minInterval, Math.min(maxInterval, interval));
+    }
+
+    /**
+     * Getter of minInterval.
+     *
+     * @return minInterval
+     */
+    public int getMinInterval() {
+        return minInterval;
+    }
+}
@@ -1,53 +1,30 @@
 package com.sismics.reader.core.service;
 
-import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractScheduledService;
-import com.sismics.reader.core.dao.file.html.FeedChooserStrategy;
-import com.sismics.reader.core.dao.file.html.RssExtractor;
 import com.sismics.reader.core.dao.file.rss.RssReader;
 import com.sismics.reader.core.dao.jpa.*;
-import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.FeedCriteria;
-import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
-import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
-import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.jpa.dto.FeedDto;
-import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
-import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
-import com.sismics.reader.core.event.ArticleCreatedAsyncEvent;
-import com.sismics.reader.core.event.ArticleDeletedAsyncEvent;
-import com.sismics.reader.core.event.ArticleUpdatedAsyncEvent;
-import com.sismics.reader.core.event.FaviconUpdateRequestedEvent;
-import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.service.ingest.*;
 import com.sismics.reader.core.strategy.FeedParsingStrategy.HtmlPageParsingStrategy;
 import com.sismics.reader.core.strategy.FeedParsingStrategy.NewsApiParsingStrategy;
 import com.sismics.reader.core.strategy.FeedParsingStrategy.RssAtomParsingStrategy;
-import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.constant.ConfigType;
+import com.sismics.reader.core.util.ConfigUtil;
 import com.sismics.reader.core.util.TransactionUtil;
-import com.sismics.reader.core.util.http.ReaderHttpClient;
-import com.sismics.reader.core.util.sanitizer.ArticleSanitizer;
-import com.sismics.reader.core.util.sanitizer.TextSanitizer;
-import com.sismics.util.UrlUtil;
-import com.sismics.reader.core.constant.Constants;
 import com.sismics.reader.core.strategy.FeedParsingStrategy;
 
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
-import java.io.InputStream;
 import java.net.ConnectException;
-import java.net.URL;
 import java.net.UnknownHostException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import com.newsreader.NewsApiAdapter;
 
 /**
  * Feed service.
@@ -59,7 +36,21 @@ public class FeedService extends AbstractScheduledService {
      * Logger.
      */
     private static final Logger log = LoggerFactory.getLogger(FeedService.class);
-    boolean firstTime = true;
+
+    /**
+     * Concurrent feed synchronizer, created on the first cycle.
+     */
+    private volatile FeedSynchronizer feedSynchronizer;
+
+    /**
+     * Feed polling policy, created on the first cycle.
+     */
+    private volatile FeedPollingPolicy feedPollingPolicy;
+
+    /**
+     * Feed ingest pipeline, created on first use.
+     */
+    private volatile IngestPipeline ingestPipeline;
 
     @Override
     protected void startUp() throws Exception {
@@ -67,13 +58,16 @@ public class FeedService extends AbstractScheduledService {
 
     @Override
     protected void shutDown() throws Exception {
+        if (feedSynchronizer != null) {
+            feedSynchronizer.shutdown();
+        }
     }
 
     @Override
     protected void runOneIteration() {
         // Don't let Guava manage our exceptions, or they will be swallowed and the service will silently stop
         try {
-            TransactionUtil.handle(() -> synchronizeAllFeeds());
+            TransactionUtil.handle(() -> synchronizeDueFeeds());
         } catch (Throwable t) {
             log.error("Error synchronizing feeds", t);
         }
@@ -81,37 +75,42 @@ public class FeedService extends AbstractScheduledService {
     
     @Override
     protected Scheduler scheduler() {
-        // TODO Implement a better schedule strategy... Use update period specified in the feed if avail & use last update date from feed to backoff
-        return Scheduler.newFixedDelaySchedule(0, 10, TimeUnit.MINUTES);
+        // Each feed has its own polling interval, only the feeds due are synchronized at each iteration
+        return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.MINUTES);
     }
     
     /**
-     * Synchronize all feeds.
+     * Synchronize all feeds, regardless of their schedule.
      */
     public void synchronizeAllFeeds() {
         // Update all feeds currently having subscribed users
         FeedDao feedDao = new FeedDao();
         FeedCriteria feedCriteria = new FeedCriteria()
                 .setWithUserSubscription(true);
-        List<FeedDto> feedList = feedDao.findByCriteria(feedCriteria);
-        List<FeedSynchronization> feedSynchronizationList = new ArrayList<FeedSynchronization>();
-        for (FeedDto feed : feedList) {
-            FeedSynchronization feedSynchronization = new FeedSynchronization();
-            feedSynchronization.setFeedId(feed.getId());
-            feedSynchronization.setSuccess(true);
-            long startTime = System.currentTimeMillis();
-            
-            try {
-                synchronize(feed.getRssUrl());
-            } catch (Exception e) {
-                log.error(MessageFormat.format("Error synchronizing feed at URL: {0}", feed.getRssUrl()), e);
-                feedSynchronization.setSuccess(false);
-                feedSynchronization.setMessage(ExceptionUtils.getStackTrace(e));
-            }
-            feedSynchronization.setDuration((int) (System.currentTimeMillis() - startTime));
-            feedSynchronizationList.add(feedSynchronization);
-            TransactionUtil.commit();
+        synchronizeFeeds(feedDao.findByCriteria(feedCriteria));
+    }
+
+    /**
+     * Synchronize the feeds due for a fetch, most overdue first.
+     */
+    public void synchronizeDueFeeds() {
+        FeedDao feedDao = new FeedDao();
+        FeedCriteria feedCriteria = new FeedCriteria()
+                .setWithUserSubscription(true)
+                .setNextFetchDateBefore(new Date());
+        synchronizeFeeds(feedDao.findByCriteria(feedCriteria));
+    }
+
+    /**
+     * Synchronize a list of feeds.
+     *
+     * @param feedList Feeds to synchronize
+     */
+    private void synchronizeFeeds(List<FeedDto> feedList) {
+        if (feedList.isEmpty()) {
+            return;
         }
+        List<FeedSynchronization> feedSynchronizationList = getFeedSynchronizer().synchronize(feedList);
 
         // If all feeds have failed, then we infer that the network is probably down
         FeedSynchronizationDao feedSynchronizationDao = new FeedSynchronizationDao();
@@ -123,410 +122,176 @@ public class FeedService extends AbstractScheduledService {
             }
         }
 
-        if(firstTime){
-            firstTime = false;
-            String filePath = "./src/main/webapp/custom-feeds.json"; // Replace with the actual file path
-            try (FileWriter fileWriter = new FileWriter(filePath)) {
-                fileWriter.write(""); // Overwrite the file with an empty string
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        // Successful feeds are already rescheduled, reschedule the failed ones
+        Map<String, FeedDto> feedMap = new HashMap<String, FeedDto>();
+        for (FeedDto feed : feedList) {
+            feedMap.put(feed.getId(), feed);
         }
-        // Update the status of all synchronized feeds
+        FeedPollingPolicy feedPollingPolicy = getFeedPollingPolicy();
+        FeedDao feedDao = new FeedDao();
         if (!networkDown) {
+            // Update the status of all synchronized feeds
             for (FeedSynchronization feedSynchronization : feedSynchronizationList) {
                 feedSynchronizationDao.create(feedSynchronization);
                 feedSynchronizationDao.deleteOldFeedSynchronization(feedSynchronization.getFeedId(), 600);
+
+                if (!feedSynchronization.isSuccess()) {
+                    // Back off exponentially from feeds failing repeatedly
+                    FeedDto feed = feedMap.get(feedSynchronization.getFeedId());
+                    int failureCount = getConsecutiveFailureCount(feedSynchronizationDao.findByFeedId(feed.getId()));
+                    int interval = feedPollingPolicy.getFailureInterval(feed.getFetchInterval(), failureCount);
+                    feedDao.updateSchedule(feed.getId(), feedPollingPolicy.getNextFetchDate(interval), feed.getFetchInterval());
+                }
+            }
+        } else {
+            // Retry soon, the feeds themselves are not to blame
+            for (FeedDto feed : feedList) {
+                feedDao.updateSchedule(feed.getId(), feedPollingPolicy.getNextFetchDate(feedPollingPolicy.getMinInterval()), feed.getFetchInterval());
             }
-            TransactionUtil.commit();
         }
+        TransactionUtil.commit();
     }
 
     /**
-     * Synchronize the feed to local database.
-     * 
-     * @param url RSS url of a feed or page containing a feed to synchronize
+     * Returns the number of failures since the last successful synchronization.
+     *
+     * @param feedSynchronizationList Synchronizations of a feed, most recent first
+     * @return Number of consecutive failures
      */
-    public Feed synchronize(String url) throws Exception {
-        long startTime = System.currentTimeMillis();
-        
-        // Parse the feed
-        RssReader rssReader = parseFeedOrPage(url, true);
-        Feed newFeed = rssReader.getFeed();
-        List<Article> articleList = rssReader.getArticleList();
-        ArticleFeedService articleFeedService = new ArticleFeedService();
-        articleFeedService.completeArticleList(articleList);
-
-        // Get articles that were removed from RSS compared to last fetch
-        List<Article> articleToRemove = articleFeedService.getArticleToRemove(articleList);
-        if (!articleToRemove.isEmpty()) {
-            for (Article article : articleToRemove) {
-                // Update unread counts
-                // FIXME count be optimized in 1 query instead of a*s*2
-                List<UserArticleDto> userArticleDtoList = new UserArticleDao()
-                        .findByCriteria(new UserArticleCriteria()
-                                .setArticleId(article.getId())
-                                .setFetchAllFeedSubscription(true) // to test: subscribe another user, u2, read u1, not u2, u1 is decremented anyway
-                                .setUnread(true));
-
-                for (UserArticleDto userArticleDto : userArticleDtoList) {
-                    FeedSubscriptionDto feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
-                            .setId(userArticleDto.getFeedSubscriptionId()));
-                    if (feedSubscriptionDto != null) {
-                        new FeedSubscriptionDao().updateUnreadCount(feedSubscriptionDto.getId(), feedSubscriptionDto.getUnreadUserArticleCount() - 1);
-                    }
-                }
-            }
-
-            // Delete articles that don't exist anymore
-            for (Article article: articleToRemove) {
-                new ArticleDao().delete(article.getId());
+    private int getConsecutiveFailureCount(List<FeedSynchronization> feedSynchronizationList) {
+        int failureCount = 0;
+        for (FeedSynchronization feedSynchronization : feedSynchronizationList) {
+            if (feedSynchronization.isSuccess()) {
+                break;
             }
-
-            // Removed articles from index
-            ArticleDeletedAsyncEvent articleDeletedAsyncEvent = new ArticleDeletedAsyncEvent();
-            articleDeletedAsyncEvent.setArticleList(articleToRemove);
-            AppContext.getInstance().getAsyncEventBus().post(articleDeletedAsyncEvent);
+            failureCount++;
         }
+        return failureCount;
+    }
 
-        // Create the feed if necessary (not created and currently in use by another user)
-        FeedDao feedDao = new FeedDao();
-        String rssUrl = newFeed.getRssUrl();
-        Feed feed = feedDao.getByRssUrl(rssUrl);
-        if (feed == null) {
-            feed = new Feed();
-            feed.setUrl(newFeed.getUrl());
-            feed.setBaseUri(newFeed.getBaseUri());
-            feed.setRssUrl(rssUrl);
-            feed.setTitle(StringUtils.abbreviate(newFeed.getTitle(), 100));
-            feed.setLanguage(newFeed.getLanguage() != null && newFeed.getLanguage().length() <= 10 ? newFeed.getLanguage() : null);
-            feed.setDescription(StringUtils.abbreviate(newFeed.getDescription(), 4000));
-            feed.setLastFetchDate(new Date());
-            feedDao.create(feed);
-            EntityManagerUtil.flush();
-
-            // Try to download the feed's favicon
-            FaviconUpdateRequestedEvent faviconUpdateRequestedEvent = new FaviconUpdateRequestedEvent();
-            faviconUpdateRequestedEvent.setFeed(feed);
-            AppContext.getInstance().getAsyncEventBus().post(faviconUpdateRequestedEvent);
-        } else {
-            FaviconFeedService faviconFeedService = new FaviconFeedService();   
-            // Try to update the feed's favicon every week
-            boolean updateFavicon = faviconFeedService.isFaviconUpdated(feed);
-
-            // Update metadata
-            feed.setUrl(newFeed.getUrl());
-            feed.setBaseUri(newFeed.getBaseUri());
-            feed.setTitle(StringUtils.abbreviate(newFeed.getTitle(), 100));
-            feed.setLanguage(newFeed.getLanguage() != null && newFeed.getLanguage().length() <= 10 ? newFeed.getLanguage() : null);
-            feed.setDescription(StringUtils.abbreviate(newFeed.getDescription(), 4000));
-            feed.setLastFetchDate(new Date());
-            feedDao.update(feed);
-
-            // Update the favicon
-            if (updateFavicon) {
-                FaviconUpdateRequestedEvent faviconUpdateRequestedEvent = new FaviconUpdateRequestedEvent();
-                faviconUpdateRequestedEvent.setFeed(feed);
-                AppContext.getInstance().getAsyncEventBus().post(faviconUpdateRequestedEvent);
+    /**
+     * Returns the concurrent feed synchronizer, creating it from the configuration if needed.
+     * Must be called in a transactional context.
+     *
+     * @return Feed synchronizer
+     */
+    public FeedSynchronizer getFeedSynchronizer() {
+        if (feedSynchronizer == null) {
+            synchronized (this) {
+                if (feedSynchronizer == null) {
+                    feedSynchronizer = new FeedSynchronizer(this,
+                            ConfigUtil.getConfigIntegerValue(ConfigType.FEED_SYNC_THREAD_COUNT),
+                            ConfigUtil.getConfigIntegerValue(ConfigType.FEED_SYNC_MAX_IN_FLIGHT),
+                            ConfigUtil.getConfigIntegerValue(ConfigType.FEED_SYNC_MAX_PER_HOST));
+                }
             }
         }
-        
-        // Update existing articles
-        Map<String, Article> articleMap = new HashMap<String, Article>();
-        for (Article article : articleList) {
-            articleMap.put(article.getGuid(), article);
-        }
-
-        List<String> guidIn = new ArrayList<String>();
-        for (Article article : articleList) {
-            guidIn.add(article.getGuid());
-        }
-        
-        ArticleSanitizer sanitizer = new ArticleSanitizer();
-        ArticleDao articleDao = new ArticleDao();
-        if (!guidIn.isEmpty()) {
-            ArticleCriteria articleCriteria = new ArticleCriteria()
-                    .setFeedId(feed.getId())
-                    .setGuidIn(guidIn);
-            List<ArticleDto> currentArticleDtoList = articleDao.findByCriteria(articleCriteria);
-            List<Article> articleUpdatedList = new ArrayList<Article>();
-            for (ArticleDto currentArticle : currentArticleDtoList) {
-                Article newArticle = articleMap.remove(currentArticle.getGuid());
-                
-                Article article = new Article();
-                article.setPublicationDate(currentArticle.getPublicationDate());
-                article.setId(currentArticle.getId());
-                article.setFeedId(feed.getId());
-                article.setUrl(newArticle.getUrl());
-                article.setTitle(StringUtils.abbreviate(TextSanitizer.sanitize(newArticle.getTitle()), 4000));
-                article.setCreator(StringUtils.abbreviate(newArticle.getCreator(), 200));
-                String baseUri = UrlUtil.getBaseUri(feed, newArticle);
-                article.setDescription(sanitizer.sanitize(baseUri, newArticle.getDescription()));
-                article.setCommentUrl(newArticle.getCommentUrl());
-                article.setCommentCount(newArticle.getCommentCount());
-                article.setEnclosureUrl(newArticle.getEnclosureUrl());
-                article.setEnclosureLength(newArticle.getEnclosureLength());
-                article.setEnclosureType(newArticle.getEnclosureType());
+        return feedSynchronizer;
+    }
 
-                if (!Strings.nullToEmpty(currentArticle.getTitle()).equals(Strings.nullToEmpty(article.getTitle())) ||
-                        !Strings.nullToEmpty(currentArticle.getDescription()).equals(Strings.nullToEmpty(article.getDescription()))) {
-                    articleDao.update(article);
-                    articleUpdatedList.add(article);
+    /**
+     * Returns the feed polling policy, creating it from the configuration if needed.
+     * Must be called in a transactional context.
+     *
+     * @return Feed polling policy
+     */
+    public FeedPollingPolicy getFeedPollingPolicy() {
+        if (feedPollingPolicy == null) {
+            synchronized (this) {
+                if (feedPollingPolicy == null) {
+                    feedPollingPolicy = new FeedPollingPolicy(
+                            ConfigUtil.getConfigIntegerValue(ConfigType.FEED_SYNC_MIN_INTERVAL),
+                            ConfigUtil.getConfigIntegerValue(ConfigType.FEED_SYNC_MAX_INTERVAL));
                 }
             }
-            
-            // Update indexed article
-            if (!articleUpdatedList.isEmpty()) {
-                ArticleUpdatedAsyncEvent articleUpdatedAsyncEvent = new ArticleUpdatedAsyncEvent();
-                articleUpdatedAsyncEvent.setArticleList(articleUpdatedList);
-                AppContext.getInstance().getAsyncEventBus().post(articleUpdatedAsyncEvent);
-            }
         }
-        
-        // Create new articles
-        if (!articleMap.isEmpty()) {
-            FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
-                    .setFeedId(feed.getId());
-            
-            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-            List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-            
-            UserArticleDao userArticleDao = new UserArticleDao();
-            for (Article article : articleMap.values()) {
-                // Create the new article
-                article.setFeedId(feed.getId());
-                article.setTitle(StringUtils.abbreviate(TextSanitizer.sanitize(article.getTitle()), 4000));
-                article.setCreator(StringUtils.abbreviate(article.getCreator(), 200));
-                String baseUri = UrlUtil.getBaseUri(feed, article);
-                article.setDescription(sanitizer.sanitize(baseUri, article.getDescription()));
-                articleDao.create(article);
-    
-                // Create the user articles eagerly for users already subscribed
-                // FIXME count be optimized in 1 query instad of a*s
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
-                    UserArticle userArticle = new UserArticle();
-                    userArticle.setArticleId(article.getId());
-                    userArticle.setUserId(feedSubscription.getUserId());
-                    userArticleDao.create(userArticle);
+        return feedPollingPolicy;
+    }
 
-                    feedSubscription.setUnreadUserArticleCount(feedSubscription.getUnreadUserArticleCount() + 1);
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount());
+    /**
+     * Returns the feed ingest pipeline.
+     *
+     * @return Ingest pipeline
+     */
+    public IngestPipeline getIngestPipeline() {
+        if (ingestPipeline == null) {
+            synchronized (this) {
+                if (ingestPipeline == null) {
+                    ingestPipeline = new IngestPipeline(Lists.<IngestStage>newArrayList(
+                            new FetchStage(this),
+                            new NormalizeStage(),
+                            new DiffStage(),
+                            new SanitizeStage(),
+                            new PersistStage(this),
+                            new FanOutStage(),
+                            new IndexStage()));
                 }
             }
-
-            // Add new articles to the index
-            ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
-            articleCreatedAsyncEvent.setArticleList(Lists.newArrayList(articleMap.values()));
-            AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
         }
-
-        long endTime = System.currentTimeMillis();
-        if (log.isInfoEnabled()) {
-            log.info(MessageFormat.format("Synchronized feed at URL {0} in {1}ms, {2} articles added, {3} deleted", url, endTime - startTime, articleMap.size(), articleToRemove.size()));
-        }
-        
-        return feed;
+        return ingestPipeline;
     }
 
-
+    /**
+     * Synchronize the feed to local database.
+     * 
+     * @param url RSS url of a feed or page containing a feed to synchronize
+     */
+    public Feed synchronize(String url) throws Exception {
+        IngestContext context = new IngestContext(url);
+        getIngestPipeline().run(context);
+        return context.getFeed();
+    }
 
     /**
      * Synchronize the feed to local database.
      * 
-     * @param rssReader RSS url of a feed or page containing a feed to synchronize
+     * @param rssReader Parsed feed to synchronize
      */
     public Feed synchronize(RssReader rssReader) {
-        long startTime = System.currentTimeMillis();
-        
-        // Parse the feed
-        Feed newFeed = rssReader.getFeed();
-        String url = newFeed.getRssUrl();
-        List<Article> articleList = rssReader.getArticleList();
-        ArticleFeedService articleFeedService = new ArticleFeedService();
-        articleFeedService.completeArticleList(articleList);
-
-        // Get articles that were removed from RSS compared to last fetch
-        List<Article> articleToRemove = articleFeedService.getArticleToRemove(articleList);
-        if (!articleToRemove.isEmpty()) {
-            for (Article article : articleToRemove) {
-                // Update unread counts
-                // FIXME count be optimized in 1 query instead of a*s*2
-                List<UserArticleDto> userArticleDtoList = new UserArticleDao()
-                        .findByCriteria(new UserArticleCriteria()
-                                .setArticleId(article.getId())
-                                .setFetchAllFeedSubscription(true) // to test: subscribe another user, u2, read u1, not u2, u1 is decremented anyway
-                                .setUnread(true));
-
-                for (UserArticleDto userArticleDto : userArticleDtoList) {
-                    FeedSubscriptionDto feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
-                            .setId(userArticleDto.getFeedSubscriptionId()));
-                    if (feedSubscriptionDto != null) {
-                        new FeedSubscriptionDao().updateUnreadCount(feedSubscriptionDto.getId(), feedSubscriptionDto.getUnreadUserArticleCount() - 1);
-                    }
-                }
-            }
-
-            // Delete articles that don't exist anymore
-            for (Article article: articleToRemove) {
-                new ArticleDao().delete(article.getId());
-            }
-
-            // Removed articles from index
-            ArticleDeletedAsyncEvent articleDeletedAsyncEvent = new ArticleDeletedAsyncEvent();
-            articleDeletedAsyncEvent.setArticleList(articleToRemove);
-            AppContext.getInstance().getAsyncEventBus().post(articleDeletedAsyncEvent);
-        }
-
-        // Create the feed if necessary (not created and currently in use by another user)
-        FeedDao feedDao = new FeedDao();
-        String rssUrl = newFeed.getRssUrl();
-        Feed feed = feedDao.getByRssUrl(rssUrl);
-        if (feed == null) {
-            feed = new Feed();
-            feed.setUrl(newFeed.getUrl());
-            feed.setBaseUri(newFeed.getBaseUri());
-            feed.setRssUrl(rssUrl);
-            feed.setTitle(StringUtils.abbreviate(newFeed.getTitle(), 100));
-            feed.setLanguage(newFeed.getLanguage() != null && newFeed.getLanguage().length() <= 10 ? newFeed.getLanguage() : null);
-            feed.setDescription(StringUtils.abbreviate(newFeed.getDescription(), 4000));
-            feed.setLastFetchDate(new Date());
-            feedDao.create(feed);
-            EntityManagerUtil.flush();
-
-            // Try to download the feed's favicon
-            FaviconUpdateRequestedEvent faviconUpdateRequestedEvent = new FaviconUpdateRequestedEvent();
-            faviconUpdateRequestedEvent.setFeed(feed);
-            AppContext.getInstance().getAsyncEventBus().post(faviconUpdateRequestedEvent);
-        } else {
-            FaviconFeedService faviconFeedService = new FaviconFeedService();   
-            // Try to update the feed's favicon every week
-            boolean updateFavicon = faviconFeedService.isFaviconUpdated(feed);
-
-            // Update metadata
-            feed.setUrl(newFeed.getUrl());
-            feed.setBaseUri(newFeed.getBaseUri());
-            feed.setTitle(StringUtils.abbreviate(newFeed.getTitle(), 100));
-            feed.setLanguage(newFeed.getLanguage() != null && newFeed.getLanguage().length() <= 10 ? newFeed.getLanguage() : null);
-            feed.setDescription(StringUtils.abbreviate(newFeed.getDescription(), 4000));
-            feed.setLastFetchDate(new Date());
-            feedDao.update(feed);
-
-            // Update the favicon
-            if (updateFavicon) {
-                FaviconUpdateRequestedEvent faviconUpdateRequestedEvent = new FaviconUpdateRequestedEvent();
-                faviconUpdateRequestedEvent.setFeed(feed);
-                AppContext.getInstance().getAsyncEventBus().post(faviconUpdateRequestedEvent);
-            }
-        }
-        
-        // Update existing articles
-        Map<String, Article> articleMap = new HashMap<String, Article>();
-        for (Article article : articleList) {
-            articleMap.put(article.getGuid(), article);
-        }
-
-        List<String> guidIn = new ArrayList<String>();
-        for (Article article : articleList) {
-            guidIn.add(article.getGuid());
-        }
-        
-        ArticleSanitizer sanitizer = new ArticleSanitizer();
-        ArticleDao articleDao = new ArticleDao();
-        if (!guidIn.isEmpty()) {
-            ArticleCriteria articleCriteria = new ArticleCriteria()
-                    .setFeedId(feed.getId())
-                    .setGuidIn(guidIn);
-            List<ArticleDto> currentArticleDtoList = articleDao.findByCriteria(articleCriteria);
-            List<Article> articleUpdatedList = new ArrayList<Article>();
-            for (ArticleDto currentArticle : currentArticleDtoList) {
-                Article newArticle = articleMap.remove(currentArticle.getGuid());
-                
-                Article article = new Article();
-                article.setPublicationDate(currentArticle.getPublicationDate());
-                article.setId(currentArticle.getId());
-                article.setFeedId(feed.getId());
-                article.setUrl(newArticle.getUrl());
-                article.setTitle(StringUtils.abbreviate(TextSanitizer.sanitize(newArticle.getTitle()), 4000));
-                article.setCreator(StringUtils.abbreviate(newArticle.getCreator(), 200));
-                String baseUri = UrlUtil.getBaseUri(feed, newArticle);
-                article.setDescription(sanitizer.sanitize(baseUri, newArticle.getDescription()));
-                article.setCommentUrl(newArticle.getCommentUrl());
-                article.setCommentCount(newArticle.getCommentCount());
-                article.setEnclosureUrl(newArticle.getEnclosureUrl());
-                article.setEnclosureLength(newArticle.getEnclosureLength());
-                article.setEnclosureType(newArticle.getEnclosureType());
-
-                if (!Strings.nullToEmpty(currentArticle.getTitle()).equals(Strings.nullToEmpty(article.getTitle())) ||
-                        !Strings.nullToEmpty(currentArticle.getDescription()).equals(Strings.nullToEmpty(article.getDescription()))) {
-                    articleDao.update(article);
-                    articleUpdatedList.add(article);
-                }
-            }
-            
-            // Update indexed article
-            if (!articleUpdatedList.isEmpty()) {
-                ArticleUpdatedAsyncEvent articleUpdatedAsyncEvent = new ArticleUpdatedAsyncEvent();
-                articleUpdatedAsyncEvent.setArticleList(articleUpdatedList);
-                AppContext.getInstance().getAsyncEventBus().post(articleUpdatedAsyncEvent);
-            }
-        }
-        
-        // Create new articles
-        if (!articleMap.isEmpty()) {
-            FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
-                    .setFeedId(feed.getId());
-            
-            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-            List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-            
-            UserArticleDao userArticleDao = new UserArticleDao();
-            for (Article article : articleMap.values()) {
-                // Create the new article
-                article.setFeedId(feed.getId());
-                article.setTitle(StringUtils.abbreviate(TextSanitizer.sanitize(article.getTitle()), 4000));
-                article.setCreator(StringUtils.abbreviate(article.getCreator(), 200));
-                String baseUri = UrlUtil.getBaseUri(feed, article);
-                article.setDescription(sanitizer.sanitize(baseUri, article.getDescription()));
-                articleDao.create(article);
-    
-                // Create the user articles eagerly for users already subscribed
-                // FIXME count be optimized in 1 query instad of a*s
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
-                    UserArticle userArticle = new UserArticle();
-                    userArticle.setArticleId(article.getId());
-                    userArticle.setUserId(feedSubscription.getUserId());
-                    userArticleDao.create(userArticle);
-
-                    feedSubscription.setUnreadUserArticleCount(feedSubscription.getUnreadUserArticleCount() + 1);
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount());
-                }
-            }
-
-            // Add new articles to the index
-            ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
-            articleCreatedAsyncEvent.setArticleList(Lists.newArrayList(articleMap.values()));
-            AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
+        IngestContext context = new IngestContext(rssReader);
+        try {
+            getIngestPipeline().run(context);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
+        return context.getFeed();
+    }
 
-        long endTime = System.currentTimeMillis();
-        if (log.isInfoEnabled()) {
-            log.info(MessageFormat.format("Synchronized feed at URL {0} in {1}ms, {2} articles added, {3} deleted", url, endTime - startTime, articleMap.size(), articleToRemove.size()));
-        }
-        
-        return feed;
+    /**
+     * Parse a page containing a RSS or Atom feed, or HTML linking to a feed.
+     * 
+     * @param url Url to parse
+     * @param parsePage If true, try to parse the resource as an HTML page linking to a feed
+     * @return Reader
+     */
+    RssReader parseFeedOrPage(String url, boolean parsePage) throws Exception {
+        return parseFeedOrPage(url, parsePage, new RssAtomParsingStrategy());
     }
 
+    /**
+     * Fetch a known feed, using the validators and content hash of its previous response.
+     * 
+     * @param url Feed URL
+     * @param rssAtomParsingStrategy RSS/Atom parsing strategy, holding the previous response details
+     * @return RSS reader, or null if the feed is not modified
+     */
+    public RssReader fetchFeed(String url, RssAtomParsingStrategy rssAtomParsingStrategy) throws Exception {
+        return parseFeedOrPage(url, true, rssAtomParsingStrategy);
+    }
 
     /**
      * Parse a page containing a RSS or Atom feed, or HTML linking to a feed.
      * 
      * @param url Url to parse
      * @param parsePage If true, try to parse the resource as an HTML page linking to a feed
-     * @return Reader
+     * @param rssAtomParsingStrategy RSS/Atom parsing strategy
+     * @return RSS reader, or null if the feed is not modified
      */
-    private RssReader parseFeedOrPage(String url, boolean parsePage) throws Exception {
+    private RssReader parseFeedOrPage(String url, boolean parsePage, RssAtomParsingStrategy rssAtomParsingStrategy) throws Exception {
         try {
-            return new RssAtomParsingStrategy().parse(url, parsePage); //Try RSS/Atom parsing first
+            return rssAtomParsingStrategy.parse(url, parsePage); //Try RSS/Atom parsing first
         } catch (Exception eRss) {
             boolean recoverable = !(eRss instanceof UnknownHostException ||
                     eRss instanceof FileNotFoundException);
@@ -0,0 +1,344 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.model.jpa.FeedSynchronization;
+import com.sismics.reader.core.service.ingest.IngestContext;
+import com.sismics.reader.core.service.ingest.IngestPipeline;
+import com.sismics.reader.core.service.ingest.IngestStage.Domain;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs feeds through the ingest pipeline: fetching, parsing and sanitizing run concurrently on the workers,
+ * the database stages run one feed at a time in the calling transactional context.
+ * Concurrency is bounded by the size of the worker pool, the number of feeds in flight, and a number of
+ * concurrent fetches per host.
+ *
+ * @author jtremeaux
+ */
+public class FeedSynchronizer {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FeedSynchronizer.class);
+
+    /**
+     * Feed service.
+     */
+    private final FeedService feedService;
+
+    /**
+     * Maximum number of feeds fetched but not yet persisted.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Maximum number of concurrent fetches per host.
+     */
+    private final int maxPerHost;
+
+    /**
+     * Workers running the worker segments of the ingest pipeline.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Per-host fetching slots.
+     */
+    private final ConcurrentMap<String, Semaphore> hostSemaphoreMap = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Statistics.
+     */
+    private final FeedSynchronizerStats stats = new FeedSynchronizerStats();
+
+    /**
+     * Constructor of FeedSynchronizer.
+     *
+     * @param feedService Feed service
+     * @param threadCount Number of fetching threads
+     * @param maxInFlight Maximum number of feeds fetched but not yet persisted
+     * @param maxPerHost Maximum number of concurrent fetches per host
+     */
+    public FeedSynchronizer(FeedService feedService, int threadCount, int maxInFlight, int maxPerHost) {
+        this.feedService = feedService;
+        this.maxInFlight = Math.max(maxInFlight, threadCount);
+        this.maxPerHost = maxPerHost;
+        executor = new ThreadPoolExecutor(threadCount, threadCount,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("feed-sync-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Synchronize a list of feeds.
+     * Must be called in a transactional context, each feed is committed separately.
+     * The worker stages of the ingest pipeline run on the workers, the store stages on the calling thread.
+     *
+     * @param feedList Feeds to synchronize
+     * @return Synchronization status of each feed
+     */
+    public List<FeedSynchronization> synchronize(List<FeedDto> feedList) {
+        long startTime = System.nanoTime();
+        List<IngestContext> contextList = new ArrayList<IngestContext>(feedList.size());
+        for (FeedDto feed : feedList) {
+            contextList.add(new IngestContext(feed));
+        }
+        final List<FeedSynchronization> feedSynchronizationList = new ArrayList<FeedSynchronization>();
+        synchronize(contextList, context -> {
+            if (context.getException() == null) {
+                try {
+                    TransactionUtil.commit();
+                } catch (Exception e) {
+                    context.setException(e);
+                }
+            }
+            if (context.getException() != null) {
+                // Don't keep the validators of a feed whose articles are not all stored
+                TransactionUtil.rollback();
+            }
+            feedSynchronizationList.add(complete(context));
+        });
+
+        int errorCount = 0;
+        for (FeedSynchronization feedSynchronization : feedSynchronizationList) {
+            if (!feedSynchronization.isSuccess()) {
+                errorCount++;
+            }
+        }
+        long durationNanos = System.nanoTime() - startTime;
+        long duration = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        stats.cycleCompleted(feedSynchronizationList.size(), errorCount, durationNanos);
+        if (log.isInfoEnabled()) {
+            log.info(MessageFormat.format("Synchronized {0} feeds in {1}ms ({2,number,#.##} feeds/s, {3} errors)",
+                    feedSynchronizationList.size(), duration, stats.getLastCycleFeedsPerSecond(), errorCount));
+        }
+        return feedSynchronizationList;
+    }
+
+    /**
+     * Run feeds through the ingest pipeline.
+     * Must be called in a transactional context.
+     * The worker stages of the ingest pipeline run on the workers, the store stages on the calling thread.
+     *
+     * @param contextList Ingest contexts of the feeds
+     * @param listener Called on the calling thread when the pipeline is done with a feed, successfully or not
+     */
+    public void synchronize(List<IngestContext> contextList, IngestListener listener) {
+        IngestPipeline pipeline = feedService.getIngestPipeline();
+        CompletionService<IngestContext> completionService = new ExecutorCompletionService<IngestContext>(executor);
+        Map<Future<IngestContext>, IngestContext> futureMap = new HashMap<Future<IngestContext>, IngestContext>();
+        Iterator<IngestContext> contextIterator = interleaveByHost(contextList).iterator();
+        int pending = 0;
+        while (contextIterator.hasNext() || pending > 0) {
+            // Keep the pipeline full, but don't fetch more than we can persist
+            IngestContext context = null;
+            if (contextIterator.hasNext() && pending < maxInFlight) {
+                context = contextIterator.next();
+                stats.getInFlightCounter().incrementAndGet();
+                pending++;
+            } else {
+                try {
+                    Future<IngestContext> future = completionService.take();
+                    context = futureMap.remove(future);
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while synchronizing feeds", e);
+                } catch (ExecutionException e) {
+                    // Only this feed fails, e.g. on an error not caught by its stages
+                    Throwable cause = e.getCause();
+                    context.setException(cause instanceof Exception ? (Exception) cause : e);
+                }
+            }
+
+            if (!advance(pipeline, completionService, futureMap, context)) {
+                continue;
+            }
+            pending--;
+            stats.getInFlightCounter().decrementAndGet();
+            listener.onCompleted(context);
+        }
+    }
+
+    /**
+     * Run the store segments of a feed in the current transaction, until a worker segment is submitted
+     * or the pipeline is done with the feed.
+     *
+     * @param pipeline Ingest pipeline
+     * @param completionService Worker completion service
+     * @param futureMap Feeds by pending worker segment
+     * @param context Ingest context
+     * @return True if the pipeline is done with the feed
+     */
+    private boolean advance(IngestPipeline pipeline, CompletionService<IngestContext> completionService,
+            Map<Future<IngestContext>, IngestContext> futureMap, IngestContext context) {
+        while (!pipeline.isCompleted(context)) {
+            if (pipeline.getNextDomain(context) == Domain.WORKER) {
+                futureMap.put(completionService.submit(new SegmentTask(pipeline, context)), context);
+                stats.getQueueDepthCounter().incrementAndGet();
+                return false;
+            }
+            pipeline.runSegment(context);
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of the synchronization of a feed.
+     *
+     * @param context Ingest context
+     * @return Synchronization status
+     */
+    private FeedSynchronization complete(IngestContext context) {
+        FeedSynchronization feedSynchronization = new FeedSynchronization();
+        feedSynchronization.setFeedId(context.getFeedDto().getId());
+        feedSynchronization.setSuccess(true);
+        feedSynchronization.setDuration((int) context.getDuration());
+
+        Exception exception = context.getException();
+        if (exception != null) {
+            log.error(MessageFormat.format("Error synchronizing feed at URL: {0}", context.getUrl()), exception);
+            feedSynchronization.setSuccess(false);
+            feedSynchronization.setMessage(ExceptionUtils.getStackTrace(exception));
+        }
+        return feedSynchronization;
+    }
+
+    /**
+     * Order the feeds so that consecutive feeds are hosted on different hosts,
+     * to avoid exhausting the workers waiting on the same host.
+     *
+     * @param contextList Ingest contexts of the feeds
+     * @return Ordered ingest contexts
+     */
+    private List<IngestContext> interleaveByHost(List<IngestContext> contextList) {
+        Map<String, Deque<IngestContext>> hostMap = new LinkedHashMap<String, Deque<IngestContext>>();
+        for (IngestContext context : contextList) {
+            String host = getHost(context.getUrl());
+            Deque<IngestContext> hostContextList = hostMap.get(host);
+            if (hostContextList == null) {
+                hostContextList = new ArrayDeque<IngestContext>();
+                hostMap.put(host, hostContextList);
+            }
+            hostContextList.add(context);
+        }
+
+        List<IngestContext> orderedList = new ArrayList<IngestContext>(contextList.size());
+        while (!hostMap.isEmpty()) {
+            for (Iterator<Deque<IngestContext>> it = hostMap.values().iterator(); it.hasNext(); ) {
+                Deque<IngestContext> hostContextList = it.next();
+                orderedList.add(hostContextList.poll());
+                if (hostContextList.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        return orderedList;
+    }
+
+    /**
+     * Returns the host of an URL, used as a key for per-host limits.
+     *
+     * @param url URL
+     * @return Host
+     */
+    private static String getHost(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host != null ? host.toLowerCase() : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Stop the workers.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Getter of stats.
+     *
+     * @return stats
+     */
+    public FeedSynchronizerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Listener on the feeds the ingest pipeline is done with.
+     */
+    public interface IngestListener {
+        /**
+         * Called on the synchronizing thread, in its transactional context.
+         *
+         * @param context Ingest context, holding the exception if the synchronization failed
+         */
+        void onCompleted(IngestContext context);
+    }
+
+    /**
+     * Worker segment of the ingest pipeline executed by the workers.
+     * The first segment downloads the feed, and holds a per-host slot.
+     */
+    private class SegmentTask implements Callable<IngestContext> {
+        private final IngestPipeline pipeline;
+
+        private final IngestContext context;
+
+        private SegmentTask(IngestPipeline pipeline, IngestContext context) {
+            this.pipeline = pipeline;
+            this.context = context;
+        }
+
+        @Override
+        public IngestContext call() {
+            stats.getQueueDepthCounter().decrementAndGet();
+            if (context.getSegment() > 0) {
+                pipeline.runSegment(context);
+                return context;
+            }
+
+            long startTime = System.nanoTime();
+            Semaphore hostSemaphore = getHostSemaphore(getHost(context.getUrl()));
+            try {
+                hostSemaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                context.setException(e);
+                return context;
+            }
+            long waitTime = System.nanoTime() - startTime;
+            stats.hostWaited(waitTime);
+            try {
+                pipeline.runSegment(context);
+            } finally {
+                hostSemaphore.release();
+            }
+            return context;
+        }
+    }
+
+    private Semaphore getHostSemaphore(String host) {
+        Semaphore semaphore = hostSemaphoreMap.get(host);
+        if (semaphore == null) {
+            semaphore = new Semaphore(maxPerHost);
+            Semaphore previous = hostSemaphoreMap.putIfAbsent(host, semaphore);
+            if (previous != null) {
+                semaphore = previous;
+            }
+        }
+        return semaphore;
+    }
+}
@@ -0,0 +1,200 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Statistics of the feed synchronizer, used to size the worker pool.
+ * The statistics are kept in the metrics of the application.
+ *
+ * @author jtremeaux
+ */
+public class FeedSynchronizerStats {
+    /**
+     * Distribution of the durations of the synchronization cycles.
+     */
+    private final Histogram cycleTimer;
+
+    /**
+     * Distribution of the time waited by the fetches for their host.
+     */
+    private final Histogram hostWaitTimer;
+
+    /**
+     * Total number of feeds synchronized.
+     */
+    private final Counter feedCounter;
+
+    /**
+     * Total number of feeds in error.
+     */
+    private final Counter errorCounter;
+
+    /**
+     * Number of feeds fetched with a full response, different from the previous one.
+     */
+    private final Counter modifiedCounter;
+
+    /**
+     * Number of feeds answered with 304 Not Modified.
+     */
+    private final Counter notModifiedCounter;
+
+    /**
+     * Number of full responses identical to the previous one.
+     */
+    private final Counter unchangedCounter;
+
+    /**
+     * Number of feeds synchronized during the last cycle.
+     */
+    private volatile int lastCycleFeedCount;
+
+    /**
+     * Duration of the last cycle in milliseconds.
+     */
+    private volatile long lastCycleDuration;
+
+    /**
+     * Feeds waiting for a worker thread.
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /**
+     * Feeds fetched or being fetched, not yet persisted.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Constructor of FeedSynchronizerStats.
+     */
+    FeedSynchronizerStats() {
+        MetricRegistry metricRegistry = MetricRegistry.getInstance();
+        cycleTimer = metricRegistry.timer("reader_feed_sync_cycle_duration_seconds",
+                "Duration of a synchronization cycle of all the feeds");
+        hostWaitTimer = metricRegistry.timer("reader_feed_sync_host_wait_seconds",
+                "Time waited by a fetch for a connection to its host");
+        feedCounter = metricRegistry.counter("reader_feed_sync_feeds", "Feeds synchronized");
+        errorCounter = metricRegistry.counter("reader_feed_sync_errors", "Feeds in error during their synchronization");
+
+        // Counted by the fetch stage
+        String help = "Feeds fetched, by result";
+        modifiedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "modified");
+        notModifiedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "not_modified");
+        unchangedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "unchanged");
+
+        metricRegistry.gauge("reader_feed_sync_queue_depth", "Feed segments waiting for a fetching thread",
+                () -> getQueueDepth());
+        metricRegistry.gauge("reader_feed_sync_in_flight", "Feeds fetched but not yet persisted",
+                () -> getInFlight());
+    }
+
+    /**
+     * Records the end of a synchronization cycle.
+     *
+     * @param feedCount Number of feeds synchronized
+     * @param errorCount Number of feeds in error
+     * @param durationNanos Duration of the cycle in nanoseconds
+     */
+    void cycleCompleted(int feedCount, int errorCount, long durationNanos) {
+        cycleTimer.record(durationNanos);
+        feedCounter.inc(feedCount);
+        errorCounter.inc(errorCount);
+        lastCycleFeedCount = feedCount;
+        lastCycleDuration = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * Records the time spent waiting for a per-host slot.
+     *
+     * @param waitTimeNanos Wait time in nanoseconds
+     */
+    void hostWaited(long waitTimeNanos) {
+        hostWaitTimer.record(waitTimeNanos);
+    }
+
+    AtomicInteger getQueueDepthCounter() {
+        return queueDepth;
+    }
+
+    AtomicInteger getInFlightCounter() {
+        return inFlight;
+    }
+
+    public long getCycleCount() {
+        return cycleTimer.getCount();
+    }
+
+    public long getFeedCount() {
+        return feedCounter.getValue();
+    }
+
+    public long getErrorCount() {
+        return errorCounter.getValue();
+    }
+
+    /**
+     * Returns the number of feeds fetched with a full response, changed or not.
+     *
+     * @return Number of feeds
+     */
+    public long getModifiedCount() {
+        return modifiedCounter.getValue() + unchangedCounter.getValue();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCounter.getValue();
+    }
+
+    public long getUnchangedCount() {
+        return unchangedCounter.getValue();
+    }
+
+    public int getLastCycleFeedCount() {
+        return lastCycleFeedCount;
+    }
+
+    public long getLastCycleDuration() {
+        return lastCycleDuration;
+    }
+
+    /**
+     * Returns the throughput of the last cycle.
+     *
+     * @return Feeds per second
+     */
+    public double getLastCycleFeedsPerSecond() {
+        long duration = lastCycleDuration;
+        return duration > 0 ? lastCycleFeedCount * 1000d / duration : 0d;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the mean time spent waiting for a per-host slot.
+     *
+     * @return Mean wait time in milliseconds
+     */
+    public double getHostWaitTimeMean() {
+        return hostWaitTimer.getMean() * 1000d;
+    }
+
+    /**
+     * Returns the longest time spent waiting for a per-host slot.
+     *
+     * @return Longest wait time in milliseconds
+     */
+    public double getHostWaitTimeMax() {
+        return hostWaitTimer.getMax() * 1000d;
+    }
+}
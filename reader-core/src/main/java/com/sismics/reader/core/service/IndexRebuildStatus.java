@@ -0,0 +1,111 @@
+package com.sismics.reader.core.service;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the last index rebuild.
+ *
+ * @author bgamard
+ */
+public class IndexRebuildStatus {
+    /**
+     * True while the rebuild is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * True if the last rebuild was swapped in.
+     */
+    private volatile boolean success;
+
+    /**
+     * Number of articles to index.
+     */
+    private volatile long total;
+
+    /**
+     * Number of articles indexed.
+     */
+    private final AtomicLong indexed = new AtomicLong();
+
+    /**
+     * Start date.
+     */
+    private volatile Date startDate;
+
+    /**
+     * End date.
+     */
+    private volatile Date endDate;
+
+    /**
+     * Records the start of a rebuild.
+     */
+    void started() {
+        running = true;
+        success = false;
+        total = 0;
+        indexed.set(0);
+        startDate = new Date();
+        endDate = null;
+    }
+
+    /**
+     * Records the end of a rebuild.
+     *
+     * @param success True if the new index was swapped in
+     */
+    void completed(boolean success) {
+        this.success = success;
+        endDate = new Date();
+        running = false;
+    }
+
+    /**
+     * Records indexed articles.
+     *
+     * @param count Number of articles indexed
+     */
+    public void indexed(int count) {
+        indexed.addAndGet(count);
+    }
+
+    /**
+     * Returns the fraction of the articles indexed.
+     *
+     * @return Progress between 0 and 1
+     */
+    public double getProgress() {
+        long total = this.total;
+        return total > 0 ? Math.min(1d, (double) indexed.get() / total) : running ? 0d : 1d;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+}
@@ -0,0 +1,195 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.reader.core.dao.lucene.ArticleDao;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the changes of the articles to index, from all the feeds, and writes them in batches.
+ * Only the last change of an article is written: an update replaces a creation, a deletion cancels both.
+ * A batch is written when it is full, or after a short delay by the indexing service.
+ *
+ * @author bgamard
+ */
+public class IndexUpdateBatcher {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(IndexUpdateBatcher.class);
+
+    /**
+     * Maximum number of articles in a batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Maximum time a change waits for its batch, in milliseconds.
+     */
+    private static final long BATCH_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Pending changes: articles to index by ID, null for the articles to delete.
+     */
+    private Map<String, Article> changeMap = new LinkedHashMap<String, Article>();
+
+    /**
+     * Date of the oldest pending change, in milliseconds.
+     */
+    private long firstChangeTime;
+
+    /**
+     * Held while writing a batch, so that the batches are written in order.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Number of batches written.
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * Number of articles written.
+     */
+    private final AtomicLong articleCount = new AtomicLong();
+
+    /**
+     * Number of changes replaced by a later change of the same article before being written.
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Distribution of the durations of the batch writes.
+     */
+    private final Histogram writeTimer = MetricRegistry.getInstance().timer("reader_index_write_duration_seconds",
+            "Duration of a batch write to the Lucene index");
+
+    /**
+     * Number of articles written, exported to the metrics.
+     */
+    private final Counter articleCounter = MetricRegistry.getInstance().counter("reader_index_written_articles",
+            "Articles written to the Lucene index");
+
+    /**
+     * Queues articles to add to the index, or to update.
+     *
+     * @param articleList Articles
+     */
+    public void index(List<Article> articleList) {
+        add(articleList, false);
+    }
+
+    /**
+     * Queues articles to delete from the index.
+     *
+     * @param articleList Articles
+     */
+    public void delete(List<Article> articleList) {
+        add(articleList, true);
+    }
+
+    /**
+     * Queues changes, and writes the batch if it is full.
+     *
+     * @param articleList Articles
+     * @param delete True to delete the articles
+     */
+    private void add(List<Article> articleList, boolean delete) {
+        boolean full;
+        synchronized (this) {
+            if (changeMap.isEmpty()) {
+                firstChangeTime = System.currentTimeMillis();
+            }
+            for (Article article : articleList) {
+                if (changeMap.containsKey(article.getId())) {
+                    coalescedCount.incrementAndGet();
+                }
+                changeMap.put(article.getId(), delete ? null : article);
+            }
+            full = changeMap.size() >= BATCH_SIZE;
+        }
+
+        // Events are processed synchronously in unit tests, make the changes visible at once
+        if (full || EnvironmentUtil.isUnitTest()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the batch if its oldest change has waited long enough.
+     */
+    public void flushIfDue() {
+        synchronized (this) {
+            if (changeMap.isEmpty() || System.currentTimeMillis() - firstChangeTime < BATCH_DELAY) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes the pending changes to the index, in one writer session.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            final Map<String, Article> batchMap;
+            synchronized (this) {
+                if (changeMap.isEmpty()) {
+                    return;
+                }
+                batchMap = changeMap;
+                changeMap = new LinkedHashMap<String, Article>();
+            }
+
+            long startTime = System.nanoTime();
+            new ArticleDao().write(batchMap);
+            long duration = System.nanoTime() - startTime;
+            writeTimer.record(duration);
+            batchCount.incrementAndGet();
+            articleCount.addAndGet(batchMap.size());
+            articleCounter.inc(batchMap.size());
+
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Index updated with {0} articles in {1}ms", batchMap.size(), TimeUnit.NANOSECONDS.toMillis(duration)));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of batches written.
+     *
+     * @return Number of batches
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of articles written.
+     *
+     * @return Number of articles
+     */
+    public long getArticleCount() {
+        return articleCount.get();
+    }
+
+    /**
+     * Returns the number of changes replaced by a later change of the same article before being written.
+     *
+     * @return Number of changes
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+}
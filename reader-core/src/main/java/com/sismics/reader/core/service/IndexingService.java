@@ -1,37 +1,72 @@
 package com.sismics.reader.core.service;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.queries.TermsFilter;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.dao.lucene.ArticleDao;
+import com.sismics.reader.core.dao.lucene.ReaderStandardAnalyzer;
 import com.sismics.reader.core.event.RebuildIndexAsyncEvent;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
-import com.sismics.reader.core.model.jpa.UserArticle;
 import com.sismics.reader.core.util.DirectoryUtil;
 import com.sismics.reader.core.util.TransactionUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.RAMDirectory;
-import org.apache.lucene.store.SimpleFSDirectory;
-import org.apache.lucene.store.SimpleFSLockFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
 
 /**
  * Indexing service.
+ * Manages the lifecycle of the articles index: owns the directory, the index writer shared by all index updates,
+ * and the near-real-time searchers.
+ * Changes of the articles are written in batches, at most a second late.
+ * Changes are made visible to the searchers every second, committed every minute, and the deleted documents
+ * are merged away every hour.
+ * A rebuilt index is written to a separate directory, and swapped in once complete.
+ * Searches are restricted to the feeds the user is subscribed to, with a filter cached per user.
  *
  * @author bgamard
  */
@@ -41,21 +76,138 @@ public class IndexingService extends AbstractScheduledService {
      */
     private static final Logger log = LoggerFactory.getLogger(IndexingService.class);
 
+    /**
+     * Delay between two commits of the index writer, in milliseconds.
+     */
+    private static final long COMMIT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Delay between two merges of the deleted documents, in milliseconds.
+     */
+    private static final long MAINTENANCE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Maximum number of users whose search filter is cached.
+     */
+    private static final int USER_FILTER_CACHE_SIZE = 1000;
+
+    /**
+     * Maximum number of highlighted articles cached.
+     */
+    private static final int HIGHLIGHT_CACHE_SIZE = 10000;
+
     /**
      * Lucene directory.
      */
     private Directory directory;
-    
+
     /**
-     * Index reader.
+     * Shared index writer.
      */
-    private DirectoryReader directoryReader;
-    
+    private IndexWriter indexWriter;
+
+    /**
+     * Near-real-time searchers.
+     */
+    private SearcherManager searcherManager;
+
+    /**
+     * True if the index has changed since the last refresh of the searchers.
+     */
+    private final AtomicBoolean refreshNeeded = new AtomicBoolean();
+
+    /**
+     * True if the index has changed since the last commit.
+     */
+    private final AtomicBoolean commitNeeded = new AtomicBoolean();
+
+    /**
+     * Date of the last commit.
+     */
+    private volatile long lastCommitTime;
+
+    /**
+     * Date of the last maintenance.
+     */
+    private long lastMaintenanceTime = System.currentTimeMillis();
+
+    /**
+     * Held to write to the index, and exclusively to swap a rebuilt index in.
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * Directory of the index being rebuilt.
+     */
+    private Directory rebuildDirectory;
+
+    /**
+     * Writer of the index being rebuilt, null if no rebuild is running.
+     */
+    private volatile IndexWriter rebuildWriter;
+
+    /**
+     * Changes written to the index during a rebuild: articles to index by ID, null for the articles to delete.
+     * The pages of the rebuild read before a change may overwrite it, the changes are written again after the last page.
+     */
+    private final Map<String, Article> rebuildChangeMap = new LinkedHashMap<String, Article>();
+
+    /**
+     * Progress of the last index rebuild.
+     */
+    private final IndexRebuildStatus rebuildStatus = new IndexRebuildStatus();
+
+    /**
+     * Search filter on the subscribed feeds, by user ID.
+     * Invalidated when the subscriptions of the user change, once the change is committed, expired as a safety net.
+     */
+    private final Cache<String, Filter> userFilterCache = CacheBuilder.newBuilder()
+            .maximumSize(USER_FILTER_CACHE_SIZE)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * Number of invalidations of the search filters by user ID.
+     */
+    private final ConcurrentMap<String, Long> userFilterVersionMap = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Highlighted title and description of the articles found, by searcher version, query and document.
+     * Serves the pages read again without highlighting the articles again.
+     */
+    private final Cache<String, String[]> highlightCache = CacheBuilder.newBuilder()
+            .maximumSize(HIGHLIGHT_CACHE_SIZE)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    /**
+     * Batches of the changes of the articles to index.
+     */
+    private final IndexUpdateBatcher indexUpdateBatcher = new IndexUpdateBatcher();
+
+    /**
+     * Duration of the searches, without highlighting.
+     */
+    private final Histogram searchTimer = MetricRegistry.getInstance().timer("reader_search_duration_seconds",
+            "Duration of a search in the Lucene index, by phase", "phase", "search");
+
+    /**
+     * Duration of the highlighting of a page of results.
+     */
+    private final Histogram highlightTimer = MetricRegistry.getInstance().timer("reader_search_duration_seconds",
+            "Duration of a search in the Lucene index, by phase", "phase", "highlight");
+
+    /**
+     * True once the index has been checked for the fields required by the search.
+     */
+    private boolean indexChecked;
+
     /**
      * Lucene storage config.
      */
     private String luceneStorageConfig;
-    
+
     public IndexingService(String luceneStorageConfig) {
         this.luceneStorageConfig = luceneStorageConfig;
     }
@@ -67,23 +219,52 @@ public class IndexingService extends AbstractScheduledService {
             directory = new RAMDirectory();
             log.info("Using RAM Lucene storage");
         } else if (luceneStorageConfig.equals(Constants.LUCENE_DIRECTORY_STORAGE_FILE)) {
+            // Memory mapped files where available, NIO otherwise
             File luceneDirectory = DirectoryUtil.getLuceneDirectory();
-            log.info("Using file Lucene storage: {}", luceneDirectory);
             try {
-                directory = new SimpleFSDirectory(luceneDirectory, new SimpleFSLockFactory());
+                directory = FSDirectory.open(luceneDirectory);
+                log.info("Using file Lucene storage: {} ({})", luceneDirectory, directory.getClass().getSimpleName());
             } catch (IOException e) {
                 log.error("Error initializing Lucene index", e);
             }
         }
+
+        // Merge sequentially, because Lucene writing is already done asynchronously
+        IndexWriterConfig config = newIndexWriterConfig();
+        config.setMergeScheduler(new SerialMergeScheduler());
+
+        try {
+            // Unlock index left locked by a previous process
+            if (IndexWriter.isLocked(directory)) {
+                IndexWriter.unlock(directory);
+            }
+
+            // Commit once so that the index exists before the first search
+            indexWriter = new IndexWriter(directory, config);
+            indexWriter.commit();
+            lastCommitTime = System.currentTimeMillis();
+            searcherManager = new SearcherManager(indexWriter, true, null);
+        } catch (IOException e) {
+            log.error("Error opening the index writer", e);
+        }
     }
 
     @Override
     protected void shutDown() {
-        if (directoryReader != null) {
+        indexUpdateBatcher.flush();
+        abortRebuild();
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                log.error("Error closing the searcher manager", e);
+            }
+        }
+        if (indexWriter != null) {
             try {
-                directoryReader.close();
+                indexWriter.close();
             } catch (IOException e) {
-                log.error("Error closing the index reader", e);
+                log.error("Error closing the index writer", e);
             }
         }
         if (directory != null) {
@@ -94,74 +275,234 @@ public class IndexingService extends AbstractScheduledService {
             }
         }
     }
-    
+
     @Override
-    protected void runOneIteration() throws Exception {
-        TransactionUtil.handle(() -> {
-            // NOP
-        });
+    protected void runOneIteration() {
+        if (!indexChecked) {
+            indexChecked = true;
+            checkIndex();
+        }
+
+        // Don't let Guava manage our exceptions, or they will be swallowed and the service will silently stop
+        try {
+            indexUpdateBatcher.flushIfDue();
+        } catch (Throwable t) {
+            log.error("Error writing the index updates", t);
+        }
+
+        swapLock.readLock().lock();
+        try {
+            if (refreshNeeded.getAndSet(false)) {
+                searcherManager.maybeRefresh();
+            }
+            if (System.currentTimeMillis() - lastMaintenanceTime >= MAINTENANCE_INTERVAL) {
+                lastMaintenanceTime = System.currentTimeMillis();
+                maintain();
+            }
+            if (System.currentTimeMillis() - lastCommitTime >= COMMIT_INTERVAL) {
+                commit();
+            }
+        } catch (Throwable t) {
+            log.error("Error refreshing the index", t);
+        } finally {
+            swapLock.readLock().unlock();
+        }
     }
-    
+
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.HOURS);
+        return Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Rebuild an index written before the feed ID was indexed, since the search filters on it.
+     */
+    private void checkIndex() {
+        try {
+            boolean outdated;
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                outdated = searcher.getIndexReader().numDocs() > 0
+                        && MultiFields.getTerms(searcher.getIndexReader(), "feed_id") == null;
+            } finally {
+                searcherManager.release(searcher);
+            }
+            if (outdated) {
+                log.info("The index does not contain the feed IDs, rebuilding it");
+                rebuildIndex();
+            }
+        } catch (Throwable t) {
+            log.error("Error checking the index", t);
+        }
+    }
+
+    /**
+     * Merge away the deleted documents, and commit.
+     */
+    private void maintain() throws IOException {
+        long startTime = System.currentTimeMillis();
+        indexWriter.forceMergeDeletes(true);
+        commitNeeded.set(true);
+        commit();
+        refreshNeeded.set(true);
+        log.info("Index maintenance done in {}ms", System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Search articles, from an offset.
+     * 
+     * @param userId User ID
+     * @param searchQuery The query
+     * @param offset Offset
+     * @param limit Limit
+     * @param total If true, count the matching articles
+     * @param snippet If true, only the passages of the description around the matches are returned
+     * @return List of articles
+     */
+    public PaginatedList<UserArticleDto> searchArticles(String userId, String searchQuery, Integer offset, Integer limit, boolean total, boolean snippet) throws Exception {
+        // Search articles
+        ArticleDao articleDao = new ArticleDao();
+        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, offset);
+        Map<String, Article> articleMap = articleDao.search(paginatedList, searchQuery, getUserFilter(userId), total, snippet);
+        paginatedList.setResultList(getUserArticleList(userId, articleMap));
+        return paginatedList;
     }
     
-    // /**
-    //  * Search articles.
-    //  * 
-    //  * @param userId User ID
-    //  * @param searchQuery The query
-    //  * @param offset Offset
-    //  * @param limit Limit
-    //  * @return List of articles
-    //  */
-    // public PaginatedList<UserArticleDto> searchArticles(String userId, String searchQuery, Integer offset, Integer limit) throws Exception {
-    //     // Search articles
-    //     ArticleDao articleDao = new ArticleDao();
-    //     PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, offset);
-    //     Map<String, Article> articleMap = null;
-    //     articleMap = articleDao.search(paginatedList, searchQuery);
+    /**
+     * Search articles, after an article.
+     * 
+     * @param userId User ID
+     * @param searchQuery The query
+     * @param afterArticle Start the list after this article, null for the first page
+     * @param limit Limit
+     * @param total If true, count the matching articles
+     * @param snippet If true, only the passages of the description around the matches are returned
+     * @return List of articles
+     */
+    public PaginatedList<UserArticleDto> searchArticlesAfter(String userId, String searchQuery, UserArticleDto afterArticle, Integer limit, boolean total, boolean snippet) throws Exception {
+        Article article = null;
+        if (afterArticle != null) {
+            article = new Article(afterArticle.getArticleId());
+            article.setPublicationDate(new Date(afterArticle.getArticlePublicationTimestamp()));
+        }
         
-    //     if (articleMap.size() > 0) {
-    //         // Get linked UserArticle from database
-    //         UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
-    //                 .setUserId(userId)
-    //                 .setVisible(false)
-    //                 .setArticleIdIn(Lists.newArrayList(articleMap.keySet()));
-            
-    //         UserArticleDao userArticleDao = new UserArticleDao();
-    //         PaginatedList<UserArticleDto> userArticledList = PaginatedLists.create(paginatedList.getLimit(), 0);
-    //         userArticleDao.findByCriteria(userArticledList, userArticleCriteria, null, null);
-    //         paginatedList.setResultList(userArticledList.getResultList());
+        // Search articles
+        ArticleDao articleDao = new ArticleDao();
+        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
+        Map<String, Article> articleMap = articleDao.searchAfter(paginatedList, searchQuery, getUserFilter(userId), article, total, snippet);
+        paginatedList.setResultList(getUserArticleList(userId, articleMap));
+        return paginatedList;
+    }
+    
+    /**
+     * Returns the user articles of the articles found, in the order of the search.
+     * Read-only: the articles without user article are returned under the article ID, see
+     * {@link UserArticleDao#getOrCreateUserArticle(String, String)}.
+     * 
+     * @param userId User ID
+     * @param articleMap Highlighted articles found, in order
+     * @return List of user articles
+     */
+    private List<UserArticleDto> getUserArticleList(String userId, Map<String, Article> articleMap) {
+        List<UserArticleDto> userArticleList = new ArrayList<UserArticleDto>();
+        if (articleMap.isEmpty()) {
+            return userArticleList;
+        }
+        
+        // Get linked UserArticle from database
+        UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
+                .setUserId(userId)
+                .setVisible(false)
+                .setArticleIdIn(Lists.newArrayList(articleMap.keySet()));
+        
+        UserArticleDao userArticleDao = new UserArticleDao();
+        PaginatedList<UserArticleDto> userArticledList = PaginatedLists.create(articleMap.size(), 0);
+        userArticleDao.findByCriteria(userArticledList, userArticleCriteria, null, null);
+        Map<String, UserArticleDto> userArticleMap = new HashMap<String, UserArticleDto>();
+        for (UserArticleDto userArticleDto : userArticledList.getResultList()) {
+            userArticleMap.put(userArticleDto.getArticleId(), userArticleDto);
+        }
+        
+        long now = System.currentTimeMillis();
+        for (Article article : articleMap.values()) {
+            UserArticleDto userArticleDto = userArticleMap.get(article.getId());
+            if (userArticleDto == null) {
+                continue;
+            }
+            if (article.getTitle() != null) {
+                userArticleDto.setArticleTitle(article.getTitle());
+            }
+            if (article.getDescription() != null) {
+                userArticleDto.setArticleDescription(article.getDescription());
+            }
             
-    //         for (UserArticleDto userArticleDto : paginatedList.getResultList()) {
-    //             Article article = articleMap.get(userArticleDto.getArticleId());
-    //             if (article.getTitle() != null) {
-    //                 userArticleDto.setArticleTitle(article.getTitle());
-    //             }
-    //             if (article.getDescription() != null) {
-    //                 userArticleDto.setArticleDescription(article.getDescription());
-    //             }
-                
-    //             // Create UserArticle if it does not exists
-    //             if (userArticleDto.getId() == null) {
-    //                 UserArticle userArticle = new UserArticle();
-    //                 userArticle.setArticleId(userArticleDto.getArticleId());
-    //                 userArticle.setUserId(userId);
-    //                 userArticle.setReadDate(new Date());
-    //                 String userArticleId = userArticleDao.create(userArticle);
-    //                 userArticleDto.setId(userArticleId);
-    //                 userArticleDto.setReadTimestamp(userArticle.getReadDate().getTime());
-    //             }
-    //         }
-    //     } else {
-    //         paginatedList.setResultList(new ArrayList<UserArticleDto>());
-    //     }
+            // Return a virtual UserArticle if it does not exist, it will be created when the user acts on it
+            if (userArticleDto.getId() == null) {
+                userArticleDto.setId(userArticleDto.getArticleId());
+                userArticleDto.setReadTimestamp(now);
+            }
+            userArticleList.add(userArticleDto);
+        }
         
-    //     return paginatedList;
-    // }
+        return userArticleList;
+    }
     
+    /**
+     * Returns the search filter on the feeds a user is subscribed to.
+     * Must be called in a transactional context.
+     *
+     * @param userId User ID
+     * @return Filter
+     */
+    public Filter getUserFilter(final String userId) throws Exception {
+        long version = getUserFilterVersion(userId);
+        Filter filter = userFilterCache.get(userId, new Callable<Filter>() {
+            @Override
+            public Filter call() {
+                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+                List<String> feedIdList = feedSubscriptionDao.findFeedIdByUserId(userId);
+                if (feedIdList.isEmpty()) {
+                    // Match nothing
+                    return new QueryWrapperFilter(new BooleanQuery());
+                }
+                List<BytesRef> termList = new ArrayList<BytesRef>(feedIdList.size());
+                for (String feedId : feedIdList) {
+                    termList.add(new BytesRef(feedId));
+                }
+                return new CachingWrapperFilter(new TermsFilter("feed_id", termList));
+            }
+        });
+        if (getUserFilterVersion(userId) != version) {
+            // Invalidated while the filter was loaded, maybe from the subscriptions read before the change
+            userFilterCache.invalidate(userId);
+        }
+        return filter;
+    }
+
+    /**
+     * Returns the version of the search filter of a user.
+     *
+     * @param userId User ID
+     * @return Version
+     */
+    private long getUserFilterVersion(String userId) {
+        Long version = userFilterVersionMap.get(userId);
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Discard the search filter of a user after a change of the user's subscriptions,
+     * once the current transaction is committed.
+     *
+     * @param userId User ID
+     */
+    public void invalidateUserFilter(final String userId) {
+        TransactionUtil.afterCommit(() -> {
+            userFilterVersionMap.merge(userId, 1L, Long::sum);
+            userFilterCache.invalidate(userId);
+        });
+    }
+
     /**
      * Destroy and rebuild Lucene index.
      * 
@@ -171,44 +512,246 @@ public class IndexingService extends AbstractScheduledService {
         AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
     }
 
-    // /**
-    //  * Getter of directory.
-    //  *
-    //  * @return the directory
-    //  */
-    // public Directory getDirectory() {
-    //     return directory;
-    // }
-    
-    // /**
-    //  * Returns a valid directory reader.
-    //  * Take care of reopening the reader if the index has changed
-    //  * and closing the previous one.
-    //  *
-    //  * @return the directoryReader
-    //  */
-    // public DirectoryReader getDirectoryReader() {
-    //     if (directoryReader == null) {
-    //         if (!DirectoryReader.indexExists(directory)) {
-    //             log.info("Lucene directory not yet created");
-    //             return null;
-    //         }
-    //         try {
-    //             directoryReader = DirectoryReader.open(directory);
-    //         } catch (IOException e) {
-    //             log.error("Error creating the directory reader", e);
-    //         }
-    //     } else {
-    //         try {
-    //             DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-    //             if (newReader != null) {
-    //                 directoryReader.close();
-    //                 directoryReader = newReader;
-    //             }
-    //         } catch (IOException e) {
-    //             log.error("Error while reopening the directory reader", e);
-    //         }
-    //     }
-    //     return directoryReader;
-    // }
+    /**
+     * Start a rebuild of the index in a fresh directory.
+     * The changes written to the index meanwhile are applied to both indexes.
+     *
+     * @return Writer of the new index, null if a rebuild is already running
+     */
+    public synchronized IndexWriter startRebuild() throws IOException {
+        if (rebuildWriter != null) {
+            return null;
+        }
+        if (directory instanceof RAMDirectory) {
+            rebuildDirectory = new RAMDirectory();
+        } else {
+            rebuildDirectory = FSDirectory.open(DirectoryUtil.getLuceneRebuildDirectory());
+            if (IndexWriter.isLocked(rebuildDirectory)) {
+                IndexWriter.unlock(rebuildDirectory);
+            }
+        }
+        IndexWriterConfig config = newIndexWriterConfig();
+        config.setOpenMode(OpenMode.CREATE);
+        rebuildWriter = new IndexWriter(rebuildDirectory, config);
+        rebuildChangeMap.clear();
+        rebuildStatus.started();
+        return rebuildWriter;
+    }
+
+    /**
+     * Replace the index with the rebuilt one.
+     * The searchers keep on using the previous index until the new one is complete.
+     */
+    public synchronized void completeRebuild() throws IOException {
+        if (rebuildWriter == null) {
+            return;
+        }
+        swapLock.writeLock().lock();
+        try {
+            new ArticleDao().write(rebuildWriter, rebuildChangeMap);
+            rebuildChangeMap.clear();
+            rebuildWriter.close();
+            rebuildWriter = null;
+            indexWriter.deleteAll();
+            indexWriter.addIndexes(rebuildDirectory);
+            indexWriter.commit();
+            lastCommitTime = System.currentTimeMillis();
+            searcherManager.maybeRefreshBlocking();
+        } finally {
+            swapLock.writeLock().unlock();
+            closeRebuildDirectory();
+        }
+        rebuildStatus.completed(true);
+        log.info("Rebuilt index swapped in");
+    }
+
+    /**
+     * Discard the index being rebuilt.
+     */
+    public synchronized void abortRebuild() {
+        if (rebuildWriter == null) {
+            return;
+        }
+        try {
+            rebuildWriter.rollback();
+        } catch (IOException e) {
+            log.error("Error discarding the rebuilt index", e);
+        }
+        rebuildWriter = null;
+        rebuildChangeMap.clear();
+        closeRebuildDirectory();
+        rebuildStatus.completed(false);
+    }
+
+    /**
+     * Records changes written to the index, to write them again to the index being rebuilt after its last page.
+     *
+     * @param changeMap Articles to index by ID, null for the articles to delete
+     */
+    public synchronized void rebuildChanged(Map<String, Article> changeMap) {
+        if (rebuildWriter != null) {
+            rebuildChangeMap.putAll(changeMap);
+        }
+    }
+
+    /**
+     * Delete and close the directory of the rebuilt index.
+     */
+    private void closeRebuildDirectory() {
+        try {
+            for (String file : rebuildDirectory.listAll()) {
+                rebuildDirectory.deleteFile(file);
+            }
+            rebuildDirectory.close();
+        } catch (IOException e) {
+            log.error("Error deleting the rebuilt index", e);
+        }
+        rebuildDirectory = null;
+    }
+
+    /**
+     * Returns a new index writer configuration.
+     *
+     * @return Index writer configuration
+     */
+    private IndexWriterConfig newIndexWriterConfig() {
+        // Standard analyzer
+        return new IndexWriterConfig(Version.LUCENE_42, new ReaderStandardAnalyzer(Version.LUCENE_42));
+    }
+
+    /**
+     * Records a change of the index, which will be visible to the searchers after the next refresh.
+     */
+    public void indexChanged() {
+        commitNeeded.set(true);
+        if (EnvironmentUtil.isUnitTest()) {
+            // Events are processed synchronously in unit tests, make the changes visible at once
+            try {
+                searcherManager.maybeRefreshBlocking();
+            } catch (IOException e) {
+                log.error("Error refreshing the index", e);
+            }
+        } else {
+            refreshNeeded.set(true);
+        }
+    }
+
+    /**
+     * Commit the pending changes of the index writer.
+     */
+    public void commit() throws IOException {
+        lastCommitTime = System.currentTimeMillis();
+        if (commitNeeded.getAndSet(false)) {
+            indexWriter.commit();
+        }
+    }
+
+    /**
+     * Getter of directory.
+     *
+     * @return the directory
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Getter of indexWriter.
+     *
+     * @return indexWriter
+     */
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    /**
+     * Getter of rebuildWriter.
+     *
+     * @return rebuildWriter
+     */
+    public IndexWriter getRebuildWriter() {
+        return rebuildWriter;
+    }
+
+    /**
+     * Getter of swapLock.
+     *
+     * @return swapLock
+     */
+    public ReadWriteLock getSwapLock() {
+        return swapLock;
+    }
+
+    /**
+     * Getter of rebuildStatus.
+     *
+     * @return rebuildStatus
+     */
+    public IndexRebuildStatus getRebuildStatus() {
+        return rebuildStatus;
+    }
+
+    /**
+     * Getter of indexUpdateBatcher.
+     *
+     * @return indexUpdateBatcher
+     */
+    public IndexUpdateBatcher getIndexUpdateBatcher() {
+        return indexUpdateBatcher;
+    }
+
+    /**
+     * Getter of highlightCache.
+     *
+     * @return highlightCache
+     */
+    public Cache<String, String[]> getHighlightCache() {
+        return highlightCache;
+    }
+
+    /**
+     * Records the duration of a search, without highlighting.
+     *
+     * @param duration Duration in nanoseconds
+     */
+    public void searched(long duration) {
+        searchTimer.record(duration);
+    }
+
+    /**
+     * Records the duration of the highlighting of a page of results.
+     *
+     * @param duration Duration in nanoseconds
+     */
+    public void highlighted(long duration) {
+        highlightTimer.record(duration);
+    }
+
+    /**
+     * Getter of searchTimer.
+     *
+     * @return searchTimer
+     */
+    public Histogram getSearchTimer() {
+        return searchTimer;
+    }
+
+    /**
+     * Getter of highlightTimer.
+     *
+     * @return highlightTimer
+     */
+    public Histogram getHighlightTimer() {
+        return highlightTimer;
+    }
+
+    /**
+     * Getter of searcherManager.
+     * Searchers must be acquired and released from it.
+     *
+     * @return searcherManager
+     */
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
 }
@@ -0,0 +1,117 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the subscription trees of the users, as returned to the client.
+ * Trees are invalidated when the subscriptions, the categories or the unread counts of a user change,
+ * once the change is committed. A tree built from the data read before an invalidation is not cached.
+ * Entries expire after a while, in case a change is not notified (e.g. the synchronization failure counts).
+ *
+ * @author jtremeaux
+ */
+public class SubscriptionTreeCache {
+    /**
+     * Maximum number of trees in cache.
+     */
+    private static final int CACHE_SIZE = 1000;
+
+    /**
+     * Trees by user ID and unread flag.
+     */
+    private final Cache<String, JSONObject> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Number of invalidations of the trees by user ID.
+     */
+    private final ConcurrentMap<String, Long> versionMap = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Returns the cached subscription tree of a user.
+     *
+     * @param userId User ID
+     * @param unread Tree of the subscriptions with unread articles only
+     * @return Subscription tree, or null if not cached
+     */
+    public JSONObject get(String userId, boolean unread) {
+        return cache.getIfPresent(getKey(userId, unread));
+    }
+
+    /**
+     * Returns the version of the subscription trees of a user, to read before building a tree.
+     *
+     * @param userId User ID
+     * @return Version
+     */
+    public long getVersion(String userId) {
+        Long version = versionMap.get(userId);
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Caches the subscription tree of a user, unless the trees were invalidated since it was read.
+     *
+     * @param userId User ID
+     * @param unread Tree of the subscriptions with unread articles only
+     * @param tree Subscription tree
+     * @param version Version of the trees read before building the tree
+     */
+    public void put(String userId, boolean unread, JSONObject tree, long version) {
+        String key = getKey(userId, unread);
+        cache.put(key, tree);
+        if (getVersion(userId) != version) {
+            // Invalidated while the tree was built
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidates the subscription trees of a user, once the current transaction is committed.
+     *
+     * @param userId User ID
+     */
+    public void invalidate(String userId) {
+        invalidate(Collections.singletonList(userId));
+    }
+
+    /**
+     * Invalidates the subscription trees of some users, once the current transaction is committed.
+     *
+     * @param userIdList User IDs
+     */
+    public void invalidate(Collection<String> userIdList) {
+        final List<String> invalidatedUserIdList = new ArrayList<String>(userIdList);
+        TransactionUtil.afterCommit(() -> {
+            for (String userId : invalidatedUserIdList) {
+                versionMap.merge(userId, 1L, Long::sum);
+                cache.invalidate(getKey(userId, false));
+                cache.invalidate(getKey(userId, true));
+            }
+        });
+    }
+
+    /**
+     * Returns the cache key of a tree.
+     *
+     * @param userId User ID
+     * @param unread Tree of the subscriptions with unread articles only
+     * @return Cache key
+     */
+    private String getKey(String userId, boolean unread) {
+        return userId + (unread ? "|unread" : "|all");
+    }
+}
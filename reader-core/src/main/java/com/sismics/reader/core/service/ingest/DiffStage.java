@@ -0,0 +1,66 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.dao.jpa.ArticleDao;
+import com.sismics.reader.core.dao.jpa.FeedDao;
+import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.service.ArticleFeedService;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the parsed articles with the stored ones: removed, new and changed articles.
+ * Articles unchanged since the previous fetch are dropped here, so that they are never sanitized.
+ *
+ * @author jtremeaux
+ */
+public class DiffStage implements IngestStage {
+    @Override
+    public String getName() {
+        return "diff";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.STORE;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (context.getRssReader() == null) {
+            return;
+        }
+
+        // Get articles that were removed from RSS compared to last fetch
+        List<Article> articleList = context.getRssReader().getArticleList();
+        context.setArticleToRemoveList(new ArticleFeedService().getArticleToRemove(articleList));
+
+        Map<String, Article> articleMap = new LinkedHashMap<String, Article>();
+        for (Article article : articleList) {
+            articleMap.put(article.getGuid(), article);
+        }
+
+        Feed feed = new FeedDao().getByRssUrl(context.getRssReader().getFeed().getRssUrl());
+        if (feed != null && !articleMap.isEmpty()) {
+            ArticleCriteria articleCriteria = new ArticleCriteria()
+                    .setFeedId(feed.getId())
+                    .setGuidIn(Lists.newArrayList(articleMap.keySet()));
+            for (ArticleDto currentArticle : new ArticleDao().findByCriteria(articleCriteria)) {
+                Article article = articleMap.remove(currentArticle.getGuid());
+                if (article.getContentHash().equals(currentArticle.getContentHash())) {
+                    continue;
+                }
+                article.setId(currentArticle.getId());
+                article.setPublicationDate(currentArticle.getPublicationDate());
+                context.getChangedArticleList().add(article);
+                context.getCurrentArticleMap().put(currentArticle.getId(), currentArticle);
+            }
+        }
+        context.getNewArticleList().addAll(articleMap.values());
+    }
+}
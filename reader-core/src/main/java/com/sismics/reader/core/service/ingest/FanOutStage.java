@@ -0,0 +1,62 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
+import com.sismics.reader.core.dao.jpa.UserArticleDao;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.service.CounterService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers the new articles to the users subscribed to the feed.
+ *
+ * @author jtremeaux
+ */
+public class FanOutStage implements IngestStage {
+    @Override
+    public String getName() {
+        return "fanout";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.STORE;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (context.getNewArticleList().isEmpty() && context.getArticleToRemoveList().isEmpty()) {
+            return;
+        }
+
+        FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
+                .setFeedId(context.getFeed().getId());
+        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+        List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
+        List<String> userIdList = new ArrayList<String>();
+        for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
+            userIdList.add(feedSubscription.getUserId());
+        }
+
+        if (!context.getNewArticleList().isEmpty()) {
+            List<String> articleIdList = new ArrayList<String>();
+            for (Article article : context.getNewArticleList()) {
+                articleIdList.add(article.getId());
+            }
+
+            // Create the user articles eagerly for users already subscribed, in bulk
+            new UserArticleDao().create(articleIdList, userIdList);
+            CounterService counterService = AppContext.getInstance().getCounterService();
+            for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
+                counterService.add(feedSubscription.getId(), feedSubscription.getUserId(), articleIdList.size(), articleIdList.size(), 0);
+            }
+        }
+
+        // The article counts of these users have changed
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(userIdList);
+    }
+}
@@ -0,0 +1,87 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.dao.file.rss.RssReader;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.service.FeedService;
+import com.sismics.reader.core.strategy.FeedParsingStrategy.RssAtomParsingStrategy;
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.MetricRegistry;
+
+/**
+ * Downloads and parses the feed.
+ * Known feeds are fetched with the validators and content hash of their previous response.
+ * Fetching and parsing are a single stage, since the parsing strategies fall back on each other
+ * depending on what was downloaded.
+ *
+ * @author jtremeaux
+ */
+public class FetchStage implements IngestStage {
+    /**
+     * Feed service.
+     */
+    private final FeedService feedService;
+
+    /**
+     * Number of feeds downloaded and parsed.
+     */
+    private final Counter modifiedCounter;
+
+    /**
+     * Number of feeds not modified according to their validators.
+     */
+    private final Counter notModifiedCounter;
+
+    /**
+     * Number of feeds downloaded identical to their previous response.
+     */
+    private final Counter unchangedCounter;
+
+    /**
+     * Constructor of FetchStage.
+     *
+     * @param feedService Feed service
+     */
+    public FetchStage(FeedService feedService) {
+        this.feedService = feedService;
+
+        MetricRegistry metricRegistry = MetricRegistry.getInstance();
+        String help = "Feeds fetched, by result";
+        modifiedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "modified");
+        notModifiedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "not_modified");
+        unchangedCounter = metricRegistry.counter("reader_feed_fetch", help, "result", "unchanged");
+    }
+
+    @Override
+    public String getName() {
+        return "fetch";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.WORKER;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (context.getRssReader() != null) {
+            // Already parsed
+            return;
+        }
+
+        FeedDto feedDto = context.getFeedDto();
+        RssAtomParsingStrategy rssAtomParsingStrategy = feedDto != null ?
+                new RssAtomParsingStrategy(feedDto.getEtag(), feedDto.getLastModified(), feedDto.getContentHash()) :
+                new RssAtomParsingStrategy();
+        RssReader rssReader = feedService.fetchFeed(context.getUrl(), rssAtomParsingStrategy);
+        context.setRssReader(rssReader);
+        context.setNotModified(rssReader == null);
+        context.setUnchanged(rssAtomParsingStrategy.isUnchanged());
+        if (context.isUnchanged()) {
+            unchangedCounter.inc();
+        } else if (context.isNotModified()) {
+            notModifiedCounter.inc();
+        } else {
+            modifiedCounter.inc();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.event.ArticleCreatedAsyncEvent;
+import com.sismics.reader.core.event.ArticleDeletedAsyncEvent;
+import com.sismics.reader.core.event.ArticleUpdatedAsyncEvent;
+import com.sismics.reader.core.model.context.AppContext;
+
+/**
+ * Requests the indexing of the removed, changed and new articles.
+ *
+ * @author jtremeaux
+ */
+public class IndexStage implements IngestStage {
+    @Override
+    public String getName() {
+        return "index";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.STORE;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (!context.getArticleToRemoveList().isEmpty()) {
+            ArticleDeletedAsyncEvent articleDeletedAsyncEvent = new ArticleDeletedAsyncEvent();
+            articleDeletedAsyncEvent.setArticleList(context.getArticleToRemoveList());
+            AppContext.getInstance().getAsyncEventBus().post(articleDeletedAsyncEvent);
+        }
+
+        if (!context.getUpdatedArticleList().isEmpty()) {
+            ArticleUpdatedAsyncEvent articleUpdatedAsyncEvent = new ArticleUpdatedAsyncEvent();
+            articleUpdatedAsyncEvent.setArticleList(context.getUpdatedArticleList());
+            AppContext.getInstance().getAsyncEventBus().post(articleUpdatedAsyncEvent);
+        }
+
+        if (!context.getNewArticleList().isEmpty()) {
+            ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
+            articleCreatedAsyncEvent.setArticleList(context.getNewArticleList());
+            AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.dao.file.rss.RssReader;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.jpa.Feed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of a feed going through the ingest pipeline.
+ * Handed over from stage to stage, possibly across threads, but never processed by two stages at once.
+ *
+ * @author jtremeaux
+ */
+public class IngestContext {
+    /**
+     * URL to fetch.
+     */
+    private final String url;
+
+    /**
+     * Known feed, holding the details of its previous response, or null.
+     */
+    private FeedDto feedDto;
+
+    /**
+     * Parsed feed, null if not fetched yet or not modified.
+     */
+    private RssReader rssReader;
+
+    /**
+     * True if the feed was not modified since the previous fetch.
+     */
+    private boolean notModified;
+
+    /**
+     * True if the full response was identical to the previous one.
+     */
+    private boolean unchanged;
+
+    /**
+     * Publication cadence of the feed, in minutes.
+     */
+    private Integer cadence;
+
+    /**
+     * Articles removed from the feed since the previous fetch.
+     */
+    private List<Article> articleToRemoveList = new ArrayList<Article>();
+
+    /**
+     * Articles not synchronized yet.
+     */
+    private final List<Article> newArticleList = new ArrayList<Article>();
+
+    /**
+     * Synchronized articles whose content changed since the previous fetch.
+     */
+    private final List<Article> changedArticleList = new ArrayList<Article>();
+
+    /**
+     * Stored version of the changed articles, by article ID.
+     */
+    private final Map<String, ArticleDto> currentArticleMap = new HashMap<String, ArticleDto>();
+
+    /**
+     * Articles updated in the database.
+     */
+    private final List<Article> updatedArticleList = new ArrayList<Article>();
+
+    /**
+     * Synchronized feed.
+     */
+    private Feed feed;
+
+    /**
+     * Index of the next pipeline segment to run.
+     */
+    private int segment;
+
+    /**
+     * Time spent in the pipeline stages, in milliseconds.
+     */
+    private long duration;
+
+    /**
+     * Error which stopped the pipeline.
+     */
+    private Exception exception;
+
+    /**
+     * Constructor of IngestContext, for a feed or a page linking to a feed.
+     *
+     * @param url URL of a feed or page containing a feed
+     */
+    public IngestContext(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Constructor of IngestContext, for a known feed.
+     *
+     * @param feedDto Feed
+     */
+    public IngestContext(FeedDto feedDto) {
+        this.url = feedDto.getRssUrl();
+        this.feedDto = feedDto;
+    }
+
+    /**
+     * Constructor of IngestContext, for an already parsed feed.
+     *
+     * @param rssReader Parsed feed
+     */
+    public IngestContext(RssReader rssReader) {
+        this.url = rssReader.getFeed().getRssUrl();
+        this.rssReader = rssReader;
+    }
+
+    /**
+     * Getter of url.
+     *
+     * @return url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Getter of feedDto.
+     *
+     * @return feedDto
+     */
+    public FeedDto getFeedDto() {
+        return feedDto;
+    }
+
+    /**
+     * Getter of rssReader.
+     *
+     * @return rssReader
+     */
+    public RssReader getRssReader() {
+        return rssReader;
+    }
+
+    /**
+     * Setter of rssReader.
+     *
+     * @param rssReader rssReader
+     */
+    public void setRssReader(RssReader rssReader) {
+        this.rssReader = rssReader;
+    }
+
+    /**
+     * Getter of notModified.
+     *
+     * @return notModified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Setter of notModified.
+     *
+     * @param notModified notModified
+     */
+    public void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
+
+    /**
+     * Getter of unchanged.
+     *
+     * @return unchanged
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Setter of unchanged.
+     *
+     * @param unchanged unchanged
+     */
+    public void setUnchanged(boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Getter of cadence.
+     *
+     * @return cadence
+     */
+    public Integer getCadence() {
+        return cadence;
+    }
+
+    /**
+     * Setter of cadence.
+     *
+     * @param cadence cadence
+     */
+    public void setCadence(Integer cadence) {
+        this.cadence = cadence;
+    }
+
+    /**
+     * Getter of articleToRemoveList.
+     *
+     * @return articleToRemoveList
+     */
+    public List<Article> getArticleToRemoveList() {
+        return articleToRemoveList;
+    }
+
+    /**
+     * Setter of articleToRemoveList.
+     *
+     * @param articleToRemoveList articleToRemoveList
+     */
+    public void setArticleToRemoveList(List<Article> articleToRemoveList) {
+        this.articleToRemoveList = articleToRemoveList;
+    }
+
+    /**
+     * Getter of newArticleList.
+     *
+     * @return newArticleList
+     */
+    public List<Article> getNewArticleList() {
+        return newArticleList;
+    }
+
+    /**
+     * Getter of changedArticleList.
+     *
+     * @return changedArticleList
+     */
+    public List<Article> getChangedArticleList() {
+        return changedArticleList;
+    }
+
+    /**
+     * Getter of currentArticleMap.
+     *
+     * @return currentArticleMap
+     */
+    public Map<String, ArticleDto> getCurrentArticleMap() {
+        return currentArticleMap;
+    }
+
+    /**
+     * Getter of updatedArticleList.
+     *
+     * @return updatedArticleList
+     */
+    public List<Article> getUpdatedArticleList() {
+        return updatedArticleList;
+    }
+
+    /**
+     * Getter of feed.
+     *
+     * @return feed
+     */
+    public Feed getFeed() {
+        return feed;
+    }
+
+    /**
+     * Setter of feed.
+     *
+     * @param feed feed
+     */
+    public void setFeed(Feed feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * Getter of segment.
+     *
+     * @return segment
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Setter of segment.
+     *
+     * @param segment segment
+     */
+    void setSegment(int segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * Getter of duration.
+     *
+     * @return duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Setter of duration.
+     *
+     * @param duration duration
+     */
+    void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Getter of exception.
+     *
+     * @return exception
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Setter of exception.
+     *
+     * @param exception exception
+     */
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+}
@@ -0,0 +1,139 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.service.ingest.IngestStage.Domain;
+import com.sismics.util.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed ingest pipeline: fetch, normalize, diff, sanitize, persist, fan-out and index.
+ * Consecutive stages of the same domain are grouped in segments. A caller can run the whole pipeline at once,
+ * or run each segment on the executor of its domain, e.g. the worker segments on a thread pool
+ * and the store segments on the thread owning the transaction.
+ *
+ * @author jtremeaux
+ */
+public class IngestPipeline {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    /**
+     * Stages grouped by segment.
+     */
+    private final List<List<IngestStage>> segmentList = new ArrayList<List<IngestStage>>();
+
+    /**
+     * Statistics of each stage, by stage name.
+     */
+    private final Map<String, IngestStageStats> stageStatsMap = new LinkedHashMap<String, IngestStageStats>();
+
+    /**
+     * Constructor of IngestPipeline.
+     *
+     * @param stageList Stages, in processing order
+     */
+    public IngestPipeline(List<IngestStage> stageList) {
+        this(stageList, MetricRegistry.getInstance());
+    }
+
+    /**
+     * Constructor of IngestPipeline.
+     *
+     * @param stageList Stages, in processing order
+     * @param metricRegistry Registry of the metrics of the stages
+     */
+    public IngestPipeline(List<IngestStage> stageList, MetricRegistry metricRegistry) {
+        List<IngestStage> segment = null;
+        for (IngestStage stage : stageList) {
+            if (segment == null || segment.get(0).getDomain() != stage.getDomain()) {
+                segment = new ArrayList<IngestStage>();
+                segmentList.add(segment);
+            }
+            segment.add(stage);
+            stageStatsMap.put(stage.getName(), new IngestStageStats(stage.getName(), metricRegistry));
+        }
+    }
+
+    /**
+     * Run all the remaining stages on the calling thread.
+     * Must be called in a transactional context.
+     *
+     * @param context Ingest context
+     */
+    public void run(IngestContext context) throws Exception {
+        while (!isCompleted(context)) {
+            runSegment(context);
+        }
+        if (context.getException() != null) {
+            throw context.getException();
+        }
+    }
+
+    /**
+     * Run the next segment of stages on the calling thread.
+     * Errors are recorded in the context, and stop the pipeline.
+     *
+     * @param context Ingest context
+     */
+    public void runSegment(IngestContext context) {
+        for (IngestStage stage : segmentList.get(context.getSegment())) {
+            long startTime = System.nanoTime();
+            try {
+                stage.process(context);
+            } catch (Exception e) {
+                context.setException(e);
+            }
+            long duration = System.nanoTime() - startTime;
+            context.setDuration(context.getDuration() + TimeUnit.NANOSECONDS.toMillis(duration));
+            stageStatsMap.get(stage.getName()).processed(duration, context.getException() == null);
+            if (context.getException() != null) {
+                return;
+            }
+        }
+        context.setSegment(context.getSegment() + 1);
+
+        if (isCompleted(context) && !context.isNotModified() && log.isInfoEnabled()) {
+            log.info(MessageFormat.format("Synchronized feed at URL {0} in {1}ms, {2} articles added, {3} deleted",
+                    context.getUrl(), context.getDuration(), context.getNewArticleList().size(), context.getArticleToRemoveList().size()));
+        }
+    }
+
+    /**
+     * Returns true if the pipeline is done with a feed, successfully or not.
+     *
+     * @param context Ingest context
+     * @return Completed
+     */
+    public boolean isCompleted(IngestContext context) {
+        return context.getException() != null || context.getSegment() >= segmentList.size();
+    }
+
+    /**
+     * Returns the domain of the next segment to run.
+     *
+     * @param context Ingest context
+     * @return Domain
+     */
+    public Domain getNextDomain(IngestContext context) {
+        return segmentList.get(context.getSegment()).get(0).getDomain();
+    }
+
+    /**
+     * Getter of the statistics of each stage, by stage name.
+     *
+     * @return Statistics
+     */
+    public Map<String, IngestStageStats> getStageStatsMap() {
+        return Collections.unmodifiableMap(stageStatsMap);
+    }
+}
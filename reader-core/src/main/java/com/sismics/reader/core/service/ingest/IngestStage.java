@@ -0,0 +1,44 @@
+package com.sismics.reader.core.service.ingest;
+
+/**
+ * Stage of the feed ingest pipeline.
+ *
+ * @author jtremeaux
+ */
+public interface IngestStage {
+    /**
+     * Where a stage may run.
+     */
+    enum Domain {
+        /**
+         * No database access, may run on any worker thread.
+         */
+        WORKER,
+
+        /**
+         * Runs in the transactional context of the caller.
+         */
+        STORE
+    }
+
+    /**
+     * Returns the name of the stage, used to report its metrics.
+     *
+     * @return Name
+     */
+    String getName();
+
+    /**
+     * Returns where the stage may run.
+     *
+     * @return Domain
+     */
+    Domain getDomain();
+
+    /**
+     * Process a feed.
+     *
+     * @param context Ingest context
+     */
+    void process(IngestContext context) throws Exception;
+}
@@ -0,0 +1,74 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
+
+/**
+ * Timing statistics of an ingest stage, kept in the metrics of the application.
+ *
+ * @author jtremeaux
+ */
+public class IngestStageStats {
+    /**
+     * Distribution of the processing times.
+     */
+    private final Histogram timer;
+
+    /**
+     * Number of feeds in error.
+     */
+    private final Counter errorCounter;
+
+    /**
+     * Constructor of IngestStageStats.
+     *
+     * @param stageName Stage name
+     * @param metricRegistry Registry of the metrics
+     */
+    IngestStageStats(String stageName, MetricRegistry metricRegistry) {
+        timer = metricRegistry.timer("reader_ingest_stage_duration_seconds",
+                "Processing time of a feed by a stage of the ingest pipeline", "stage", stageName);
+        errorCounter = metricRegistry.counter("reader_ingest_stage_errors",
+                "Feeds in error in a stage of the ingest pipeline", "stage", stageName);
+    }
+
+    /**
+     * Records the processing of a feed.
+     *
+     * @param durationNanos Processing time in nanoseconds
+     * @param success False if the stage failed
+     */
+    void processed(long durationNanos, boolean success) {
+        timer.record(durationNanos);
+        if (!success) {
+            errorCounter.inc();
+        }
+    }
+
+    public long getCount() {
+        return timer.getCount();
+    }
+
+    public long getErrorCount() {
+        return errorCounter.getValue();
+    }
+
+    /**
+     * Returns the mean processing time.
+     *
+     * @return Mean processing time in milliseconds
+     */
+    public double getTimeMean() {
+        return timer.getMean() * 1000d;
+    }
+
+    /**
+     * Returns the longest processing time.
+     *
+     * @return Longest processing time in milliseconds
+     */
+    public double getTimeMax() {
+        return timer.getMax() * 1000d;
+    }
+}
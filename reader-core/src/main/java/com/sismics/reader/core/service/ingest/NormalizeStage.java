@@ -0,0 +1,42 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.service.ArticleFeedService;
+import com.sismics.reader.core.service.FeedPollingPolicy;
+import com.sismics.reader.core.util.ContentHashUtil;
+
+import java.util.List;
+
+/**
+ * Completes the parsed articles, and computes the hashes used to detect their changes.
+ *
+ * @author jtremeaux
+ */
+public class NormalizeStage implements IngestStage {
+    @Override
+    public String getName() {
+        return "normalize";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.WORKER;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (context.getRssReader() == null) {
+            return;
+        }
+
+        // The cadence must be estimated before the missing publication dates are completed
+        List<Article> articleList = context.getRssReader().getArticleList();
+        context.setCadence(FeedPollingPolicy.getPublicationCadence(articleList));
+        new ArticleFeedService().completeArticleList(articleList);
+
+        // Hash the articles as published, before sanitizing them
+        for (Article article : articleList) {
+            article.setContentHash(ContentHashUtil.hash(article));
+        }
+    }
+}
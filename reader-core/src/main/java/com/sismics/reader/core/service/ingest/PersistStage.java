@@ -0,0 +1,190 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.google.common.base.Strings;
+import com.sismics.reader.core.dao.file.rss.RssReader;
+import com.sismics.reader.core.dao.jpa.ArticleDao;
+import com.sismics.reader.core.dao.jpa.FeedDao;
+import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.event.FaviconUpdateRequestedEvent;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.service.FaviconFeedService;
+import com.sismics.reader.core.service.FeedPollingPolicy;
+import com.sismics.reader.core.service.FeedService;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Stores the feed and its articles, and schedules the next fetch.
+ *
+ * @author jtremeaux
+ */
+public class PersistStage implements IngestStage {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PersistStage.class);
+
+    /**
+     * Feed service.
+     */
+    private final FeedService feedService;
+
+    /**
+     * Constructor of PersistStage.
+     *
+     * @param feedService Feed service
+     */
+    public PersistStage(FeedService feedService) {
+        this.feedService = feedService;
+    }
+
+    @Override
+    public String getName() {
+        return "persist";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.STORE;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        FeedDao feedDao = new FeedDao();
+        RssReader rssReader = context.getRssReader();
+        if (rssReader == null) {
+            // Not modified or identical, only record the fetch
+            Feed feed = feedDao.getByRssUrl(context.getUrl());
+            if (feed == null) {
+                return;
+            }
+            feed.setLastFetchDate(new Date());
+            reschedule(feed, null, null, 0);
+            context.setFeed(feed);
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Feed at URL {0} not modified", context.getUrl()));
+            }
+            return;
+        }
+
+        List<Article> articleToRemove = context.getArticleToRemoveList();
+        if (!articleToRemove.isEmpty()) {
+            List<String> articleToRemoveIdList = new ArrayList<String>();
+            for (Article article : articleToRemove) {
+                articleToRemoveIdList.add(article.getId());
+            }
+
+            // Update the subscription counters
+            new FeedSubscriptionDao().removeArticles(articleToRemoveIdList);
+
+            // Delete articles that don't exist anymore
+            new ArticleDao().delete(articleToRemoveIdList);
+        }
+
+        // Create the feed if necessary (not created and currently in use by another user)
+        Feed newFeed = rssReader.getFeed();
+        String rssUrl = newFeed.getRssUrl();
+        Feed feed = feedDao.getByRssUrl(rssUrl);
+        boolean updateFavicon;
+        if (feed == null) {
+            feed = new Feed();
+            feed.setRssUrl(rssUrl);
+            updateMetadata(feed, newFeed);
+            feedDao.create(feed);
+            EntityManagerUtil.flush();
+
+            // Try to download the feed's favicon
+            updateFavicon = true;
+        } else {
+            // Try to update the feed's favicon every week
+            updateFavicon = new FaviconFeedService().isFaviconUpdated(feed);
+
+            updateMetadata(feed, newFeed);
+            feedDao.update(feed);
+        }
+        if (updateFavicon) {
+            FaviconUpdateRequestedEvent faviconUpdateRequestedEvent = new FaviconUpdateRequestedEvent();
+            faviconUpdateRequestedEvent.setFeed(feed);
+            AppContext.getInstance().getAsyncEventBus().post(faviconUpdateRequestedEvent);
+        }
+        context.setFeed(feed);
+
+        // Update existing articles, only the hash if the sanitized content is the same
+        ArticleDao articleDao = new ArticleDao();
+        for (Article article : context.getChangedArticleList()) {
+            ArticleDto currentArticle = context.getCurrentArticleMap().get(article.getId());
+            article.setFeedId(feed.getId());
+            if (!Strings.nullToEmpty(currentArticle.getTitle()).equals(Strings.nullToEmpty(article.getTitle())) ||
+                    !Strings.nullToEmpty(currentArticle.getDescription()).equals(Strings.nullToEmpty(article.getDescription()))) {
+                articleDao.update(article);
+                context.getUpdatedArticleList().add(article);
+            } else {
+                articleDao.updateContentHash(article.getId(), article.getContentHash());
+            }
+        }
+
+        // Create new articles
+        for (Article article : context.getNewArticleList()) {
+            article.setFeedId(feed.getId());
+            articleDao.create(article);
+        }
+
+        // Schedule the next fetch
+        reschedule(feed, rssReader.getUpdatePeriod(), context.getCadence(), context.getNewArticleList().size());
+
+        // Skip this response at the next fetches only once the articles are stored
+        updateValidators(feed, newFeed);
+        feedDao.update(feed);
+    }
+
+    /**
+     * Copy the parsed metadata to the stored feed.
+     *
+     * @param feed Stored feed
+     * @param newFeed Parsed feed
+     */
+    private void updateMetadata(Feed feed, Feed newFeed) {
+        feed.setUrl(newFeed.getUrl());
+        feed.setBaseUri(newFeed.getBaseUri());
+        feed.setTitle(StringUtils.abbreviate(newFeed.getTitle(), 100));
+        feed.setLanguage(newFeed.getLanguage() != null && newFeed.getLanguage().length() <= 10 ? newFeed.getLanguage() : null);
+        feed.setDescription(StringUtils.abbreviate(newFeed.getDescription(), 4000));
+        feed.setLastFetchDate(new Date());
+    }
+
+    /**
+     * Copy the validators and the content hash of the response to the stored feed.
+     *
+     * @param feed Stored feed
+     * @param newFeed Parsed feed
+     */
+    private void updateValidators(Feed feed, Feed newFeed) {
+        feed.setEtag(StringUtils.length(newFeed.getEtag()) <= 250 ? newFeed.getEtag() : null);
+        feed.setLastModified(StringUtils.length(newFeed.getLastModified()) <= 50 ? newFeed.getLastModified() : null);
+        feed.setContentHash(newFeed.getContentHash());
+    }
+
+    /**
+     * Computes the next fetch date of a feed after a successful synchronization.
+     *
+     * @param feed Synchronized feed
+     * @param updatePeriod Update period advertised by the feed, in minutes
+     * @param cadence Publication cadence of the feed, in minutes
+     * @param newArticleCount Number of new articles
+     */
+    private void reschedule(Feed feed, Integer updatePeriod, Integer cadence, int newArticleCount) {
+        FeedPollingPolicy feedPollingPolicy = feedService.getFeedPollingPolicy();
+        int interval = feedPollingPolicy.getInterval(feed.getFetchInterval(), updatePeriod, cadence, newArticleCount);
+        new FeedDao().updateSchedule(feed.getId(), feedPollingPolicy.getNextFetchDate(interval), interval);
+    }
+}
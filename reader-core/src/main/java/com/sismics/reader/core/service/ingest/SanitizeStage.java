@@ -0,0 +1,49 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.util.sanitizer.ArticleSanitizer;
+import com.sismics.reader.core.util.sanitizer.TextSanitizer;
+import com.sismics.util.UrlUtil;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Sanitizes the new and changed articles.
+ *
+ * @author jtremeaux
+ */
+public class SanitizeStage implements IngestStage {
+    @Override
+    public String getName() {
+        return "sanitize";
+    }
+
+    @Override
+    public Domain getDomain() {
+        return Domain.WORKER;
+    }
+
+    @Override
+    public void process(IngestContext context) throws Exception {
+        if (context.getRssReader() == null) {
+            return;
+        }
+
+        // The stored feed metadata are replaced by the parsed ones, resolve the relative URLs against the latter
+        Feed feed = context.getRssReader().getFeed();
+        ArticleSanitizer sanitizer = new ArticleSanitizer();
+        for (Article article : context.getNewArticleList()) {
+            sanitize(sanitizer, feed, article);
+        }
+        for (Article article : context.getChangedArticleList()) {
+            sanitize(sanitizer, feed, article);
+        }
+    }
+
+    private void sanitize(ArticleSanitizer sanitizer, Feed feed, Article article) {
+        article.setTitle(StringUtils.abbreviate(TextSanitizer.sanitize(article.getTitle()), 4000));
+        article.setCreator(StringUtils.abbreviate(article.getCreator(), 200));
+        String baseUri = UrlUtil.getBaseUri(feed, article);
+        article.setDescription(sanitizer.sanitize(baseUri, article.getDescription()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.sismics.reader.core.strategy;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.List;
@@ -7,12 +8,16 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteStreams;
 import com.newsreader.NewsApiAdapter;
 import com.sismics.reader.core.constant.Constants;
 import com.sismics.reader.core.dao.file.html.FeedChooserStrategy;
 import com.sismics.reader.core.dao.file.html.RssExtractor;
 import com.sismics.reader.core.dao.file.rss.RssReader;
+import com.sismics.reader.core.util.ContentHashUtil;
 import com.sismics.reader.core.util.http.ReaderHttpClient;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
 
 public interface FeedParsingStrategy {
     RssReader parse(String url, boolean parsePage) throws Exception;
@@ -21,18 +26,64 @@ public interface FeedParsingStrategy {
     class RssAtomParsingStrategy implements FeedParsingStrategy {
         private static final Logger log = LoggerFactory.getLogger(RssAtomParsingStrategy.class);
 
+        private static final Histogram parseTimer = MetricRegistry.getInstance().timer("reader_feed_parse_duration_seconds",
+                "Parsing time of a downloaded RSS/Atom feed");
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private final String contentHash;
+
+        private boolean notModified;
+
+        private boolean unchanged;
+
+        public RssAtomParsingStrategy() {
+            this(null, null, null);
+        }
+
+        // Conditional fetch, using the validators and the content hash of the previous response
+        public RssAtomParsingStrategy(String etag, String lastModified, String contentHash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+        }
+
+        // Returns null if the feed is not modified or identical since the previous response
         @Override
         public RssReader parse(String url, boolean parsePage) throws Exception {
             try {
                 final RssReader reader = new RssReader();
-                new ReaderHttpClient() {
+                ReaderHttpClient<String> client = new ReaderHttpClient<String>() {
                     @Override
-                    public Void process(InputStream is) throws Exception {
-                        reader.readRssFeed(is);
-                        return null;
+                    public String process(InputStream is) throws Exception {
+                        byte[] content = ByteStreams.toByteArray(is);
+                        String hash = ContentHashUtil.hash(content);
+                        if (hash.equals(contentHash)) {
+                            // Byte-identical to the previous response, don't parse it again
+                            return hash;
+                        }
+                        long startTime = System.nanoTime();
+                        reader.readRssFeed(new ByteArrayInputStream(content));
+                        parseTimer.recordSince(startTime);
+                        return hash;
                     }
-                }.open(new URL(url));
+                };
+                client.setValidators(etag, lastModified);
+                String hash = client.open(new URL(url));
+                if (client.isNotModified()) {
+                    notModified = true;
+                    return null;
+                }
+                if (hash.equals(contentHash)) {
+                    unchanged = true;
+                    return null;
+                }
                 reader.getFeed().setRssUrl(url);
+                reader.getFeed().setEtag(client.getEtag());
+                reader.getFeed().setLastModified(client.getLastModified());
+                reader.getFeed().setContentHash(hash);
                 return reader;
             } catch (Exception eRss) {
                 if (log.isDebugEnabled()) {
@@ -41,6 +92,14 @@ public interface FeedParsingStrategy {
                 throw eRss;
             }
         }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public boolean isUnchanged() {
+            return unchanged;
+        }
     }
 
     // Concrete Strategy 2: Parse as HTML Page Linking to a Feed
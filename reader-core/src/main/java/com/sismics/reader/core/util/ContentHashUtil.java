@@ -0,0 +1,61 @@
+package com.sismics.reader.core.util;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sismics.reader.core.model.jpa.Article;
+
+/**
+ * Content hashing utilities, used to detect unchanged feeds and articles.
+ * 
+ * @author jtremeaux
+ */
+public class ContentHashUtil {
+    /**
+     * Fast non cryptographic hash function.
+     */
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * Hash a raw content.
+     * 
+     * @param content Content
+     * @return Hash as an hexadecimal string
+     */
+    public static String hash(byte[] content) {
+        return HASH_FUNCTION.hashBytes(content).toString();
+    }
+
+    /**
+     * Hash the fields of an article as read from the feed, before sanitizing.
+     * 
+     * @param article Article
+     * @return Hash as an hexadecimal string
+     */
+    public static String hash(Article article) {
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        putString(hasher, article.getUrl());
+        putString(hasher, article.getBaseUri());
+        putString(hasher, article.getTitle());
+        putString(hasher, article.getCreator());
+        putString(hasher, article.getDescription());
+        putString(hasher, article.getCommentUrl());
+        hasher.putInt(article.getCommentCount() != null ? article.getCommentCount() : -1);
+        putString(hasher, article.getEnclosureUrl());
+        hasher.putInt(article.getEnclosureLength() != null ? article.getEnclosureLength() : -1);
+        putString(hasher, article.getEnclosureType());
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Add a nullable string to a hash, delimited from the next one.
+     * 
+     * @param hasher Hasher
+     * @param value Value
+     */
+    private static void putString(Hasher hasher, String value) {
+        hasher.putString(Strings.nullToEmpty(value));
+        hasher.putChar('\0');
+    }
+}
@@ -70,6 +70,24 @@ public class DirectoryUtil {
     public static File getLuceneDirectory() {
         return getDataSubDirectory("lucene");
     }
+
+    /**
+     * Returns the directory of the lucene index being rebuilt.
+     * 
+     * @return Lucene rebuild directory.
+     */
+    public static File getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene_rebuild");
+    }
+    
+    /**
+     * Returns the directory of the files being imported.
+     * 
+     * @return Import directory.
+     */
+    public static File getImportDirectory() {
+        return getDataSubDirectory("import");
+    }
     
     /**
      * Returns the log directory.
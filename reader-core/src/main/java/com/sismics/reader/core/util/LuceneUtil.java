@@ -1,16 +1,12 @@
 package com.sismics.reader.core.util;
 
-import com.sismics.reader.core.dao.lucene.ReaderStandardAnalyzer;
 import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.service.IndexingService;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.SerialMergeScheduler;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Lucene utils.
@@ -25,49 +21,34 @@ public class LuceneUtil {
 
     /**
      * Encapsulate a process into a Lucene context.
+     * The process uses the shared index writer, its changes are committed periodically.
      * 
      * @param runnable Runnable
      */
     public static void handle(LuceneRunnable runnable) {
-        // Standard analyzer
-        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_42, new ReaderStandardAnalyzer(Version.LUCENE_42));
-        
-        // Merge sequentially, because Lucene writing is already done asynchronously 
-        config.setMergeScheduler(new SerialMergeScheduler());
-        
-        // Creating index writer
-        Directory directory = AppContext.getInstance().getDirectoryIndexingService().getDirectory();
-        IndexWriter indexWriter = null;
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        Lock lock = indexingService.getSwapLock().readLock();
+        lock.lock();
         try {
-            indexWriter = new IndexWriter(directory, config);
-        } catch (IOException e) {
-            log.error("Cannot create IndexWriter", e);
-        }
+            run(runnable, indexingService.getIndexWriter());
 
-        // Unlock index if needed
-        try {
-            if (IndexWriter.isLocked(directory)) {
-                IndexWriter.unlock(directory);
+            // The index being rebuilt may have been read past the changed articles already
+            IndexWriter rebuildWriter = indexingService.getRebuildWriter();
+            if (rebuildWriter != null) {
+                run(runnable, rebuildWriter);
             }
-        } catch (IOException e) {
-            log.error("Cannot unlock Lucene directory", e);
+        } finally {
+            lock.unlock();
         }
-        
+        indexingService.indexChanged();
+    }
+
+    private static void run(LuceneRunnable runnable, IndexWriter indexWriter) {
         try {
             runnable.run(indexWriter);
         } catch (Exception e) {
+            // The writer is shared, its pending changes can't be rolled back
             log.error("Error in running index writing transaction", e);
-            try {
-                indexWriter.rollback();
-            } catch (IOException e1) {
-                log.error("Cannot rollback index writing transaction", e1);
-            }
-        }
-        
-        try {
-            indexWriter.close();
-        } catch (IOException e) {
-            log.error("Cannot close IndexWriter", e);
         }
     }
     
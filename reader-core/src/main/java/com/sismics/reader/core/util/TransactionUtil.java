@@ -1,5 +1,7 @@
 package com.sismics.reader.core.util;
 
+import java.util.List;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 
@@ -24,14 +26,15 @@ public class TransactionUtil {
      * Encapsulate a process into a transactional context.
      * 
      * @param runnable Runnable
+     * @return False if the transaction is rolled back, true if it is committed or left to the current context
      */
-    public static void handle(Runnable runnable) {
+    public static boolean handle(Runnable runnable) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         
         if (em != null) {
             // We are already in a transactional context, nothing to do
             runnable.run();
-            return;
+            return true;
         }
         
         try {
@@ -63,7 +66,7 @@ public class TransactionUtil {
                     log.error("Error closing entity manager", ce);
                 }
             }
-            return;
+            return false;
         }
         
         ThreadLocalContext.cleanup();
@@ -78,6 +81,39 @@ public class TransactionUtil {
                 } catch (Exception e) {
                     log.error("Error closing entity manager", e);
                 }
+                runAfterCommit(context.removeAfterCommitList());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs an action once the current transaction is committed, or immediately outside of a transactional context.
+     * The action is dropped if the transaction is rolled back.
+     * The action runs outside of the transaction, and must only update the state held in memory.
+     * 
+     * @param runnable Action
+     */
+    public static void afterCommit(Runnable runnable) {
+        ThreadLocalContext context = ThreadLocalContext.get();
+        if (context.isInTransactionalContext()) {
+            context.addAfterCommit(runnable);
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Runs the actions registered until the commit of a transaction.
+     * 
+     * @param runnableList Actions
+     */
+    public static void runAfterCommit(List<Runnable> runnableList) {
+        for (Runnable runnable : runnableList) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                log.error("Error running an action after commit", e);
             }
         }
     }
@@ -86,8 +122,26 @@ public class TransactionUtil {
      * Commits the current transaction, and flushes the changes to the database.
      */
     public static void commit() {
-        EntityTransaction tx = ThreadLocalContext.get().getEntityManager().getTransaction();
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityTransaction tx = context.getEntityManager().getTransaction();
         tx.commit();
         tx.begin();
+        runAfterCommit(context.removeAfterCommitList());
+    }
+
+    /**
+     * Rolls back the current transaction if it is still active, and begins a new one.
+     * The entities loaded by the transaction are detached, and the actions registered to run after its commit are dropped.
+     */
+    public static void rollback() {
+        ThreadLocalContext context = ThreadLocalContext.get();
+        context.removeAfterCommitList();
+        EntityManager em = context.getEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        if (tx.isActive()) {
+            tx.rollback();
+        }
+        em.clear();
+        tx.begin();
     }
 }
@@ -30,6 +30,31 @@ public abstract class ReaderHttpClient<T> {
      */
     private int timeout = 20000;
 
+    /**
+     * Entity tag sent as If-None-Match, from a previous response.
+     */
+    private String ifNoneMatch;
+
+    /**
+     * Date sent as If-Modified-Since, from a previous response.
+     */
+    private String ifModifiedSince;
+
+    /**
+     * Entity tag of the response.
+     */
+    private String etag;
+
+    /**
+     * Last modification date of the response.
+     */
+    private String lastModified;
+
+    /**
+     * True if the server answered 304 Not Modified.
+     */
+    private boolean notModified;
+
     static {
         if (EnvironmentUtil.isSslTrustAll()) {
             sslSocketFactory = CertUtil.getTrustAllSocketFactory();
@@ -40,8 +65,10 @@ public abstract class ReaderHttpClient<T> {
 
     /**
      * Open and process a stream from a URL.
+     * If the resource is not modified since the validators of a previous response, the stream is not processed.
      * 
      * @param url URL
+     * @return Result of the processing, or null if not modified
      */
     public T open(URL url) throws Exception {
         Closer closer = Closer.create();
@@ -59,6 +86,14 @@ public abstract class ReaderHttpClient<T> {
                 }
             }
             
+            // Nothing to download
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                notModified = true;
+                return null;
+            }
+            etag = connection.getHeaderField("ETag");
+            lastModified = connection.getHeaderField("Last-Modified");
+            
             InputStream is = closer.register(connection.getInputStream());
             return process(is);
         } catch (IOException e) {
@@ -86,6 +121,12 @@ public abstract class ReaderHttpClient<T> {
         connection.setRequestProperty("User-Agent", USER_AGENT);
         connection.setConnectTimeout(timeout);
         connection.setReadTimeout(timeout);
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            connection.setRequestProperty("If-Modified-Since", ifModifiedSince);
+        }
         return connection;
     }
     
@@ -94,4 +135,42 @@ public abstract class ReaderHttpClient<T> {
     public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
+
+    /**
+     * Makes the request conditional, using the validators of a previous response.
+     * 
+     * @param etag Previous entity tag
+     * @param lastModified Previous last modification date
+     */
+    public void setValidators(String etag, String lastModified) {
+        this.ifNoneMatch = etag;
+        this.ifModifiedSince = lastModified;
+    }
+
+    /**
+     * Getter of etag.
+     *
+     * @return etag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Getter of lastModified.
+     *
+     * @return lastModified
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Getter of notModified.
+     *
+     * @return notModified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
 }
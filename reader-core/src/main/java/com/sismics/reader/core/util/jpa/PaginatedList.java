@@ -28,6 +28,11 @@ public class PaginatedList<T> {
      */
     private List<T> resultList;
     
+    /**
+     * True if more records follow the current page.
+     */
+    private boolean hasMore;
+    
     /**
      * Constructor of PaginatedList.
      * 
@@ -75,6 +80,24 @@ public class PaginatedList<T> {
         this.resultList = resultList;
     }
 
+    /**
+     * Getter of hasMore.
+     *
+     * @return hasMore
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Setter of hasMore.
+     *
+     * @param hasMore hasMore
+     */
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
     /**
      * Getter of limit.
      *
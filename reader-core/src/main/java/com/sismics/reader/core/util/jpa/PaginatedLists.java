@@ -177,6 +177,44 @@ public class PaginatedLists {
         executeResultQuery(paginatedList, queryParam);
     }
 
+    /**
+     * Executes a paginated request with 1 native query, without counting the number of results.
+     * Meant for the lists paginated after a record: one more record than the page is read to know if more follow.
+     *
+     * @param paginatedList Paginated list object containing parameters, and into which results are added by side effects
+     * @param queryParam Query parameters
+     * @param sortCriteria Sort criteria
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> void executeKeysetQuery(PaginatedList<E> paginatedList, QueryParam queryParam, SortCriteria sortCriteria) {
+        if (sortCriteria != null) {
+            queryParam.setSortCriteria(sortCriteria);
+        }
+        StringBuilder sb = new StringBuilder(getQueryString(queryParam));
+        if (queryParam.getSortCriteria() != null) {
+            sb.append(getOrderByClause(queryParam.getSortCriteria()));
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query query = em.createNativeQuery(sb.toString());
+        mapQueryParam(query, queryParam);
+        mapFilterColumn(query, queryParam);
+
+        query.setFirstResult(paginatedList.getOffset());
+        query.setMaxResults(paginatedList.getLimit() + 1);
+
+        List<E> resultList = query.getResultList();
+        paginatedList.setHasMore(resultList.size() > paginatedList.getLimit());
+        if (paginatedList.isHasMore()) {
+            resultList = resultList.subList(0, paginatedList.getLimit());
+        }
+        if (queryParam.getResultMapper() != null) {
+            paginatedList.setResultList(queryParam.getResultMapper().map(resultList));
+        } else {
+            paginatedList.setResultList(resultList);
+        }
+    }
+
     /**
      * Get the order by clause from the sort criteria.
      *
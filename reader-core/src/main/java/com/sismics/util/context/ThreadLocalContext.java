@@ -1,6 +1,8 @@
 package com.sismics.util.context;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Context associated to a user request, and stored in a ThreadLocal.
@@ -17,6 +19,11 @@ public class ThreadLocalContext {
      * Entity manager.
      */
     private EntityManager entityManager;
+
+    /**
+     * Actions to run after the commit of the current transaction.
+     */
+    private List<Runnable> afterCommitList = new ArrayList<Runnable>();
     
     /**
      * Private constructor.
@@ -72,4 +79,24 @@ public class ThreadLocalContext {
     public void setEntityManager(EntityManager entityManager) {
         this.entityManager = entityManager;
     }
+
+    /**
+     * Adds an action to run after the commit of the current transaction.
+     *
+     * @param runnable Action
+     */
+    public void addAfterCommit(Runnable runnable) {
+        afterCommitList.add(runnable);
+    }
+
+    /**
+     * Returns the actions to run after the commit of the current transaction, and removes them from the context.
+     *
+     * @return Actions
+     */
+    public List<Runnable> removeAfterCommitList() {
+        List<Runnable> runnableList = afterCommitList;
+        afterCommitList = new ArrayList<Runnable>();
+        return runnableList;
+    }
 }
@@ -25,6 +25,18 @@ public abstract class BaseDao<T, C> {
         PaginatedLists.executePaginatedQuery(list, getQueryParam(criteria, filterCriteria), sortCriteria);
     }
 
+    /**
+     * Search a page of items by criteria, without counting them.
+     *
+     * @param list Paginated list (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @param filterCriteria Filter criteria
+     */
+    public void findPageByCriteria(PaginatedList<T> list, C criteria, SortCriteria sortCriteria, FilterCriteria filterCriteria) {
+        PaginatedLists.executeKeysetQuery(list, getQueryParam(criteria, filterCriteria), sortCriteria);
+    }
+
     /**
      * Search items by criteria.
      *
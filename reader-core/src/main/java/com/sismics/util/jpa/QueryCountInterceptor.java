@@ -0,0 +1,61 @@
+package com.sismics.util.jpa;
+
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.MetricRegistry;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Interceptor;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Hibernate interceptor counting the SQL statements prepared by a session.
+ * A new instance is created for each entity manager (see persistence.xml).
+ *
+ * @author jtremeaux
+ */
+public class QueryCountInterceptor extends EmptyInterceptor {
+    /**
+     * Serial UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of statements prepared by all the sessions.
+     */
+    private static final Counter statementCounter = MetricRegistry.getInstance().counter("reader_jpa_statements",
+            "SQL statements prepared by Hibernate");
+
+    /**
+     * Number of statements prepared by this session.
+     */
+    private int queryCount;
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        queryCount++;
+        statementCounter.inc();
+        return sql;
+    }
+
+    /**
+     * Getter of queryCount.
+     *
+     * @return queryCount
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * Returns the number of statements prepared by the session of an entity manager.
+     *
+     * @param em Entity manager
+     * @return Number of statements, or -1 if the session is not intercepted
+     */
+    public static int getQueryCount(EntityManager em) {
+        Interceptor interceptor = ((SessionImplementor) em.unwrap(Session.class)).getInterceptor();
+        return interceptor instanceof QueryCountInterceptor ? ((QueryCountInterceptor) interceptor).getQueryCount() : -1;
+    }
+}
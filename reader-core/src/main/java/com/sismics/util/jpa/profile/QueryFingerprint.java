@@ -0,0 +1,60 @@
+package com.sismics.util.jpa.profile;
+
+import java.util.regex.Pattern;
+
+/**
+ * Shape of a query: the query without its literal values, so that the queries differing only by
+ * their parameters have the same fingerprint.
+ *
+ * @author jtremeaux
+ */
+public final class QueryFingerprint {
+    /**
+     * String literal, with its escaped quotes.
+     */
+    private static final Pattern STRING_PATTERN = Pattern.compile("'(?:[^']|'')*'");
+
+    /**
+     * Numeric literal, outside of an identifier.
+     */
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    /**
+     * Named or numbered parameter.
+     */
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile(":\\w+|\\?\\d+");
+
+    /**
+     * List of values, e.g. the values of an "in" predicate.
+     */
+    private static final Pattern LIST_PATTERN = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    /**
+     * Spaces.
+     */
+    private static final Pattern SPACE_PATTERN = Pattern.compile("\\s+");
+
+    /**
+     * Private constructor.
+     */
+    private QueryFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of a query.
+     *
+     * @param query Query string, JPQL or SQL
+     * @return Fingerprint
+     */
+    public static String of(String query) {
+        if (query == null) {
+            return "";
+        }
+        String fingerprint = STRING_PATTERN.matcher(query).replaceAll("?");
+        fingerprint = PARAMETER_PATTERN.matcher(fingerprint).replaceAll("?");
+        fingerprint = NUMBER_PATTERN.matcher(fingerprint).replaceAll("?");
+        fingerprint = LIST_PATTERN.matcher(fingerprint).replaceAll("(?)");
+        fingerprint = SPACE_PATTERN.matcher(fingerprint).replaceAll(" ");
+        return fingerprint.trim().toLowerCase();
+    }
+}
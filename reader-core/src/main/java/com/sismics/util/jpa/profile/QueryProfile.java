@@ -0,0 +1,234 @@
+package com.sismics.util.jpa.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries executed during a request, grouped by shape.
+ * Filled by the thread handling the request, and read once the request is completed.
+ *
+ * @author jtremeaux
+ */
+public class QueryProfile {
+    /**
+     * Name of the request, e.g. its method and its path.
+     */
+    private final String name;
+
+    /**
+     * Start date, in milliseconds.
+     */
+    private final long startDate;
+
+    /**
+     * Start time, from {@link System#nanoTime()}.
+     */
+    private final long startTime;
+
+    /**
+     * Duration of the request, in milliseconds.
+     */
+    private long duration;
+
+    /**
+     * Executions by query shape.
+     */
+    private final Map<String, QueryStats> queryStatsMap = new LinkedHashMap<String, QueryStats>();
+
+    /**
+     * Number of queries executed.
+     */
+    private int queryCount;
+
+    /**
+     * Total execution time of the queries, in nanoseconds.
+     */
+    private long queryTime;
+
+    /**
+     * Number of SQL statements run by the request, including the ones not issued by a query, -1 if unknown.
+     */
+    private int statementCount = -1;
+
+    /**
+     * True if the request took longer than the threshold.
+     */
+    private boolean slow;
+
+    /**
+     * True if the request ran more statements than the threshold.
+     */
+    private boolean chatty;
+
+    /**
+     * Query shapes executed more times than the threshold, the most executed first.
+     */
+    private List<QueryStats> repeatedList = Collections.emptyList();
+
+    /**
+     * Constructor of QueryProfile.
+     *
+     * @param name Name of the request
+     */
+    QueryProfile(String name) {
+        this.name = name;
+        startDate = System.currentTimeMillis();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Records the execution of a query.
+     *
+     * @param query Query string
+     * @param duration Execution time in nanoseconds
+     */
+    void queryExecuted(String query, long duration) {
+        String fingerprint = QueryFingerprint.of(query);
+        QueryStats queryStats = queryStatsMap.get(fingerprint);
+        if (queryStats == null) {
+            queryStats = new QueryStats(fingerprint);
+            queryStatsMap.put(fingerprint, queryStats);
+        }
+        queryStats.executed(duration);
+        queryCount++;
+        queryTime += duration;
+    }
+
+    /**
+     * Ends the profile and checks it against the thresholds.
+     *
+     * @param statementCount Number of SQL statements run by the request, -1 if unknown
+     * @param slowThreshold Duration of a slow request, in milliseconds
+     * @param chattyThreshold Number of statements of a chatty request
+     * @param repeatThreshold Number of executions of the same query shape flagged as N+1
+     */
+    void complete(int statementCount, long slowThreshold, int chattyThreshold, int repeatThreshold) {
+        duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        this.statementCount = statementCount;
+        slow = duration >= slowThreshold;
+        chatty = Math.max(statementCount, queryCount) >= chattyThreshold;
+        repeatedList = new ArrayList<QueryStats>();
+        for (QueryStats queryStats : queryStatsMap.values()) {
+            if (queryStats.getCount() >= repeatThreshold) {
+                repeatedList.add(queryStats);
+            }
+        }
+        Collections.sort(repeatedList, new Comparator<QueryStats>() {
+            @Override
+            public int compare(QueryStats o1, QueryStats o2) {
+                return Integer.compare(o2.getCount(), o1.getCount());
+            }
+        });
+    }
+
+    /**
+     * Returns true if the request is slow, chatty, or repeats a query shape.
+     *
+     * @return True if the request is worth reporting
+     */
+    public boolean isFlagged() {
+        return slow || chatty || !repeatedList.isEmpty();
+    }
+
+    /**
+     * Returns the executions by query shape, the longest total execution time first.
+     *
+     * @return Executions by query shape
+     */
+    public List<QueryStats> getQueryStatsList() {
+        List<QueryStats> queryStatsList = new ArrayList<QueryStats>(queryStatsMap.values());
+        Collections.sort(queryStatsList, new Comparator<QueryStats>() {
+            @Override
+            public int compare(QueryStats o1, QueryStats o2) {
+                return Long.compare(o2.getTime(), o1.getTime());
+            }
+        });
+        return queryStatsList;
+    }
+
+    /**
+     * Getter of name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter of startDate.
+     *
+     * @return startDate
+     */
+    public long getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Getter of duration.
+     *
+     * @return duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Getter of queryCount.
+     *
+     * @return queryCount
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * Getter of queryTime.
+     *
+     * @return queryTime
+     */
+    public long getQueryTime() {
+        return queryTime;
+    }
+
+    /**
+     * Getter of statementCount.
+     *
+     * @return statementCount
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Getter of slow.
+     *
+     * @return slow
+     */
+    public boolean isSlow() {
+        return slow;
+    }
+
+    /**
+     * Getter of chatty.
+     *
+     * @return chatty
+     */
+    public boolean isChatty() {
+        return chatty;
+    }
+
+    /**
+     * Getter of repeatedList.
+     *
+     * @return repeatedList
+     */
+    public List<QueryStats> getRepeatedList() {
+        return repeatedList;
+    }
+}
@@ -0,0 +1,335 @@
+package com.sismics.util.jpa.profile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiles the JPQL and native queries executed by the requests.
+ * When enabled, each request gets an entity manager recording the execution time of its queries by shape.
+ * The slow requests, the chatty ones and the ones repeating a query shape (N+1 selects) are logged
+ * by this class's logger, and kept in a buffer of the last reported requests.
+ * The queries are intercepted at the entity manager rather than in {@link com.sismics.util.jpa.BaseDao}:
+ * the base DAO only runs the searches by criteria, the other queries are created by the DAOs directly.
+ *
+ * @author jtremeaux
+ */
+public class QueryProfiler {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(QueryProfiler.class);
+
+    /**
+     * Number of reported requests kept.
+     */
+    private static final int BUFFER_SIZE = 100;
+
+    /**
+     * Number of query shapes written in the log for a request.
+     */
+    private static final int LOGGED_QUERY_COUNT = 5;
+
+    /**
+     * Singleton instance.
+     */
+    private static QueryProfiler instance;
+
+    /**
+     * True if the requests are profiled.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Duration of a slow request, in milliseconds.
+     */
+    private volatile long slowThreshold = 500;
+
+    /**
+     * Number of SQL statements of a chatty request.
+     */
+    private volatile int chattyThreshold = 100;
+
+    /**
+     * Number of executions of the same query shape flagged as N+1.
+     */
+    private volatile int repeatThreshold = 10;
+
+    /**
+     * Last reported requests, the newest first.
+     */
+    private final Deque<QueryProfile> profileDeque = new ArrayDeque<QueryProfile>();
+
+    /**
+     * Returns the query profiler of the application.
+     *
+     * @return Query profiler
+     */
+    public static synchronized QueryProfiler getInstance() {
+        if (instance == null) {
+            instance = new QueryProfiler();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts profiling a request.
+     *
+     * @param name Name of the request
+     * @return Profile, or null if profiling is disabled
+     */
+    public QueryProfile start(String name) {
+        return enabled ? new QueryProfile(name) : null;
+    }
+
+    /**
+     * Returns an entity manager recording the queries executed into a profile.
+     *
+     * @param em Entity manager
+     * @param profile Profile
+     * @return Profiling entity manager
+     */
+    public EntityManager wrap(EntityManager em, QueryProfile profile) {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] { EntityManager.class }, new EntityManagerHandler(em, profile));
+    }
+
+    /**
+     * Ends the profile of a request, and reports the request if it is slow, chatty or repeats a query shape.
+     *
+     * @param profile Profile
+     * @param statementCount Number of SQL statements run by the request, -1 if unknown
+     */
+    public void complete(QueryProfile profile, int statementCount) {
+        profile.complete(statementCount, slowThreshold, chattyThreshold, repeatThreshold);
+        if (!profile.isFlagged()) {
+            return;
+        }
+
+        synchronized (profileDeque) {
+            profileDeque.addFirst(profile);
+            if (profileDeque.size() > BUFFER_SIZE) {
+                profileDeque.removeLast();
+            }
+        }
+
+        if (log.isWarnEnabled()) {
+            StringBuilder sb = new StringBuilder()
+                    .append(profile.isSlow() ? "Slow" : profile.isChatty() ? "Chatty" : "Repetitive").append(" request ").append(profile.getName())
+                    .append(" in ").append(profile.getDuration()).append("ms: ")
+                    .append(profile.getQueryCount()).append(" queries in ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(profile.getQueryTime())).append("ms, ")
+                    .append(profile.getStatementCount()).append(" statements");
+            List<QueryStats> queryStatsList = !profile.getRepeatedList().isEmpty() ?
+                    profile.getRepeatedList() : profile.getQueryStatsList();
+            for (QueryStats queryStats : queryStatsList.subList(0, Math.min(queryStatsList.size(), LOGGED_QUERY_COUNT))) {
+                sb.append("\n  ").append(queryStats.getCount()).append("x in ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(queryStats.getTime())).append("ms: ")
+                        .append(queryStats.getFingerprint());
+            }
+            log.warn(sb.toString());
+        }
+    }
+
+    /**
+     * Returns the last reported requests.
+     *
+     * @return Profiles, the newest first
+     */
+    public List<QueryProfile> getProfileList() {
+        synchronized (profileDeque) {
+            return new ArrayList<QueryProfile>(profileDeque);
+        }
+    }
+
+    /**
+     * Getter of enabled.
+     *
+     * @return enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter of enabled.
+     *
+     * @param enabled enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Getter of slowThreshold.
+     *
+     * @return slowThreshold
+     */
+    public long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    /**
+     * Setter of slowThreshold.
+     *
+     * @param slowThreshold slowThreshold
+     */
+    public void setSlowThreshold(long slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Getter of chattyThreshold.
+     *
+     * @return chattyThreshold
+     */
+    public int getChattyThreshold() {
+        return chattyThreshold;
+    }
+
+    /**
+     * Setter of chattyThreshold.
+     *
+     * @param chattyThreshold chattyThreshold
+     */
+    public void setChattyThreshold(int chattyThreshold) {
+        this.chattyThreshold = chattyThreshold;
+    }
+
+    /**
+     * Getter of repeatThreshold.
+     *
+     * @return repeatThreshold
+     */
+    public int getRepeatThreshold() {
+        return repeatThreshold;
+    }
+
+    /**
+     * Setter of repeatThreshold.
+     *
+     * @param repeatThreshold repeatThreshold
+     */
+    public void setRepeatThreshold(int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    /**
+     * Invokes a method on the proxied object, without wrapping its exceptions.
+     *
+     * @param target Proxied object
+     * @param method Method
+     * @param args Arguments
+     * @return Result
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Entity manager handing out profiling queries.
+     */
+    private static class EntityManagerHandler implements InvocationHandler {
+        /**
+         * Entity manager.
+         */
+        private final EntityManager em;
+
+        /**
+         * Profile of the request.
+         */
+        private final QueryProfile profile;
+
+        /**
+         * Constructor of EntityManagerHandler.
+         *
+         * @param em Entity manager
+         * @param profile Profile of the request
+         */
+        private EntityManagerHandler(EntityManager em, QueryProfile profile) {
+            this.em = em;
+            this.profile = profile;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryProfiler.invoke(em, method, args);
+            if (!(result instanceof Query) || !method.getName().startsWith("create")) {
+                return result;
+            }
+
+            // The query string, or the name of a named query
+            String queryString = args[0] instanceof String ? (String) args[0] : String.valueOf(args[0]);
+            Class<?> queryInterface = result instanceof TypedQuery ? TypedQuery.class : Query.class;
+            return Proxy.newProxyInstance(Query.class.getClassLoader(), new Class<?>[] { queryInterface },
+                    new QueryHandler((Query) result, queryString, profile));
+        }
+    }
+
+    /**
+     * Query recording its executions.
+     */
+    private static class QueryHandler implements InvocationHandler {
+        /**
+         * Query.
+         */
+        private final Query query;
+
+        /**
+         * Query string.
+         */
+        private final String queryString;
+
+        /**
+         * Profile of the request.
+         */
+        private final QueryProfile profile;
+
+        /**
+         * Constructor of QueryHandler.
+         *
+         * @param query Query
+         * @param queryString Query string
+         * @param profile Profile of the request
+         */
+        private QueryHandler(Query query, String queryString, QueryProfile profile) {
+            this.query = query;
+            this.queryString = queryString;
+            this.profile = profile;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.equals("getResultList") && !name.equals("getSingleResult") && !name.equals("executeUpdate")) {
+                Object result = QueryProfiler.invoke(query, method, args);
+
+                // Keep the calls chained on the proxy
+                return result == query ? proxy : result;
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                return QueryProfiler.invoke(query, method, args);
+            } finally {
+                profile.queryExecuted(queryString, System.nanoTime() - startTime);
+            }
+        }
+    }
+}
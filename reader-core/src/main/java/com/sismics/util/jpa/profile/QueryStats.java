@@ -0,0 +1,84 @@
+package com.sismics.util.jpa.profile;
+
+/**
+ * Executions of the queries of the same shape during a request.
+ *
+ * @author jtremeaux
+ */
+public class QueryStats {
+    /**
+     * Shape of the queries.
+     */
+    private final String fingerprint;
+
+    /**
+     * Number of executions.
+     */
+    private int count;
+
+    /**
+     * Total execution time, in nanoseconds.
+     */
+    private long time;
+
+    /**
+     * Longest execution time, in nanoseconds.
+     */
+    private long timeMax;
+
+    /**
+     * Constructor of QueryStats.
+     *
+     * @param fingerprint Shape of the queries
+     */
+    QueryStats(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Records an execution.
+     *
+     * @param duration Execution time in nanoseconds
+     */
+    void executed(long duration) {
+        count++;
+        time += duration;
+        timeMax = Math.max(timeMax, duration);
+    }
+
+    /**
+     * Getter of fingerprint.
+     *
+     * @return fingerprint
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Getter of count.
+     *
+     * @return count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter of time.
+     *
+     * @return time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Getter of timeMax.
+     *
+     * @return timeMax
+     */
+    public long getTimeMax() {
+        return timeMax;
+    }
+}
@@ -0,0 +1,270 @@
+package com.sismics.util.log4j;
+
+import com.sismics.reader.core.util.jpa.PaginatedList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed capacity buffer of log entries, the oldest entries being overwritten by the new ones.
+ * Entries are added without locking. The positions of the entries are indexed by level and by tag,
+ * so that a search on a level or a tag only reads the matching entries.
+ *
+ * @author jtremeaux
+ */
+public class LogBuffer {
+    /**
+     * Maximum number of entries.
+     */
+    private final int capacity;
+
+    /**
+     * Entries, the entry of sequence n is in the slot n modulo the capacity.
+     */
+    private final AtomicReferenceArray<LogEntry> entryArray;
+
+    /**
+     * Sequence of the next entry.
+     */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Sequences of the entries by level, in lower case.
+     */
+    private final ConcurrentMap<String, SequenceIndex> levelIndexMap = new ConcurrentHashMap<String, SequenceIndex>();
+
+    /**
+     * Sequences of the entries by tag, in lower case.
+     */
+    private final ConcurrentMap<String, SequenceIndex> tagIndexMap = new ConcurrentHashMap<String, SequenceIndex>();
+
+    /**
+     * Constructor of LogBuffer.
+     *
+     * @param capacity Maximum number of entries
+     */
+    public LogBuffer(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        entryArray = new AtomicReferenceArray<LogEntry>(this.capacity);
+    }
+
+    /**
+     * Adds an entry, overwriting the oldest one if the buffer is full.
+     *
+     * @param logEntry Entry
+     */
+    public void add(LogEntry logEntry) {
+        long sequence = nextSequence.getAndIncrement();
+        logEntry.setSequence(sequence);
+
+        // A writer a full lap ahead may already have taken the slot, the newest entry wins
+        int slot = (int) (sequence % capacity);
+        LogEntry current;
+        do {
+            current = entryArray.get(slot);
+            if (current != null && current.getSequence() > sequence) {
+                return;
+            }
+        } while (!entryArray.compareAndSet(slot, current, logEntry));
+
+        getIndex(levelIndexMap, logEntry.getLevel()).add(sequence);
+        getIndex(tagIndexMap, logEntry.getTag()).add(sequence);
+    }
+
+    /**
+     * Returns the index of a level or a tag, creating it if needed.
+     *
+     * @param indexMap Indexes
+     * @param key Level or tag
+     * @return Index
+     */
+    private SequenceIndex getIndex(ConcurrentMap<String, SequenceIndex> indexMap, String key) {
+        key = key.toLowerCase();
+        SequenceIndex index = indexMap.get(key);
+        if (index == null) {
+            index = new SequenceIndex(capacity);
+            SequenceIndex previousIndex = indexMap.putIfAbsent(key, index);
+            if (previousIndex != null) {
+                index = previousIndex;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds some entries, the newest first.
+     * The smallest matching index is read, the other criteria are checked on its entries only.
+     *
+     * @param criteria Search criteria
+     * @param list Paginated list (modified by side effect)
+     */
+    public void find(LogCriteria criteria, PaginatedList<LogEntry> list) {
+        String level = criteria.getLevel();
+        String tag = criteria.getTag();
+        String message = criteria.getMessage();
+        long oldestSequence = Math.max(0, nextSequence.get() - capacity);
+        List<LogEntry> resultList = new ArrayList<LogEntry>();
+        list.setResultList(resultList);
+
+        // Choose the index to read, nothing matches if a level or a tag was never logged
+        SequenceIndex index = null;
+        if (level != null) {
+            index = levelIndexMap.get(level);
+            if (index == null) {
+                list.setResultCount(0);
+                return;
+            }
+        }
+        if (tag != null) {
+            SequenceIndex tagIndex = tagIndexMap.get(tag);
+            if (tagIndex == null) {
+                list.setResultCount(0);
+                return;
+            }
+            if (index == null || tagIndex.size() < index.size()) {
+                index = tagIndex;
+            }
+        }
+
+        // Read the candidates, the newest first
+        SequenceCursor cursor = index != null ? index.cursor() : new SequenceCursor(null, nextSequence.get(), capacity);
+        int resultCount = 0;
+        while (cursor.hasNext()) {
+            long sequence = cursor.next();
+            if (sequence < oldestSequence) {
+                // Overwritten by a newer entry
+                continue;
+            }
+            if (resultList.size() >= list.getLimit() && message == null && (level == null || tag == null)) {
+                // The page is complete and the cursor reads only matching entries, count the remaining ones without reading them
+                resultCount++;
+                continue;
+            }
+            LogEntry logEntry = entryArray.get((int) (sequence % capacity));
+            if (logEntry == null || logEntry.getSequence() != sequence) {
+                continue;
+            }
+            if ((level == null || logEntry.getLevel().equalsIgnoreCase(level)) &&
+                    (tag == null || logEntry.getTag().equalsIgnoreCase(tag)) &&
+                    (message == null || logEntry.getMessage().toLowerCase().contains(message))) {
+                if (resultCount >= list.getOffset() && resultList.size() < list.getLimit()) {
+                    resultList.add(logEntry);
+                }
+                resultCount++;
+            }
+        }
+        list.setResultCount(resultCount);
+    }
+
+    /**
+     * Fixed capacity index of the sequences of the entries with the same level or tag.
+     */
+    private static class SequenceIndex {
+        /**
+         * Sequences, -1 for the positions not written yet.
+         */
+        private final AtomicLongArray sequenceArray;
+
+        /**
+         * Next position in the index.
+         */
+        private final AtomicLong nextPosition = new AtomicLong();
+
+        /**
+         * Constructor of SequenceIndex.
+         *
+         * @param capacity Maximum number of sequences
+         */
+        private SequenceIndex(int capacity) {
+            long[] sequences = new long[capacity];
+            Arrays.fill(sequences, -1);
+            sequenceArray = new AtomicLongArray(sequences);
+        }
+
+        /**
+         * Adds the sequence of an entry.
+         *
+         * @param sequence Sequence
+         */
+        private void add(long sequence) {
+            long position = nextPosition.getAndIncrement();
+            sequenceArray.set((int) (position % sequenceArray.length()), sequence);
+        }
+
+        /**
+         * Returns the number of sequences in the index, some of them may be overwritten in the buffer.
+         *
+         * @return Number of sequences
+         */
+        private long size() {
+            return Math.min(nextPosition.get(), sequenceArray.length());
+        }
+
+        /**
+         * Returns a cursor on the sequences, the newest first.
+         *
+         * @return Cursor
+         */
+        private SequenceCursor cursor() {
+            return new SequenceCursor(sequenceArray, nextPosition.get(), sequenceArray.length());
+        }
+    }
+
+    /**
+     * Cursor on the sequences of an index, or on all the sequences of the buffer, the newest first.
+     */
+    private static class SequenceCursor {
+        /**
+         * Sequences of the index, null to read all the sequences of the buffer.
+         */
+        private final AtomicLongArray sequenceArray;
+
+        /**
+         * Next position to read, exclusive.
+         */
+        private long position;
+
+        /**
+         * First position to read.
+         */
+        private final long endPosition;
+
+        /**
+         * Constructor of SequenceCursor.
+         *
+         * @param sequenceArray Sequences of the index, null to read all the sequences of the buffer
+         * @param nextPosition Next position, not written yet
+         * @param capacity Maximum number of positions
+         */
+        private SequenceCursor(AtomicLongArray sequenceArray, long nextPosition, int capacity) {
+            this.sequenceArray = sequenceArray;
+            this.position = nextPosition;
+            this.endPosition = Math.max(0, nextPosition - capacity);
+        }
+
+        /**
+         * Returns true if some sequences remain.
+         *
+         * @return True if some sequences remain
+         */
+        private boolean hasNext() {
+            return position > endPosition;
+        }
+
+        /**
+         * Returns the next sequence, -1 if not written yet.
+         *
+         * @return Sequence
+         */
+        private long next() {
+            position--;
+            return sequenceArray != null ? sequenceArray.get((int) (position % sequenceArray.length())) : position;
+        }
+    }
+}
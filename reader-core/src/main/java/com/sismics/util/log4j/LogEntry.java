@@ -25,6 +25,11 @@ public class LogEntry {
      * Message logged.
      */
     private String message;
+
+    /**
+     * Position of the entry in its log buffer.
+     */
+    private long sequence;
     
     /**
      * Constructor of LogEntry.
@@ -76,4 +81,22 @@ public class LogEntry {
     public String getMessage() {
         return message;
     }
+
+    /**
+     * Getter of sequence.
+     *
+     * @return sequence
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Setter of sequence.
+     *
+     * @param sequence sequence
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }
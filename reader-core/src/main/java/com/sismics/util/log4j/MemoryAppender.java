@@ -1,34 +1,28 @@
 package com.sismics.util.log4j;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
-import com.google.common.collect.Lists;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 
 /**
  * Memory appender for Log4J.
+ * The logs are kept in a fixed capacity buffer, appending a log takes no lock.
  *
  * @author jtremeaux
  */
 public class MemoryAppender extends AppenderSkeleton {
-
     /**
-     * Maximum size of the queue.
+     * Default maximum number of log entries.
      */
-    private int size;
-    
+    private static final int DEFAULT_SIZE = 1000;
+
     /**
-     * Queue of log entries.
+     * Buffer of log entries.
      */
-    private final Queue<LogEntry> logQueue = new ConcurrentLinkedQueue<LogEntry>();
+    private volatile LogBuffer logBuffer = new LogBuffer(DEFAULT_SIZE);
 
     @Override
     public boolean requiresLayout() {
@@ -43,26 +37,47 @@ public class MemoryAppender extends AppenderSkeleton {
         closed = true;
     }
 
+    /**
+     * Same as the parent method, without its lock.
+     *
+     * @param event Event
+     */
     @Override
-    public synchronized void append(LoggingEvent event) {
-        // TODO Don't use size()
-        while (logQueue.size() > size) {
-            logQueue.remove();
-        }
+    public void doAppend(LoggingEvent event) {
         if (closed) {
             LogLog.warn("This appender is already closed, cannot append event.");
             return;
         }
-        
+        if (!isAsSevereAsThreshold(event.getLevel())) {
+            return;
+        }
+
+        Filter filter = getFirstFilter();
+        while (filter != null) {
+            int decision = filter.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            }
+            if (decision == Filter.ACCEPT) {
+                break;
+            }
+            filter = filter.getNext();
+        }
+
+        append(event);
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
         String loggerName = getLoggerName(event);
 
         LogEntry logEntry = new LogEntry(System.currentTimeMillis(), event.getLevel().toString(), loggerName, event.getMessage().toString());
-        logQueue.add(logEntry);
+        logBuffer.add(logEntry);
     }
 
     /**
      * Extracts the class name of the logger, without the package name.
-     * 
+     *
      * @param event Event
      * @return Class name
      */
@@ -74,56 +89,23 @@ public class MemoryAppender extends AppenderSkeleton {
             event.getLoggerName();
     }
 
-    /**
-     * Getter of logList.
-     *
-     * @return logList
-     */
-    public Queue<LogEntry> getLogList() {
-        return logQueue;
-    }
-
     /**
      * Setter of size.
+     * The logs already appended are dropped.
      *
      * @param size size
      */
     public void setSize(int size) {
-        this.size = size;
+        logBuffer = new LogBuffer(size);
     }
 
     /**
      * Find some logs.
-     * 
+     *
      * @param criteria Search criteria
      * @param list Paginated list (modified by side effect)
      */
     public void find(LogCriteria criteria, PaginatedList<LogEntry> list) {
-        List<LogEntry> logEntryList = new LinkedList<LogEntry>();
-        final String level = criteria.getLevel();
-        final String tag = criteria.getTag();
-        final String message = criteria.getMessage();
-        int resultCount = 0;
-        for (Iterator<LogEntry> it = logQueue.iterator(); it.hasNext();) {
-            LogEntry logEntry = it.next();
-            if ((level == null || logEntry.getLevel().toLowerCase().equals(level)) &&
-                    (tag == null || logEntry.getTag().toLowerCase().equals(tag)) &&
-                    (message == null || logEntry.getMessage().toLowerCase().contains(message))) {
-                logEntryList.add(logEntry);
-                resultCount++;
-            }
-        }
-        
-        int fromIndex = logEntryList.size() - list.getOffset() - list.getLimit();
-        if (fromIndex < 0) {
-            fromIndex = 0;
-        }
-        int toIndex = logEntryList.size() - list.getOffset();
-        if (toIndex > logEntryList.size()) {
-            toIndex = logEntryList.size();
-        }
-        List<LogEntry> logEntrySubList = Lists.reverse(logEntryList.subList(fromIndex, toIndex));
-        list.setResultCount(resultCount);
-        list.setResultList(logEntrySubList);
+        logBuffer.find(criteria, list);
     }
-}
\ No newline at end of file
+}
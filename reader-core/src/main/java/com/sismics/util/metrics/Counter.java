@@ -0,0 +1,57 @@
+package com.sismics.util.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter, only goes up.
+ *
+ * @author jtremeaux
+ */
+public class Counter extends Metric {
+    /**
+     * Value, striped to keep the hot paths free of contention.
+     */
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Constructor of Counter.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labelMap Labels
+     */
+    Counter(String name, String help, Map<String, String> labelMap) {
+        super(name, help, labelMap);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.COUNTER;
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void inc() {
+        value.increment();
+    }
+
+    /**
+     * Adds some amount to the counter.
+     *
+     * @param amount Amount, must be positive
+     */
+    public void inc(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Returns the value of the counter.
+     *
+     * @return Value
+     */
+    public long getValue() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,43 @@
+package com.sismics.util.metrics;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Gauge, its value is read from the measured component when the metrics are collected.
+ *
+ * @author jtremeaux
+ */
+public class Gauge extends Metric {
+    /**
+     * Supplier of the value.
+     */
+    private final DoubleSupplier supplier;
+
+    /**
+     * Constructor of Gauge.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labelMap Labels
+     * @param supplier Supplier of the value
+     */
+    Gauge(String name, String help, Map<String, String> labelMap, DoubleSupplier supplier) {
+        super(name, help, labelMap);
+        this.supplier = supplier;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.GAUGE;
+    }
+
+    /**
+     * Returns the current value of the gauge.
+     *
+     * @return Value
+     */
+    public double getValue() {
+        return supplier.getAsDouble();
+    }
+}
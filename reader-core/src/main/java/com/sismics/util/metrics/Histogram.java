@@ -0,0 +1,193 @@
+package com.sismics.util.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of values, in log-linear buckets: each power of two is split in 8 buckets of the same width,
+ * so that a percentile is known within 12.5% whatever the magnitude of the values, from 1ns to several hours.
+ * Recording a value is a few atomic increments, without lock or allocation.
+ *
+ * @author jtremeaux
+ */
+public class Histogram extends Metric {
+    /**
+     * Number of buckets per power of two, as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Number of buckets, enough for all the positive longs.
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * Factor converting the recorded values to the exported unit, e.g. from nanoseconds to seconds.
+     */
+    private final double unit;
+
+    /**
+     * Number of values in each bucket.
+     */
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Largest value recorded.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructor of Histogram.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labelMap Labels
+     * @param unit Factor converting the recorded values to the exported unit
+     */
+    Histogram(String name, String help, Map<String, String> labelMap, double unit) {
+        super(name, help, labelMap);
+        this.unit = unit;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.HISTOGRAM;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value Value, the negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        bucketCounts.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startTime Start time, from {@link System#nanoTime()}
+     */
+    public void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value Positive value
+     * @return Bucket index
+     */
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT
+                + (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     *
+     * @param index Bucket index
+     * @return Largest value
+     */
+    static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns a percentile of the values recorded, as the upper bound of its bucket.
+     *
+     * @param percentile Percentile, between 0 and 1
+     * @return Value in the exported unit, 0 if nothing was recorded
+     */
+    public double getPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = bucketCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0d;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long cumulatedCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulatedCount += counts[i];
+            if (cumulatedCount >= rank) {
+                return Math.min(getBucketUpperBound(i), max.get()) * unit;
+            }
+        }
+        return max.get() * unit;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return Number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     *
+     * @return Sum in the exported unit
+     */
+    public double getSum() {
+        return sum.sum() * unit;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return Mean in the exported unit, 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = this.count.sum();
+        return count > 0 ? sum.sum() * unit / count : 0d;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return Largest value in the exported unit
+     */
+    public double getMax() {
+        return max.get() * unit;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sismics.util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Metric of the registry, identified by its name and its labels.
+ *
+ * @author jtremeaux
+ */
+public abstract class Metric {
+    /**
+     * Type of metric.
+     */
+    public enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    /**
+     * Metric name, shared by all the metrics of a family.
+     */
+    private final String name;
+
+    /**
+     * Description of the metric family.
+     */
+    private final String help;
+
+    /**
+     * Labels, in declaration order.
+     */
+    private final Map<String, String> labelMap;
+
+    /**
+     * Constructor of Metric.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labelMap Labels
+     */
+    protected Metric(String name, String help, Map<String, String> labelMap) {
+        this.name = name;
+        this.help = help;
+        this.labelMap = Collections.unmodifiableMap(labelMap);
+    }
+
+    /**
+     * Returns the type of metric.
+     *
+     * @return Type
+     */
+    public abstract Type getType();
+
+    /**
+     * Getter of name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter of help.
+     *
+     * @return help
+     */
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Getter of labelMap.
+     *
+     * @return labelMap
+     */
+    public Map<String, String> getLabelMap() {
+        return labelMap;
+    }
+}
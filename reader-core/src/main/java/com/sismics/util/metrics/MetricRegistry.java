@@ -0,0 +1,162 @@
+package com.sismics.util.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the metrics of the application.
+ * A metric is created on first use, the next calls with the same name and labels return the same metric:
+ * the hot paths should keep a reference on their metrics rather than looking them up each time.
+ *
+ * @author jtremeaux
+ */
+public class MetricRegistry {
+    /**
+     * Factor converting nanoseconds to seconds.
+     */
+    private static final double NANOSECONDS = 1e-9;
+
+    /**
+     * Singleton instance.
+     */
+    private static MetricRegistry instance;
+
+    /**
+     * Metrics by name and labels, the metrics of a family are contiguous.
+     */
+    private final ConcurrentNavigableMap<String, Metric> metricMap = new ConcurrentSkipListMap<String, Metric>();
+
+    /**
+     * Returns the metric registry of the application.
+     *
+     * @return Metric registry
+     */
+    public static synchronized MetricRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a counter, creating it if needed.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labels Label names and values, alternately
+     * @return Counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        Map<String, String> labelMap = toLabelMap(labels);
+        return register(Counter.class, new Counter(name, help, labelMap), false);
+    }
+
+    /**
+     * Returns a histogram of values without unit, creating it if needed.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param labels Label names and values, alternately
+     * @return Histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        Map<String, String> labelMap = toLabelMap(labels);
+        return register(Histogram.class, new Histogram(name, help, labelMap, 1d), false);
+    }
+
+    /**
+     * Returns a histogram of durations, creating it if needed.
+     * The durations are recorded in nanoseconds and exported in seconds.
+     *
+     * @param name Metric name, ending with _seconds
+     * @param help Description of the metric family
+     * @param labels Label names and values, alternately
+     * @return Histogram
+     */
+    public Histogram timer(String name, String help, String... labels) {
+        Map<String, String> labelMap = toLabelMap(labels);
+        return register(Histogram.class, new Histogram(name, help, labelMap, NANOSECONDS), false);
+    }
+
+    /**
+     * Registers a gauge, replacing the previous one with the same name and labels.
+     *
+     * @param name Metric name
+     * @param help Description of the metric family
+     * @param supplier Supplier of the value
+     * @param labels Label names and values, alternately
+     * @return Gauge
+     */
+    public Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        Map<String, String> labelMap = toLabelMap(labels);
+        return register(Gauge.class, new Gauge(name, help, labelMap, supplier), true);
+    }
+
+    /**
+     * Returns all the metrics, ordered by name and labels.
+     *
+     * @return Metrics
+     */
+    public List<Metric> getMetricList() {
+        return new ArrayList<Metric>(metricMap.values());
+    }
+
+    /**
+     * Adds a metric to the registry.
+     *
+     * @param type Type of metric
+     * @param metric New metric
+     * @param replace True to replace the existing metric, false to return it
+     * @return Metric registered
+     */
+    private <T extends Metric> T register(Class<T> type, T metric, boolean replace) {
+        String key = getKey(metric.getName(), metric.getLabelMap());
+        Metric current = metricMap.get(key);
+        if (current != null && !type.isInstance(current)) {
+            throw new IllegalArgumentException("Metric " + key + " is already registered as a " + current.getType());
+        }
+        if (replace) {
+            metricMap.put(key, metric);
+            return metric;
+        }
+        current = metricMap.putIfAbsent(key, metric);
+        return current == null ? metric : type.cast(current);
+    }
+
+    /**
+     * Builds the labels of a metric.
+     *
+     * @param labels Label names and values, alternately
+     * @return Labels
+     */
+    private static Map<String, String> toLabelMap(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Each label must have a value");
+        }
+        Map<String, String> labelMap = new LinkedHashMap<String, String>();
+        for (int i = 0; i < labels.length; i += 2) {
+            labelMap.put(labels[i], labels[i + 1]);
+        }
+        return labelMap;
+    }
+
+    /**
+     * Returns the key of a metric in the registry.
+     *
+     * @param name Metric name
+     * @param labelMap Labels
+     * @return Key
+     */
+    private static String getKey(String name, Map<String, String> labelMap) {
+        StringBuilder sb = new StringBuilder(name).append('{');
+        for (Map.Entry<String, String> label : labelMap.entrySet()) {
+            sb.append(label.getKey()).append('=').append(label.getValue()).append(',');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,142 @@
+package com.sismics.util.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ * Histograms are written as summaries, with their main percentiles.
+ *
+ * @author jtremeaux
+ */
+public final class PrometheusFormat {
+    /**
+     * Content type of the format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    /**
+     * Percentiles written for the histograms.
+     */
+    public static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /**
+     * Private constructor.
+     */
+    private PrometheusFormat() {
+    }
+
+    /**
+     * Writes some metrics.
+     *
+     * @param metricList Metrics, the metrics of a family must be contiguous
+     * @return Metrics in text format
+     */
+    public static String write(List<Metric> metricList) {
+        StringBuilder sb = new StringBuilder();
+        String family = null;
+        for (Metric metric : metricList) {
+            String name = metric.getName();
+            if (metric.getType() == Metric.Type.COUNTER) {
+                name += "_total";
+            }
+            if (!name.equals(family)) {
+                family = name;
+                sb.append("# HELP ").append(name).append(' ').append(escapeHelp(metric.getHelp())).append('\n');
+                sb.append("# TYPE ").append(name).append(' ').append(getTypeName(metric.getType())).append('\n');
+            }
+
+            Map<String, String> labelMap = metric.getLabelMap();
+            switch (metric.getType()) {
+            case COUNTER:
+                writeSample(sb, name, labelMap, null, ((Counter) metric).getValue());
+                break;
+            case GAUGE:
+                writeSample(sb, name, labelMap, null, ((Gauge) metric).getValue());
+                break;
+            case HISTOGRAM:
+                Histogram histogram = (Histogram) metric;
+                for (double percentile : PERCENTILES) {
+                    writeSample(sb, name, labelMap, Double.toString(percentile), histogram.getPercentile(percentile));
+                }
+                writeSample(sb, name + "_sum", labelMap, null, histogram.getSum());
+                writeSample(sb, name + "_count", labelMap, null, histogram.getCount());
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param sb Output
+     * @param name Sample name
+     * @param labelMap Labels
+     * @param quantile Quantile label, or null
+     * @param value Value
+     */
+    private static void writeSample(StringBuilder sb, String name, Map<String, String> labelMap, String quantile, Number value) {
+        sb.append(name);
+        if (!labelMap.isEmpty() || quantile != null) {
+            sb.append('{');
+            String separator = "";
+            for (Map.Entry<String, String> label : labelMap.entrySet()) {
+                sb.append(separator).append(label.getKey()).append("=\"").append(escapeLabelValue(label.getValue())).append('"');
+                separator = ",";
+            }
+            if (quantile != null) {
+                sb.append(separator).append("quantile=\"").append(quantile).append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    /**
+     * Formats a value.
+     *
+     * @param value Value
+     * @return Formatted value
+     */
+    private static String formatValue(Number value) {
+        if (value instanceof Long) {
+            return value.toString();
+        }
+        double doubleValue = value.doubleValue();
+        if (Double.isInfinite(doubleValue)) {
+            return doubleValue > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(doubleValue);
+    }
+
+    /**
+     * Returns the name of a type in the format.
+     *
+     * @param type Type of metric
+     * @return Type name
+     */
+    private static String getTypeName(Metric.Type type) {
+        return type == Metric.Type.HISTOGRAM ? "summary" : type.name().toLowerCase();
+    }
+
+    /**
+     * Escapes a description.
+     *
+     * @param help Description
+     * @return Escaped description
+     */
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value Label value
+     * @return Escaped label value
+     */
+    private static String escapeLabelValue(String value) {
+        return escapeHelp(value).replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,4 @@
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('FEED_SYNC_THREAD_COUNT', '8');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('FEED_SYNC_MAX_IN_FLIGHT', '32');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('FEED_SYNC_MAX_PER_HOST', '2');
+update T_CONFIG set CFG_VALUE_C='7' where CFG_ID_C='DB_VERSION';
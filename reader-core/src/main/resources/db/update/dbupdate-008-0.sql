@@ -0,0 +1,6 @@
+alter table T_FEED add column FED_NEXTFETCHDATE_D datetime;
+alter table T_FEED add column FED_FETCHINTERVAL_N int;
+create index IDX_FED_NEXTFETCHDATE_D on T_FEED (FED_NEXTFETCHDATE_D);
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('FEED_SYNC_MIN_INTERVAL', '5');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('FEED_SYNC_MAX_INTERVAL', '360');
+update T_CONFIG set CFG_VALUE_C='8' where CFG_ID_C='DB_VERSION';
@@ -0,0 +1,3 @@
+alter table T_FEED add column FED_ETAG_C varchar(250);
+alter table T_FEED add column FED_LASTMODIFIED_C varchar(50);
+update T_CONFIG set CFG_VALUE_C='9' where CFG_ID_C='DB_VERSION';
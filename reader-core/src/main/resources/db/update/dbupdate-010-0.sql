@@ -0,0 +1,3 @@
+alter table T_FEED add column FED_CONTENTHASH_C varchar(32);
+alter table T_ARTICLE add column ART_CONTENTHASH_C varchar(32);
+update T_CONFIG set CFG_VALUE_C='10' where CFG_ID_C='DB_VERSION';
@@ -0,0 +1,3 @@
+alter table T_JOB add column JOB_FILE_C varchar(500);
+alter table T_JOB add column JOB_CHECKPOINT_N int default 0 not null;
+update T_CONFIG set CFG_VALUE_C='12' where CFG_ID_C='DB_VERSION';
@@ -0,0 +1,5 @@
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('QUERY_PROFILE_ENABLED', 'false');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('QUERY_PROFILE_SLOW_THRESHOLD', '500');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('QUERY_PROFILE_CHATTY_THRESHOLD', '100');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('QUERY_PROFILE_REPEAT_THRESHOLD', '10');
+update T_CONFIG set CFG_VALUE_C='13' where CFG_ID_C='DB_VERSION';
@@ -0,0 +1,6 @@
+create index IDX_USA_IDUSER_IDARTICLE_C on T_USER_ARTICLE (USA_IDUSER_C, USA_IDARTICLE_C);
+update T_USER_ARTICLE ua set USA_READDATE_D = (select max(ua2.USA_READDATE_D) from T_USER_ARTICLE ua2 where ua2.USA_IDUSER_C = ua.USA_IDUSER_C and ua2.USA_IDARTICLE_C = ua.USA_IDARTICLE_C), USA_STARREDDATE_D = (select max(ua2.USA_STARREDDATE_D) from T_USER_ARTICLE ua2 where ua2.USA_IDUSER_C = ua.USA_IDUSER_C and ua2.USA_IDARTICLE_C = ua.USA_IDARTICLE_C) where exists (select ua2.USA_ID_C from T_USER_ARTICLE ua2 where ua2.USA_IDUSER_C = ua.USA_IDUSER_C and ua2.USA_IDARTICLE_C = ua.USA_IDARTICLE_C and ua2.USA_ID_C <> ua.USA_ID_C);
+delete from T_USER_ARTICLE ua where exists (select ua2.USA_ID_C from T_USER_ARTICLE ua2 where ua2.USA_IDUSER_C = ua.USA_IDUSER_C and ua2.USA_IDARTICLE_C = ua.USA_IDARTICLE_C and (ua2.USA_DELETEDATE_D is null or ua.USA_DELETEDATE_D is not null) and (ua2.USA_DELETEDATE_D is null and ua.USA_DELETEDATE_D is not null or ua2.USA_ID_C < ua.USA_ID_C));
+drop index IDX_USA_IDUSER_IDARTICLE_C;
+alter table T_USER_ARTICLE add constraint UK_USA_IDUSER_IDARTICLE_C unique (USA_IDUSER_C, USA_IDARTICLE_C);
+update T_CONFIG set CFG_VALUE_C='14' where CFG_ID_C='DB_VERSION';
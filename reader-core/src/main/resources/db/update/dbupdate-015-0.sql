@@ -0,0 +1,2 @@
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('COUNTER_RECONCILE_DATE', '0');
+update T_CONFIG set CFG_VALUE_C='15' where CFG_ID_C='DB_VERSION';
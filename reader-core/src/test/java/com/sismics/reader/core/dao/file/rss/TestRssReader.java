@@ -499,6 +499,7 @@ public class TestRssReader {
         assertEquals("http://autostrip.fr/index.php", feed.getUrl());
         assertEquals("fr", feed.getLanguage());
         assertEquals("", feed.getDescription());
+        assertEquals(Integer.valueOf(60 * 24), reader.getUpdatePeriod());
         List<Article> articleList = reader.getArticleList();
         assertEquals(10, articleList.size());
         Article article = articleList.get(0);
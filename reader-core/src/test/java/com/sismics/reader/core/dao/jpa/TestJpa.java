@@ -1,12 +1,29 @@
 package com.sismics.reader.core.dao.jpa;
 
 import com.sismics.reader.BaseTransactionalTest;
-import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.event.ArticleDeletedAsyncEvent;
+import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.service.ArticleFeedService;
+import com.sismics.reader.core.service.CounterService;
 import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.jpa.PaginatedList;
+import com.sismics.reader.core.util.jpa.PaginatedLists;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Tests the persistance layer.
@@ -32,4 +49,205 @@ public class TestJpa extends BaseTransactionalTest {
         assertNotNull(user);
         assertEquals("toto@reader.com", user.getEmail());
     }
+
+    @Test
+    public void testArticleFanOutAndRemoval() throws Exception {
+        // Create 2 users subscribed to a feed
+        Feed feed = new Feed();
+        feed.setRssUrl("http://example.com/feed");
+        new FeedDao().create(feed);
+        List<String> userIdList = new ArrayList<String>();
+        List<String> feedSubscriptionIdList = new ArrayList<String>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setUsername("fanout" + i);
+            user.setEmail("fanout" + i + "@reader.com");
+            user.setLocaleId("fr_FR");
+            user.setRoleId("user");
+            String userId = new UserDao().create(user);
+            userIdList.add(userId);
+
+            Category category = new Category();
+            category.setUserId(userId);
+            category.setOrder(0);
+            new CategoryDao().create(category);
+
+            FeedSubscription feedSubscription = new FeedSubscription();
+            feedSubscription.setUserId(userId);
+            feedSubscription.setFeedId(feed.getId());
+            feedSubscription.setCategoryId(category.getId());
+            feedSubscription.setOrder(0);
+            feedSubscription.setUnreadCount(0);
+            feedSubscriptionIdList.add(new FeedSubscriptionDao().create(feedSubscription));
+        }
+        TransactionUtil.commit();
+
+        // Create 3 articles
+        List<String> articleIdList = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            Article article = new Article();
+            article.setFeedId(feed.getId());
+            article.setGuid("guid" + i);
+            article.setPublicationDate(new Date());
+            articleIdList.add(new ArticleDao().create(article));
+        }
+
+        // Fan out the articles
+        CounterService counterService = new CounterService();
+        new UserArticleDao().create(articleIdList, userIdList);
+        for (int i = 0; i < userIdList.size(); i++) {
+            counterService.add(feedSubscriptionIdList.get(i), userIdList.get(i), articleIdList.size(), articleIdList.size(), 0);
+        }
+
+        // The counters are pending once committed
+        FeedSubscriptionDto feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                .setUserId(userIdList.get(0)));
+        counterService.applyPending(feedSubscriptionDto);
+        assertEquals(0, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+        TransactionUtil.commit();
+
+        // The pending counters are visible before the flush
+        feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                .setUserId(userIdList.get(0)));
+        assertEquals(0, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+        counterService.applyPending(feedSubscriptionDto);
+        assertEquals(3, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+        counterService.flush();
+        TransactionUtil.commit();
+
+        // Check the user articles and counters
+        for (String userId : userIdList) {
+            assertEquals(3, new UserArticleDao().findByCriteria(new UserArticleCriteria()
+                    .setUserId(userId)
+                    .setVisible(true)
+                    .setUnread(true)).size());
+            feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                    .setUserId(userId));
+            assertEquals(3, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+            assertEquals(3, feedSubscriptionDto.getTotalUserArticleCount().intValue());
+        }
+
+        // Remove an article
+        List<String> articleToRemoveIdList = articleIdList.subList(0, 1);
+        new FeedSubscriptionDao().removeArticles(articleToRemoveIdList);
+        new ArticleDao().delete(articleToRemoveIdList);
+        TransactionUtil.commit();
+
+        // Check the user articles and counters
+        for (String userId : userIdList) {
+            assertEquals(2, new UserArticleDao().findByCriteria(new UserArticleCriteria()
+                    .setUserId(userId)
+                    .setVisible(true)
+                    .setUnread(true)).size());
+            feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                    .setUserId(userId));
+            assertEquals(2, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+            assertEquals(2, feedSubscriptionDto.getTotalUserArticleCount().intValue());
+        }
+
+        // Let the counters drift, then reconcile them with the user articles
+        counterService.add(feedSubscriptionIdList.get(0), userIdList.get(0), 5, -1, 1);
+        TransactionUtil.commit();
+        counterService.flush();
+        TransactionUtil.commit();
+        feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                .setUserId(userIdList.get(0)));
+        assertEquals(7, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+        counterService.reconcile();
+        TransactionUtil.commit();
+        feedSubscriptionDto = new FeedSubscriptionDao().findFirstByCriteria(new FeedSubscriptionCriteria()
+                .setUserId(userIdList.get(0)));
+        assertEquals(2, feedSubscriptionDto.getUnreadUserArticleCount().intValue());
+        assertEquals(2, feedSubscriptionDto.getTotalUserArticleCount().intValue());
+        assertEquals(0, feedSubscriptionDto.getStarredUserArticleCount().intValue());
+    }
+
+    @Test
+    public void testArticleToRemove() throws Exception {
+        // Create a feed with 3 articles
+        Feed feed = new Feed();
+        feed.setRssUrl("http://example.com/removal");
+        new FeedDao().create(feed);
+        TransactionUtil.commit();
+        Date date = new Date();
+        List<Article> articleList = new ArrayList<Article>();
+        for (int i = 0; i < 3; i++) {
+            Article article = new Article();
+            article.setFeedId(feed.getId());
+            article.setGuid("removal" + i);
+            article.setPublicationDate(new Date(date.getTime() - i * 1000));
+            new ArticleDao().create(article);
+            articleList.add(article);
+        }
+        TransactionUtil.commit();
+
+        // The article missing from the stream is removed, and its event is partitioned by feed
+        Article removedArticle = articleList.remove(1);
+        List<Article> articleToRemoveList = new ArticleFeedService().getArticleToRemove(articleList);
+        assertEquals(1, articleToRemoveList.size());
+        assertEquals(removedArticle.getId(), articleToRemoveList.get(0).getId());
+        ArticleDeletedAsyncEvent articleDeletedAsyncEvent = new ArticleDeletedAsyncEvent();
+        articleDeletedAsyncEvent.setArticleList(articleToRemoveList);
+        assertEquals(feed.getId(), articleDeletedAsyncEvent.getPartitionKey());
+    }
+
+    @Test
+    public void testKeysetPagination() throws Exception {
+        // Create a user subscribed to a feed
+        Feed feed = new Feed();
+        feed.setRssUrl("http://example.com/keyset");
+        new FeedDao().create(feed);
+        User user = new User();
+        user.setUsername("keyset");
+        user.setEmail("keyset@reader.com");
+        user.setLocaleId("fr_FR");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        Category category = new Category();
+        category.setUserId(userId);
+        category.setOrder(0);
+        new CategoryDao().create(category);
+
+        FeedSubscription feedSubscription = new FeedSubscription();
+        feedSubscription.setUserId(userId);
+        feedSubscription.setFeedId(feed.getId());
+        feedSubscription.setCategoryId(category.getId());
+        feedSubscription.setOrder(0);
+        feedSubscription.setUnreadCount(0);
+        new FeedSubscriptionDao().create(feedSubscription);
+        TransactionUtil.commit();
+
+        // Create 5 articles, some published at the same date
+        List<String> articleIdList = new ArrayList<String>();
+        Date date = new Date();
+        for (int i = 0; i < 5; i++) {
+            Article article = new Article();
+            article.setFeedId(feed.getId());
+            article.setGuid("keyset" + i);
+            article.setPublicationDate(new Date(date.getTime() - (i / 2) * 1000));
+            articleIdList.add(new ArticleDao().create(article));
+        }
+        new UserArticleDao().create(articleIdList, Collections.singletonList(userId));
+        TransactionUtil.commit();
+
+        // Read the articles 2 by 2
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Set<String> articleIdSet = new HashSet<String>();
+        String afterUserArticleId = null;
+        for (int page = 0; page < 3; page++) {
+            PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(2, null);
+            userArticleDao.findPageByCriteria(paginatedList, new UserArticleCriteria()
+                    .setUserId(userId)
+                    .setVisible(true)
+                    .setAfterUserArticleId(afterUserArticleId), null, null);
+            assertEquals(page < 2 ? 2 : 1, paginatedList.getResultList().size());
+            assertEquals(page < 2, paginatedList.isHasMore());
+            for (UserArticleDto userArticleDto : paginatedList.getResultList()) {
+                assertTrue(articleIdSet.add(userArticleDto.getArticleId()));
+                afterUserArticleId = userArticleDto.getId();
+            }
+        }
+        assertEquals(5, articleIdSet.size());
+    }
 }
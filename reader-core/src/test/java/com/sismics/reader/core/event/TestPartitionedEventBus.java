@@ -0,0 +1,123 @@
+package com.sismics.reader.core.event;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the partitioned event bus.
+ *
+ * @author bgamard
+ */
+public class TestPartitionedEventBus {
+    @Test
+    public void testPartitionOrder() throws Exception {
+        PartitionedEventBus eventBus = new PartitionedEventBus("test", 1, 10)
+                .addPool("trace", 4, 2, TraceEvent.class);
+        TraceListener listener = new TraceListener();
+        eventBus.register(listener);
+
+        // The events of a partition are handled in order, the small queues make the posters wait
+        for (int i = 0; i < 50; i++) {
+            for (String partitionKey : new String[] { "feed1", "feed2", "feed3" }) {
+                eventBus.post(new TraceEvent(partitionKey, i));
+            }
+        }
+        assertTrue(eventBus.drain(10, TimeUnit.SECONDS));
+        for (String partitionKey : new String[] { "feed1", "feed2", "feed3" }) {
+            List<Integer> sequenceList = listener.traceMap.get(partitionKey);
+            assertEquals(50, sequenceList.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, sequenceList.get(i).intValue());
+            }
+        }
+
+        EventPool pool = eventBus.getPoolList().get(1);
+        assertEquals("trace", pool.getName());
+        assertEquals(150, pool.getProcessedCount());
+        assertEquals(0, pool.getPendingCount());
+        assertEquals(150, pool.getLagHistogram().getCount());
+        assertEquals(0, eventBus.getPoolList().get(0).getProcessedCount());
+
+        // The queued events are handled on shutdown, then the bus refuses new events
+        eventBus.post(new TraceEvent("feed1", 50));
+        assertTrue(eventBus.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(51, listener.traceMap.get("feed1").size());
+        try {
+            eventBus.post(new TraceEvent("feed1", 51));
+            fail();
+        } catch (Exception e) {
+            // NOP
+        }
+    }
+
+    @Test
+    public void testPostFromListener() throws Exception {
+        PartitionedEventBus eventBus = new PartitionedEventBus("test", 1, 10)
+                .addPool("trace", 1, 1, TraceEvent.class);
+        final TraceListener listener = new TraceListener();
+        eventBus.register(listener);
+        eventBus.register(new Object() {
+            @Subscribe
+            public void onTraceEvent(TraceEvent event) {
+                if (event.sequence == 0) {
+                    // The events posted to the full lane of the listener are queued in order
+                    for (int i = 1; i <= 20; i++) {
+                        eventBus.post(new TraceEvent(event.partitionKey, i));
+                    }
+                }
+            }
+        });
+
+        eventBus.post(new TraceEvent("feed1", 0));
+        assertTrue(eventBus.drain(10, TimeUnit.SECONDS));
+        List<Integer> sequenceList = listener.traceMap.get("feed1");
+        assertEquals(21, sequenceList.size());
+        for (int i = 0; i <= 20; i++) {
+            assertEquals(i, sequenceList.get(i).intValue());
+        }
+        assertTrue(eventBus.shutdown(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Event carrying its position in its partition.
+     */
+    public static class TraceEvent implements PartitionedEvent {
+        private final String partitionKey;
+
+        private final int sequence;
+
+        public TraceEvent(String partitionKey, int sequence) {
+            this.partitionKey = partitionKey;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String getPartitionKey() {
+            return partitionKey;
+        }
+    }
+
+    /**
+     * Listener tracing the events by partition.
+     */
+    public static class TraceListener {
+        private final ListMultimap<String, Integer> traceMap = Multimaps.synchronizedListMultimap(
+                ArrayListMultimap.<String, Integer>create());
+
+        @Subscribe
+        @AllowConcurrentEvents
+        public void onTraceEvent(TraceEvent event) throws InterruptedException {
+            Thread.sleep(1);
+            traceMap.put(event.partitionKey, event.sequence);
+        }
+    }
+}
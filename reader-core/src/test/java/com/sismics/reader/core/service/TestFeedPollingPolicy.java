@@ -0,0 +1,114 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.reader.core.model.jpa.Article;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the feed polling policy.
+ *
+ * @author jtremeaux
+ */
+public class TestFeedPollingPolicy {
+    @Test
+    public void testInterval() throws Exception {
+        FeedPollingPolicy policy = new FeedPollingPolicy(5, 1440);
+
+        // New articles: sample twice per publication
+        assertEquals(5, policy.getInterval(null, null, null, 2));
+        assertEquals(60, policy.getInterval(60, null, 120, 1));
+        assertEquals(30, policy.getInterval(60, null, null, 1));
+
+        // Nothing new: back off
+        assertEquals(90, policy.getInterval(60, null, null, 0));
+        assertEquals(200, policy.getInterval(60, null, 400, 0));
+
+        // Don't poll more often than the publisher asks to
+        assertEquals(720, policy.getInterval(60, 720, 120, 1));
+        assertEquals(90, policy.getInterval(60, 30, null, 0));
+
+        // Bounded by the shortest and the longest interval
+        assertEquals(5, policy.getInterval(4, null, null, 1));
+        assertEquals(5, policy.getInterval(60, null, 2, 1));
+        assertEquals(1440, policy.getInterval(1400, null, null, 0));
+        assertEquals(1440, policy.getInterval(60, 10000, null, 1));
+        assertEquals(1440, policy.getInterval(Integer.MAX_VALUE, null, null, 0));
+
+        // The longest interval is never shorter than the shortest one
+        policy = new FeedPollingPolicy(30, 10);
+        assertEquals(30, policy.getInterval(null, null, null, 1));
+        assertEquals(30, policy.getInterval(1000, null, null, 0));
+    }
+
+    @Test
+    public void testFailureInterval() throws Exception {
+        FeedPollingPolicy policy = new FeedPollingPolicy(5, 1440);
+
+        // Exponential backoff from the shortest interval
+        assertEquals(10, policy.getFailureInterval(null, 1));
+        assertEquals(10, policy.getFailureInterval(5, 1));
+        assertEquals(20, policy.getFailureInterval(5, 2));
+        assertEquals(40, policy.getFailureInterval(5, 3));
+        assertEquals(10, policy.getFailureInterval(5, 0));
+
+        // Never poll a failing feed more often than before
+        assertEquals(120, policy.getFailureInterval(120, 1));
+
+        // Bounded by the longest interval, without overflowing
+        assertEquals(1440, policy.getFailureInterval(5, 20));
+        assertEquals(1440, policy.getFailureInterval(5, Integer.MAX_VALUE));
+        assertEquals(1440, policy.getFailureInterval(Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    public void testPublicationCadence() throws Exception {
+        long now = System.currentTimeMillis();
+
+        // Not enough dated articles
+        assertNull(FeedPollingPolicy.getPublicationCadence(new ArrayList<Article>()));
+        assertNull(FeedPollingPolicy.getPublicationCadence(Collections.singletonList(createArticle(now))));
+        List<Article> articleList = new ArrayList<Article>();
+        articleList.add(createArticle(now));
+        articleList.add(new Article());
+        assertNull(FeedPollingPolicy.getPublicationCadence(articleList));
+
+        // All articles published at once
+        articleList.add(createArticle(now));
+        assertNull(FeedPollingPolicy.getPublicationCadence(articleList));
+
+        // Mean time between publications, articles without a date are ignored
+        articleList = new ArrayList<Article>();
+        articleList.add(createArticle(now - TimeUnit.MINUTES.toMillis(120)));
+        articleList.add(new Article());
+        articleList.add(createArticle(now));
+        articleList.add(createArticle(now - TimeUnit.MINUTES.toMillis(60)));
+        assertEquals(Integer.valueOf(60), FeedPollingPolicy.getPublicationCadence(articleList));
+
+        // Only the most recent articles are used
+        articleList = new ArrayList<Article>();
+        for (int i = 0; i < 10; i++) {
+            articleList.add(createArticle(now - TimeUnit.MINUTES.toMillis(10 * i)));
+        }
+        articleList.add(createArticle(now - TimeUnit.DAYS.toMillis(10)));
+        assertEquals(Integer.valueOf(10), FeedPollingPolicy.getPublicationCadence(articleList));
+    }
+
+    /**
+     * Create an article published at a date.
+     *
+     * @param time Publication date
+     * @return Article
+     */
+    private Article createArticle(long time) {
+        Article article = new Article();
+        article.setPublicationDate(new Date(time));
+        return article;
+    }
+}
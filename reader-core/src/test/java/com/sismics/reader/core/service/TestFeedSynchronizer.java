@@ -0,0 +1,166 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.service.ingest.IngestContext;
+import com.sismics.reader.core.service.ingest.IngestPipeline;
+import com.sismics.reader.core.service.ingest.IngestStage;
+import com.sismics.util.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the concurrent feed synchronizer.
+ *
+ * @author jtremeaux
+ */
+public class TestFeedSynchronizer {
+    @Test
+    public void testSynchronize() throws Exception {
+        final FetchStage fetchStage = new FetchStage();
+        final PersistStage persistStage = new PersistStage(fetchStage);
+        final IngestPipeline pipeline = new IngestPipeline(Lists.<IngestStage>newArrayList(fetchStage, persistStage),
+                new MetricRegistry());
+        FeedService feedService = new FeedService() {
+            @Override
+            public IngestPipeline getIngestPipeline() {
+                return pipeline;
+            }
+        };
+        FeedSynchronizer feedSynchronizer = new FeedSynchronizer(feedService, 4, 6, 1);
+
+        // 4 feeds on each of 3 hosts, 2 of them failing
+        List<IngestContext> contextList = new ArrayList<IngestContext>();
+        for (String host : Lists.newArrayList("a.example.com", "b.example.com", "c.example.com")) {
+            for (int i = 0; i < 4; i++) {
+                contextList.add(new IngestContext("http://" + host + "/feed" + i));
+            }
+        }
+        contextList.add(new IngestContext("http://a.example.com/error"));
+        contextList.add(new IngestContext("http://b.example.com/fatal"));
+
+        final List<IngestContext> completedList = Collections.synchronizedList(new ArrayList<IngestContext>());
+        try {
+            feedSynchronizer.synchronize(contextList, new FeedSynchronizer.IngestListener() {
+                @Override
+                public void onCompleted(IngestContext context) {
+                    completedList.add(context);
+                }
+            });
+        } finally {
+            feedSynchronizer.shutdown();
+        }
+
+        // Only the failing feeds fail, the others are persisted
+        assertEquals(14, completedList.size());
+        for (IngestContext context : completedList) {
+            boolean failing = context.getUrl().endsWith("/error") || context.getUrl().endsWith("/fatal");
+            assertEquals(context.getUrl(), failing, context.getException() != null);
+            assertEquals(context.getUrl(), !failing, persistStage.persistedList.contains(context.getUrl()));
+        }
+        assertEquals(12, persistStage.persistedList.size());
+
+        // Feeds are fetched concurrently, one at a time per host, and no more than 6 are waiting to be persisted
+        assertTrue(fetchStage.maxActiveCount.get() > 1);
+        assertEquals(1, fetchStage.maxHostActiveCount.get());
+        assertTrue(fetchStage.maxInFlightCount.get() <= 6);
+        assertEquals(0, feedSynchronizer.getStats().getInFlightCounter().get());
+        assertEquals(0, feedSynchronizer.getStats().getQueueDepthCounter().get());
+    }
+
+    /**
+     * Fetching stage recording its concurrency, failing on some feeds.
+     */
+    private static class FetchStage implements IngestStage {
+        private final AtomicInteger activeCount = new AtomicInteger();
+
+        private final AtomicInteger maxActiveCount = new AtomicInteger();
+
+        private final ConcurrentMap<String, AtomicInteger> hostActiveCountMap = new ConcurrentHashMap<String, AtomicInteger>();
+
+        private final AtomicInteger maxHostActiveCount = new AtomicInteger();
+
+        private final AtomicInteger startedCount = new AtomicInteger();
+
+        private final AtomicInteger persistedCount = new AtomicInteger();
+
+        private final AtomicInteger maxInFlightCount = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "fetch";
+        }
+
+        @Override
+        public Domain getDomain() {
+            return Domain.WORKER;
+        }
+
+        @Override
+        public void process(IngestContext context) throws Exception {
+            updateMax(maxInFlightCount, startedCount.incrementAndGet() - persistedCount.get());
+            String host = new URL(context.getUrl()).getHost();
+            hostActiveCountMap.putIfAbsent(host, new AtomicInteger());
+            AtomicInteger hostActiveCount = hostActiveCountMap.get(host);
+            updateMax(maxActiveCount, activeCount.incrementAndGet());
+            updateMax(maxHostActiveCount, hostActiveCount.incrementAndGet());
+            try {
+                Thread.sleep(20);
+            } finally {
+                hostActiveCount.decrementAndGet();
+                activeCount.decrementAndGet();
+            }
+
+            if (context.getUrl().endsWith("/error")) {
+                throw new IllegalStateException("Fetch error");
+            }
+            if (context.getUrl().endsWith("/fatal")) {
+                throw new Error("Fetch error");
+            }
+        }
+
+        private static void updateMax(AtomicInteger max, int value) {
+            int current;
+            while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+                // NOP
+            }
+        }
+    }
+
+    /**
+     * Persisting stage recording the persisted feeds.
+     */
+    private static class PersistStage implements IngestStage {
+        private final FetchStage fetchStage;
+
+        private final List<String> persistedList = new ArrayList<String>();
+
+        private PersistStage(FetchStage fetchStage) {
+            this.fetchStage = fetchStage;
+        }
+
+        @Override
+        public String getName() {
+            return "persist";
+        }
+
+        @Override
+        public Domain getDomain() {
+            return Domain.STORE;
+        }
+
+        @Override
+        public void process(IngestContext context) throws Exception {
+            persistedList.add(context.getUrl());
+            fetchStage.persistedCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.FeedDao;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.service.FeedService;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.metrics.MetricRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the conditional download of the feeds.
+ *
+ * @author jtremeaux
+ */
+public class TestFetchStage extends BaseTransactionalTest {
+    private static final String ETAG = "\"xkcd-1\"";
+
+    private static final String LAST_MODIFIED = "Mon, 02 Jan 2017 10:00:00 GMT";
+
+    @Test
+    public void testNotModified() throws Exception {
+        InputStream is = getClass().getResourceAsStream("/feed/feed_atom_xkcd.xml");
+        final byte[] content = ByteStreams.toByteArray(is);
+        is.close();
+
+        // Serve the feed with validators, and answer 304 when they match
+        final List<String> validatorList = Collections.synchronizedList(new ArrayList<String>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/feed.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                validatorList.add(ifNoneMatch + " / " + ifModifiedSince);
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+                if (ETAG.equals(ifNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().add("Content-Type", "application/atom+xml");
+                    exchange.sendResponseHeaders(200, content.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(content);
+                    os.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/feed.xml";
+            FeedService feedService = new FeedService();
+            IngestPipeline pipeline = new IngestPipeline(Lists.<IngestStage>newArrayList(
+                    new FetchStage(feedService),
+                    new PersistStage(feedService)), new MetricRegistry());
+
+            // First fetch: downloaded and parsed, the validators are kept
+            IngestContext context = new IngestContext(url);
+            new FetchStage(feedService).process(context);
+            assertNotNull(context.getRssReader());
+            assertFalse(context.isNotModified());
+            Feed newFeed = context.getRssReader().getFeed();
+            assertEquals(ETAG, newFeed.getEtag());
+            assertEquals(LAST_MODIFIED, newFeed.getLastModified());
+            assertEquals("null / null", validatorList.get(0));
+
+            Feed feed = new Feed();
+            feed.setRssUrl(url);
+            feed.setEtag(newFeed.getEtag());
+            feed.setLastModified(newFeed.getLastModified());
+            FeedDao feedDao = new FeedDao();
+            String feedId = feedDao.create(feed);
+            TransactionUtil.commit();
+
+            // Next fetch: the validators are sent back, the feed is not modified
+            FeedDto feedDto = new FeedDto();
+            feedDto.setId(feedId);
+            feedDto.setRssUrl(url);
+            feedDto.setEtag(feed.getEtag());
+            feedDto.setLastModified(feed.getLastModified());
+            context = new IngestContext(feedDto);
+            Date startDate = new Date();
+            pipeline.run(context);
+            TransactionUtil.commit();
+            assertEquals(2, validatorList.size());
+            assertEquals(ETAG + " / " + LAST_MODIFIED, validatorList.get(1));
+
+            // Parsing is skipped, the feed is only rescheduled
+            assertTrue(context.isNotModified());
+            assertNull(context.getRssReader());
+            assertTrue(context.getNewArticleList().isEmpty());
+            assertEquals(1, pipeline.getStageStatsMap().get("persist").getCount());
+            ThreadLocalContext.get().getEntityManager().clear();
+            feed = feedDao.getByRssUrl(url);
+            assertNotNull(feed.getLastFetchDate());
+            assertFalse(feed.getLastFetchDate().before(startDate));
+            assertNotNull(feed.getFetchInterval());
+            assertTrue(feed.getNextFetchDate().after(startDate));
+            assertEquals(ETAG, feed.getEtag());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
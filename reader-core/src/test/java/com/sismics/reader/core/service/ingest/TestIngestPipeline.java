@@ -0,0 +1,102 @@
+package com.sismics.reader.core.service.ingest;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.service.ingest.IngestStage.Domain;
+import com.sismics.util.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the feed ingest pipeline.
+ *
+ * @author jtremeaux
+ */
+public class TestIngestPipeline {
+    @Test
+    public void testSegments() throws Exception {
+        List<String> trace = new ArrayList<String>();
+        IngestPipeline pipeline = new IngestPipeline(Lists.<IngestStage>newArrayList(
+                new TraceStage("fetch", Domain.WORKER, trace),
+                new TraceStage("normalize", Domain.WORKER, trace),
+                new TraceStage("diff", Domain.STORE, trace),
+                new TraceStage("sanitize", Domain.WORKER, trace),
+                new TraceStage("persist", Domain.STORE, trace)), new MetricRegistry());
+
+        // Consecutive stages of the same domain run together
+        IngestContext context = new IngestContext("http://example.com/feed");
+        assertEquals(Domain.WORKER, pipeline.getNextDomain(context));
+        pipeline.runSegment(context);
+        assertEquals(Lists.newArrayList("fetch", "normalize"), trace);
+        assertEquals(Domain.STORE, pipeline.getNextDomain(context));
+        pipeline.runSegment(context);
+        assertEquals(Domain.WORKER, pipeline.getNextDomain(context));
+        pipeline.runSegment(context);
+        assertFalse(pipeline.isCompleted(context));
+        pipeline.runSegment(context);
+        assertTrue(pipeline.isCompleted(context));
+        assertEquals(Lists.newArrayList("fetch", "normalize", "diff", "sanitize", "persist"), trace);
+        assertEquals(1, pipeline.getStageStatsMap().get("persist").getCount());
+        assertEquals(5, pipeline.getStageStatsMap().size());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        List<String> trace = new ArrayList<String>();
+        IngestPipeline pipeline = new IngestPipeline(Lists.<IngestStage>newArrayList(
+                new TraceStage("fetch", Domain.WORKER, trace),
+                new TraceStage("error", Domain.STORE, trace),
+                new TraceStage("persist", Domain.STORE, trace)), new MetricRegistry());
+
+        // An error stops the pipeline
+        IngestContext context = new IngestContext("http://example.com/feed");
+        try {
+            pipeline.run(context);
+            fail();
+        } catch (IllegalStateException e) {
+            // NOP
+        }
+        assertTrue(pipeline.isCompleted(context));
+        assertEquals(Lists.newArrayList("fetch", "error"), trace);
+        assertEquals(1, pipeline.getStageStatsMap().get("error").getErrorCount());
+        assertEquals(0, pipeline.getStageStatsMap().get("persist").getCount());
+    }
+
+    /**
+     * Stage recording its execution.
+     */
+    private static class TraceStage implements IngestStage {
+        private final String name;
+
+        private final Domain domain;
+
+        private final List<String> trace;
+
+        private TraceStage(String name, Domain domain, List<String> trace) {
+            this.name = name;
+            this.domain = domain;
+            this.trace = trace;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Domain getDomain() {
+            return domain;
+        }
+
+        @Override
+        public void process(IngestContext context) throws Exception {
+            trace.add(name);
+            if ("error".equals(name)) {
+                throw new IllegalStateException("Stage error");
+            }
+        }
+    }
+}
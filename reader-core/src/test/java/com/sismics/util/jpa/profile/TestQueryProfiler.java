@@ -0,0 +1,89 @@
+package com.sismics.util.jpa.profile;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.UserDao;
+import com.sismics.util.context.ThreadLocalContext;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the query profiler.
+ *
+ * @author jtremeaux
+ */
+public class TestQueryProfiler extends BaseTransactionalTest {
+    @Test
+    public void testFingerprint() throws Exception {
+        assertEquals("select u from user u where u.username = ? and u.deletedate is null",
+                QueryFingerprint.of("select u from User u where u.username = :username\n  and u.deleteDate is null"));
+        assertEquals("select * from t_article where art_id_c in (?) and art_title_c = ? limit ?",
+                QueryFingerprint.of("select * from T_ARTICLE where ART_ID_C in (?1, ?2, ?3) and ART_TITLE_C = 'it''s' limit 10"));
+        assertEquals(QueryFingerprint.of("select a from Article a where a.id = 'a1'"),
+                QueryFingerprint.of("select a from Article a where a.id = 'b2'"));
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        QueryProfiler queryProfiler = new QueryProfiler();
+        assertNull(queryProfiler.start("GET /feed"));
+        queryProfiler.setEnabled(true);
+
+        // A quick request is not reported
+        QueryProfile profile = queryProfiler.start("GET /user");
+        profile.queryExecuted("select u from User u where u.id = :id", 1000);
+        queryProfiler.complete(profile, 1);
+        assertFalse(profile.isFlagged());
+        assertTrue(queryProfiler.getProfileList().isEmpty());
+
+        // A request running the same query for each item is reported as N+1
+        profile = queryProfiler.start("GET /feed");
+        profile.queryExecuted("select s from FeedSubscription s where s.userId = :userId", 5000);
+        for (int i = 0; i < 12; i++) {
+            profile.queryExecuted("select a from Article a where a.feedId = '" + i + "'", 1000 + i);
+        }
+        queryProfiler.complete(profile, 20);
+        assertTrue(profile.isFlagged());
+        assertFalse(profile.isSlow());
+        assertFalse(profile.isChatty());
+        assertEquals(13, profile.getQueryCount());
+        assertEquals(20, profile.getStatementCount());
+        assertEquals(1, profile.getRepeatedList().size());
+        QueryStats queryStats = profile.getRepeatedList().get(0);
+        assertEquals("select a from article a where a.feedid = ?", queryStats.getFingerprint());
+        assertEquals(12, queryStats.getCount());
+        assertEquals(1011, queryStats.getTimeMax());
+        assertEquals(2, profile.getQueryStatsList().size());
+        assertSame(profile, queryProfiler.getProfileList().get(0));
+
+        // A request running too many statements is reported as chatty
+        queryProfiler.setChattyThreshold(10);
+        profile = queryProfiler.start("GET /article");
+        queryProfiler.complete(profile, 10);
+        assertTrue(profile.isChatty());
+        assertEquals(2, queryProfiler.getProfileList().size());
+    }
+
+    @Test
+    public void testWrap() throws Exception {
+        QueryProfiler queryProfiler = new QueryProfiler();
+        queryProfiler.setEnabled(true);
+        QueryProfile profile = queryProfiler.start("GET /user");
+
+        // The queries executed through the DAOs are recorded
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        ThreadLocalContext.get().setEntityManager(queryProfiler.wrap(em, profile));
+        try {
+            UserDao userDao = new UserDao();
+            assertNotNull(userDao.getActiveByUsername("admin"));
+            assertNull(userDao.getActiveByUsername("nobody"));
+        } finally {
+            ThreadLocalContext.get().setEntityManager(em);
+        }
+        assertEquals(2, profile.getQueryCount());
+        assertEquals(1, profile.getQueryStatsList().size());
+        assertEquals(2, profile.getQueryStatsList().get(0).getCount());
+    }
+}
@@ -0,0 +1,92 @@
+package com.sismics.util.log4j;
+
+import com.sismics.reader.core.util.jpa.PaginatedList;
+import com.sismics.reader.core.util.jpa.PaginatedLists;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the log buffer.
+ *
+ * @author jtremeaux
+ */
+public class TestLogBuffer {
+    @Test
+    public void testFind() throws Exception {
+        LogBuffer logBuffer = new LogBuffer(100);
+        for (int i = 0; i < 250; i++) {
+            String level = i % 10 == 0 ? "ERROR" : "INFO";
+            String tag = i % 2 == 0 ? "FeedService" : "AppContext";
+            logBuffer.add(new LogEntry(i, level, tag, "Message " + i));
+        }
+
+        // Only the last entries are kept, the newest first
+        PaginatedList<LogEntry> list = PaginatedLists.create(10, 0);
+        logBuffer.find(new LogCriteria(), list);
+        assertEquals(100, list.getResultCount());
+        assertEquals(10, list.getResultList().size());
+        assertEquals(249, list.getResultList().get(0).getTimestamp());
+
+        // Search by level, from the index
+        list = PaginatedLists.create(3, 2);
+        logBuffer.find(new LogCriteria().setLevel("ERROR"), list);
+        assertEquals(10, list.getResultCount());
+        assertEquals(3, list.getResultList().size());
+        assertEquals(220, list.getResultList().get(0).getTimestamp());
+        assertEquals(200, list.getResultList().get(2).getTimestamp());
+
+        // Search by level and tag
+        list = PaginatedLists.create(10, 0);
+        logBuffer.find(new LogCriteria().setLevel("info").setTag("appcontext"), list);
+        assertEquals(50, list.getResultCount());
+        assertEquals(249, list.getResultList().get(0).getTimestamp());
+
+        // Search by message
+        list = PaginatedLists.create(10, 0);
+        logBuffer.find(new LogCriteria().setTag("FeedService").setMessage("message 24"), list);
+        assertEquals(5, list.getResultCount());
+        assertEquals(248, list.getResultList().get(0).getTimestamp());
+
+        // Unknown level
+        list = PaginatedLists.create(10, 0);
+        logBuffer.find(new LogCriteria().setLevel("FATAL"), list);
+        assertEquals(0, list.getResultCount());
+        assertTrue(list.getResultList().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final LogBuffer logBuffer = new LogBuffer(1000);
+        List<Thread> threadList = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final String tag = "Tag" + i;
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    logBuffer.add(new LogEntry(j, "INFO", tag, "Message"));
+                }
+            });
+            threadList.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+
+        // The buffer is full with the last entries
+        PaginatedList<LogEntry> list = PaginatedLists.create(100, 0);
+        logBuffer.find(new LogCriteria(), list);
+        assertEquals(1000, list.getResultCount());
+        Set<Long> sequenceSet = new HashSet<Long>();
+        for (LogEntry logEntry : list.getResultList()) {
+            assertTrue(logEntry.getSequence() >= 79900);
+            sequenceSet.add(logEntry.getSequence());
+        }
+        assertEquals(100, sequenceSet.size());
+    }
+}
@@ -0,0 +1,91 @@
+package com.sismics.util.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Test of the metric registry.
+ *
+ * @author jtremeaux
+ */
+public class TestMetricRegistry {
+    @Test
+    public void testHistogramBuckets() throws Exception {
+        // The buckets are contiguous, and each one is at most 12.5% wide
+        long previousUpperBound = -1;
+        for (int i = 0; i < 488; i++) {
+            long upperBound = Histogram.getBucketUpperBound(i);
+            assertEquals(i, Histogram.getBucketIndex(previousUpperBound + 1));
+            assertEquals(i, Histogram.getBucketIndex(upperBound));
+            assertTrue(upperBound - previousUpperBound <= Math.max(1, previousUpperBound / 8 + 1));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Histogram histogram = metricRegistry.timer("test_duration_seconds", "Test");
+        assertEquals(0d, histogram.getPercentile(0.5));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getSum(), 1e-6);
+        assertEquals(0.5005, histogram.getMean(), 1e-6);
+        assertEquals(1d, histogram.getMax(), 1e-6);
+        assertEquals(0.5, histogram.getPercentile(0.5), 0.5 * 0.125);
+        assertEquals(0.99, histogram.getPercentile(0.99), 0.99 * 0.125);
+        assertEquals(1d, histogram.getPercentile(1), 1e-6);
+    }
+
+    @Test
+    public void testRegistry() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+
+        // Metrics are created on first use
+        Counter counter = metricRegistry.counter("test_requests", "Requests", "path", "/a");
+        assertSame(counter, metricRegistry.counter("test_requests", "Requests", "path", "/a"));
+        assertNotSame(counter, metricRegistry.counter("test_requests", "Requests", "path", "/b"));
+        counter.inc();
+        counter.inc(2);
+        assertEquals(3, counter.getValue());
+        try {
+            metricRegistry.histogram("test_requests", "Requests", "path", "/a");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // NOP
+        }
+
+        // Gauges are replaced
+        metricRegistry.gauge("test_queue_depth", "Queue depth", () -> 1);
+        Gauge gauge = metricRegistry.gauge("test_queue_depth", "Queue depth", () -> 2);
+        assertEquals(2d, gauge.getValue());
+        assertEquals(3, metricRegistry.getMetricList().size());
+
+        // Prometheus text format
+        metricRegistry.timer("test_duration_seconds", "Duration \"quoted\"", "stage", "a\"b").record(2000000000L);
+        String text = PrometheusFormat.write(metricRegistry.getMetricList());
+        assertEquals(Arrays.asList(
+                "# HELP test_duration_seconds Duration \"quoted\"",
+                "# TYPE test_duration_seconds summary",
+                "test_duration_seconds{stage=\"a\\\"b\",quantile=\"0.5\"} 2.0",
+                "test_duration_seconds{stage=\"a\\\"b\",quantile=\"0.9\"} 2.0",
+                "test_duration_seconds{stage=\"a\\\"b\",quantile=\"0.99\"} 2.0",
+                "test_duration_seconds{stage=\"a\\\"b\",quantile=\"0.999\"} 2.0",
+                "test_duration_seconds_sum{stage=\"a\\\"b\"} 2.0",
+                "test_duration_seconds_count{stage=\"a\\\"b\"} 1",
+                "# HELP test_queue_depth Queue depth",
+                "# TYPE test_queue_depth gauge",
+                "test_queue_depth 2.0",
+                "# HELP test_requests_total Requests",
+                "# TYPE test_requests_total counter",
+                "test_requests_total{path=\"/a\"} 3",
+                "test_requests_total{path=\"/b\"} 0"),
+                Arrays.asList(text.split("\n")));
+    }
+}
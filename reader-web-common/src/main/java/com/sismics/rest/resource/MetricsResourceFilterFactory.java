@@ -0,0 +1,124 @@
+package com.sismics.rest.resource;
+
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceMethod;
+import com.sun.jersey.api.model.PathValue;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Jersey filter factory timing the resource methods, by path template and HTTP method.
+ * Registered with the com.sun.jersey.spi.container.ResourceFilters init parameter.
+ *
+ * @author jtremeaux
+ */
+public class MetricsResourceFilterFactory implements ResourceFilterFactory {
+    /**
+     * Name of the request property holding the start time.
+     */
+    private static final String START_TIME_PROPERTY = MetricsResourceFilterFactory.class.getName() + ".startTime";
+
+    /**
+     * Regular expression of a path parameter, the name of the parameter is kept.
+     */
+    private static final Pattern PATH_PARAM_PATTERN = Pattern.compile("\\{\\s*(\\w+)\\s*:[^}]*\\}");
+
+    @Override
+    public List<ResourceFilter> create(AbstractMethod am) {
+        if (!(am instanceof AbstractResourceMethod)) {
+            return null;
+        }
+        String path = getPath(am);
+        String httpMethod = ((AbstractResourceMethod) am).getHttpMethod();
+        Histogram timer = MetricRegistry.getInstance().timer("reader_rest_request_duration_seconds",
+                "Duration of the REST requests, by resource", "path", path, "method", httpMethod);
+        return Collections.<ResourceFilter>singletonList(new TimerFilter(timer));
+    }
+
+    /**
+     * Returns the path template of a resource method, without the regular expressions of the parameters.
+     *
+     * @param am Resource method
+     * @return Path template, e.g. /subscription/{id}
+     */
+    private static String getPath(AbstractMethod am) {
+        StringBuilder sb = new StringBuilder();
+        appendPath(sb, am.getResource().getPath());
+        if (am instanceof AbstractSubResourceMethod) {
+            appendPath(sb, ((AbstractSubResourceMethod) am).getPath());
+        }
+        return PATH_PARAM_PATTERN.matcher(sb).replaceAll("{$1}");
+    }
+
+    /**
+     * Appends a path segment.
+     *
+     * @param sb Path
+     * @param pathValue Path segment, may be null
+     */
+    private static void appendPath(StringBuilder sb, PathValue pathValue) {
+        if (pathValue == null) {
+            return;
+        }
+        String value = pathValue.getValue();
+        if (!value.startsWith("/")) {
+            sb.append('/');
+        }
+        sb.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+    }
+
+    /**
+     * Filter recording the duration of the requests of a resource method.
+     */
+    private static class TimerFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+        /**
+         * Duration of the requests.
+         */
+        private final Histogram timer;
+
+        /**
+         * Constructor of TimerFilter.
+         *
+         * @param timer Duration of the requests
+         */
+        private TimerFilter(Histogram timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return this;
+        }
+
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return this;
+        }
+
+        @Override
+        public ContainerRequest filter(ContainerRequest request) {
+            request.getProperties().put(START_TIME_PROPERTY, System.nanoTime());
+            return request;
+        }
+
+        @Override
+        public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+            Object startTime = request.getProperties().get(START_TIME_PROPERTY);
+            if (startTime instanceof Long) {
+                timer.recordSince((Long) startTime);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.sismics.util.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.reader.core.dao.jpa.AuthenticationTokenDao;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the principals authenticated by token.
+ * The last connection dates of the tokens are written periodically, in one query for all the tokens used meanwhile.
+ * Entries expire after a while, and are invalidated explicitly on logout and on changes to the users,
+ * at once and again once the change is committed. A principal read before an invalidation is not cached.
+ * The cache is stopped with the application context, which writes the pending last connection dates.
+ *
+ * @author jtremeaux
+ */
+public class PrincipalCache extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PrincipalCache.class);
+
+    /**
+     * Maximum number of principals in cache.
+     */
+    private static final int CACHE_SIZE = 10000;
+
+    /**
+     * Lifetime of a principal in cache, in minutes.
+     */
+    private static final int CACHE_TTL = 5;
+
+    /**
+     * Delay between two writes of the last connection dates, in seconds.
+     */
+    private static final int FLUSH_INTERVAL = 60;
+
+    /**
+     * Singleton instance.
+     */
+    private static PrincipalCache instance;
+
+    /**
+     * Principals by authentication token ID.
+     */
+    private final Cache<String, CachedPrincipal> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .expireAfterWrite(CACHE_TTL, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * IDs of the tokens used since the last flush.
+     */
+    private final Set<String> connectedTokenIdSet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of invalidations.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Returns the principal cache, starting it on first use after the start of the application context.
+     *
+     * @return Principal cache
+     */
+    public static synchronized PrincipalCache getInstance() {
+        if (instance == null || !instance.isRunning()) {
+            instance = new PrincipalCache();
+            instance.startAndWait();
+            AppContext.getInstance().addService(instance);
+        }
+        return instance;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        flush();
+    }
+
+    @Override
+    protected void runOneIteration() {
+        // Don't let Guava manage our exceptions, or they will be swallowed and the service will silently stop
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("Error updating the last connection dates", t);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the cached principal of a token.
+     *
+     * @param authTokenId Authentication token ID
+     * @return Cached principal, or null if not cached
+     */
+    public CachedPrincipal get(String authTokenId) {
+        return cache.getIfPresent(authTokenId);
+    }
+
+    /**
+     * Returns the version of the cache, to read before reading a principal from the database.
+     *
+     * @return Version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Caches the principal of a token, unless the cache was invalidated since it was read.
+     *
+     * @param authTokenId Authentication token ID
+     * @param cachedPrincipal Principal
+     * @param version Version of the cache read before reading the principal
+     */
+    public void put(String authTokenId, CachedPrincipal cachedPrincipal, long version) {
+        cache.put(authTokenId, cachedPrincipal);
+        if (this.version.get() != version) {
+            // Invalidated while the principal was read
+            cache.invalidate(authTokenId);
+        }
+    }
+
+    /**
+     * Records a connection with a token, written at the next flush.
+     *
+     * @param authTokenId Authentication token ID
+     */
+    public void connected(String authTokenId) {
+        connectedTokenIdSet.add(authTokenId);
+    }
+
+    /**
+     * Invalidates the principal of a token, at once and again once the current transaction is committed.
+     * The principal read by a concurrent request before the commit is not kept.
+     *
+     * @param authTokenId Authentication token ID
+     */
+    public void invalidate(final String authTokenId) {
+        Runnable runnable = () -> {
+            version.incrementAndGet();
+            cache.invalidate(authTokenId);
+            connectedTokenIdSet.remove(authTokenId);
+        };
+        runnable.run();
+        TransactionUtil.afterCommit(runnable);
+    }
+
+    /**
+     * Invalidates all the principals of a user, at once and again once the current transaction is committed.
+     * The principals read by a concurrent request before the commit are not kept.
+     *
+     * @param userId User ID
+     */
+    public void invalidateUser(final String userId) {
+        Runnable runnable = () -> {
+            version.incrementAndGet();
+            for (Map.Entry<String, CachedPrincipal> entry : cache.asMap().entrySet()) {
+                if (entry.getValue().getPrincipal().getId().equals(userId)) {
+                    cache.invalidate(entry.getKey());
+                }
+            }
+        };
+        runnable.run();
+        TransactionUtil.afterCommit(runnable);
+    }
+
+    /**
+     * Writes the last connection dates of the tokens used since the last flush.
+     */
+    public void flush() {
+        if (connectedTokenIdSet.isEmpty()) {
+            return;
+        }
+        final List<String> tokenIdList = Lists.newArrayList(connectedTokenIdSet);
+        connectedTokenIdSet.removeAll(tokenIdList);
+        TransactionUtil.handle(() -> new AuthenticationTokenDao().updateLastConnectionDate(tokenIdList, new Date()));
+    }
+
+    /**
+     * Principal authenticated by a token, with the token data needed to check its expiration.
+     */
+    public static class CachedPrincipal {
+        /**
+         * Principal.
+         */
+        private final UserPrincipal principal;
+
+        /**
+         * Creation date of the token.
+         */
+        private final Date creationDate;
+
+        /**
+         * True if the token is long lasted.
+         */
+        private final boolean longLasted;
+
+        /**
+         * Last connection date with the token, in milliseconds.
+         */
+        private volatile long lastConnectionTime;
+
+        /**
+         * Constructor of CachedPrincipal.
+         *
+         * @param principal Principal
+         * @param creationDate Creation date of the token
+         * @param longLasted True if the token is long lasted
+         */
+        public CachedPrincipal(UserPrincipal principal, Date creationDate, boolean longLasted) {
+            this.principal = principal;
+            this.creationDate = creationDate;
+            this.longLasted = longLasted;
+            this.lastConnectionTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Getter of principal.
+         *
+         * @return principal
+         */
+        public UserPrincipal getPrincipal() {
+            return principal;
+        }
+
+        /**
+         * Getter of creationDate.
+         *
+         * @return creationDate
+         */
+        public Date getCreationDate() {
+            return creationDate;
+        }
+
+        /**
+         * Getter of longLasted.
+         *
+         * @return longLasted
+         */
+        public boolean isLongLasted() {
+            return longLasted;
+        }
+
+        /**
+         * Returns the last connection date with the token.
+         *
+         * @return Last connection date
+         */
+        public Date getLastConnectionDate() {
+            return new Date(lastConnectionTime);
+        }
+
+        /**
+         * Records a connection with the token.
+         */
+        public void connected() {
+            lastConnectionTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.sismics.util.filter;
 
+import com.sismics.reader.core.constant.ConfigType;
 import com.sismics.reader.core.constant.Constants;
 import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.util.ConfigUtil;
 import com.sismics.reader.core.util.DirectoryUtil;
 import com.sismics.reader.core.util.TransactionUtil;
 import com.sismics.util.EnvironmentUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.EMF;
+import com.sismics.util.jpa.QueryCountInterceptor;
+import com.sismics.util.jpa.profile.QueryProfile;
+import com.sismics.util.jpa.profile.QueryProfiler;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.MetricRegistry;
 import org.apache.log4j.Level;
 import org.apache.log4j.PatternLayout;
 import org.apache.log4j.RollingFileAppender;
@@ -16,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
@@ -33,6 +41,12 @@ public class RequestContextFilter implements Filter {
      */
     private static final Logger log = LoggerFactory.getLogger(RequestContextFilter.class);
 
+    /**
+     * Distribution of the number of SQL statements run by a request.
+     */
+    private static final Histogram statementHistogram = MetricRegistry.getInstance().histogram("reader_jpa_request_statements",
+            "SQL statements run by a request");
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         // Force the locale in order to not depend on the execution environment
@@ -62,8 +76,25 @@ public class RequestContextFilter implements Filter {
             log.info("Disabling embedded logger");
         }
 
-        // Initialize the application context
-        TransactionUtil.handle(AppContext::getInstance);
+        // Initialize the application context, and resume the imports interrupted by the last shutdown
+        TransactionUtil.handle(() -> {
+            AppContext.getInstance().resumeImportJobs();
+            configureQueryProfiler();
+        });
+    }
+
+    /**
+     * Configure the query profiler from the configuration parameters.
+     */
+    private void configureQueryProfiler() {
+        QueryProfiler queryProfiler = QueryProfiler.getInstance();
+        queryProfiler.setEnabled(ConfigUtil.getConfigBooleanValue(ConfigType.QUERY_PROFILE_ENABLED));
+        queryProfiler.setSlowThreshold(ConfigUtil.getConfigIntegerValue(ConfigType.QUERY_PROFILE_SLOW_THRESHOLD));
+        queryProfiler.setChattyThreshold(ConfigUtil.getConfigIntegerValue(ConfigType.QUERY_PROFILE_CHATTY_THRESHOLD));
+        queryProfiler.setRepeatThreshold(ConfigUtil.getConfigIntegerValue(ConfigType.QUERY_PROFILE_REPEAT_THRESHOLD));
+        if (queryProfiler.isEnabled()) {
+            log.info("Enabling query profiler");
+        }
     }
 
     /**
@@ -80,11 +111,25 @@ public class RequestContextFilter implements Filter {
         fileAppender.setMaxBackupIndex(5);
         fileAppender.activateOptions();
         org.apache.log4j.Logger.getRootLogger().addAppender(fileAppender);
+
+        // The requests reported by the query profiler go to their own file
+        RollingFileAppender queryProfileAppender = new RollingFileAppender();
+        queryProfileAppender.setName("QUERY_PROFILE");
+        queryProfileAppender.setFile(DirectoryUtil.getLogDirectory() + File.separator + "query-profile.log");
+        queryProfileAppender.setLayout(new PatternLayout("%d{DATE} %m %n"));
+        queryProfileAppender.setAppend(true);
+        queryProfileAppender.setMaxFileSize("5MB");
+        queryProfileAppender.setMaxBackupIndex(2);
+        queryProfileAppender.activateOptions();
+        org.apache.log4j.Logger queryProfileLogger = org.apache.log4j.Logger.getLogger(QueryProfiler.class);
+        queryProfileLogger.addAppender(queryProfileAppender);
+        queryProfileLogger.setAdditivity(false);
     }
 
     @Override
     public void destroy() {
-        // NOP
+        // Handle the queued events before the application stops
+        AppContext.shutDown();
     }
 
     @Override
@@ -97,7 +142,9 @@ public class RequestContextFilter implements Filter {
             throw new ServletException("Cannot create entity manager", e);
         }
         ThreadLocalContext context = ThreadLocalContext.get();
-        context.setEntityManager(em);
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        QueryProfile queryProfile = QueryProfiler.getInstance().start(httpRequest.getMethod() + " " + httpRequest.getRequestURI());
+        context.setEntityManager(queryProfile != null ? QueryProfiler.getInstance().wrap(em, queryProfile) : em);
         EntityTransaction tx = em.getTransaction();
         tx.begin();
         
@@ -133,6 +180,7 @@ public class RequestContextFilter implements Filter {
                 if (statusClass == 2 || statusClass == 3) {
                     try {
                         em.getTransaction().commit();
+                        TransactionUtil.runAfterCommit(context.removeAfterCommitList());
                     } catch (Exception e) {
                         log.error("Error during commit", e);
                         r.sendError(500);
@@ -140,6 +188,14 @@ public class RequestContextFilter implements Filter {
                 } else {
                     em.getTransaction().rollback();
                 }
+
+                int queryCount = QueryCountInterceptor.getQueryCount(em);
+                if (queryCount >= 0) {
+                    statementHistogram.record(queryCount);
+                }
+                if (queryProfile != null) {
+                    QueryProfiler.getInstance().complete(queryProfile, queryCount);
+                }
                 
                 try {
                     em.close();
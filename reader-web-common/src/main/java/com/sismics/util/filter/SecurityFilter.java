@@ -47,26 +47,29 @@ public abstract class SecurityFilter implements Filter {
     }
 
     /**
-     * Injects the given user into the request, with the appropriate authentication state.
+     * Injects the given principal into the request, with the appropriate authentication state.
      *
-     * @param request HTTP request
-     * @param user    nullable User to inject
+     * @param request       HTTP request
+     * @param userPrincipal nullable principal to inject
      */
-    private static void injectUser(HttpServletRequest request, User user) {
-        // Check if the user is still valid
-        if (user != null && user.getDeleteDate() == null)
-            injectAuthenticatedUser(request, user);
+    private static void injectPrincipal(HttpServletRequest request, UserPrincipal userPrincipal) {
+        if (userPrincipal != null)
+            request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
         else
             injectAnonymousUser(request);
     }
 
     /**
-     * Inject an authenticated user into the request attributes.
+     * Creates the principal of an authenticated user.
      *
-     * @param request HTTP request
-     * @param user    User to inject
+     * @param user nullable User
+     * @return nullable principal, null if the user is not valid anymore
      */
-    private static void injectAuthenticatedUser(HttpServletRequest request, User user) {
+    protected static UserPrincipal createPrincipal(User user) {
+        // Check if the user is still valid
+        if (user == null || user.getDeleteDate() != null)
+            return null;
+
         UserPrincipal userPrincipal = new UserPrincipal(user.getId(), user.getUsername());
 
         // Add locale
@@ -78,7 +81,7 @@ public abstract class SecurityFilter implements Filter {
         Set<String> baseFunctionSet = userBaseFunction.findByRoleId(user.getRoleId());
         userPrincipal.setBaseFunctionSet(baseFunctionSet);
 
-        request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
+        return userPrincipal;
     }
 
     /**
@@ -109,13 +112,22 @@ public abstract class SecurityFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
 
         if (!hasIdentifiedUser(request)) {
-            User user = this.authenticate(request);
-            injectUser(request, user);
+            injectPrincipal(request, this.authenticatePrincipal(request));
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Authenticates an user from the given request parameters, and returns its principal.
+     *
+     * @param request HTTP request
+     * @return nullable principal
+     */
+    protected UserPrincipal authenticatePrincipal(HttpServletRequest request) {
+        return createPrincipal(this.authenticate(request));
+    }
+
     /**
      * Authenticates an user from the given request parameters.
      *
@@ -4,6 +4,8 @@ import com.sismics.reader.core.dao.jpa.AuthenticationTokenDao;
 import com.sismics.reader.core.dao.jpa.UserDao;
 import com.sismics.reader.core.model.jpa.AuthenticationToken;
 import com.sismics.reader.core.model.jpa.User;
+import com.sismics.security.UserPrincipal;
+import com.sismics.util.filter.PrincipalCache.CachedPrincipal;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -14,6 +16,7 @@ import java.util.Date;
  * This filter is used to authenticate the user having an active session via an authentication token stored in database.
  * The filter extracts the authentication token stored in a cookie.
  * If the cookie exists and the token is valid, the filter injects a UserPrincipal into a request attribute.
+ * Principals are cached by token, and the last connection dates of the tokens are written periodically.
  * If not, the user is anonymous, and the filter injects a AnonymousPrincipal into the request attribute.
  *
  * @author jtremeaux
@@ -68,42 +71,66 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
     /**
      * Returns true if the token is expired.
      *
-     * @param authenticationToken Authentication token
+     * @param creationDate Creation date of the token
+     * @param longLasted True if the token is long lasted
+     * @param lastConnectionDate nullable last connection date with the token
      * @return Token expired
      */
-    private static boolean isTokenExpired(AuthenticationToken authenticationToken) {
+    private static boolean isTokenExpired(Date creationDate, boolean longLasted, Date lastConnectionDate) {
         final long now = new Date().getTime();
-        final long creationDate = authenticationToken.getCreationDate().getTime();
-        if (authenticationToken.isLongLasted()) {
-            return now >= creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L;
+        if (longLasted) {
+            return now >= creationDate.getTime() + ((long) TOKEN_LONG_LIFETIME) * 1000L;
         } else {
-            long date = authenticationToken.getLastConnectionDate() != null ?
-                    authenticationToken.getLastConnectionDate().getTime() : creationDate;
+            long date = lastConnectionDate != null ? lastConnectionDate.getTime() : creationDate.getTime();
             return now >= date + ((long) TOKEN_SESSION_LIFETIME) * 1000L;
         }
     }
 
     @Override
-    protected User authenticate(HttpServletRequest request) {
+    protected UserPrincipal authenticatePrincipal(HttpServletRequest request) {
         // Get the value of the client authentication token
         String authTokenID = extractAuthToken(request.getCookies());
         if (authTokenID == null)
             return null;
 
+        // Use the cached principal while the token is valid
+        PrincipalCache principalCache = PrincipalCache.getInstance();
+        CachedPrincipal cachedPrincipal = principalCache.get(authTokenID);
+        if (cachedPrincipal != null) {
+            if (isTokenExpired(cachedPrincipal.getCreationDate(), cachedPrincipal.isLongLasted(), cachedPrincipal.getLastConnectionDate())) {
+                principalCache.invalidate(authTokenID);
+            } else {
+                cachedPrincipal.connected();
+                principalCache.connected(authTokenID);
+                return cachedPrincipal.getPrincipal();
+            }
+        }
+
         // Get the corresponding server token
+        long cacheVersion = principalCache.getVersion();
         AuthenticationTokenDao authTokenDao = new AuthenticationTokenDao();
         AuthenticationToken authToken = authTokenDao.get(authTokenID);
         if (authToken == null)
             return null;
 
-        if (isTokenExpired(authToken)) {
+        if (isTokenExpired(authToken.getCreationDate(), authToken.isLongLasted(), authToken.getLastConnectionDate())) {
             handleExpiredToken(authTokenDao, authTokenID);
             return null;
         }
 
-        authTokenDao.updateLastConnectionDate(authToken.getId());
-        String userID = authToken.getUserId();
-        return (new UserDao()).getById(userID);
+        UserPrincipal userPrincipal = createPrincipal((new UserDao()).getById(authToken.getUserId()));
+        if (userPrincipal == null)
+            return null;
+
+        principalCache.put(authTokenID, new CachedPrincipal(userPrincipal, authToken.getCreationDate(), authToken.isLongLasted()), cacheVersion);
+        principalCache.connected(authTokenID);
+        return userPrincipal;
+    }
+
+    @Override
+    protected User authenticate(HttpServletRequest request) {
+        UserPrincipal userPrincipal = authenticatePrincipal(request);
+        return userPrincipal != null ? (new UserDao()).getById(userPrincipal.getId()) : null;
     }
 
 }
@@ -1,5 +1,6 @@
 package com.sismics.reader.rest.descriptor;
 
+import com.sismics.rest.resource.MetricsResourceFilterFactory;
 import com.sismics.util.filter.HeaderBasedSecurityFilter;
 import com.sismics.util.filter.RequestContextFilter;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
@@ -31,6 +32,7 @@ public class JerseyTestWebAppDescriptorFactory {
             .addFilter(RequestContextFilter.class, "requestContextFilter")
             .addFilter(TokenBasedSecurityFilter.class, "tokenBasedSecurityFilter")
             .addFilter(HeaderBasedSecurityFilter.class, "headerBasedAuthenticationFilter")
+            .initParam("com.sun.jersey.spi.container.ResourceFilters", MetricsResourceFilterFactory.class.getName())
 //            .initParam("com.sun.jersey.spi.container.ContainerRequestFilters", "com.sun.jersey.api.container.filter.LoggingFilter")
 //            .initParam("com.sun.jersey.spi.container.ContainerResponseFilters", "com.sun.jersey.api.container.filter.LoggingFilter")
             .build();
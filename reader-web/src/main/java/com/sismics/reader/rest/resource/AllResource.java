@@ -3,6 +3,7 @@ package com.sismics.reader.rest.resource;
 import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.CategoryDao;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Category;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
@@ -31,7 +32,6 @@ import javax.ws.rs.core.Response;
 import java.security.Principal;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
@@ -108,20 +108,15 @@ public class AllResource {
                 .setVisible(true);
         if (afterArticle != null) {
             // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound",
-                        MessageFormat.format("Can't find user article {0}", afterArticle));
-            }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-            userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-            userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
+            userArticleCriteria.setAfterUserArticleId(afterArticle);
         }
         PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+        userArticleDao.findPageByCriteria(paginatedList, userArticleCriteria, null, null);
+        if (afterArticle != null && paginatedList.getResultList().isEmpty()
+                && userArticleDao.getUserArticle(afterArticle, principal.getId()) == null) {
+            throw new ClientException("ArticleNotFound",
+                    MessageFormat.format("Can't find user article {0}", afterArticle));
+        }
         // Build the response
         JSONObject response = new JSONObject();
         List<JSONObject> articles = new ArrayList<JSONObject>();
@@ -129,6 +124,7 @@ public class AllResource {
             articles.add(ArticleAssembler.asJson(userArticle));
         }
         response.put("articles", articles);
+        response.put("has_more", paginatedList.isHasMore());
         return Response.ok().entity(response).build();
     }
 
@@ -212,20 +208,11 @@ public class AllResource {
 
             // Handle pagination
             if (afterArticle != null) {
-                UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                        .setUserArticleId(afterArticle)
-                        .setUserId(principal.getId());
-                List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-                if (!userArticleDtoList.isEmpty()) {
-                    UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-                    articleCriteria
-                            .setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-                    articleCriteria.setArticleIdMax(userArticleDto.getArticleId());
-                }
+                articleCriteria.setAfterUserArticleId(afterArticle);
             }
 
             PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-            userArticleDao.findByCriteria(paginatedList, articleCriteria, null, null);
+            userArticleDao.findPageByCriteria(paginatedList, articleCriteria, null, null);
 
             for (UserArticleDto article : paginatedList.getResultList()) {
                 articlesArray.put(ArticleAssembler.asJson(article));
@@ -263,9 +250,11 @@ public class AllResource {
         FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
         for (FeedSubscriptionDto feedSubscrition : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
                 .setUserId(principal.getId()))) {
-            feedSubscriptionDao.updateUnreadCount(feedSubscrition.getId(), 0);
+            AppContext.getInstance().getCounterService().resetUnread(feedSubscrition.getId(), principal.getId());
         }
 
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -1,22 +1,41 @@
 package com.sismics.reader.rest.resource;
 
+import com.google.common.cache.CacheStats;
+import com.sismics.reader.core.event.EventPool;
+import com.sismics.reader.core.event.PartitionedEventBus;
 import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.service.FeedSynchronizerStats;
+import com.sismics.reader.core.service.IndexRebuildStatus;
+import com.sismics.reader.core.service.IndexUpdateBatcher;
+import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.ingest.IngestStageStats;
 import com.sismics.reader.core.util.ConfigUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
 import com.sismics.reader.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
+import com.sismics.rest.util.ValidationUtil;
 import com.sismics.security.IPrincipal;
 import com.sismics.security.UserPrincipal;
 import com.sismics.util.NetworkUtil;
 import com.sismics.util.filter.SecurityFilter;
+import com.sismics.util.jpa.profile.QueryProfile;
+import com.sismics.util.jpa.profile.QueryProfiler;
+import com.sismics.util.jpa.profile.QueryStats;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
+import com.sismics.util.metrics.Counter;
+import com.sismics.util.metrics.Gauge;
+import com.sismics.util.metrics.Histogram;
+import com.sismics.util.metrics.Metric;
+import com.sismics.util.metrics.MetricRegistry;
+import com.sismics.util.metrics.PrometheusFormat;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Logger;
+import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
@@ -29,8 +48,10 @@ import javax.ws.rs.core.Response;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * General app REST resource.
@@ -165,6 +186,53 @@ public class AppResource {
         return Response.ok().entity(response).build();
     }
     
+    /**
+     * Returns the statistics of the feed synchronizer.
+     *
+     * @return Response
+     */
+    @GET
+    @Path("feed_sync")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response feedSync() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        FeedSynchronizerStats stats = AppContext.getInstance().getFeedService().getFeedSynchronizer().getStats();
+        JSONObject response = new JSONObject();
+        response.put("cycle_count", stats.getCycleCount());
+        response.put("feed_count", stats.getFeedCount());
+        response.put("error_count", stats.getErrorCount());
+        response.put("modified_count", stats.getModifiedCount());
+        response.put("not_modified_count", stats.getNotModifiedCount());
+        response.put("unchanged_count", stats.getUnchangedCount());
+        response.put("last_cycle_feed_count", stats.getLastCycleFeedCount());
+        response.put("last_cycle_duration", stats.getLastCycleDuration());
+        response.put("last_cycle_feeds_per_second", stats.getLastCycleFeedsPerSecond());
+        response.put("queue_depth", stats.getQueueDepth());
+        response.put("in_flight", stats.getInFlight());
+        response.put("host_wait_time_mean", stats.getHostWaitTimeMean());
+        response.put("host_wait_time_max", stats.getHostWaitTimeMax());
+        JSONArray stages = new JSONArray();
+        for (Map.Entry<String, IngestStageStats> entry : AppContext.getInstance().getFeedService().getIngestPipeline().getStageStatsMap().entrySet()) {
+            IngestStageStats stageStats = entry.getValue();
+            JSONObject stage = new JSONObject();
+            stage.put("name", entry.getKey());
+            stage.put("count", stageStats.getCount());
+            stage.put("error_count", stageStats.getErrorCount());
+            stage.put("time_mean", stageStats.getTimeMean());
+            stage.put("time_max", stageStats.getTimeMax());
+            stages.put(stage);
+        }
+        response.put("stages", stages);
+        return Response.ok().entity(response).build();
+    }
+
     /**
      * Destroy and rebuild articles index.
      * 
@@ -192,6 +260,274 @@ public class AppResource {
         return Response.ok().entity(response).build();
     }
     
+    /**
+     * Returns the progress of the last index rebuild.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("batch/reindex")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response batchReindexStatus() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        IndexRebuildStatus rebuildStatus = AppContext.getInstance().getIndexingService().getRebuildStatus();
+        JSONObject response = new JSONObject();
+        response.put("running", rebuildStatus.isRunning());
+        response.put("success", rebuildStatus.isSuccess());
+        response.put("total", rebuildStatus.getTotal());
+        response.put("indexed", rebuildStatus.getIndexed());
+        response.put("progress", rebuildStatus.getProgress());
+        if (rebuildStatus.getStartDate() != null) {
+            response.put("start_date", rebuildStatus.getStartDate().getTime());
+        }
+        if (rebuildStatus.getEndDate() != null) {
+            response.put("end_date", rebuildStatus.getEndDate().getTime());
+        }
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the statistics of the search.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response search() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        CacheStats highlightCacheStats = indexingService.getHighlightCache().stats();
+        JSONObject response = new JSONObject();
+        response.put("search", asJson(indexingService.getSearchTimer()));
+        response.put("highlight", asJson(indexingService.getHighlightTimer()));
+        response.put("highlight_cache_size", indexingService.getHighlightCache().size());
+        response.put("highlight_cache_hit_count", highlightCacheStats.hitCount());
+        response.put("highlight_cache_miss_count", highlightCacheStats.missCount());
+        IndexUpdateBatcher indexUpdateBatcher = indexingService.getIndexUpdateBatcher();
+        response.put("index_batch_count", indexUpdateBatcher.getBatchCount());
+        response.put("index_article_count", indexUpdateBatcher.getArticleCount());
+        response.put("index_coalesced_count", indexUpdateBatcher.getCoalescedCount());
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the statistics of the asynchronous event buses.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("event_bus")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response eventBus() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        JSONArray buses = new JSONArray();
+        for (PartitionedEventBus partitionedEventBus : AppContext.getInstance().getPartitionedEventBusList()) {
+            JSONArray pools = new JSONArray();
+            for (EventPool eventPool : partitionedEventBus.getPoolList()) {
+                JSONObject pool = new JSONObject();
+                pool.put("name", eventPool.getName());
+                pool.put("thread_count", eventPool.getThreadCount());
+                pool.put("queue_capacity", eventPool.getQueueCapacity());
+                pool.put("queue_depth", eventPool.getQueueDepth());
+                pool.put("pending_count", eventPool.getPendingCount());
+                pool.put("processed_count", eventPool.getProcessedCount());
+                pool.put("blocked_count", eventPool.getBlockedCount());
+                pool.put("lag", eventPool.getLag());
+                pool.put("lag_histogram", asJson(eventPool.getLagHistogram()));
+                pools.put(pool);
+            }
+            JSONObject bus = new JSONObject();
+            bus.put("name", partitionedEventBus.getName());
+            bus.put("pools", pools);
+            buses.put(bus);
+        }
+        JSONObject response = new JSONObject();
+        response.put("buses", buses);
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the metrics of the application.
+     * 
+     * @param format Output format: json (default) or prometheus
+     * @return Response
+     */
+    @GET
+    @Path("metrics")
+    @Produces({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
+    public Response metrics(
+            @QueryParam("format") String format) throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        List<Metric> metricList = MetricRegistry.getInstance().getMetricList();
+        if ("prometheus".equals(format)) {
+            return Response.ok(PrometheusFormat.write(metricList), PrometheusFormat.CONTENT_TYPE).build();
+        }
+
+        JSONArray metrics = new JSONArray();
+        for (Metric metric : metricList) {
+            JSONObject json = metric.getType() == Metric.Type.HISTOGRAM ? asJson((Histogram) metric) : new JSONObject();
+            json.put("name", metric.getName());
+            json.put("type", metric.getType().name().toLowerCase());
+            json.put("help", metric.getHelp());
+            json.put("labels", new JSONObject(metric.getLabelMap()));
+            switch (metric.getType()) {
+            case COUNTER:
+                json.put("value", ((Counter) metric).getValue());
+                break;
+            case GAUGE:
+                json.put("value", ((Gauge) metric).getValue());
+                break;
+            default:
+                break;
+            }
+            metrics.put(json);
+        }
+        JSONObject response = new JSONObject();
+        response.put("metrics", metrics);
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the last requests reported by the query profiler.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("query_profile")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response queryProfile() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        QueryProfiler queryProfiler = QueryProfiler.getInstance();
+        JSONArray profiles = new JSONArray();
+        for (QueryProfile queryProfile : queryProfiler.getProfileList()) {
+            JSONObject profile = new JSONObject();
+            profile.put("name", queryProfile.getName());
+            profile.put("date", queryProfile.getStartDate());
+            profile.put("duration", queryProfile.getDuration());
+            profile.put("query_count", queryProfile.getQueryCount());
+            profile.put("query_time", TimeUnit.NANOSECONDS.toMillis(queryProfile.getQueryTime()));
+            profile.put("statement_count", queryProfile.getStatementCount());
+            profile.put("slow", queryProfile.isSlow());
+            profile.put("chatty", queryProfile.isChatty());
+            JSONArray repeated = new JSONArray();
+            for (QueryStats queryStats : queryProfile.getRepeatedList()) {
+                repeated.put(asJson(queryStats));
+            }
+            profile.put("repeated", repeated);
+            JSONArray queries = new JSONArray();
+            for (QueryStats queryStats : queryProfile.getQueryStatsList()) {
+                queries.put(asJson(queryStats));
+            }
+            profile.put("queries", queries);
+            profiles.put(profile);
+        }
+        JSONObject response = new JSONObject();
+        response.put("enabled", queryProfiler.isEnabled());
+        response.put("slow_threshold", queryProfiler.getSlowThreshold());
+        response.put("chatty_threshold", queryProfiler.getChattyThreshold());
+        response.put("repeat_threshold", queryProfiler.getRepeatThreshold());
+        response.put("profiles", profiles);
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Enables or disables the query profiler until the next restart.
+     * 
+     * @param enabled True to profile the queries of the requests
+     * @return Response
+     */
+    @POST
+    @Path("query_profile")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response updateQueryProfile(
+            @FormParam("enabled") Boolean enabled) throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        if (!hasBaseFunction(BaseFunction.ADMIN)) {
+            throw new ForbiddenClientException();
+        }
+
+        ValidationUtil.validateRequired(enabled, "enabled");
+        QueryProfiler.getInstance().setEnabled(enabled);
+
+        JSONObject response = new JSONObject();
+        response.put("status", "ok");
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the executions of a query shape as JSON data.
+     * 
+     * @param queryStats Executions of a query shape
+     * @return Executions as JSON
+     */
+    private JSONObject asJson(QueryStats queryStats) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("fingerprint", queryStats.getFingerprint());
+        json.put("count", queryStats.getCount());
+        json.put("time", TimeUnit.NANOSECONDS.toMillis(queryStats.getTime()));
+        json.put("time_max", TimeUnit.NANOSECONDS.toMillis(queryStats.getTimeMax()));
+        return json;
+    }
+
+    /**
+     * Returns a histogram as JSON data.
+     * 
+     * @param histogram Histogram
+     * @return Histogram as JSON
+     */
+    private JSONObject asJson(Histogram histogram) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", histogram.getCount());
+        json.put("sum", histogram.getSum());
+        json.put("mean", histogram.getMean());
+        json.put("max", histogram.getMax());
+        JSONObject percentiles = new JSONObject();
+        for (double percentile : PrometheusFormat.PERCENTILES) {
+            percentiles.put(Double.toString(percentile), histogram.getPercentile(percentile));
+        }
+        json.put("percentiles", percentiles);
+        return json;
+    }
+
     /**
      * Attempt to map a port to the gateway.
      * 
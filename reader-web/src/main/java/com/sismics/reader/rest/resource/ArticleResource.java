@@ -1,12 +1,7 @@
 package com.sismics.reader.rest.resource;
 
-import com.sismics.reader.core.dao.jpa.ArticleDao;
-import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
-import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
-import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
-import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
-import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.UserArticle;
 import com.sismics.reader.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ClientException;
@@ -100,7 +95,7 @@ public class ArticleResource {
         
         // Get the article
         UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+        UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
         if (userArticle == null) {
             throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
         }
@@ -111,17 +106,11 @@ public class ArticleResource {
             userArticleDao.update(userArticle);
     
             // Update the subscriptions
-            ArticleDto article = new ArticleDao().findFirstByCriteria(
-                    new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-            for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                    .setFeedId(article.getFeedId())
-                    .setUserId(principal.getId()))) {
-                feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() - 1);
-            }
+            AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), -1, 0, 0);
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -146,7 +135,7 @@ public class ArticleResource {
         for (String id : idList) {
             // Get the article
             UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+            UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
             if (userArticle == null) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
@@ -157,18 +146,12 @@ public class ArticleResource {
                 userArticleDao.update(userArticle);
     
                 // Update the subscriptions
-                ArticleDto article = new ArticleDao().findFirstByCriteria(
-                        new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                        .setFeedId(article.getFeedId())
-                        .setUserId(principal.getId()))) {
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() - 1);
-                }
+                AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), -1, 0, 0);
             }
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -192,7 +175,7 @@ public class ArticleResource {
         
         // Get the article
         UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+        UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
         if (userArticle == null) {
             throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
         }
@@ -203,17 +186,11 @@ public class ArticleResource {
             userArticleDao.update(userArticle);
     
             // Update the subscriptions
-            ArticleDto article = new ArticleDao().findFirstByCriteria(
-                    new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-            for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                    .setFeedId(article.getFeedId())
-                    .setUserId(principal.getId()))) {
-                feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() + 1);
-            }
+            AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 1, 0, 0);
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -238,7 +215,7 @@ public class ArticleResource {
         for (String id : idList) {
             // Get the article
             UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+            UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
             if (userArticle == null) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
@@ -249,18 +226,12 @@ public class ArticleResource {
                 userArticleDao.update(userArticle);
     
                 // Update the subscriptions
-                ArticleDto article = new ArticleDao().findFirstByCriteria(
-                        new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                        .setFeedId(article.getFeedId())
-                        .setUserId(principal.getId()))) {
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() + 1);
-                }
+                AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 1, 0, 0);
             }
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
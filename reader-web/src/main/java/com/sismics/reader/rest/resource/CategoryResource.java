@@ -7,6 +7,7 @@ import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Category;
 import com.sismics.reader.core.model.jpa.FeedSubscription;
 import com.sismics.reader.core.util.jpa.PaginatedList;
@@ -33,7 +34,6 @@ import javax.ws.rs.core.Response;
 import java.security.Principal;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -172,21 +172,15 @@ public class CategoryResource {
         }
         if (afterArticle != null) {
             // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
-            }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-
-            userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-            userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
+            userArticleCriteria.setAfterUserArticleId(afterArticle);
         }
 
         PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+        userArticleDao.findPageByCriteria(paginatedList, userArticleCriteria, null, null);
+        if (afterArticle != null && paginatedList.getResultList().isEmpty()
+                && userArticleDao.getUserArticle(afterArticle, principal.getId()) == null) {
+            throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+        }
         
         // Build the response
         JSONObject response = new JSONObject();
@@ -196,6 +190,7 @@ public class CategoryResource {
             articles.add(ArticleAssembler.asJson(userArticle));
         }
         response.put("articles", articles);
+        response.put("has_more", paginatedList.isHasMore());
 
         return Response.ok().entity(response).build();
     }
@@ -231,6 +226,7 @@ public class CategoryResource {
         category.setName(name);
         category.setOrder(displayOrder);
         String categoryId = categoryDao.create(category);
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
         
         JSONObject response = new JSONObject();
         response.put("id", categoryId);
@@ -273,6 +269,8 @@ public class CategoryResource {
         // Delete the category
         categoryDao.delete(id);
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -313,9 +311,11 @@ public class CategoryResource {
         for (FeedSubscriptionDto feedSubscrition : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
                 .setCategoryId(category.getId())
                 .setUserId(principal.getId()))) {
-            feedSubscriptionDao.updateUnreadCount(feedSubscrition.getId(), 0);
+            AppContext.getInstance().getCounterService().resetUnread(feedSubscrition.getId(), principal.getId());
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -406,6 +406,8 @@ public class CategoryResource {
             categoryDao.reorder(category, order);
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -1,11 +1,14 @@
 package com.sismics.reader.rest.resource;
 
+import com.sismics.reader.core.dao.jpa.UserArticleDao;
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.context.AppContext;
-import com.sismics.reader.core.service.ArticleIndexingService;
+import com.sismics.reader.core.service.IndexingService;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.rest.assembler.ArticleAssembler;
 import com.sismics.reader.rest.constant.BaseFunction;
+import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
@@ -23,6 +26,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import java.security.Principal;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -83,10 +87,14 @@ public class SearchResource {
     
     /**
      * Returns articles matching a search query.
+     * Pages are read after an article, or from an offset if one is provided.
      * 
      * @param query Search query
      * @param limit Page limit
      * @param offset Page offset
+     * @param afterArticle Start the list after this article
+     * @param total If false, the total number of articles is not counted
+     * @param snippet If true, only the passages of the description around the matches are returned
      * @return Response
      */
     @GET
@@ -95,20 +103,50 @@ public class SearchResource {
     public Response get(
             @PathParam("query") String query,
             @QueryParam("limit") Integer limit,
-            @QueryParam("offset") Integer offset) throws JSONException {
+            @QueryParam("offset") Integer offset,
+            @QueryParam("after_article") String afterArticle,
+            @QueryParam("total") Boolean total,
+            @QueryParam("snippet") Boolean snippet) throws JSONException {
         if (!authenticate()) {
             throw new ForbiddenClientException();
         }
         
         ValidationUtil.validateRequired(query, "query");
+        boolean countTotal = total == null || total;
+        boolean snippetOnly = snippet != null && snippet;
         
         // Search in index
-        ArticleIndexingService articleindexingService = AppContext.getInstance().getArticleIndexingService();
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
         PaginatedList<UserArticleDto> paginatedList;
-        try {
-            paginatedList = articleindexingService.searchArticles(principal.getId(), query, offset, limit);
-        } catch (Exception e) {
-            throw new ServerException("SearchError", "Error searching articles", e);
+        if (offset != null) {
+            try {
+                paginatedList = indexingService.searchArticles(principal.getId(), query, offset, limit, countTotal, snippetOnly);
+            } catch (Exception e) {
+                throw new ServerException("SearchError", "Error searching articles", e);
+            }
+        } else {
+            UserArticleDto afterArticleDto = null;
+            if (afterArticle != null) {
+                // Paginate after this user article, or after this article if it has no user article yet
+                UserArticleDao userArticleDao = new UserArticleDao();
+                afterArticleDto = userArticleDao.findFirstByCriteria(new UserArticleCriteria()
+                        .setUserArticleId(afterArticle)
+                        .setUserId(principal.getId()));
+                if (afterArticleDto == null) {
+                    afterArticleDto = userArticleDao.findFirstByCriteria(new UserArticleCriteria()
+                            .setArticleId(afterArticle)
+                            .setUserId(principal.getId())
+                            .setSubscribed(true));
+                }
+                if (afterArticleDto == null) {
+                    throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+                }
+            }
+            try {
+                paginatedList = indexingService.searchArticlesAfter(principal.getId(), query, afterArticleDto, limit, countTotal, snippetOnly);
+            } catch (Exception e) {
+                throw new ServerException("SearchError", "Error searching articles", e);
+            }
         }
         
         // Build the response
@@ -118,7 +156,9 @@ public class SearchResource {
         for (UserArticleDto userArticle : paginatedList.getResultList()) {
             articles.add(ArticleAssembler.asJson(userArticle));
         }
-        response.put("total", paginatedList.getResultCount());
+        if (countTotal) {
+            response.put("total", paginatedList.getResultCount());
+        }
         response.put("articles", articles);
 
         return Response.ok().entity(response).build();
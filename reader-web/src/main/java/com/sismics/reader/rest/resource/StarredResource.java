@@ -3,6 +3,7 @@ package com.sismics.reader.rest.resource;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.UserArticle;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
@@ -37,6 +38,11 @@ import java.util.Set;
  */
 @Path("/starred")
 public class StarredResource {
+    /**
+     * Separator of the starred date and the user article ID in the pagination cursor.
+     */
+    private static final String CURSOR_SEPARATOR = ":";
+
     /**
      * Injects the HTTP request.
      */
@@ -87,7 +93,7 @@ public class StarredResource {
      * Returns starred articles.
      *
      * @param limit Page limit
-     * @param afterArticle Start the list after this article
+     * @param afterArticle Start the list after this article: cursor of the article, or user article ID
      * @return Response
      */
     @GET
@@ -106,31 +112,37 @@ public class StarredResource {
             .setVisible(true)
             .setUserId(principal.getId());
         if (afterArticle != null) {
-            // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+            // Paginate after this user article, at the starred date of the cursor if provided
+            int separator = afterArticle.indexOf(CURSOR_SEPARATOR);
+            if (separator != -1) {
+                try {
+                    userArticleCriteria.setAfterStarredDate(new Date(Long.parseLong(afterArticle.substring(0, separator))));
+                } catch (NumberFormatException e) {
+                    throw new ClientException("ValidationError", MessageFormat.format("Invalid cursor {0}", afterArticle));
+                }
+                afterArticle = afterArticle.substring(separator + 1);
             }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-
-            userArticleCriteria.setUserArticleStarredDateMax(new Date(userArticleDto.getStarTimestamp()));
-            userArticleCriteria.setUserArticleIdMax(userArticleDto.getId());
+            userArticleCriteria.setAfterUserArticleId(afterArticle);
         }
 
         PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+        userArticleDao.findPageByCriteria(paginatedList, userArticleCriteria, null, null);
+        if (afterArticle != null && paginatedList.getResultList().isEmpty()
+                && userArticleDao.getUserArticle(afterArticle, principal.getId()) == null) {
+            throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+        }
         
         // Build the response
         JSONObject response = new JSONObject();
 
         List<JSONObject> articles = new ArrayList<JSONObject>();
         for (UserArticleDto userArticle : paginatedList.getResultList()) {
-            articles.add(ArticleAssembler.asJson(userArticle));
+            JSONObject article = ArticleAssembler.asJson(userArticle);
+            article.put("cursor", userArticle.getStarTimestamp() + CURSOR_SEPARATOR + userArticle.getId());
+            articles.add(article);
         }
         response.put("articles", articles);
+        response.put("has_more", paginatedList.isHasMore());
 
         return Response.ok().entity(response).build();
     }
@@ -152,7 +164,7 @@ public class StarredResource {
         
         // Get the article
         UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+        UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
         if (userArticle == null) {
             throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
         }
@@ -163,6 +175,8 @@ public class StarredResource {
         // Update the article
         userArticle.setStarredDate(new Date());
         userArticleDao.update(userArticle);
+        AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 0, 0, 1);
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -187,7 +201,7 @@ public class StarredResource {
         
         // Get the article
         UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+        UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
         if (userArticle == null) {
             throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
         }
@@ -198,6 +212,8 @@ public class StarredResource {
         // Update the article
         userArticle.setStarredDate(null);
         userArticleDao.update(userArticle);
+        AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 0, 0, -1);
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -223,16 +239,23 @@ public class StarredResource {
         for (String id : idList) {
             // Get the article
             UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
+            UserArticle userArticle = userArticleDao.getOrCreateUserArticle(id, principal.getId());
             if (userArticle == null) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
+            if (userArticle.getStarredDate() != null) {
+                // Already starred, keep its starred date and count it once
+                continue;
+            }
             
             // Update the article
             userArticle.setStarredDate(new Date());
             userArticleDao.update(userArticle);
+            AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 0, 0, 1);
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -255,18 +278,21 @@ public class StarredResource {
         }
         
         for (String id : idList) {
-            // Get the article
+            // Get the article, an article never acted on is not starred
             UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
-            if (userArticle == null) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
+            UserArticle userArticle = userArticleDao.findUserArticle(id, principal.getId());
+            if (userArticle == null || userArticle.getStarredDate() == null) {
+                continue;
             }
             
             // Update the article
             userArticle.setStarredDate(null);
             userArticleDao.update(userArticle);
+            AppContext.getInstance().getCounterService().addArticle(principal.getId(), userArticle.getArticleId(), 0, 0, -1);
         }
         
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
+
         // Always return ok
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -1,5 +1,7 @@
 package com.sismics.reader.rest.resource;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.io.ByteStreams;
 import com.sismics.reader.core.dao.jpa.*;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
@@ -116,8 +118,11 @@ public class SubscriptionResource {
     }
     
     /**
+     * Returns the categories and subscriptions of the user, as a tree.
+     * The tree is built from all the categories and all the subscriptions at once, and cached until they change.
      * 
-     * 
+     * @param unread Returns only subscriptions having unread articles
+     * @return Response
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -127,12 +132,39 @@ public class SubscriptionResource {
             throw new ForbiddenClientException();
         }
         
-        // Get the root category
-        CategoryDao categoryDao = new CategoryDao();
-        Category rootCategory = categoryDao.getRootCategory(principal.getId());
+        SubscriptionTreeCache subscriptionTreeCache = AppContext.getInstance().getSubscriptionTreeCache();
+        JSONObject response = subscriptionTreeCache.get(principal.getId(), unread);
+        if (response == null) {
+            long version = subscriptionTreeCache.getVersion(principal.getId());
+
+            // Get all the categories, grouped by parent
+            CategoryDao categoryDao = new CategoryDao();
+            Category rootCategory = null;
+            ListMultimap<String, Category> subCategoryMap = ArrayListMultimap.create();
+            for (Category category : categoryDao.findAllCategory(principal.getId())) {
+                if (category.getParentId() == null) {
+                    rootCategory = category;
+                } else {
+                    subCategoryMap.put(category.getParentId(), category);
+                }
+            }
+            if (rootCategory == null) {
+                throw new ServerException("ServerError", "Root category not found for user " + principal.getId());
+            }
+
+            // Get all the subscriptions with their up to date counters, grouped by category
+            FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
+                    .setUserId(principal.getId());
+            CounterService counterService = AppContext.getInstance().getCounterService();
+            ListMultimap<String, FeedSubscriptionDto> feedSubscriptionMap = ArrayListMultimap.create();
+            for (FeedSubscriptionDto feedSubscriptionDto : new FeedSubscriptionDao().findByCriteria(feedSubscriptionCriteria)) {
+                counterService.applyPending(feedSubscriptionDto);
+                feedSubscriptionMap.put(feedSubscriptionDto.getCategoryId(), feedSubscriptionDto);
+            }
 
-        // Build the JSON response using the recursive function
-        JSONObject response = buildCategoryJsonRecursive(rootCategory, unread, 0);
+            response = buildCategoryJsonRecursive(rootCategory, subCategoryMap, feedSubscriptionMap, unread, 0);
+            subscriptionTreeCache.put(principal.getId(), unread, response, version);
+        }
 
         return Response.ok().entity(response).build();
     }
@@ -141,54 +173,49 @@ public class SubscriptionResource {
      * Builds the category JSON object recursively, including subcategories and subscriptions.
      *
      * @param category The category to build the JSON for
+     * @param subCategoryMap Categories by parent category ID
+     * @param feedSubscriptionMap Subscriptions by category ID
      * @param unread   Whether to include only unread items
      * @param level    Current nesting level of the category
      * @return JSONObject for the category, including nested items
      * @throws JSONException if JSON object creation fails
      */
-    private JSONObject buildCategoryJsonRecursive(Category category, boolean unread, int level) throws JSONException {
+    private JSONObject buildCategoryJsonRecursive(Category category, ListMultimap<String, Category> subCategoryMap,
+            ListMultimap<String, FeedSubscriptionDto> feedSubscriptionMap, boolean unread, int level) throws JSONException {
         JSONObject categoryJson = createCategoryJsonObject(category, level);
         JSONArray subscriptionsJson = new JSONArray();
         JSONArray categoriesJson = new JSONArray();
         int categoryUnreadCount = 0;
         int categoryTotalCount = 0;
+        int categoryStarredCount = 0;
         int maxSubcategoryDepth = 0;
 
-        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-
-        FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria();
-        feedSubscriptionCriteria.setCategoryId(category.getId()); // Filter by category ID
-        feedSubscriptionCriteria.setUserId(principal.getId()); // Ensure user context
-        List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-
-        for (FeedSubscriptionDto feedSubscriptionDto : feedSubscriptionList) {
+        for (FeedSubscriptionDto feedSubscriptionDto : feedSubscriptionMap.get(category.getId())) {
             if (unread && feedSubscriptionDto.getUnreadUserArticleCount() <= 0) {
                 continue; // Skip if unread-only and no unread items
             }
             JSONObject subscriptionJson = createSubscriptionJsonObject(feedSubscriptionDto);
-            if (subscriptionJson != null) { // Check for null subscriptionJson
-                subscriptionsJson.put(subscriptionJson);
-                categoryUnreadCount += subscriptionJson.optInt("unread_count", 0); // Use optInt with default 0
-                categoryTotalCount += subscriptionJson.optInt("total_count", 0);   // Use optInt with default 0
-            }
+            subscriptionsJson.put(subscriptionJson);
+            categoryUnreadCount += subscriptionJson.optInt("unread_count", 0);
+            categoryTotalCount += subscriptionJson.optInt("total_count", 0);
+            categoryStarredCount += subscriptionJson.optInt("starred_count", 0);
         }
+
         // Recursively process subcategories
-        CategoryDao categoryDao = new CategoryDao();
-        List<Category> subCategoryList = categoryDao.findSubCategory(category.getId(), principal.getId());
-        for (Category subCategory : subCategoryList) {
-            JSONObject subCategoryJson = buildCategoryJsonRecursive(subCategory, unread, level + 1);
-            if (subCategoryJson != null) { // Check for null subCategoryJson
-                categoriesJson.put(subCategoryJson);
-                categoryUnreadCount += subCategoryJson.optInt("unread_count", 0); // Use optInt with default 0
-                categoryTotalCount += subCategoryJson.optInt("total_count", 0);     // Use optInt with default 0
-                maxSubcategoryDepth = Math.max(maxSubcategoryDepth, subCategoryJson.optInt("max_subcategory_depth", 0)); // Use optInt with default 0
-            }
+        for (Category subCategory : subCategoryMap.get(category.getId())) {
+            JSONObject subCategoryJson = buildCategoryJsonRecursive(subCategory, subCategoryMap, feedSubscriptionMap, unread, level + 1);
+            categoriesJson.put(subCategoryJson);
+            categoryUnreadCount += subCategoryJson.optInt("unread_count", 0);
+            categoryTotalCount += subCategoryJson.optInt("total_count", 0);
+            categoryStarredCount += subCategoryJson.optInt("starred_count", 0);
+            maxSubcategoryDepth = Math.max(maxSubcategoryDepth, subCategoryJson.optInt("max_subcategory_depth", 0));
         }
 
         categoryJson.put("subscriptions", subscriptionsJson);
         categoryJson.put("categories", categoriesJson);
         categoryJson.put("unread_count", categoryUnreadCount);
         categoryJson.put("total_count", categoryTotalCount);
+        categoryJson.put("starred_count", categoryStarredCount);
         categoryJson.put("max_subcategory_depth", maxSubcategoryDepth + 1);
 
         return categoryJson;
@@ -205,39 +232,25 @@ public class SubscriptionResource {
         categoryJson.put("categories", new JSONArray());
         categoryJson.put("unread_count", 0);
         categoryJson.put("total_count", 0);
+        categoryJson.put("starred_count", 0);
         return categoryJson;
     }
 
     /**
      * Creates a JSON object for a feed subscription.
-     * @param feedSubscription FeedSubscription providing subscription data
+     * @param feedSubscriptionDto Subscription, with its counters
      * @return JSONObject for the subscription
      * @throws JSONException if JSON object creation fails
      */
     private JSONObject createSubscriptionJsonObject(FeedSubscriptionDto feedSubscriptionDto) throws JSONException {
-        if (feedSubscriptionDto == null) {
-            System.err.println("Error: createSubscriptionJsonObject called with null feedSubscription.");
-            return null; // Return null to indicate an error
-        }
-    
         JSONObject subscription = new JSONObject();
         subscription.put("id", feedSubscriptionDto.getId());
         subscription.put("title", feedSubscriptionDto.getFeedSubscriptionTitle());
         subscription.put("url", feedSubscriptionDto.getFeedRssUrl());
         subscription.put("unread_count", feedSubscriptionDto.getUnreadUserArticleCount());
         subscription.put("sync_fail_count", feedSubscriptionDto.getSynchronizationFailCount());
-
-        // Create count criteria
-        UserArticleCriteria countCriteria = new UserArticleCriteria()
-        .setUserId(principal.getId())
-        .setFeedId(feedSubscriptionDto.getFeedId())
-        .setSubscribed(true)
-        .setVisible(true);
-
-        // Get total count directly using DAO
-        int totalArticleCount = new UserArticleDao().findByCriteria(countCriteria).size();
-        subscription.put("total_count", totalArticleCount);
-    
+        subscription.put("total_count", feedSubscriptionDto.getTotalUserArticleCount());
+        subscription.put("starred_count", feedSubscriptionDto.getStarredUserArticleCount());
         return subscription;
     }
     
@@ -284,21 +297,15 @@ public class SubscriptionResource {
                 .setFeedId(feedSubscription.getFeedId());
         if (afterArticle != null) {
             // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
-            }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-
-            userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-            userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
+            userArticleCriteria.setAfterUserArticleId(afterArticle);
         }
 
         PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+        userArticleDao.findPageByCriteria(paginatedList, userArticleCriteria, null, null);
+        if (afterArticle != null && paginatedList.getResultList().isEmpty()
+                && userArticleDao.getUserArticle(afterArticle, principal.getId()) == null) {
+            throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+        }
         
         // Build the response
         JSONObject response = new JSONObject();
@@ -319,6 +326,7 @@ public class SubscriptionResource {
             articles.add(ArticleAssembler.asJson(userArticle));
         }
         response.put("articles", articles);
+        response.put("has_more", paginatedList.isHasMore());
 
         return Response.ok().entity(response).build();
     }
@@ -460,6 +468,8 @@ public class SubscriptionResource {
         // Create the initial article subscriptions for this user
         EntityManagerUtil.flush();
         articleFeedService.createInitialUserArticle(principal.getId(), feedSubscription);
+        AppContext.getInstance().getIndexingService().invalidateUserFilter(principal.getId());
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
 
         JSONObject response = new JSONObject();
         response.put("id", feedSubscriptionId);
@@ -517,7 +527,7 @@ public class SubscriptionResource {
         if (order != null) {
             feedSubscriptionDao.reorder(feedSubscription, order);
         }
-        
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
 
         // Always return ok
         JSONObject response = new JSONObject();
@@ -619,7 +629,8 @@ public class SubscriptionResource {
                 .setSubscribed(true)
                 .setFeedSubscriptionId(id));
 
-        feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), 0);
+        AppContext.getInstance().getCounterService().resetUnread(feedSubscription.getId(), principal.getId());
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
 
         // Always return ok
         JSONObject response = new JSONObject();
@@ -651,6 +662,8 @@ public class SubscriptionResource {
         
         // Delete the subscription
         feedSubscriptionDao.delete(id);
+        AppContext.getInstance().getIndexingService().invalidateUserFilter(principal.getId());
+        AppContext.getInstance().getSubscriptionTreeCache().invalidate(principal.getId());
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -27,6 +27,7 @@ import com.sismics.security.UserPrincipal;
 import com.sismics.util.EnvironmentUtil;
 import com.sismics.util.LocaleUtil;
 import com.sismics.util.filter.SecurityFilter;
+import com.sismics.util.filter.PrincipalCache;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jettison.json.JSONArray;
@@ -238,6 +239,9 @@ public class UserResource {
             user = userDao.updatePassword(user);
         }
         
+        // The cached principals of this user are outdated
+        PrincipalCache.getInstance().invalidateUser(user.getId());
+        
         if (StringUtils.isNotBlank(password)) {
             // Raise a password updated event
             PasswordChangedEvent passwordChangedEvent = new PasswordChangedEvent();
@@ -347,6 +351,9 @@ public class UserResource {
             AppContext.getInstance().getMailEventBus().post(passwordChangedEvent);
         }
         
+        // The cached principals of this user are outdated
+        PrincipalCache.getInstance().invalidateUser(user.getId());
+        
         // Always return "ok"
         JSONObject response = new JSONObject();
         response.put("status", "ok");
@@ -466,6 +473,7 @@ public class UserResource {
         // Deletes the server token
         try {
             authenticationTokenDao.delete(authToken);
+            PrincipalCache.getInstance().invalidate(authToken);
         } catch (Exception e) {
             throw new ServerException("AuthenticationTokenError", "Error deleting authentication token: " + authToken, e);
         }
@@ -496,6 +504,7 @@ public class UserResource {
         // Delete the user
         UserDao userDao = new UserDao();
         userDao.delete(principal.getName());
+        PrincipalCache.getInstance().invalidateUser(principal.getId());
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -538,6 +547,7 @@ public class UserResource {
         
         // Delete the user
         userDao.delete(user.getUsername());
+        PrincipalCache.getInstance().invalidateUser(user.getId());
         
         // Always return ok
         JSONObject response = new JSONObject();
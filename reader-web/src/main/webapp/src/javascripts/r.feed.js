@@ -266,12 +266,14 @@ r.feed.load = function (next) {
   };
 
   if (r.feed.context.lastItem) {
-    data.after_article = r.feed.context.lastItem.attr('data-article-id');
+    // Starred articles are paginated by their cursor, still valid after the article is unstarred
+    var lastArticle = r.feed.context.lastItem.data('article');
+    data.after_article = lastArticle && lastArticle.cursor ? lastArticle.cursor : r.feed.context.lastItem.attr('data-article-id');
   }
 
-  // Special case for search (use offset paging)
-  if (next && r.feed.context.url.substring(0, 11) == r.util.url.search.substring(0, 11)) {
-    data.offset = r.feed.cache.container.find('.feed-item').length;
+  // Special case for search (the total is not displayed)
+  if (r.feed.context.url.substring(0, 11) == r.util.url.search.substring(0, 11)) {
+    data.total = false;
   }
 
   r.feed.activeXhr = r.util.ajax({
@@ -7,7 +7,9 @@ import org.codehaus.jettison.json.JSONObject;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Exhaustive test of the all resource.
@@ -86,6 +88,15 @@ public class TestAllResource extends BaseJerseyTest {
         assertNotNull(articles);
         assertEquals(8, articles.length());
         assertEquals(article2Id, article.getString("id"));
+        assertFalse(json.getBoolean("has_more"));
+
+        // Check pagination with more articles left
+        GET("/all", ImmutableMap.of("limit", "5"));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.optJSONArray("articles");
+        assertEquals(5, articles.length());
+        assertTrue(json.getBoolean("has_more"));
 
         // Marks all articles as read
         POST("/all/read");
@@ -1,13 +1,27 @@
 package com.sismics.reader.rest;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.sismics.reader.core.dao.jpa.FeedDao;
+import com.sismics.reader.core.dao.jpa.criteria.FeedCriteria;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.FeedSynchronization;
+import com.sismics.reader.core.util.TransactionUtil;
 import com.sismics.rest.exception.ClientException;
+import org.apache.commons.lang.RandomStringUtils;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
 import static junit.framework.Assert.*;
 
 /**
@@ -41,6 +55,135 @@ public class TestAppResource extends BaseJerseyTest {
         // Rebuild articles index
         POST("/app/batch/reindex");
         assertIsOk();
+
+        // Check the rebuild progress
+        GET("/app/batch/reindex");
+        assertIsOk();
+        json = getJsonResult();
+        assertFalse(json.getBoolean("running"));
+        assertTrue(json.getBoolean("success"));
+        assertEquals(1d, json.getDouble("progress"));
+
+        // Snapshot the search and feed synchronizer statistics
+        GET("/app/search");
+        assertIsOk();
+        json = getJsonResult();
+        long searchCount = json.getJSONObject("search").getLong("count");
+        long highlightCacheHitCount = json.getLong("highlight_cache_hit_count");
+        long indexBatchCount = json.getLong("index_batch_count");
+        GET("/app/feed_sync");
+        assertIsOk();
+        json = getJsonResult();
+        long cycleCount = json.getLong("cycle_count");
+        long modifiedCount = json.getLong("modified_count");
+        long notModifiedCount = json.getLong("not_modified_count") + json.getLong("unchanged_count");
+        long fetchCount = json.getJSONArray("stages").getJSONObject(0).getLong("count");
+
+        // Subscribe to a feed with an article found by no other test
+        String searchTerm = "searchterm" + RandomStringUtils.randomAlphabetic(10).toLowerCase();
+        String url = createTempFeed(searchTerm);
+        PUT("/subscription", ImmutableMap.of("url", url));
+        assertIsOk();
+        AppContext.getInstance().waitForAsync();
+
+        // Search the article twice, the second page is highlighted from the cache
+        GET("/search/" + searchTerm);
+        assertIsOk();
+        json = getJsonResult();
+        assertEquals(1, json.getJSONArray("articles").length());
+        GET("/search/" + searchTerm);
+        assertIsOk();
+
+        // Check the search statistics
+        GET("/app/search");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getJSONObject("search").getLong("count") >= searchCount + 2);
+        assertTrue(json.getJSONObject("highlight").getLong("count") >= 1);
+        assertEquals(4, json.getJSONObject("highlight").getJSONObject("percentiles").length());
+        assertTrue(json.getLong("highlight_cache_hit_count") > highlightCacheHitCount);
+        assertTrue(json.getLong("index_batch_count") > indexBatchCount);
+
+        // Synchronize the feed again, it is not modified
+        final String rssUrl = url;
+        assertTrue(TransactionUtil.handle(new Runnable() {
+            @Override
+            public void run() {
+                List<FeedDto> feedList = new FeedDao().findByCriteria(new FeedCriteria()
+                        .setRssUrlIn(Collections.singletonList(rssUrl)));
+                assertEquals(1, feedList.size());
+                List<FeedSynchronization> feedSynchronizationList = AppContext.getInstance().getFeedService()
+                        .getFeedSynchronizer().synchronize(feedList);
+                assertTrue(feedSynchronizationList.get(0).isSuccess());
+            }
+        }));
+
+        // Check the feed synchronizer statistics
+        GET("/app/feed_sync");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getLong("cycle_count") > cycleCount);
+        assertTrue(json.getLong("modified_count") > modifiedCount);
+        assertTrue(json.getLong("not_modified_count") + json.getLong("unchanged_count") > notModifiedCount);
+        JSONArray stages = json.getJSONArray("stages");
+        assertEquals(7, stages.length());
+        assertEquals("fetch", stages.getJSONObject(0).getString("name"));
+        assertTrue(stages.getJSONObject(0).getLong("count") >= fetchCount + 2);
+
+        // Check the event bus statistics
+        GET("/app/event_bus");
+        assertIsOk();
+        json = getJsonResult();
+        assertNotNull(json.getJSONArray("buses"));
+
+        // Check the metrics
+        GET("/app/metrics");
+        assertIsOk();
+        json = getJsonResult();
+        JSONArray metrics = json.getJSONArray("metrics");
+        assertTrue(metrics.length() > 0);
+        GET("/app/metrics", ImmutableMap.of("format", "prometheus"));
+        assertIsOk();
+        String text = response.getEntity(String.class);
+        assertTrue(text.contains("# TYPE reader_rest_request_duration_seconds summary"));
+        assertTrue(text.contains("reader_rest_request_duration_seconds_count{path=\"/app/search\",method=\"GET\"}"));
+        assertTrue(text.contains("# TYPE reader_jpa_request_statements summary"));
+
+        // Enable the query profiler
+        POST("/app/query_profile", ImmutableMap.of("enabled", "true"));
+        assertIsOk();
+        GET("/app/query_profile");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getBoolean("enabled"));
+        assertEquals(10, json.getInt("repeat_threshold"));
+        assertNotNull(json.getJSONArray("profiles"));
+        POST("/app/query_profile", ImmutableMap.of("enabled", "false"));
+        assertIsOk();
+    }
+
+    /**
+     * Create a feed served from the temporary directory, holding one article.
+     *
+     * @param searchTerm Term in the title of the article
+     * @return URL of the feed
+     */
+    private String createTempFeed(String searchTerm) {
+        String feed = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<rss version=\"2.0\"><channel>"
+                + "<title>App feed</title><link>http://localhost:9997/</link><description>App feed</description>"
+                + "<item><title>Article " + searchTerm + "</title>"
+                + "<link>http://localhost:9997/app/" + searchTerm + ".html</link>"
+                + "<guid isPermaLink=\"false\">" + searchTerm + "</guid>"
+                + "<pubDate>Mon, 2 Jan 2017 10:00:00 +0000</pubDate>"
+                + "<description>Article " + searchTerm + " description</description></item>"
+                + "</channel></rss>";
+        try {
+            Files.write(feed, new File(System.getProperty("java.io.tmpdir"), searchTerm + ".xml"), Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return "http://localhost:9997/temp/" + searchTerm + ".xml";
     }
 
     /**
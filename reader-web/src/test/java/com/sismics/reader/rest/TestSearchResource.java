@@ -36,6 +36,15 @@ public class TestSearchResource extends BaseJerseyTest {
         assertEquals(1, articles.length());
         assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
         
+        // Search "zelda" with snippets: OK, only the text around the match
+        GET("/search/searchtermzelda", ImmutableMap.of("snippet", "true"));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
+        Assert.assertTrue(articles.getJSONObject(0).getString("description").length() < 1000);
+        
         // Search "njloinzejrmklsjd": OK, no result
         GET("/search/njloinzejrmklsjd");
         assertIsOk();
@@ -52,6 +61,27 @@ public class TestSearchResource extends BaseJerseyTest {
         assertSearchResult(articles, "Récupérer les clés <span class=\"highlight\">searchtermwifi</span> sur un téléphone Android", 0);
         assertSearchResult(articles, "Partagez vos clés <span class=\"highlight\">searchtermWiFi</span> avec vos amis", 1);
         
+        // Search "wifi" page by page: OK, 1 result per page
+        GET("/search/searchtermwifi", ImmutableMap.of("limit", "1", "total", "false"));
+        assertIsOk();
+        json = getJsonResult();
+        Assert.assertFalse(json.has("total"));
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Récupérer les clés <span class=\"highlight\">searchtermwifi</span> sur un téléphone Android", 0);
+        GET("/search/searchtermwifi", ImmutableMap.of("limit", "1", "after_article", articles.getJSONObject(0).getString("id")));
+        assertIsOk();
+        json = getJsonResult();
+        assertEquals(2, json.getInt("total"));
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Partagez vos clés <span class=\"highlight\">searchtermWiFi</span> avec vos amis", 0);
+        GET("/search/searchtermwifi", ImmutableMap.of("limit", "1", "after_article", articles.getJSONObject(0).getString("id")));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(0, articles.length());
+        
         // Search "google keep": OK, 2 results
         GET("/search/searchtermgoogle%20searchtermkeep");
         assertIsOk();
@@ -87,13 +117,13 @@ public class TestSearchResource extends BaseJerseyTest {
         articles = json.getJSONArray("articles");
         assertEquals(0, articles.length());
         
-        // Search "zelda"
+        // Search "zelda": no result outside of the subscribed feeds
         GET("/search/searchtermzelda");
         assertIsOk();
         json = getJsonResult();
         articles = json.getJSONArray("articles");
-        assertEquals(1, articles.length());
-        assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
+        assertEquals(0, articles.length());
+        assertEquals(0, json.getInt("total"));
         
         // Subscribe to Korben RSS feed (alternative URL)
         PUT("/subscription", ImmutableMap.of("url", "http://localhost:9997/http/feeds/korben2.xml"));
@@ -106,6 +136,64 @@ public class TestSearchResource extends BaseJerseyTest {
         articles = json.getJSONArray("articles");
         assertEquals(1, articles.length());
         assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
+        
+        // Star the article found, its user article is created if needed
+        String articleId = articles.getJSONObject(0).getString("id");
+        PUT("/starred/" + articleId);
+        assertIsOk();
+        
+        // Check the starred resource
+        GET("/starred");
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Quand searchtermZelda prend les armes", 0);
+    }
+    
+    /**
+     * Test of the search resource, with articles sharing their URL across feeds.
+     * 
+     */
+    @Test
+    public void testSearchDuplicateUrl() throws Exception {
+        // Create user search_duplicate1
+        createUser("search_duplicate1");
+        login("search_duplicate1");
+
+        // Subscribe to 2 feeds sharing an article, published at different dates
+        PUT("/subscription", ImmutableMap.of("url", "http://localhost:9997/http/feeds/duplicate1.xml"));
+        assertIsOk();
+        PUT("/subscription", ImmutableMap.of("url", "http://localhost:9997/http/feeds/duplicate2.xml"));
+        assertIsOk();
+
+        // Search "duplicate": the articles with the same URL are grouped
+        GET("/search/searchtermduplicate");
+        assertIsOk();
+        JSONObject json = getJsonResult();
+        assertEquals(2, json.getInt("total"));
+        JSONArray articles = json.getJSONArray("articles");
+        assertEquals(2, articles.length());
+
+        // Search "duplicate" page by page: each URL is found once, on the page of its most recent article
+        GET("/search/searchtermduplicate", ImmutableMap.of("limit", "1"));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "First article", 0);
+        GET("/search/searchtermduplicate", ImmutableMap.of("limit", "1", "after_article", articles.getJSONObject(0).getString("id")));
+        assertIsOk();
+        json = getJsonResult();
+        assertEquals(2, json.getInt("total"));
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Second article", 0);
+        GET("/search/searchtermduplicate", ImmutableMap.of("limit", "1", "after_article", articles.getJSONObject(0).getString("id")));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(0, articles.length());
     }
     
     /**
@@ -44,6 +44,7 @@ public class TestStarredResource extends BaseJerseyTest {
         String article0Id = article0.getString("id");
         JSONObject article1 = articles.getJSONObject(1);
         String article1Id = article1.getString("id");
+        String article2Id = articles.getJSONObject(2).getString("id");
 
         // Create a new starred article
         PUT("/starred/" + article0Id);
@@ -62,6 +63,7 @@ public class TestStarredResource extends BaseJerseyTest {
         assertEquals(2, articles.length());
         JSONObject articleAfter = articles.getJSONObject(0);
         String articleAfterId = articleAfter.getString("id");
+        String articleAfterCursor = articleAfter.getString("cursor");
 
         // Check pagination
         GET("/starred", ImmutableMap.of("after_article", articleAfterId));
@@ -71,6 +73,18 @@ public class TestStarredResource extends BaseJerseyTest {
         assertNotNull(articles);
         assertEquals(1, articles.length());
 
+        // Check pagination by cursor, after the article of the cursor is unstarred
+        DELETE("/starred/" + articleAfterId);
+        assertIsOk();
+        GET("/starred", ImmutableMap.of("after_article", articleAfterCursor));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.optJSONArray("articles");
+        assertNotNull(articles);
+        assertEquals(1, articles.length());
+        PUT("/starred/" + articleAfterId);
+        assertIsOk();
+
         // Delete a starred article
         DELETE("/starred/" + article0Id);
         assertIsOk();
@@ -110,5 +124,32 @@ public class TestStarredResource extends BaseJerseyTest {
         articles = json.optJSONArray("articles");
         assertNotNull(articles);
         assertEquals(2, articles.length());
+
+        // Star the same articles again, they are counted once
+        POST("/starred/star", ImmutableMultimap.of(
+                "id", article0Id,
+                "id", article1Id));
+        assertIsOk();
+        GET("/subscription");
+        assertIsOk();
+        JSONObject subscription = getJsonResult().getJSONArray("subscriptions").getJSONObject(0);
+        assertEquals(2, subscription.getInt("starred_count"));
+        int unreadCount = subscription.getInt("unread_count");
+
+        // Unstar the articles twice, and an article never starred
+        POST("/starred/unstar", ImmutableMultimap.of(
+                "id", article0Id,
+                "id", article1Id,
+                "id", article2Id));
+        assertIsOk();
+        POST("/starred/unstar", ImmutableMultimap.of(
+                "id", article0Id,
+                "id", article1Id));
+        assertIsOk();
+        GET("/subscription");
+        assertIsOk();
+        subscription = getJsonResult().getJSONArray("subscriptions").getJSONObject(0);
+        assertEquals(0, subscription.getInt("starred_count"));
+        assertEquals(unreadCount, subscription.getInt("unread_count"));
     }
 }
\ No newline at end of file
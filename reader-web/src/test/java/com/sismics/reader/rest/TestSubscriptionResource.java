@@ -164,6 +164,7 @@ public class TestSubscriptionResource extends BaseJerseyTest {
         assertIsOk();
         json = getJsonResult();
         assertEquals(9, json.optInt("unread_count"));
+        assertEquals(10, json.optInt("total_count"));
 
         // Marks an article as unread
         POST("/article/" + article0Id + "/unread");
@@ -488,6 +489,55 @@ public class TestSubscriptionResource extends BaseJerseyTest {
         assertEquals(3, articles.length());
     }
     
+    /**
+     * Test of the import resource, with feeds failing in the middle of a batch.
+     * 
+     */
+    @Test
+    public void testSubscriptionImportFailure() throws Exception {
+        // Create user import_failure1
+        createUser("import_failure1");
+        login("import_failure1");
+
+        // Import an OPML file with a missing feed, and a title too long for its subscription
+        FormDataMultiPart form = new FormDataMultiPart();
+        InputStream track = this.getClass().getResourceAsStream("/import/import_failure.xml");
+        FormDataBodyPart fdp = new FormDataBodyPart("file",
+                new BufferedInputStream(track),
+                MediaType.APPLICATION_OCTET_STREAM_TYPE);
+        form.bodyPart(fdp);
+        PUT("/subscription/import", form);
+        assertIsOk();
+
+        // Check the progress of the job
+        AppContext.getInstance().waitForAsync();
+        GET("/user");
+        assertIsOk();
+        JSONObject json = getJsonResult();
+        JSONObject job = json.getJSONArray("jobs").getJSONObject(0);
+        assertEquals(2, job.optInt("feed_success"));
+        assertEquals(2, job.optInt("feed_failure"));
+        assertEquals(4, job.optInt("feed_total"));
+
+        // The other feeds of the batch are subscribed, with their articles
+        GET("/subscription");
+        assertIsOk();
+        json = getJsonResult();
+        JSONArray subscriptions = json.getJSONArray("subscriptions");
+        assertEquals(2, subscriptions.length());
+        for (int i = 0; i < subscriptions.length(); i++) {
+            JSONObject subscription = subscriptions.getJSONObject(i);
+            assertFalse(subscription.getString("url").endsWith("xkcd.xml"));
+            assertTrue(subscription.getInt("unread_count") > 0);
+        }
+
+        // The articles of the feeds are stored
+        GET("/all");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getJSONArray("articles").length() > 0);
+    }
+
     /**
      * Test related to issue #110.
      * See https://github.com/sismics/reader/issues/110.
@@ -1,6 +1,7 @@
 package com.sismics.reader.rest;
 
 import com.google.common.collect.ImmutableMap;
+import com.sismics.util.filter.TokenBasedSecurityFilter;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
@@ -138,8 +139,15 @@ public class TestUserResource extends BaseJerseyTest {
         assertEquals("bob@reader.com", json.getString("email"));
         assertEquals("ko", json.getString("locale"));
         
-        // Test login KO (user not found)
+        // The token of bob is rejected after logout, even with its principal in cache
+        String bobAuthToken = cookies.get(TokenBasedSecurityFilter.COOKIE_NAME);
         logout();
+        cookies.put(TokenBasedSecurityFilter.COOKIE_NAME, bobAuthToken);
+        GET("/user");
+        assertIsOk();
+        assertTrue(getJsonResult().getBoolean("anonymous"));
+        
+        // Test login KO (user not found)
         POST("/user/login", ImmutableMap.of(
                 "username", "intruder",
                 "password", "12345678"));